@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.benchmark.jmh;
+
+import com.virgilsecurity.pythia.crypto.VirgilPythiaCrypto;
+import com.virgilsecurity.sdk.crypto.KeyPairType;
+import com.virgilsecurity.sdk.crypto.VirgilKeyPair;
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures deterministic BrainKey key pair derivation from a seed for every supported
+ * {@link KeyPairType}. Use it to pick a key pair type with a known latency: RSA derivation takes
+ * orders of magnitude longer than elliptic curve derivation and grows quickly with key size.
+ * 
+ * <p>
+ * RSA_8192 is left out by default because a single derivation takes too long for a JMH
+ * iteration. It can be measured by running the JMH jar with {@code -p keyPairType=RSA_8192}.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class KeyDerivationBenchmark {
+
+  private static final int SEED_SIZE = 384;
+
+  @Param({ "ED25519", "CURVE25519", "SECP256R1", "RSA_2048", "RSA_3072", "RSA_4096" })
+  private KeyPairType keyPairType;
+
+  private VirgilPythiaCrypto crypto;
+  private byte[] seed;
+
+  /**
+   * Prepare a seed of the deblinded password size.
+   */
+  @Setup
+  public void setup() {
+    this.crypto = new VirgilPythiaCrypto();
+    this.seed = new byte[SEED_SIZE];
+    new Random(42).nextBytes(this.seed);
+  }
+
+  /**
+   * Derive a key pair from the seed.
+   *
+   * @return the key pair.
+   * @throws CryptoException
+   *           if key pair couldn't be derived.
+   */
+  @Benchmark
+  public VirgilKeyPair deriveKeyPair() throws CryptoException {
+    return this.crypto.generateKeyPair(this.keyPairType, this.seed);
+  }
+
+}
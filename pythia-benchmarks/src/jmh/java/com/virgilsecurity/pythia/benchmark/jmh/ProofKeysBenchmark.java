@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.benchmark.jmh;
+
+import com.virgilsecurity.crypto.foundation.Base64;
+import com.virgilsecurity.pythia.ProofKey;
+import com.virgilsecurity.pythia.ProofKeys;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing of proof keys and lookup of a proof key by version, which every verification
+ * does.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProofKeysBenchmark {
+
+  private static final int PROOF_KEY_SIZE = 65;
+  private static final int CONCURRENT_THREADS = 4;
+
+  @Param({ "1", "4", "16" })
+  private int keyCount;
+
+  private List<String> encodedKeys;
+  private ProofKeys proofKeys;
+
+  /**
+   * Generate proof keys with versions from 1 to {@code keyCount}.
+   */
+  @Setup
+  public void setup() {
+    Random random = new Random(42);
+    this.encodedKeys = new ArrayList<>(this.keyCount);
+    for (int version = 1; version <= this.keyCount; version++) {
+      byte[] data = new byte[PROOF_KEY_SIZE];
+      random.nextBytes(data);
+      this.encodedKeys.add("PK." + version + "."
+          + new String(Base64.encode(data), StandardCharsets.UTF_8));
+    }
+    this.proofKeys = new ProofKeys(this.encodedKeys);
+  }
+
+  /**
+   * Parse proof keys.
+   *
+   * @return the parsed proof keys.
+   */
+  @Benchmark
+  public ProofKeys parse() {
+    return new ProofKeys(this.encodedKeys);
+  }
+
+  /**
+   * Get the current proof key.
+   *
+   * @return the current proof key.
+   */
+  @Benchmark
+  public ProofKey currentKey() {
+    return this.proofKeys.getCurrentKey();
+  }
+
+  /**
+   * Find the oldest proof key, which is the worst case of lookup.
+   *
+   * @return the proof key.
+   */
+  @Benchmark
+  public ProofKey oldestKey() {
+    return this.proofKeys.getProofKey(1);
+  }
+
+  /**
+   * Find the oldest proof key on several threads at once.
+   *
+   * @return the proof key.
+   */
+  @Benchmark
+  @Threads(CONCURRENT_THREADS)
+  public ProofKey oldestKeyConcurrent() {
+    return this.proofKeys.getProofKey(1);
+  }
+
+}
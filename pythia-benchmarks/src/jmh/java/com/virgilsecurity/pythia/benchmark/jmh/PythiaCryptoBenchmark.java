@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.benchmark.jmh;
+
+import com.virgilsecurity.crypto.pythia.Pythia;
+import com.virgilsecurity.crypto.pythia.PythiaComputeTransformationKeyPairResult;
+import com.virgilsecurity.pythia.ProofKeys;
+import com.virgilsecurity.pythia.benchmark.StubPythiaClient;
+import com.virgilsecurity.pythia.crypto.BlindResult;
+import com.virgilsecurity.pythia.crypto.VirgilPythiaCrypto;
+import com.virgilsecurity.pythia.model.TransformResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures client-side Pythia crypto of {@link VirgilPythiaCrypto}. Concurrent variants show how
+ * native calls scale when many threads log users in at once.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PythiaCryptoBenchmark {
+
+  private static final String PASSWORD = "benchmark password";
+  private static final int CONCURRENT_THREADS = 4;
+
+  private VirgilPythiaCrypto crypto;
+  private byte[] salt;
+  private byte[] blindedPassword;
+  private byte[] blindingSecret;
+  private byte[] transformedPassword;
+  private byte[] proofC;
+  private byte[] proofU;
+  private byte[] proofKey;
+  private byte[] deblindedPassword;
+  private byte[] updateToken;
+
+  /**
+   * Prepare a transformed password and its proof with the in-memory service stub.
+   *
+   * @throws Exception
+   *           if stub failed to transform the password.
+   */
+  @Setup
+  public void setup() throws Exception {
+    this.crypto = new VirgilPythiaCrypto();
+    StubPythiaClient client = new StubPythiaClient(0, TimeUnit.MILLISECONDS);
+    this.proofKey = new ProofKeys(
+        Collections.singletonList(client.getProofKey())).getCurrentKey().getData();
+
+    this.salt = this.crypto.generateSalt();
+    BlindResult blinded = this.crypto.blind(PASSWORD);
+    this.blindedPassword = blinded.getBlindedPassword();
+    this.blindingSecret = blinded.getBlindingSecret();
+    TransformResponse response = client.transformPassword(this.salt, this.blindedPassword, 1,
+        true, "token");
+    this.transformedPassword = response.getTransformedPassword();
+    this.proofC = response.getProof().getC();
+    this.proofU = response.getProof().getU();
+    this.deblindedPassword = this.crypto.deblind(this.transformedPassword, this.blindingSecret);
+
+    PythiaComputeTransformationKeyPairResult previousKey = transformationKey("secret-1");
+    PythiaComputeTransformationKeyPairResult nextKey = transformationKey("secret-2");
+    this.updateToken = Pythia.getPasswordUpdateToken(previousKey.getTransformationPrivateKey(),
+        nextKey.getTransformationPrivateKey());
+  }
+
+  /**
+   * Blind a password.
+   *
+   * @return the blind result.
+   */
+  @Benchmark
+  public BlindResult blind() {
+    return this.crypto.blind(PASSWORD);
+  }
+
+  /**
+   * Blind a password on several threads at once.
+   *
+   * @return the blind result.
+   */
+  @Benchmark
+  @Threads(CONCURRENT_THREADS)
+  public BlindResult blindConcurrent() {
+    return this.crypto.blind(PASSWORD);
+  }
+
+  /**
+   * Deblind a transformed password.
+   *
+   * @return the deblinded password.
+   */
+  @Benchmark
+  public byte[] deblind() {
+    return this.crypto.deblind(this.transformedPassword, this.blindingSecret);
+  }
+
+  /**
+   * Verify a transformation proof.
+   *
+   * @return {@code true} if proof is valid.
+   */
+  @Benchmark
+  public boolean verify() {
+    return this.crypto.verify(this.transformedPassword, this.blindedPassword, this.salt,
+        this.proofKey, this.proofC, this.proofU);
+  }
+
+  /**
+   * Verify a transformation proof on several threads at once.
+   *
+   * @return {@code true} if proof is valid.
+   */
+  @Benchmark
+  @Threads(CONCURRENT_THREADS)
+  public boolean verifyConcurrent() {
+    return this.crypto.verify(this.transformedPassword, this.blindedPassword, this.salt,
+        this.proofKey, this.proofC, this.proofU);
+  }
+
+  /**
+   * Update a deblinded password with an update token.
+   *
+   * @return the updated deblinded password.
+   */
+  @Benchmark
+  public byte[] updateDeblinded() {
+    return this.crypto.updateDeblinded(this.deblindedPassword, this.updateToken);
+  }
+
+  private static PythiaComputeTransformationKeyPairResult transformationKey(String secret) {
+    return Pythia.computeTransformationKeyPair(bytes("benchmark-key-id"), bytes(secret),
+        bytes("benchmark-scope-secret"));
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.benchmark.jmh;
+
+import com.virgilsecurity.pythia.Pythia;
+import com.virgilsecurity.pythia.PythiaContext;
+import com.virgilsecurity.pythia.benchmark.StubPythiaClient;
+import com.virgilsecurity.pythia.crypto.BlindResult;
+import com.virgilsecurity.pythia.crypto.VirgilPythiaCrypto;
+import com.virgilsecurity.pythia.metrics.HistogramPythiaMetrics;
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+import com.virgilsecurity.pythia.model.TransformResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the whole {@link Pythia} operation against an in-memory {@link StubPythiaClient}
+ * without network latency. {@link #cryptoOnly()} makes the same crypto calls and the same stub
+ * transform without the SDK, so the difference with {@link #verifyBreachProofPassword()} is the
+ * per-call overhead of the SDK itself.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PythiaOverheadBenchmark {
+
+  private static final String PASSWORD = "benchmark password";
+  private static final int CONCURRENT_THREADS = 4;
+
+  @Param({ "false", "true" })
+  private boolean metrics;
+
+  private StubPythiaClient client;
+  private VirgilPythiaCrypto crypto;
+  private Pythia pythia;
+  private BreachProofPassword breachProofPassword;
+
+  /**
+   * Create Pythia with the service stub and a breach proof password to verify.
+   *
+   * @throws Exception
+   *           if breach proof password can't be created.
+   */
+  @Setup
+  public void setup() throws Exception {
+    this.client = new StubPythiaClient(0, TimeUnit.MILLISECONDS);
+    this.crypto = new VirgilPythiaCrypto();
+    PythiaContext.Builder builder = new PythiaContext.Builder()
+        .setProofKeys(Collections.singletonList(this.client.getProofKey()))
+        .setPythiaCrypto(this.crypto).setPythiaClient(this.client)
+        .setAccessTokenProvider(StubPythiaClient.tokenProvider());
+    if (this.metrics) {
+      builder.setMetrics(new HistogramPythiaMetrics());
+    }
+    this.pythia = new Pythia(builder.build());
+    this.breachProofPassword = this.pythia.createBreachProofPassword(PASSWORD);
+  }
+
+  /**
+   * Create a breach proof password.
+   *
+   * @return the breach proof password.
+   * @throws Exception
+   *           if operation failed.
+   */
+  @Benchmark
+  public BreachProofPassword createBreachProofPassword() throws Exception {
+    return this.pythia.createBreachProofPassword(PASSWORD);
+  }
+
+  /**
+   * Verify a breach proof password without transformation proof.
+   *
+   * @return {@code true} if password matches.
+   * @throws Exception
+   *           if operation failed.
+   */
+  @Benchmark
+  public boolean verifyBreachProofPassword() throws Exception {
+    return this.pythia.verifyBreachProofPassword(PASSWORD, this.breachProofPassword, false);
+  }
+
+  /**
+   * Verify a breach proof password with transformation proof.
+   *
+   * @return {@code true} if password matches.
+   * @throws Exception
+   *           if operation failed.
+   */
+  @Benchmark
+  public boolean verifyBreachProofPasswordWithProof() throws Exception {
+    return this.pythia.verifyBreachProofPassword(PASSWORD, this.breachProofPassword, true);
+  }
+
+  /**
+   * Verify a breach proof password on several threads at once.
+   *
+   * @return {@code true} if password matches.
+   * @throws Exception
+   *           if operation failed.
+   */
+  @Benchmark
+  @Threads(CONCURRENT_THREADS)
+  public boolean verifyBreachProofPasswordConcurrent() throws Exception {
+    return this.pythia.verifyBreachProofPassword(PASSWORD, this.breachProofPassword, false);
+  }
+
+  /**
+   * Make the crypto calls and the stub transform of a verification without the SDK.
+   *
+   * @return {@code true} if password matches.
+   * @throws Exception
+   *           if stub failed.
+   */
+  @Benchmark
+  public boolean cryptoOnly() throws Exception {
+    BlindResult blinded = this.crypto.blind(PASSWORD);
+    TransformResponse response = this.client.transformPassword(
+        this.breachProofPassword.getSalt(), blinded.getBlindedPassword(),
+        this.breachProofPassword.getVersion(), false, "token");
+    byte[] deblindedPassword = this.crypto.deblind(response.getTransformedPassword(),
+        blinded.getBlindingSecret());
+    return Arrays.equals(deblindedPassword, this.breachProofPassword.getDeblindedPassword());
+  }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.benchmark.jmh;
+
+import com.virgilsecurity.pythia.client.PythiaCodec;
+import com.virgilsecurity.pythia.client.PythiaCodecs;
+import com.virgilsecurity.pythia.model.Proof;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.request.TransformPasswordRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding of a transform request and decoding of a transform response, which is the
+ * client-side serialization work of every Pythia call.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WireFormatBenchmark {
+
+  private static final int SALT_SIZE = 32;
+  private static final int BLINDED_PASSWORD_SIZE = 384;
+  private static final int TRANSFORMED_PASSWORD_SIZE = 384;
+  private static final int PROOF_VALUE_SIZE = 32;
+  private static final int CONCURRENT_THREADS = 4;
+
+  @Param({ "json", "cbor" })
+  private String codecName;
+
+  private PythiaCodec codec;
+  private TransformPasswordRequest request;
+  private byte[] responseBody;
+
+  /**
+   * Prepare the request and the encoded response.
+   *
+   * @throws IOException
+   *           if response can't be encoded.
+   */
+  @Setup
+  public void setup() throws IOException {
+    this.codec = "cbor".equals(this.codecName) ? PythiaCodecs.cbor() : PythiaCodecs.json();
+    Random random = new Random(42);
+    this.request = new TransformPasswordRequest(bytes(random, SALT_SIZE),
+        bytes(random, BLINDED_PASSWORD_SIZE), 1, true);
+    TransformResponse response = new TransformResponse(bytes(random, TRANSFORMED_PASSWORD_SIZE),
+        new Proof(bytes(random, PROOF_VALUE_SIZE), bytes(random, PROOF_VALUE_SIZE)));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    this.codec.writeTransformResponse(response, out);
+    this.responseBody = out.toByteArray();
+  }
+
+  /**
+   * Encode a transform request.
+   *
+   * @return the encoded request.
+   * @throws IOException
+   *           if request can't be encoded.
+   */
+  @Benchmark
+  public ByteArrayOutputStream encodeRequest() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+    this.codec.writeTransformPasswordRequest(this.request, out);
+    return out;
+  }
+
+  /**
+   * Decode a transform response.
+   *
+   * @return the decoded response.
+   * @throws IOException
+   *           if response can't be decoded.
+   */
+  @Benchmark
+  public TransformResponse decodeResponse() throws IOException {
+    return this.codec.readTransformResponse(new ByteArrayInputStream(this.responseBody));
+  }
+
+  /**
+   * Decode a transform response on several threads at once.
+   *
+   * @return the decoded response.
+   * @throws IOException
+   *           if response can't be decoded.
+   */
+  @Benchmark
+  @Threads(CONCURRENT_THREADS)
+  public TransformResponse decodeResponseConcurrent() throws IOException {
+    return this.codec.readTransformResponse(new ByteArrayInputStream(this.responseBody));
+  }
+
+  private static byte[] bytes(Random random, int size) {
+    byte[] bytes = new byte[size];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.benchmark;
+
+import com.virgilsecurity.pythia.client.PythiaCodec;
+import com.virgilsecurity.pythia.client.PythiaCodecs;
+import com.virgilsecurity.pythia.client.VirgilPythiaClient;
+import com.virgilsecurity.pythia.model.Proof;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.request.TransformPasswordRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares JSON and CBOR wire formats of the transform endpoint: body sizes per call, CPU time of
+ * encoding and decoding a request and a response, and latency of calls to a local
+ * {@link StandInPythiaServer}.
+ * 
+ * <p>
+ * Arguments: number of codec iterations (default 200000) and number of HTTP calls (default
+ * 5000).
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class CodecBenchmark {
+
+  private static final int SALT_SIZE = 32;
+  private static final int BLINDED_PASSWORD_SIZE = 384;
+  private static final int TRANSFORMED_PASSWORD_SIZE = 384;
+  private static final int PROOF_VALUE_SIZE = 32;
+
+  private CodecBenchmark() {
+  }
+
+  /**
+   * Run the benchmark.
+   *
+   * @param args
+   *          the benchmark arguments.
+   * @throws Exception
+   *           if benchmark failed.
+   */
+  public static void main(String[] args) throws Exception {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+    int calls = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+
+    Random random = new Random(42);
+    TransformPasswordRequest request = new TransformPasswordRequest(
+        bytes(random, SALT_SIZE), bytes(random, BLINDED_PASSWORD_SIZE), 1, true);
+    TransformResponse response = new TransformResponse(bytes(random, TRANSFORMED_PASSWORD_SIZE),
+        new Proof(bytes(random, PROOF_VALUE_SIZE), bytes(random, PROOF_VALUE_SIZE)));
+
+    System.out.printf(Locale.ROOT, "%-6s %10s %10s %14s%n", "codec", "request B", "response B",
+        "encode+decode");
+    for (PythiaCodec codec : new PythiaCodec[] { PythiaCodecs.json(), PythiaCodecs.cbor() }) {
+      // Warm up JIT
+      measureCodec(codec, request, response, iterations);
+      ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+      codec.writeTransformPasswordRequest(request, requestBody);
+      ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+      codec.writeTransformResponse(response, responseBody);
+      long nanosPerCall = measureCodec(codec, request, response, iterations) / iterations;
+      System.out.printf(Locale.ROOT, "%-6s %10d %10d %11d ns%n", name(codec),
+          requestBody.size(), responseBody.size(), nanosPerCall);
+    }
+
+    StubPythiaClient backend = new StubPythiaClient(0, TimeUnit.MILLISECONDS);
+    try (StandInPythiaServer server = new StandInPythiaServer(backend, true)) {
+      System.out.printf(Locale.ROOT, "%n%d transform calls to %s%n", calls, server.getBaseUrl());
+      for (PythiaCodec codec : new PythiaCodec[] { PythiaCodecs.json(), PythiaCodecs.cbor() }) {
+        VirgilPythiaClient client = new VirgilPythiaClient(server.getBaseUrl());
+        client.setCodec(codec);
+        // Warm up JIT and connections
+        measureCalls(client, request, Math.min(calls, 1_000));
+        server.resetCounters();
+        long nanosPerCall = measureCalls(client, request, calls) / calls;
+        System.out.printf(Locale.ROOT, "%-6s %8d B/call on wire %8.1f us/call%n", name(codec),
+            (server.getRequestBytes() + server.getResponseBytes()) / calls,
+            nanosPerCall / 1e3);
+      }
+    }
+  }
+
+  private static long measureCodec(PythiaCodec codec, TransformPasswordRequest request,
+      TransformResponse response, int iterations) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+    long checksum = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      out.reset();
+      codec.writeTransformPasswordRequest(request, out);
+      checksum += codec.readTransformPasswordRequest(new ByteArrayInputStream(out.toByteArray()))
+          .getVersion();
+      out.reset();
+      codec.writeTransformResponse(response, out);
+      checksum += codec.readTransformResponse(new ByteArrayInputStream(out.toByteArray()))
+          .getTransformedPassword().length;
+    }
+    long elapsed = System.nanoTime() - start;
+    if (checksum == 0) {
+      throw new IllegalStateException("Unexpected checksum");
+    }
+    return elapsed;
+  }
+
+  private static long measureCalls(VirgilPythiaClient client, TransformPasswordRequest request,
+      int calls) throws Exception {
+    long start = System.nanoTime();
+    for (int i = 0; i < calls; i++) {
+      client.transformPassword(request.getSalt(), request.getBlindedPassword(), 1, true,
+          "stub-token");
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static String name(PythiaCodec codec) {
+    return codec == PythiaCodecs.json() ? "json" : "cbor";
+  }
+
+  private static byte[] bytes(Random random, int length) {
+    byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+
+}
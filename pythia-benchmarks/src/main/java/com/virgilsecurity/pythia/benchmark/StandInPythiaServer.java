@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.virgilsecurity.pythia.client.PythiaClient;
+import com.virgilsecurity.pythia.client.PythiaCodec;
+import com.virgilsecurity.pythia.client.PythiaCodecs;
+import com.virgilsecurity.pythia.model.GenerateSeedResponse;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+import com.virgilsecurity.pythia.model.request.GenerateSeedRequest;
+import com.virgilsecurity.pythia.model.request.TransformPasswordRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local HTTP server which imitates Pythia service endpoints on top of a {@link PythiaClient}, e.g.
+ * {@link StubPythiaClient}. Requests are decoded with the codec which matches their content type
+ * and responses are encoded with the same codec. Body sizes are counted, so wire formats can be
+ * compared.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class StandInPythiaServer implements AutoCloseable {
+
+  private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+
+  static {
+    // Response headers and body are written separately, disable Nagle's algorithm to avoid
+    // delayed ACK stalls on every call
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+  }
+
+  private final PythiaClient backend;
+  private final boolean binarySupported;
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final AtomicLong requestBytes = new AtomicLong();
+  private final AtomicLong responseBytes = new AtomicLong();
+
+  /**
+   * Create and start a new instance of {@link StandInPythiaServer} on a free local port.
+   *
+   * @param backend
+   *          the client which executes Pythia operations.
+   * @param binarySupported
+   *          if {@code false}, requests in any format but JSON are rejected with
+   *          {@code 415 Unsupported Media Type}, like the public Pythia service does.
+   * @throws IOException
+   *           if server can't be started.
+   */
+  public StandInPythiaServer(PythiaClient backend, boolean binarySupported) throws IOException {
+    this.backend = backend;
+    this.binarySupported = binarySupported;
+    this.executor = Executors.newCachedThreadPool();
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    this.server.createContext("/pythia/v1/password", new HttpHandler() {
+
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        handleTransform(exchange);
+      }
+    });
+    this.server.createContext("/pythia/v1/brainkey", new HttpHandler() {
+
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        handleGenerateSeed(exchange);
+      }
+    });
+    this.server.setExecutor(this.executor);
+    this.server.start();
+  }
+
+  /**
+   * Get the base URL of the server.
+   *
+   * @return the base URL to pass to Pythia clients.
+   */
+  public String getBaseUrl() {
+    return "http://127.0.0.1:" + this.server.getAddress().getPort();
+  }
+
+  /**
+   * Get the total size of received request bodies.
+   *
+   * @return the number of bytes.
+   */
+  public long getRequestBytes() {
+    return requestBytes.get();
+  }
+
+  /**
+   * Get the total size of sent response bodies.
+   *
+   * @return the number of bytes.
+   */
+  public long getResponseBytes() {
+    return responseBytes.get();
+  }
+
+  /**
+   * Reset body size counters.
+   */
+  public void resetCounters() {
+    requestBytes.set(0);
+    responseBytes.set(0);
+  }
+
+  /**
+   * Stop the server.
+   */
+  @Override
+  public void close() {
+    this.server.stop(0);
+    this.executor.shutdown();
+  }
+
+  private void handleTransform(HttpExchange exchange) throws IOException {
+    PythiaCodec codec = negotiate(exchange);
+    if (codec == null) {
+      return;
+    }
+    try {
+      TransformPasswordRequest request = codec
+          .readTransformPasswordRequest(new CountingInputStream(exchange.getRequestBody()));
+      TransformResponse response = this.backend.transformPassword(request.getSalt(),
+          request.getBlindedPassword(), request.getVersion(), request.getIncludeProof(),
+          token(exchange));
+      ByteArrayOutputStream body = new ByteArrayOutputStream(512);
+      codec.writeTransformResponse(response, body);
+      send(exchange, codec, 200, body);
+    } catch (VirgilPythiaServiceException e) {
+      sendError(exchange, codec, e);
+    } catch (IOException | IllegalArgumentException e) {
+      sendError(exchange, codec, new VirgilPythiaServiceException(40000, e.getMessage(), null));
+    }
+  }
+
+  private void handleGenerateSeed(HttpExchange exchange) throws IOException {
+    PythiaCodec codec = negotiate(exchange);
+    if (codec == null) {
+      return;
+    }
+    try {
+      GenerateSeedRequest request = codec
+          .readGenerateSeedRequest(new CountingInputStream(exchange.getRequestBody()));
+      byte[] seed = this.backend.generateSeed(request.getBlindedPassword(),
+          request.getBrainkeyId(), token(exchange));
+      ByteArrayOutputStream body = new ByteArrayOutputStream(512);
+      codec.writeGenerateSeedResponse(new GenerateSeedResponse(seed), body);
+      send(exchange, codec, 200, body);
+    } catch (VirgilPythiaServiceException e) {
+      sendError(exchange, codec, e);
+    } catch (IOException | IllegalArgumentException e) {
+      sendError(exchange, codec, new VirgilPythiaServiceException(40000, e.getMessage(), null));
+    }
+  }
+
+  private PythiaCodec negotiate(HttpExchange exchange) throws IOException {
+    PythiaCodec codec = PythiaCodecs
+        .forContentType(exchange.getRequestHeaders().getFirst("Content-Type"));
+    if (codec != PythiaCodecs.json() && !this.binarySupported) {
+      exchange.sendResponseHeaders(HTTP_UNSUPPORTED_MEDIA_TYPE, -1);
+      exchange.close();
+      return null;
+    }
+    return codec;
+  }
+
+  private static String token(HttpExchange exchange) {
+    String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+    return authorization == null ? null : authorization.replaceFirst("^Virgil ", "");
+  }
+
+  private void sendError(HttpExchange exchange, PythiaCodec codec,
+      VirgilPythiaServiceException e) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream(128);
+    codec.writeError(e.getError(), e.getMessage(), body);
+    send(exchange, codec, 400, body);
+  }
+
+  private void send(HttpExchange exchange, PythiaCodec codec, int status,
+      ByteArrayOutputStream body) throws IOException {
+    this.responseBytes.addAndGet(body.size());
+    exchange.getResponseHeaders().add("Content-Type", codec.getContentType());
+    exchange.sendResponseHeaders(status, body.size());
+    try (OutputStream out = exchange.getResponseBody()) {
+      body.writeTo(out);
+    }
+  }
+
+  /**
+   * Counts bytes of request bodies.
+   */
+  private final class CountingInputStream extends FilterInputStream {
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        requestBytes.incrementAndGet();
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      if (read > 0) {
+        requestBytes.addAndGet(read);
+      }
+      return read;
+    }
+  }
+
+}
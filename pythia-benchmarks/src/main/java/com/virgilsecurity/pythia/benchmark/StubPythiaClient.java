@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.benchmark;
+
+import com.virgilsecurity.crypto.foundation.Base64;
+import com.virgilsecurity.crypto.pythia.Pythia;
+import com.virgilsecurity.crypto.pythia.PythiaComputeTransformationKeyPairResult;
+import com.virgilsecurity.crypto.pythia.PythiaProveResult;
+import com.virgilsecurity.crypto.pythia.PythiaTransformResult;
+import com.virgilsecurity.pythia.client.PythiaClient;
+import com.virgilsecurity.pythia.model.Proof;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+import com.virgilsecurity.sdk.jwt.TokenContext;
+import com.virgilsecurity.sdk.jwt.contract.AccessToken;
+import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory {@link PythiaClient} which transforms passwords locally with a fixed transformation
+ * key. It simulates network latency with a blocking sleep, so SDK overhead can be measured without
+ * the real Pythia service.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class StubPythiaClient implements PythiaClient {
+
+  private static final int KEY_VERSION = 1;
+
+  private final long latencyNanos;
+  private final byte[] transformationPrivateKey;
+  private final byte[] transformationPublicKey;
+
+  /**
+   * Create a new instance of {@link StubPythiaClient}.
+   *
+   * @param latency
+   *          the simulated network latency of each call.
+   * @param unit
+   *          the time unit of the {@code latency} argument.
+   */
+  public StubPythiaClient(long latency, TimeUnit unit) {
+    this.latencyNanos = unit.toNanos(latency);
+
+    Pythia.configure();
+    PythiaComputeTransformationKeyPairResult keyPair = Pythia.computeTransformationKeyPair(
+        bytes("stub-transformation-key-id"), bytes("stub-pythia-secret"),
+        bytes("stub-pythia-scope-secret"));
+    this.transformationPrivateKey = keyPair.getTransformationPrivateKey();
+    this.transformationPublicKey = keyPair.getTransformationPublicKey();
+  }
+
+  /**
+   * Get the proof key which corresponds to the stub transformation key.
+   *
+   * @return the proof key in 'PK.&lt;version&gt;.&lt;Base64-encoded data&gt;' format.
+   */
+  public String getProofKey() {
+    return "PK." + KEY_VERSION + "."
+        + new String(Base64.encode(this.transformationPublicKey), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Create an access token provider which returns a constant token.
+   *
+   * @return the access token provider.
+   */
+  public static AccessTokenProvider tokenProvider() {
+    final AccessToken token = new AccessToken() {
+
+      @Override
+      public String getIdentity() {
+        return "stub";
+      }
+
+      @Override
+      public String stringRepresentation() {
+        return "stub-token";
+      }
+    };
+    return new AccessTokenProvider() {
+
+      @Override
+      public AccessToken getToken(TokenContext tokenContext) {
+        return token;
+      }
+    };
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaClient#transformPassword(byte[], byte[],
+   * java.lang.Integer, boolean, java.lang.String)
+   */
+  @Override
+  public TransformResponse transformPassword(byte[] salt, byte[] blindedPassword, Integer version,
+      boolean includeProof, String token) throws VirgilPythiaServiceException {
+    simulateLatency();
+    PythiaTransformResult transformResult = Pythia.transform(blindedPassword, salt,
+        this.transformationPrivateKey);
+    if (!includeProof) {
+      return new TransformResponse(transformResult.getTransformedPassword());
+    }
+    PythiaProveResult proveResult = Pythia.prove(transformResult.getTransformedPassword(),
+        blindedPassword, transformResult.getTransformedTweak(), this.transformationPrivateKey,
+        this.transformationPublicKey);
+    return new TransformResponse(transformResult.getTransformedPassword(),
+        new Proof(proveResult.getProofValueC(), proveResult.getProofValueU()));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaClient#generateSeed(byte[], java.lang.String,
+   * java.lang.String)
+   */
+  @Override
+  public byte[] generateSeed(byte[] blindedPassword, String brainKeyId, String token)
+      throws VirgilPythiaServiceException {
+    simulateLatency();
+    byte[] tweak = bytes("stub" + (brainKeyId == null ? "" : brainKeyId));
+    return Pythia.transform(blindedPassword, tweak, this.transformationPrivateKey)
+        .getTransformedPassword();
+  }
+
+  private void simulateLatency() throws VirgilPythiaServiceException {
+    if (this.latencyNanos <= 0) {
+      return;
+    }
+    try {
+      TimeUnit.NANOSECONDS.sleep(this.latencyNanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new VirgilPythiaServiceException("StubPythiaClient -> call was interrupted", e);
+    }
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+}
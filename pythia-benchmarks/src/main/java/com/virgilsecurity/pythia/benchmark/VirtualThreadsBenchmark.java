@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.benchmark;
+
+import com.virgilsecurity.pythia.AsyncPythia;
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.Pythia;
+import com.virgilsecurity.pythia.PythiaContext;
+import com.virgilsecurity.pythia.PythiaExecutors;
+import com.virgilsecurity.pythia.crypto.VirgilPythiaCrypto;
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares throughput of concurrent logins executed on a fixed pool of platform threads and on
+ * virtual threads. Pythia service is replaced with {@link StubPythiaClient}, which blocks for the
+ * configured latency like a network call does.
+ * 
+ * <p>
+ * Arguments: number of concurrent logins (default 10000), simulated service latency in
+ * milliseconds (default 50), and size of the platform thread pool (default 200).
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class VirtualThreadsBenchmark {
+
+  private static final String PASSWORD = "benchmark password";
+
+  private VirtualThreadsBenchmark() {
+  }
+
+  /**
+   * Run the benchmark.
+   *
+   * @param args
+   *          the benchmark arguments.
+   * @throws Exception
+   *           if benchmark failed.
+   */
+  public static void main(String[] args) throws Exception {
+    int logins = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+    long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 50;
+    int platformThreads = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+    StubPythiaClient client = new StubPythiaClient(latencyMs, TimeUnit.MILLISECONDS);
+    PythiaContext context = new PythiaContext.Builder()
+        .setProofKeys(Collections.singletonList(client.getProofKey()))
+        .setPythiaCrypto(new VirgilPythiaCrypto()).setPythiaClient(client)
+        .setAccessTokenProvider(StubPythiaClient.tokenProvider()).build();
+    Pythia pythia = new Pythia(context);
+    BreachProofPassword bpp = pythia.createBreachProofPassword(PASSWORD);
+
+    System.out.printf(Locale.ROOT, "%d concurrent logins, %d ms service latency%n", logins,
+        latencyMs);
+
+    // Warm up crypto and JIT
+    try (AsyncPythia asyncPythia = new AsyncPythia(pythia,
+        PythiaExecutors.newPlatformThreadPool(platformThreads))) {
+      run(asyncPythia, bpp, Math.min(logins, 1_000));
+    }
+
+    try (AsyncPythia asyncPythia = new AsyncPythia(pythia,
+        PythiaExecutors.newPlatformThreadPool(platformThreads))) {
+      report(platformThreads + " platform threads", logins, run(asyncPythia, bpp, logins));
+    }
+
+    if (!PythiaExecutors.isVirtualThreadSupported()) {
+      System.out.println("Virtual threads are not supported by this JVM, Java 21+ is required");
+      return;
+    }
+    try (AsyncPythia asyncPythia = AsyncPythia.withVirtualThreads(pythia)) {
+      report("virtual threads", logins, run(asyncPythia, bpp, logins));
+    }
+  }
+
+  private static long run(AsyncPythia asyncPythia, BreachProofPassword bpp, int logins)
+      throws Exception {
+    long start = System.nanoTime();
+    List<CompletableFuture<Boolean>> futures = new ArrayList<>(logins);
+    for (int i = 0; i < logins; i++) {
+      futures.add(asyncPythia.verifyBreachProofPassword(PASSWORD, bpp, false, Deadline.none()));
+    }
+    for (CompletableFuture<Boolean> future : futures) {
+      if (!future.get()) {
+        throw new IllegalStateException("Password verification failed");
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static void report(String mode, int logins, long elapsedNanos) {
+    double seconds = elapsedNanos / 1e9;
+    System.out.printf(Locale.ROOT, "%-24s %8.2f s %10.1f logins/s%n", mode, seconds,
+        logins / seconds);
+  }
+
+}
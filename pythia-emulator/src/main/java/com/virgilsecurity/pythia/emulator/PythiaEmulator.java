@@ -0,0 +1,615 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.emulator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.virgilsecurity.crypto.pythia.Pythia;
+import com.virgilsecurity.crypto.pythia.PythiaComputeTransformationKeyPairResult;
+import com.virgilsecurity.crypto.pythia.PythiaProveResult;
+import com.virgilsecurity.crypto.pythia.PythiaTransformResult;
+import com.virgilsecurity.pythia.client.PythiaCodec;
+import com.virgilsecurity.pythia.client.PythiaCodecs;
+import com.virgilsecurity.pythia.model.GenerateSeedResponse;
+import com.virgilsecurity.pythia.model.Proof;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.request.GenerateSeedRequest;
+import com.virgilsecurity.pythia.model.request.TransformPasswordRequest;
+import com.virgilsecurity.sdk.crypto.VirgilAccessTokenSigner;
+import com.virgilsecurity.sdk.crypto.VirgilPublicKey;
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+import com.virgilsecurity.sdk.jwt.Jwt;
+import com.virgilsecurity.sdk.jwt.JwtVerifier;
+import com.virgilsecurity.sdk.utils.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Local HTTP server which emulates Pythia service. It transforms passwords and generates proofs
+ * with the native Pythia library, so breach proof passwords and brain keys created against the
+ * emulator verify like real ones. Latency, throttling and service errors can be injected while
+ * emulator is running, to load-test and chaos-test clients without the network.
+ * 
+ * <p>
+ * Access tokens are validated if API public key is set. Otherwise any token is accepted.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class PythiaEmulator implements AutoCloseable {
+
+  /**
+   * Error code of the response to a request over the rate limit.
+   */
+  public static final int THROTTLING_ERROR_CODE = 60007;
+
+  /**
+   * Error code of the response to a request with missing, invalid or expired access token.
+   */
+  public static final int INVALID_TOKEN_ERROR_CODE = 20300;
+
+  /**
+   * Error code of the response to a malformed request.
+   */
+  public static final int BAD_REQUEST_ERROR_CODE = 40000;
+
+  /**
+   * Error code of an injected service error.
+   */
+  public static final int INTERNAL_ERROR_CODE = 10000;
+
+  private static final Logger LOGGER = Logger.getLogger(PythiaEmulator.class.getName());
+
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  static {
+    // Response headers and body are written separately, disable Nagle's algorithm to avoid
+    // delayed ACK stalls on every call
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+  }
+
+  private final TransformationKeys keys;
+  private final JwtVerifier jwtVerifier;
+  private final String appId;
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  private volatile long latencyNanos;
+  private volatile long jitterNanos;
+  private volatile int rateLimit;
+  private volatile double errorRate;
+
+  private long rateWindow;
+  private int rateWindowCount;
+
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong throttledCount = new AtomicLong();
+  private final AtomicLong injectedErrorCount = new AtomicLong();
+
+  private PythiaEmulator(Builder builder) throws IOException {
+    this.keys = new TransformationKeys(builder.keyId, builder.secret, builder.scopeSecret,
+        builder.keyVersions);
+    if (builder.apiPublicKey != null) {
+      this.jwtVerifier = new JwtVerifier(builder.apiPublicKey, builder.apiPublicKeyIdentifier,
+          new VirgilAccessTokenSigner());
+    } else {
+      this.jwtVerifier = null;
+    }
+    this.appId = builder.appId;
+    this.executor = Executors.newCachedThreadPool();
+    this.server = HttpServer.create(new InetSocketAddress(builder.host, builder.port), 0);
+    this.server.createContext("/pythia/v1/password", new HttpHandler() {
+
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        PythiaEmulator.this.handle(exchange, true);
+      }
+    });
+    this.server.createContext("/pythia/v1/brainkey", new HttpHandler() {
+
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        PythiaEmulator.this.handle(exchange, false);
+      }
+    });
+    this.server.setExecutor(this.executor);
+    this.server.start();
+  }
+
+  /**
+   * Run emulator until the process is stopped.
+   *
+   * <p>
+   * Arguments: port (default 8080) and number of proof key versions (default 1).
+   * </p>
+   *
+   * @param args
+   *          the emulator arguments.
+   * @throws IOException
+   *           if emulator can't be started.
+   */
+  public static void main(String[] args) throws IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+    int keyVersions = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+    PythiaEmulator emulator = new Builder().setHost("0.0.0.0").setPort(port)
+        .setKeyVersions(keyVersions).build();
+    System.out.println("Pythia emulator is listening on " + emulator.getBaseUrl());
+    System.out.println("Proof keys: " + emulator.getProofKeys());
+  }
+
+  /**
+   * Get the base URL of the emulator.
+   *
+   * @return the base URL to pass to Pythia clients.
+   */
+  public String getBaseUrl() {
+    InetSocketAddress address = this.server.getAddress();
+    String host = address.getAddress().isAnyLocalAddress() ? "127.0.0.1"
+        : address.getAddress().getHostAddress();
+    return "http://" + host + ":" + address.getPort();
+  }
+
+  /**
+   * Get the proof keys of all key versions.
+   *
+   * @return the proof keys in 'PK.&lt;version&gt;.&lt;Base64-encoded data&gt;' format.
+   */
+  public List<String> getProofKeys() {
+    return this.keys.getProofKeys();
+  }
+
+  /**
+   * Get the token which updates breach proof passwords from one key version to another.
+   *
+   * @param previousVersion
+   *          the version to update from.
+   * @param nextVersion
+   *          the version to update to.
+   * @return the update token.
+   */
+  public String getUpdateToken(int previousVersion, int nextVersion) {
+    return this.keys.getUpdateToken(previousVersion, nextVersion);
+  }
+
+  /**
+   * Set the delay of every response.
+   *
+   * @param latency
+   *          the minimum delay.
+   * @param jitter
+   *          the maximum random delay added to the minimum one.
+   * @param unit
+   *          the time unit of the {@code latency} and {@code jitter} arguments.
+   */
+  public void setLatency(long latency, long jitter, TimeUnit unit) {
+    if (latency < 0 || jitter < 0) {
+      throw new IllegalArgumentException("Latency should not be negative");
+    }
+    this.latencyNanos = unit.toNanos(latency);
+    this.jitterNanos = unit.toNanos(jitter);
+  }
+
+  /**
+   * Set the number of requests per second above which requests are rejected with
+   * {@link #THROTTLING_ERROR_CODE}.
+   *
+   * @param rateLimit
+   *          the number of requests per second. Zero means no limit.
+   */
+  public void setRateLimit(int rateLimit) {
+    if (rateLimit < 0) {
+      throw new IllegalArgumentException("Rate limit should not be negative");
+    }
+    this.rateLimit = rateLimit;
+  }
+
+  /**
+   * Set the share of requests which fail with {@link #INTERNAL_ERROR_CODE}.
+   *
+   * @param errorRate
+   *          the share of failed requests, from 0 to 1.
+   */
+  public void setErrorRate(double errorRate) {
+    if (errorRate < 0 || errorRate > 1) {
+      throw new IllegalArgumentException("Error rate should be between 0 and 1");
+    }
+    this.errorRate = errorRate;
+  }
+
+  /**
+   * Get the number of received requests.
+   *
+   * @return the number of requests.
+   */
+  public long getRequestCount() {
+    return this.requestCount.get();
+  }
+
+  /**
+   * Get the number of requests rejected because of the rate limit.
+   *
+   * @return the number of requests.
+   */
+  public long getThrottledCount() {
+    return this.throttledCount.get();
+  }
+
+  /**
+   * Get the number of requests failed with an injected error.
+   *
+   * @return the number of requests.
+   */
+  public long getInjectedErrorCount() {
+    return this.injectedErrorCount.get();
+  }
+
+  /**
+   * Stop the emulator.
+   */
+  @Override
+  public void close() {
+    this.server.stop(0);
+    this.executor.shutdown();
+  }
+
+  private void handle(HttpExchange exchange, boolean transform) throws IOException {
+    this.requestCount.incrementAndGet();
+    PythiaCodec codec = PythiaCodecs
+        .forContentType(exchange.getRequestHeaders().getFirst("Content-Type"));
+    try {
+      simulateLatency();
+      if (!"POST".equals(exchange.getRequestMethod())) {
+        throw new EmulatorException(HttpURLConnection.HTTP_BAD_METHOD, BAD_REQUEST_ERROR_CODE,
+            "Method not allowed");
+      }
+      if (!tryAcquire()) {
+        this.throttledCount.incrementAndGet();
+        throw new EmulatorException(HTTP_TOO_MANY_REQUESTS, THROTTLING_ERROR_CODE,
+            "Too many requests");
+      }
+      String identity = authenticate(exchange);
+      double errorRate = this.errorRate;
+      if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+        this.injectedErrorCount.incrementAndGet();
+        throw new EmulatorException(HttpURLConnection.HTTP_INTERNAL_ERROR, INTERNAL_ERROR_CODE,
+            "Internal server error");
+      }
+      ByteArrayOutputStream body = new ByteArrayOutputStream(512);
+      if (transform) {
+        transform(exchange, codec, body);
+      } else {
+        generateSeed(exchange, codec, identity, body);
+      }
+      send(exchange, codec, HttpURLConnection.HTTP_OK, body);
+    } catch (EmulatorException e) {
+      sendError(exchange, codec, e.status, e.code, e.getMessage());
+    } catch (IOException | RuntimeException e) {
+      sendError(exchange, codec, HttpURLConnection.HTTP_BAD_REQUEST, BAD_REQUEST_ERROR_CODE,
+          e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void transform(HttpExchange exchange, PythiaCodec codec, OutputStream out)
+      throws IOException, EmulatorException {
+    TransformPasswordRequest request = codec
+        .readTransformPasswordRequest(exchange.getRequestBody());
+    PythiaComputeTransformationKeyPairResult keyPair = this.keys
+        .getKeyPair(request.getVersion());
+    if (keyPair == null) {
+      throw new EmulatorException(HttpURLConnection.HTTP_BAD_REQUEST, BAD_REQUEST_ERROR_CODE,
+          "Unknown proof key version " + request.getVersion());
+    }
+    PythiaTransformResult transformResult = Pythia.transform(request.getBlindedPassword(),
+        request.getSalt(), keyPair.getTransformationPrivateKey());
+    TransformResponse response;
+    if (request.getIncludeProof()) {
+      PythiaProveResult proveResult = Pythia.prove(transformResult.getTransformedPassword(),
+          request.getBlindedPassword(), transformResult.getTransformedTweak(),
+          keyPair.getTransformationPrivateKey(), keyPair.getTransformationPublicKey());
+      response = new TransformResponse(transformResult.getTransformedPassword(),
+          new Proof(proveResult.getProofValueC(), proveResult.getProofValueU()));
+    } else {
+      response = new TransformResponse(transformResult.getTransformedPassword());
+    }
+    codec.writeTransformResponse(response, out);
+  }
+
+  private void generateSeed(HttpExchange exchange, PythiaCodec codec, String identity,
+      OutputStream out) throws IOException {
+    GenerateSeedRequest request = codec.readGenerateSeedRequest(exchange.getRequestBody());
+    String brainKeyId = request.getBrainkeyId() == null ? "" : request.getBrainkeyId();
+    byte[] tweak = (identity + "." + brainKeyId).getBytes(StandardCharsets.UTF_8);
+    byte[] seed = Pythia.transform(request.getBlindedPassword(), tweak,
+        this.keys.getKeyPair(0).getTransformationPrivateKey()).getTransformedPassword();
+    codec.writeGenerateSeedResponse(new GenerateSeedResponse(seed), out);
+  }
+
+  /**
+   * Validate access token of the request.
+   * 
+   * @return the identity of the token, or empty string if tokens are not validated.
+   */
+  private String authenticate(HttpExchange exchange) throws EmulatorException {
+    String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+    if (StringUtils.isBlank(authorization) || !authorization.startsWith("Virgil ")) {
+      throw invalidToken("Access token is missing");
+    }
+    if (this.jwtVerifier == null) {
+      return "";
+    }
+    Jwt jwt;
+    try {
+      jwt = new Jwt(authorization.substring("Virgil ".length()));
+    } catch (RuntimeException e) {
+      throw invalidToken("Access token has invalid format");
+    }
+    try {
+      if (!this.jwtVerifier.verifyToken(jwt)) {
+        throw invalidToken("Access token signature is invalid");
+      }
+    } catch (CryptoException e) {
+      throw invalidToken("Access token signature is invalid");
+    }
+    if (jwt.isExpired()) {
+      throw invalidToken("Access token is expired");
+    }
+    if (this.appId != null && !this.appId.equals(jwt.getBodyContent().getAppId())) {
+      throw invalidToken("Access token is issued for another application");
+    }
+    return jwt.getIdentity();
+  }
+
+  private static EmulatorException invalidToken(String message) {
+    return new EmulatorException(HttpURLConnection.HTTP_UNAUTHORIZED, INVALID_TOKEN_ERROR_CODE,
+        message);
+  }
+
+  private synchronized boolean tryAcquire() {
+    int limit = this.rateLimit;
+    if (limit == 0) {
+      return true;
+    }
+    long window = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+    if (window != this.rateWindow) {
+      this.rateWindow = window;
+      this.rateWindowCount = 0;
+    }
+    return ++this.rateWindowCount <= limit;
+  }
+
+  private void simulateLatency() {
+    long delay = this.latencyNanos;
+    long jitter = this.jitterNanos;
+    if (jitter > 0) {
+      delay += ThreadLocalRandom.current().nextLong(jitter + 1);
+    }
+    if (delay <= 0) {
+      return;
+    }
+    try {
+      TimeUnit.NANOSECONDS.sleep(delay);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void sendError(HttpExchange exchange, PythiaCodec codec, int status, int code,
+      String message) throws IOException {
+    LOGGER.fine("Responding with error " + code + ": " + message);
+    ByteArrayOutputStream body = new ByteArrayOutputStream(128);
+    codec.writeError(code, message, body);
+    send(exchange, codec, status, body);
+  }
+
+  private static void send(HttpExchange exchange, PythiaCodec codec, int status,
+      ByteArrayOutputStream body) throws IOException {
+    exchange.getResponseHeaders().add("Content-Type", codec.getContentType());
+    exchange.sendResponseHeaders(status, body.size());
+    try (OutputStream out = exchange.getResponseBody()) {
+      body.writeTo(out);
+    }
+  }
+
+  /**
+   * Error which is sent to the client as Pythia service error.
+   */
+  private static final class EmulatorException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+    private final int code;
+
+    EmulatorException(int status, int code, String message) {
+      super(message);
+      this.status = status;
+      this.code = code;
+    }
+  }
+
+  /**
+   * The builder for {@link PythiaEmulator}.
+   * 
+   * @author Andrii Iakovenko
+   *
+   */
+  public static class Builder {
+    private String host = "127.0.0.1";
+    private int port;
+    private int keyVersions = 1;
+    private String keyId = "pythia-emulator";
+    private String secret = "pythia-emulator-secret";
+    private String scopeSecret = "pythia-emulator-scope-secret";
+    private VirgilPublicKey apiPublicKey;
+    private String apiPublicKeyIdentifier;
+    private String appId;
+
+    /**
+     * Build and start the emulator.
+     *
+     * @return the running emulator.
+     * @throws IOException
+     *           if emulator can't listen on the address.
+     */
+    public PythiaEmulator build() throws IOException {
+      return new PythiaEmulator(this);
+    }
+
+    /**
+     * Set the address to listen on. Emulator listens on the loopback address by default.
+     *
+     * @param host
+     *          the host name or IP address.
+     * @return {@link Builder} instance.
+     */
+    public Builder setHost(String host) {
+      if (StringUtils.isBlank(host)) {
+        throw new IllegalArgumentException("Host should not be empty");
+      }
+      this.host = host;
+      return this;
+    }
+
+    /**
+     * Set the port to listen on. A free port is chosen by default.
+     *
+     * @param port
+     *          the port.
+     * @return {@link Builder} instance.
+     */
+    public Builder setPort(int port) {
+      if (port < 0 || port > 0xFFFF) {
+        throw new IllegalArgumentException("Port should be between 0 and 65535");
+      }
+      this.port = port;
+      return this;
+    }
+
+    /**
+     * Set the number of proof key versions. The last version is the current one.
+     *
+     * @param keyVersions
+     *          the number of versions.
+     * @return {@link Builder} instance.
+     */
+    public Builder setKeyVersions(int keyVersions) {
+      if (keyVersions < 1) {
+        throw new IllegalArgumentException("Key versions should be positive");
+      }
+      this.keyVersions = keyVersions;
+      return this;
+    }
+
+    /**
+     * Set the secrets which transformation keys are derived from.
+     *
+     * @param keyId
+     *          the transformation key identifier.
+     * @param secret
+     *          the Pythia secret.
+     * @param scopeSecret
+     *          the Pythia scope secret.
+     * @return {@link Builder} instance.
+     */
+    public Builder setSecrets(String keyId, String secret, String scopeSecret) {
+      if (StringUtils.isBlank(keyId) || StringUtils.isBlank(secret)
+          || StringUtils.isBlank(scopeSecret)) {
+        throw new IllegalArgumentException("Secrets should not be empty");
+      }
+      this.keyId = keyId;
+      this.secret = secret;
+      this.scopeSecret = scopeSecret;
+      return this;
+    }
+
+    /**
+     * Set the API public key which access tokens are verified with. Tokens are not verified by
+     * default.
+     *
+     * @param apiPublicKey
+     *          the API public key.
+     * @param apiPublicKeyIdentifier
+     *          the API public key identifier.
+     * @return {@link Builder} instance.
+     */
+    public Builder setApiPublicKey(VirgilPublicKey apiPublicKey, String apiPublicKeyIdentifier) {
+      if (apiPublicKey == null) {
+        throw new IllegalArgumentException("API public key should be set");
+      }
+      if (StringUtils.isBlank(apiPublicKeyIdentifier)) {
+        throw new IllegalArgumentException("API public key identifier should not be empty");
+      }
+      this.apiPublicKey = apiPublicKey;
+      this.apiPublicKeyIdentifier = apiPublicKeyIdentifier;
+      return this;
+    }
+
+    /**
+     * Set the application which access tokens should be issued for. Application is not checked
+     * by default.
+     *
+     * @param appId
+     *          the application identifier.
+     * @return {@link Builder} instance.
+     */
+    public Builder setAppId(String appId) {
+      if (StringUtils.isBlank(appId)) {
+        throw new IllegalArgumentException("Application identifier should not be empty");
+      }
+      this.appId = appId;
+      return this;
+    }
+
+  }
+
+}
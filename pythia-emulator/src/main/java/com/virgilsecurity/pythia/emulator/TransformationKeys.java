@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.emulator;
+
+import com.virgilsecurity.crypto.foundation.Base64;
+import com.virgilsecurity.crypto.pythia.Pythia;
+import com.virgilsecurity.crypto.pythia.PythiaComputeTransformationKeyPairResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transformation key pairs of the emulator, one for each proof key version. Key pairs are derived
+ * from the secrets, so emulators started with the same secrets accept each other's breach proof
+ * passwords.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+final class TransformationKeys {
+
+  private final PythiaComputeTransformationKeyPairResult[] keyPairs;
+
+  /**
+   * Create a new instance of {@link TransformationKeys}.
+   *
+   * @param keyId
+   *          the transformation key identifier.
+   * @param secret
+   *          the Pythia secret.
+   * @param scopeSecret
+   *          the Pythia scope secret.
+   * @param versions
+   *          the number of key versions, the last one is the current.
+   */
+  TransformationKeys(String keyId, String secret, String scopeSecret, int versions) {
+    Pythia.configure();
+    this.keyPairs = new PythiaComputeTransformationKeyPairResult[versions];
+    for (int version = 1; version <= versions; version++) {
+      this.keyPairs[version - 1] = Pythia.computeTransformationKeyPair(bytes(keyId),
+          bytes(secret + "." + version), bytes(scopeSecret));
+    }
+  }
+
+  /**
+   * Get the current key version.
+   * 
+   * @return the version.
+   */
+  int getCurrentVersion() {
+    return this.keyPairs.length;
+  }
+
+  /**
+   * Get the key pair of a version.
+   * 
+   * @param version
+   *          the key version, or {@code 0} for the current one.
+   * @return the key pair, or {@code null} if there is no such version.
+   */
+  PythiaComputeTransformationKeyPairResult getKeyPair(int version) {
+    if (version == 0) {
+      return this.keyPairs[this.keyPairs.length - 1];
+    }
+    if (version < 0 || version > this.keyPairs.length) {
+      return null;
+    }
+    return this.keyPairs[version - 1];
+  }
+
+  /**
+   * Get the proof keys of all versions.
+   * 
+   * @return the proof keys in 'PK.&lt;version&gt;.&lt;Base64-encoded data&gt;' format.
+   */
+  List<String> getProofKeys() {
+    List<String> proofKeys = new ArrayList<>(this.keyPairs.length);
+    for (int version = 1; version <= this.keyPairs.length; version++) {
+      proofKeys.add("PK." + version + "."
+          + base64(this.keyPairs[version - 1].getTransformationPublicKey()));
+    }
+    return proofKeys;
+  }
+
+  /**
+   * Get the token which updates breach proof passwords from one version to another.
+   * 
+   * @param previousVersion
+   *          the version to update from.
+   * @param nextVersion
+   *          the version to update to.
+   * @return the update token in 'UT.&lt;previous version&gt;.&lt;next version&gt;.&lt;
+   *         Base64-encoded data&gt;' format.
+   */
+  String getUpdateToken(int previousVersion, int nextVersion) {
+    PythiaComputeTransformationKeyPairResult previous = getKeyPair(previousVersion);
+    PythiaComputeTransformationKeyPairResult next = getKeyPair(nextVersion);
+    if (previousVersion == 0 || nextVersion == 0 || previous == null || next == null) {
+      throw new IllegalArgumentException("Unknown key version");
+    }
+    byte[] token = Pythia.getPasswordUpdateToken(previous.getTransformationPrivateKey(),
+        next.getTransformationPrivateKey());
+    return "UT." + previousVersion + "." + nextVersion + "." + base64(token);
+  }
+
+  private static String base64(byte[] data) {
+    return new String(Base64.encode(data), StandardCharsets.UTF_8);
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.emulator;
+
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.Pythia;
+import com.virgilsecurity.pythia.PythiaContext;
+import com.virgilsecurity.pythia.brainkey.BrainKey;
+import com.virgilsecurity.pythia.brainkey.BrainKeyContext;
+import com.virgilsecurity.pythia.client.VirgilPythiaClient;
+import com.virgilsecurity.pythia.crypto.VirgilPythiaCrypto;
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+import com.virgilsecurity.pythia.model.exception.PythiaTimeoutException;
+import com.virgilsecurity.pythia.model.exception.ThrottlingException;
+import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+import com.virgilsecurity.sdk.common.TimeSpan;
+import com.virgilsecurity.sdk.crypto.KeyPairType;
+import com.virgilsecurity.sdk.crypto.VirgilAccessTokenSigner;
+import com.virgilsecurity.sdk.crypto.VirgilCrypto;
+import com.virgilsecurity.sdk.crypto.VirgilKeyPair;
+import com.virgilsecurity.sdk.jwt.JwtGenerator;
+import com.virgilsecurity.sdk.jwt.accessProviders.GeneratorJwtProvider;
+import com.virgilsecurity.sdk.jwt.contract.AccessToken;
+import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link PythiaEmulator}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class PythiaEmulatorTest {
+
+  private static final String PASSWORD = "some password";
+  private static final String APP_ID = "app";
+  private static final String API_PUBLIC_KEY_ID = "api-key-id";
+
+  private PythiaEmulator emulator;
+  private VirgilPythiaCrypto pythiaCrypto;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    this.emulator = new PythiaEmulator.Builder().setKeyVersions(2).build();
+    this.pythiaCrypto = new VirgilPythiaCrypto();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    this.emulator.close();
+  }
+
+  @Test
+  public void verifyBreachProofPassword() throws Exception {
+    Pythia pythia = pythia(this.emulator, this.emulator.getProofKeys(), tokenProvider());
+
+    BreachProofPassword bpp = pythia.createBreachProofPassword(PASSWORD);
+
+    assertEquals(2, bpp.getVersion());
+    assertTrue(pythia.verifyBreachProofPassword(PASSWORD, bpp, true));
+    assertFalse(pythia.verifyBreachProofPassword("wrong password", bpp, false));
+    assertEquals(3, this.emulator.getRequestCount());
+  }
+
+  @Test
+  public void updateBreachProofPassword() throws Exception {
+    List<String> proofKeys = this.emulator.getProofKeys();
+    BreachProofPassword bpp = pythia(this.emulator, proofKeys.subList(0, 1), tokenProvider())
+        .createBreachProofPassword(PASSWORD);
+    assertEquals(1, bpp.getVersion());
+
+    Pythia pythia = pythia(this.emulator, proofKeys, tokenProvider());
+    BreachProofPassword updatedBpp = pythia
+        .updateBreachProofPassword(this.emulator.getUpdateToken(1, 2), bpp);
+
+    assertEquals(2, updatedBpp.getVersion());
+    assertTrue(pythia.verifyBreachProofPassword(PASSWORD, updatedBpp, true));
+  }
+
+  @Test
+  public void generateKeyPair() throws Exception {
+    BrainKeyContext context = new BrainKeyContext.Builder()
+        .setAccessTokenProvider(tokenProvider()).setPythiaCrypto(this.pythiaCrypto)
+        .setPythiaClient(new VirgilPythiaClient(this.emulator.getBaseUrl())).build();
+
+    VirgilKeyPair keyPair = new BrainKey(context).generateKeyPair(PASSWORD, "brainkey-id");
+
+    assertNotNull(keyPair);
+  }
+
+  @Test
+  public void rateLimit() throws Exception {
+    Pythia pythia = pythia(this.emulator, this.emulator.getProofKeys(), tokenProvider());
+    this.emulator.setRateLimit(1);
+
+    ThrottlingException e = assertThrows(ThrottlingException.class, () -> {
+      for (int i = 0; i < 10; i++) {
+        pythia.createBreachProofPassword(PASSWORD);
+      }
+    });
+    assertEquals(PythiaEmulator.THROTTLING_ERROR_CODE, e.getError());
+    assertTrue(this.emulator.getThrottledCount() > 0);
+  }
+
+  @Test
+  public void errorRate() throws Exception {
+    Pythia pythia = pythia(this.emulator, this.emulator.getProofKeys(), tokenProvider());
+    this.emulator.setErrorRate(1);
+
+    VirgilPythiaServiceException e = assertThrows(VirgilPythiaServiceException.class, () -> {
+      pythia.createBreachProofPassword(PASSWORD);
+    });
+    assertEquals(PythiaEmulator.INTERNAL_ERROR_CODE, e.getError());
+    assertEquals(1, this.emulator.getInjectedErrorCount());
+  }
+
+  @Test
+  public void latency() throws Exception {
+    Pythia pythia = pythia(this.emulator, this.emulator.getProofKeys(), tokenProvider());
+    this.emulator.setLatency(500, 0, TimeUnit.MILLISECONDS);
+
+    assertThrows(PythiaTimeoutException.class, () -> {
+      pythia.createBreachProofPassword(PASSWORD, Deadline.after(100, TimeUnit.MILLISECONDS));
+    });
+  }
+
+  @Test
+  public void accessTokenValidation() throws Exception {
+    VirgilCrypto crypto = new VirgilCrypto();
+    VirgilKeyPair apiKeyPair = crypto.generateKeyPair(KeyPairType.ED25519);
+    VirgilKeyPair otherKeyPair = crypto.generateKeyPair(KeyPairType.ED25519);
+    try (PythiaEmulator securedEmulator = new PythiaEmulator.Builder()
+        .setApiPublicKey(apiKeyPair.getPublicKey(), API_PUBLIC_KEY_ID).setAppId(APP_ID)
+        .build()) {
+      List<String> proofKeys = securedEmulator.getProofKeys();
+      Pythia pythia = pythia(securedEmulator, proofKeys,
+          new GeneratorJwtProvider(new JwtGenerator(APP_ID, apiKeyPair.getPrivateKey(),
+              API_PUBLIC_KEY_ID, TimeSpan.fromTime(1, TimeUnit.HOURS),
+              new VirgilAccessTokenSigner()), "alice"));
+      assertNotNull(pythia.createBreachProofPassword(PASSWORD));
+
+      Pythia invalidPythia = pythia(securedEmulator, proofKeys,
+          new GeneratorJwtProvider(new JwtGenerator(APP_ID, otherKeyPair.getPrivateKey(),
+              API_PUBLIC_KEY_ID, TimeSpan.fromTime(1, TimeUnit.HOURS),
+              new VirgilAccessTokenSigner()), "invalid"));
+      VirgilPythiaServiceException e = assertThrows(VirgilPythiaServiceException.class, () -> {
+        invalidPythia.createBreachProofPassword(PASSWORD);
+      });
+      assertEquals(PythiaEmulator.INVALID_TOKEN_ERROR_CODE, e.getError());
+    }
+  }
+
+  private Pythia pythia(PythiaEmulator emulator, List<String> proofKeys,
+      AccessTokenProvider accessTokenProvider) {
+    PythiaContext context = new PythiaContext.Builder().setProofKeys(proofKeys)
+        .setPythiaCrypto(this.pythiaCrypto)
+        .setPythiaClient(new VirgilPythiaClient(emulator.getBaseUrl()))
+        .setAccessTokenProvider(accessTokenProvider).build();
+    return new Pythia(context);
+  }
+
+  private static AccessTokenProvider tokenProvider() {
+    AccessToken token = new AccessToken() {
+
+      @Override
+      public String getIdentity() {
+        return "alice";
+      }
+
+      @Override
+      public String stringRepresentation() {
+        return "token";
+      }
+    };
+    return tokenContext -> token;
+  }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.loadtest;
+
+import com.virgilsecurity.pythia.AsyncPythia;
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.PythiaExecutors;
+import com.virgilsecurity.pythia.brainkey.AsyncBrainKey;
+import com.virgilsecurity.pythia.metrics.Outcome;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * Open-loop load generator. Operations are scheduled at a constant arrival rate and are started
+ * on schedule whether or not previous operations have completed, so a slow service doesn't slow
+ * the load down.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class LoadGenerator {
+
+  private static final String BRAIN_KEY_ID = "load-test";
+
+  private final LoadTarget target;
+  private final LoadTestOptions options;
+  private final LoadTestReport report;
+
+  /**
+   * Create a new instance of {@link LoadGenerator}.
+   * 
+   * @param target
+   *          the load target.
+   * @param options
+   *          the load test options.
+   */
+  public LoadGenerator(LoadTarget target, LoadTestOptions options) {
+    this.target = target;
+    this.options = options;
+    this.report = new LoadTestReport();
+  }
+
+  /**
+   * Run the load test. Operations scheduled during warm-up are executed, but not recorded.
+   * 
+   * @return the load test report.
+   * @throws InterruptedException
+   *           if load test was interrupted.
+   */
+  public LoadTestReport run() throws InterruptedException {
+    ExecutorService executor = createExecutor();
+    AsyncPythia asyncPythia = null;
+    AsyncBrainKey asyncBrainKey = null;
+    if (this.options.getMode() == LoadTestOptions.Mode.ASYNC) {
+      asyncPythia = new AsyncPythia(this.target.getPythia(), executor);
+      asyncBrainKey = new AsyncBrainKey(this.target.getBrainKey(), executor);
+    }
+    Random random = new Random();
+    double intervalNanos = TimeUnit.SECONDS.toNanos(1) / this.options.getRate();
+    long start = System.nanoTime();
+    long measuredStart = start + TimeUnit.SECONDS.toNanos(this.options.getWarmupSeconds());
+    long end = measuredStart + TimeUnit.SECONDS.toNanos(this.options.getDurationSeconds());
+    try {
+      for (long i = 0;; i++) {
+        long scheduled = start + (long) (i * intervalNanos);
+        if (scheduled - end >= 0) {
+          break;
+        }
+        long delay;
+        while ((delay = scheduled - System.nanoTime()) > 0) {
+          LockSupport.parkNanos(delay);
+        }
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+        LoadOperation operation = this.options.getMix().pick(random.nextDouble());
+        int user = random.nextInt(this.target.getUsers());
+        boolean measured = scheduled - measuredStart >= 0;
+        if (asyncPythia != null) {
+          submitAsync(asyncPythia, asyncBrainKey, operation, user, scheduled, measured);
+        } else {
+          executor.execute(new OperationTask(operation, user, scheduled, measured));
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+    while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+      // Wait for operations in flight
+    }
+    this.report.setElapsedNanos(System.nanoTime() - measuredStart);
+    return this.report;
+  }
+
+  private ExecutorService createExecutor() {
+    if (this.options.getMode() == LoadTestOptions.Mode.VIRTUAL) {
+      return PythiaExecutors.newVirtualThreadPerTaskExecutor();
+    }
+    return PythiaExecutors.newPlatformThreadPool(this.options.getThreads());
+  }
+
+  private Deadline newDeadline() {
+    if (this.options.getTimeoutMillis() <= 0) {
+      return Deadline.none();
+    }
+    return Deadline.after(this.options.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private boolean execute(LoadOperation operation, int user) throws Exception {
+    String password = this.target.getPassword(user);
+    switch (operation) {
+      case CREATE:
+        this.target.getPythia().createBreachProofPassword(password, newDeadline());
+        return true;
+      case VERIFY:
+        return this.target.getPythia().verifyBreachProofPassword(password,
+            this.target.getBreachProofPassword(user), false, newDeadline());
+      case UPDATE:
+        this.target.getPythia().updateBreachProofPassword(this.target.getUpdateToken(),
+            this.target.getPreviousBreachProofPassword(user));
+        return true;
+      case BRAINKEY:
+        this.target.getBrainKey().generateKeyPair(password, BRAIN_KEY_ID, newDeadline());
+        return true;
+      default:
+        throw new IllegalArgumentException("Unknown operation " + operation);
+    }
+  }
+
+  private void submitAsync(AsyncPythia asyncPythia, AsyncBrainKey asyncBrainKey,
+      final LoadOperation operation, int user, final long scheduled, final boolean measured) {
+    String password = this.target.getPassword(user);
+    CompletableFuture<?> future;
+    switch (operation) {
+      case CREATE:
+        future = asyncPythia.createBreachProofPassword(password, newDeadline());
+        break;
+      case VERIFY:
+        future = asyncPythia.verifyBreachProofPassword(password,
+            this.target.getBreachProofPassword(user), false, newDeadline());
+        break;
+      case UPDATE:
+        future = asyncPythia.updateBreachProofPassword(this.target.getUpdateToken(),
+            this.target.getPreviousBreachProofPassword(user));
+        break;
+      case BRAINKEY:
+        future = asyncBrainKey.generateKeyPair(password, BRAIN_KEY_ID, newDeadline());
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown operation " + operation);
+    }
+    // Async facade doesn't tell when an operation starts, so service time is measured from submit
+    final long started = System.nanoTime();
+    future.whenComplete(new BiConsumer<Object, Throwable>() {
+
+      @Override
+      public void accept(Object result, Throwable error) {
+        if (!measured) {
+          return;
+        }
+        Outcome outcome;
+        if (error != null) {
+          outcome = Outcome.of(error);
+        } else {
+          outcome = Boolean.FALSE.equals(result) ? Outcome.MISMATCH : Outcome.SUCCESS;
+        }
+        record(operation, outcome, scheduled, started);
+      }
+    });
+  }
+
+  private void record(LoadOperation operation, Outcome outcome, long scheduled, long started) {
+    long completed = System.nanoTime();
+    this.report.record(operation, outcome, completed - scheduled, completed - started);
+  }
+
+  private final class OperationTask implements Runnable {
+
+    private final LoadOperation operation;
+    private final int user;
+    private final long scheduled;
+    private final boolean measured;
+
+    private OperationTask(LoadOperation operation, int user, long scheduled, boolean measured) {
+      this.operation = operation;
+      this.user = user;
+      this.scheduled = scheduled;
+      this.measured = measured;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+      long started = System.nanoTime();
+      Outcome outcome;
+      try {
+        outcome = execute(this.operation, this.user) ? Outcome.SUCCESS : Outcome.MISMATCH;
+      } catch (Exception e) {
+        outcome = Outcome.of(e);
+      }
+      if (this.measured) {
+        record(this.operation, outcome, this.scheduled, started);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.loadtest;
+
+import com.virgilsecurity.pythia.Pythia;
+import com.virgilsecurity.pythia.PythiaContext;
+import com.virgilsecurity.pythia.brainkey.BrainKey;
+import com.virgilsecurity.pythia.brainkey.BrainKeyContext;
+import com.virgilsecurity.pythia.client.VirgilPythiaClient;
+import com.virgilsecurity.pythia.crypto.VirgilPythiaCrypto;
+import com.virgilsecurity.pythia.emulator.PythiaEmulator;
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+import com.virgilsecurity.sdk.jwt.TokenContext;
+import com.virgilsecurity.sdk.jwt.contract.AccessToken;
+import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pythia service which load test runs against, with users enrolled in advance. It is either a
+ * remote service or a local {@link PythiaEmulator}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class LoadTarget implements AutoCloseable {
+
+  private static final int EMULATOR_KEY_VERSIONS = 2;
+
+  private final PythiaEmulator emulator;
+  private final Pythia pythia;
+  private final BrainKey brainKey;
+  private final String updateToken;
+  private final String[] passwords;
+  private final BreachProofPassword[] breachProofPasswords;
+  private final BreachProofPassword[] previousBreachProofPasswords;
+
+  private LoadTarget(PythiaEmulator emulator, Pythia pythia, Pythia previousPythia,
+      BrainKey brainKey, String updateToken, int users) throws Exception {
+    this.emulator = emulator;
+    this.pythia = pythia;
+    this.brainKey = brainKey;
+    this.updateToken = updateToken;
+    this.passwords = new String[users];
+    this.breachProofPasswords = new BreachProofPassword[users];
+    this.previousBreachProofPasswords = previousPythia != null ? new BreachProofPassword[users]
+        : null;
+    for (int i = 0; i < users; i++) {
+      this.passwords[i] = "load test password " + i;
+      this.breachProofPasswords[i] = pythia.createBreachProofPassword(this.passwords[i]);
+      if (previousPythia != null) {
+        this.previousBreachProofPasswords[i] = previousPythia
+            .createBreachProofPassword(this.passwords[i]);
+      }
+    }
+  }
+
+  /**
+   * Create load target and enroll users.
+   * 
+   * @param options
+   *          the load test options.
+   * @return the load target.
+   * @throws Exception
+   *           if local emulator couldn't be started or users couldn't be enrolled.
+   */
+  public static LoadTarget create(LoadTestOptions options) throws Exception {
+    boolean updates = options.getMix().contains(LoadOperation.UPDATE);
+    if (options.getUrl() == null) {
+      PythiaEmulator emulator = new PythiaEmulator.Builder()
+          .setKeyVersions(EMULATOR_KEY_VERSIONS).build();
+      try {
+        emulator.setLatency(options.getEmulatorLatencyMillis(), 0, TimeUnit.MILLISECONDS);
+        List<String> proofKeys = emulator.getProofKeys();
+        VirgilPythiaClient client = new VirgilPythiaClient(emulator.getBaseUrl());
+        AccessTokenProvider tokenProvider = emulatorTokenProvider();
+        Pythia pythia = new Pythia(context(proofKeys, client, tokenProvider));
+        Pythia previousPythia = updates
+            ? new Pythia(context(proofKeys.subList(0, 1), client, tokenProvider))
+            : null;
+        BrainKey brainKey = new BrainKey(new BrainKeyContext.Builder()
+            .setPythiaCrypto(new VirgilPythiaCrypto()).setPythiaClient(client)
+            .setAccessTokenProvider(tokenProvider).build());
+        return new LoadTarget(emulator, pythia, previousPythia, brainKey,
+            emulator.getUpdateToken(1, EMULATOR_KEY_VERSIONS), options.getUsers());
+      } catch (Exception e) {
+        emulator.close();
+        throw e;
+      }
+    }
+
+    PythiaContext context = remoteContext(options, options.getProofKeys());
+    Pythia previousPythia = null;
+    if (updates) {
+      previousPythia = new Pythia(
+          remoteContext(options, previousProofKeys(options.getProofKeys(),
+              options.getUpdateToken())));
+    }
+    BrainKey brainKey = new BrainKey(new BrainKeyContext.Builder()
+        .setPythiaCrypto(new VirgilPythiaCrypto())
+        .setPythiaClient(new VirgilPythiaClient(options.getUrl()))
+        .setAccessTokenProvider(context.getAccessTokenProvider()).build());
+    return new LoadTarget(null, new Pythia(context), previousPythia, brainKey,
+        options.getUpdateToken(), options.getUsers());
+  }
+
+  /**
+   * Get Pythia which operations are executed with.
+   * 
+   * @return the Pythia.
+   */
+  public Pythia getPythia() {
+    return pythia;
+  }
+
+  /**
+   * Get BrainKey which key pairs are generated with.
+   * 
+   * @return the BrainKey.
+   */
+  public BrainKey getBrainKey() {
+    return brainKey;
+  }
+
+  /**
+   * Get the update token.
+   * 
+   * @return the update token, or {@code null} if load test doesn't run updates.
+   */
+  public String getUpdateToken() {
+    return updateToken;
+  }
+
+  /**
+   * Get the number of enrolled users.
+   * 
+   * @return the number of users.
+   */
+  public int getUsers() {
+    return passwords.length;
+  }
+
+  /**
+   * Get the password of a user.
+   * 
+   * @param user
+   *          the user index.
+   * @return the password.
+   */
+  public String getPassword(int user) {
+    return passwords[user];
+  }
+
+  /**
+   * Get the breach proof password of a user.
+   * 
+   * @param user
+   *          the user index.
+   * @return the breach proof password created with the current proof key.
+   */
+  public BreachProofPassword getBreachProofPassword(int user) {
+    return breachProofPasswords[user];
+  }
+
+  /**
+   * Get the breach proof password of a user which should be updated.
+   * 
+   * @param user
+   *          the user index.
+   * @return the breach proof password created with the previous proof key.
+   */
+  public BreachProofPassword getPreviousBreachProofPassword(int user) {
+    return previousBreachProofPasswords[user];
+  }
+
+  /**
+   * Get the local emulator.
+   * 
+   * @return the emulator, or {@code null} if load test runs against a remote service.
+   */
+  public PythiaEmulator getEmulator() {
+    return emulator;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.AutoCloseable#close()
+   */
+  @Override
+  public void close() {
+    if (this.emulator != null) {
+      this.emulator.close();
+    }
+  }
+
+  private static PythiaContext context(List<String> proofKeys, VirgilPythiaClient client,
+      AccessTokenProvider tokenProvider) {
+    return new PythiaContext.Builder().setProofKeys(proofKeys)
+        .setPythiaCrypto(new VirgilPythiaCrypto()).setPythiaClient(client)
+        .setAccessTokenProvider(tokenProvider).build();
+  }
+
+  private static PythiaContext remoteContext(LoadTestOptions options, List<String> proofKeys) {
+    return new PythiaContext.Builder().setAppId(options.getAppId())
+        .setApiKey(options.getApiKey()).setApiPublicKeyIdentifier(options.getApiKeyId())
+        .setProofKeys(proofKeys).setPythiaCrypto(new VirgilPythiaCrypto())
+        .setPythiaServiceUrl(options.getUrl()).build();
+  }
+
+  private static List<String> previousProofKeys(List<String> proofKeys, String updateToken) {
+    String[] parts = updateToken.split("\\.");
+    if (parts.length != 4) {
+      throw new IllegalArgumentException("Update token has invalid format");
+    }
+    String prefix = "PK." + parts[1] + ".";
+    List<String> previousProofKeys = new ArrayList<>();
+    for (String proofKey : proofKeys) {
+      if (proofKey.startsWith(prefix)) {
+        previousProofKeys.add(proofKey);
+      }
+    }
+    if (previousProofKeys.isEmpty()) {
+      throw new IllegalArgumentException("Proof key of version " + parts[1] + " should be set");
+    }
+    return previousProofKeys;
+  }
+
+  private static AccessTokenProvider emulatorTokenProvider() {
+    final AccessToken token = new AccessToken() {
+
+      @Override
+      public String getIdentity() {
+        return "load-test";
+      }
+
+      @Override
+      public String stringRepresentation() {
+        return "load-test";
+      }
+    };
+    return new AccessTokenProvider() {
+
+      @Override
+      public AccessToken getToken(TokenContext tokenContext) {
+        return token;
+      }
+    };
+  }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.loadtest;
+
+import com.virgilsecurity.pythia.PythiaExecutors;
+
+import java.util.Locale;
+
+/**
+ * Command line load test of Pythia service. Executes a mix of Pythia and BrainKey operations at a
+ * constant arrival rate and prints throughput, errors and latency percentiles.
+ * 
+ * <p>
+ * Options are given as {@code --name=value}:
+ * </p>
+ * <ul>
+ * <li>{@code --url} Pythia service URL. Local emulator is started if not set</li>
+ * <li>{@code --app-id}, {@code --api-key}, {@code --api-key-id}, {@code --proof-keys}
+ * credentials of the application, required with {@code --url}. Proof keys are
+ * comma-separated</li>
+ * <li>{@code --update-token} update token, required with {@code --url} if mix contains
+ * updates</li>
+ * <li>{@code --emulator-latency-ms} latency of the local emulator (default 0)</li>
+ * <li>{@code --rate} operations per second (default 100)</li>
+ * <li>{@code --duration} measured duration in seconds (default 30)</li>
+ * <li>{@code --warmup} warm-up duration in seconds (default 5)</li>
+ * <li>{@code --mode} {@code threads}, {@code async} or {@code virtual} (default threads)</li>
+ * <li>{@code --threads} size of the thread pool (default 64)</li>
+ * <li>{@code --mix} operation weights (default verify=80,create=15,update=4,brainkey=1)</li>
+ * <li>{@code --users} number of enrolled users (default 100)</li>
+ * <li>{@code --timeout-ms} operation timeout (default none)</li>
+ * </ul>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class LoadTest {
+
+  private LoadTest() {
+  }
+
+  /**
+   * Run the load test.
+   *
+   * @param args
+   *          the load test options.
+   * @throws Exception
+   *           if load test failed.
+   */
+  public static void main(String[] args) throws Exception {
+    LoadTestOptions options = LoadTestOptions.parse(args);
+    if (options.getMode() == LoadTestOptions.Mode.VIRTUAL
+        && !PythiaExecutors.isVirtualThreadSupported()) {
+      System.err.println("Virtual threads are not supported by this JVM, Java 21+ is required");
+      System.exit(1);
+    }
+
+    try (LoadTarget target = LoadTarget.create(options)) {
+      System.out.printf(Locale.ROOT, "Target %s, %.1f ops/s for %d s after %d s warm-up%n",
+          options.getUrl() != null ? options.getUrl() : target.getEmulator().getBaseUrl(),
+          options.getRate(), options.getDurationSeconds(), options.getWarmupSeconds());
+      System.out.printf(Locale.ROOT, "Mode %s, %d threads, mix %s, %d users%n",
+          options.getMode().name().toLowerCase(Locale.ROOT), options.getThreads(),
+          options.getMixDescription(), options.getUsers());
+
+      LoadTestReport report = new LoadGenerator(target, options).run();
+
+      System.out.println();
+      report.print(System.out);
+      if (target.getEmulator() != null) {
+        System.out.printf(Locale.ROOT, "%nEmulator served %d requests%n",
+            target.getEmulator().getRequestCount());
+      }
+    }
+  }
+
+}
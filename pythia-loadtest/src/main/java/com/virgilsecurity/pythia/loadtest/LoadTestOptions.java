@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.loadtest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Options of a load test. Options are given on the command line as {@code --name=value}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class LoadTestOptions {
+
+  /**
+   * How operations are executed.
+   */
+  public enum Mode {
+    /**
+     * Blocking calls on a fixed pool of platform threads. Requests over its size wait in a queue.
+     */
+    THREADS,
+
+    /**
+     * {@code AsyncPythia} and {@code AsyncBrainKey} on a fixed pool of platform threads.
+     */
+    ASYNC,
+
+    /**
+     * A virtual thread per request. Requires Java 21 or newer.
+     */
+    VIRTUAL
+  }
+
+  private String url;
+  private String appId;
+  private String apiKey;
+  private String apiKeyId;
+  private List<String> proofKeys = Collections.emptyList();
+  private String updateToken;
+  private long emulatorLatencyMillis;
+  private double rate = 100;
+  private long durationSeconds = 30;
+  private long warmupSeconds = 5;
+  private Mode mode = Mode.THREADS;
+  private int threads = 64;
+  private OperationMix mix = OperationMix.parse("verify=80,create=15,update=4,brainkey=1");
+  private String mixDescription = "verify=80,create=15,update=4,brainkey=1";
+  private int users = 100;
+  private long timeoutMillis;
+
+  /**
+   * Parse command line options.
+   * 
+   * @param args
+   *          the command line arguments.
+   * @return the options.
+   */
+  public static LoadTestOptions parse(String[] args) {
+    LoadTestOptions options = new LoadTestOptions();
+    for (String arg : args) {
+      if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+        throw new IllegalArgumentException("Option should have '--name=value' format: " + arg);
+      }
+      String name = arg.substring(2, arg.indexOf('='));
+      String value = arg.substring(arg.indexOf('=') + 1);
+      switch (name) {
+        case "url":
+          options.url = value;
+          break;
+        case "app-id":
+          options.appId = value;
+          break;
+        case "api-key":
+          options.apiKey = value;
+          break;
+        case "api-key-id":
+          options.apiKeyId = value;
+          break;
+        case "proof-keys":
+          options.proofKeys = Arrays.asList(value.split(","));
+          break;
+        case "update-token":
+          options.updateToken = value;
+          break;
+        case "emulator-latency-ms":
+          options.emulatorLatencyMillis = Long.parseLong(value);
+          break;
+        case "rate":
+          options.rate = Double.parseDouble(value);
+          break;
+        case "duration":
+          options.durationSeconds = Long.parseLong(value);
+          break;
+        case "warmup":
+          options.warmupSeconds = Long.parseLong(value);
+          break;
+        case "mode":
+          options.mode = Mode.valueOf(value.toUpperCase(Locale.ROOT));
+          break;
+        case "threads":
+          options.threads = Integer.parseInt(value);
+          break;
+        case "mix":
+          options.mix = OperationMix.parse(value);
+          options.mixDescription = value;
+          break;
+        case "users":
+          options.users = Integer.parseInt(value);
+          break;
+        case "timeout-ms":
+          options.timeoutMillis = Long.parseLong(value);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option --" + name);
+      }
+    }
+    options.validate();
+    return options;
+  }
+
+  private void validate() {
+    if (this.rate <= 0) {
+      throw new IllegalArgumentException("Rate should be positive");
+    }
+    if (this.durationSeconds <= 0 || this.warmupSeconds < 0) {
+      throw new IllegalArgumentException("Duration should be positive");
+    }
+    if (this.threads <= 0 || this.users <= 0) {
+      throw new IllegalArgumentException("Threads and users should be positive");
+    }
+    if (this.url != null && (this.appId == null || this.apiKey == null || this.apiKeyId == null
+        || this.proofKeys.isEmpty())) {
+      throw new IllegalArgumentException(
+          "--app-id, --api-key, --api-key-id and --proof-keys should be set with --url");
+    }
+    if (this.url != null && this.mix.contains(LoadOperation.UPDATE) && this.updateToken == null) {
+      throw new IllegalArgumentException("--update-token should be set to run updates");
+    }
+  }
+
+  /**
+   * Get the Pythia service URL.
+   * 
+   * @return the URL, or {@code null} if load test runs against a local emulator.
+   */
+  public String getUrl() {
+    return url;
+  }
+
+  /**
+   * Get the application identifier.
+   * 
+   * @return the application identifier.
+   */
+  public String getAppId() {
+    return appId;
+  }
+
+  /**
+   * Get the API private key.
+   * 
+   * @return the Base64-encoded API private key.
+   */
+  public String getApiKey() {
+    return apiKey;
+  }
+
+  /**
+   * Get the API public key identifier.
+   * 
+   * @return the API public key identifier.
+   */
+  public String getApiKeyId() {
+    return apiKeyId;
+  }
+
+  /**
+   * Get the proof keys.
+   * 
+   * @return the proof keys.
+   */
+  public List<String> getProofKeys() {
+    return proofKeys;
+  }
+
+  /**
+   * Get the update token which update operations use.
+   * 
+   * @return the update token.
+   */
+  public String getUpdateToken() {
+    return updateToken;
+  }
+
+  /**
+   * Get the latency of the local emulator.
+   * 
+   * @return the latency in milliseconds.
+   */
+  public long getEmulatorLatencyMillis() {
+    return emulatorLatencyMillis;
+  }
+
+  /**
+   * Get the arrival rate.
+   * 
+   * @return the number of operations per second.
+   */
+  public double getRate() {
+    return rate;
+  }
+
+  /**
+   * Get the duration of the measured part of the test.
+   * 
+   * @return the duration in seconds.
+   */
+  public long getDurationSeconds() {
+    return durationSeconds;
+  }
+
+  /**
+   * Get the duration of the warm-up, which is not measured.
+   * 
+   * @return the duration in seconds.
+   */
+  public long getWarmupSeconds() {
+    return warmupSeconds;
+  }
+
+  /**
+   * Get the execution mode.
+   * 
+   * @return the mode.
+   */
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * Get the size of the thread pool in {@link Mode#THREADS} mode.
+   * 
+   * @return the number of threads.
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Get the operation mix.
+   * 
+   * @return the operation mix.
+   */
+  public OperationMix getMix() {
+    return mix;
+  }
+
+  /**
+   * Get the operation mix as it was given.
+   * 
+   * @return the operation mix description.
+   */
+  public String getMixDescription() {
+    return mixDescription;
+  }
+
+  /**
+   * Get the number of users whose breach proof passwords are verified.
+   * 
+   * @return the number of users.
+   */
+  public int getUsers() {
+    return users;
+  }
+
+  /**
+   * Get the time budget of an operation.
+   * 
+   * @return the timeout in milliseconds. Zero means no timeout.
+   */
+  public long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
+}
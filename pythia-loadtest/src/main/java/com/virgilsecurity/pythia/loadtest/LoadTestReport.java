@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.loadtest;
+
+import com.virgilsecurity.pythia.metrics.LatencyHistogram;
+import com.virgilsecurity.pythia.metrics.Outcome;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results of a load test.
+ * 
+ * <p>
+ * Two latencies are recorded for every operation. Latency is measured from the moment operation
+ * was scheduled to start, so it includes time spent waiting for a free thread and is not affected
+ * by coordinated omission. Service time is measured from the moment operation actually started,
+ * as a closed-loop load generator would measure it.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class LoadTestReport {
+
+  private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+  private final Map<LoadOperation, OperationResults> results;
+  private volatile long elapsedNanos;
+
+  /**
+   * Create a new instance of {@link LoadTestReport}.
+   */
+  public LoadTestReport() {
+    this.results = new EnumMap<>(LoadOperation.class);
+    for (LoadOperation operation : LoadOperation.values()) {
+      this.results.put(operation, new OperationResults());
+    }
+  }
+
+  /**
+   * Record a completed operation.
+   * 
+   * @param operation
+   *          the operation.
+   * @param outcome
+   *          the outcome of the operation.
+   * @param latencyNanos
+   *          the time from scheduled start to completion in nanoseconds.
+   * @param serviceTimeNanos
+   *          the time from actual start to completion in nanoseconds.
+   */
+  public void record(LoadOperation operation, Outcome outcome, long latencyNanos,
+      long serviceTimeNanos) {
+    OperationResults operationResults = this.results.get(operation);
+    operationResults.outcomes.get(outcome).increment();
+    operationResults.latency.record(latencyNanos);
+    operationResults.serviceTime.record(serviceTimeNanos);
+  }
+
+  /**
+   * Get the number of operations completed with the given outcome.
+   * 
+   * @param operation
+   *          the operation.
+   * @param outcome
+   *          the outcome.
+   * @return the number of operations.
+   */
+  public long getCount(LoadOperation operation, Outcome outcome) {
+    return this.results.get(operation).outcomes.get(outcome).sum();
+  }
+
+  /**
+   * Get the latencies of an operation measured from scheduled start.
+   * 
+   * @param operation
+   *          the operation.
+   * @return the latency histogram.
+   */
+  public LatencyHistogram getLatency(LoadOperation operation) {
+    return this.results.get(operation).latency;
+  }
+
+  /**
+   * Get the latencies of an operation measured from actual start.
+   * 
+   * @param operation
+   *          the operation.
+   * @return the service time histogram.
+   */
+  public LatencyHistogram getServiceTime(LoadOperation operation) {
+    return this.results.get(operation).serviceTime;
+  }
+
+  /**
+   * Get the duration of the measured part of the load test.
+   * 
+   * @return the duration in nanoseconds.
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Set the duration of the measured part of the load test.
+   * 
+   * @param elapsedNanos
+   *          the duration in nanoseconds.
+   */
+  public void setElapsedNanos(long elapsedNanos) {
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * Print the report.
+   * 
+   * @param out
+   *          the stream which report is printed to.
+   */
+  public void print(PrintStream out) {
+    double seconds = Math.max(this.elapsedNanos, 1L) / 1e9;
+    long total = 0;
+    long succeeded = 0;
+    for (OperationResults operationResults : this.results.values()) {
+      total += operationResults.latency.getCount();
+      succeeded += operationResults.outcomes.get(Outcome.SUCCESS).sum();
+    }
+    out.printf(Locale.ROOT,
+        "Completed %d operations in %.1f s: %.1f ops/s, %.1f successful ops/s%n", total, seconds,
+        total / seconds, succeeded / seconds);
+
+    out.println();
+    out.printf(Locale.ROOT, "%-9s %9s %8s %8s %8s %8s %8s%n", "Operation", "Count", "Success",
+        "Mismatch", "Failed", "Throttle", "Timeout");
+    for (Map.Entry<LoadOperation, OperationResults> entry : this.results.entrySet()) {
+      OperationResults operationResults = entry.getValue();
+      if (operationResults.latency.getCount() == 0) {
+        continue;
+      }
+      long failed = operationResults.outcomes.get(Outcome.VERIFICATION_FAILED).sum()
+          + operationResults.outcomes.get(Outcome.KEY_NOT_FOUND).sum()
+          + operationResults.outcomes.get(Outcome.SERVICE_ERROR).sum()
+          + operationResults.outcomes.get(Outcome.ERROR).sum();
+      out.printf(Locale.ROOT, "%-9s %9d %8d %8d %8d %8d %8d%n", entry.getKey().getLabel(),
+          operationResults.latency.getCount(),
+          operationResults.outcomes.get(Outcome.SUCCESS).sum(),
+          operationResults.outcomes.get(Outcome.MISMATCH).sum(), failed,
+          operationResults.outcomes.get(Outcome.THROTTLED).sum(),
+          operationResults.outcomes.get(Outcome.TIMEOUT).sum());
+    }
+
+    out.println();
+    out.println("Latency from scheduled start, ms (corrected for coordinated omission)");
+    printLatencies(out, true);
+    out.println();
+    out.println("Service time from actual start, ms (uncorrected)");
+    printLatencies(out, false);
+  }
+
+  private void printLatencies(PrintStream out, boolean corrected) {
+    out.printf(Locale.ROOT, "%-9s %9s %9s %9s %9s %9s %9s%n", "Operation", "Mean", "p50", "p90",
+        "p99", "p99.9", "Max");
+    for (Map.Entry<LoadOperation, OperationResults> entry : this.results.entrySet()) {
+      LatencyHistogram histogram = corrected ? entry.getValue().latency
+          : entry.getValue().serviceTime;
+      if (histogram.getCount() == 0) {
+        continue;
+      }
+      out.printf(Locale.ROOT, "%-9s %9.2f", entry.getKey().getLabel(),
+          millis((long) histogram.getMean()));
+      for (double percentile : PERCENTILES) {
+        out.printf(Locale.ROOT, " %9.2f", millis(histogram.getValueAtPercentile(percentile)));
+      }
+      out.printf(Locale.ROOT, " %9.2f%n", millis(histogram.getMax()));
+    }
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1e6;
+  }
+
+  private static final class OperationResults {
+
+    private final Map<Outcome, LongAdder> outcomes;
+    private final LatencyHistogram latency;
+    private final LatencyHistogram serviceTime;
+
+    private OperationResults() {
+      this.outcomes = new EnumMap<>(Outcome.class);
+      for (Outcome outcome : Outcome.values()) {
+        this.outcomes.put(outcome, new LongAdder());
+      }
+      this.latency = new LatencyHistogram();
+      this.serviceTime = new LatencyHistogram();
+    }
+  }
+
+}
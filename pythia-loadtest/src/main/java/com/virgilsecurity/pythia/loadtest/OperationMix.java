@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Weighted mix of load test operations, e.g. {@code verify=80,create=15,update=4,brainkey=1}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class OperationMix {
+
+  private final LoadOperation[] operations;
+  private final double[] cumulativeShares;
+
+  private OperationMix(Map<LoadOperation, Integer> weights) {
+    int total = 0;
+    for (int weight : weights.values()) {
+      total += weight;
+    }
+    if (total <= 0) {
+      throw new IllegalArgumentException("Operation mix should have a positive weight");
+    }
+    this.operations = new LoadOperation[weights.size()];
+    this.cumulativeShares = new double[weights.size()];
+    int i = 0;
+    int cumulative = 0;
+    for (Map.Entry<LoadOperation, Integer> entry : weights.entrySet()) {
+      cumulative += entry.getValue();
+      this.operations[i] = entry.getKey();
+      this.cumulativeShares[i] = (double) cumulative / total;
+      i++;
+    }
+  }
+
+  /**
+   * Parse operation mix.
+   * 
+   * @param mix
+   *          comma-separated list of 'operation=weight' pairs.
+   * @return the operation mix.
+   */
+  public static OperationMix parse(String mix) {
+    Map<LoadOperation, Integer> weights = new EnumMap<>(LoadOperation.class);
+    for (String part : mix.split(",")) {
+      String[] pair = part.trim().split("=");
+      if (pair.length != 2) {
+        throw new IllegalArgumentException("Operation mix has invalid format: " + mix);
+      }
+      int weight = Integer.parseInt(pair[1].trim());
+      if (weight < 0) {
+        throw new IllegalArgumentException("Operation weight should not be negative");
+      }
+      if (weight > 0) {
+        weights.put(LoadOperation.fromLabel(pair[0].trim()), weight);
+      }
+    }
+    return new OperationMix(weights);
+  }
+
+  /**
+   * Check whether the mix contains an operation.
+   * 
+   * @param operation
+   *          the operation.
+   * @return {@code true} if operation has a positive weight.
+   */
+  public boolean contains(LoadOperation operation) {
+    for (LoadOperation candidate : this.operations) {
+      if (candidate == operation) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Pick an operation.
+   * 
+   * @param random
+   *          a random value from 0 (inclusive) to 1 (exclusive).
+   * @return the operation.
+   */
+  public LoadOperation pick(double random) {
+    for (int i = 0; i < this.cumulativeShares.length - 1; i++) {
+      if (random < this.cumulativeShares[i]) {
+        return this.operations[i];
+      }
+    }
+    return this.operations[this.operations.length - 1];
+  }
+
+}
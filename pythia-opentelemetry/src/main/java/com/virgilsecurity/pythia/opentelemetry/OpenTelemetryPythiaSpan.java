@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.opentelemetry;
+
+import com.virgilsecurity.pythia.tracing.PythiaSpan;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+import io.opentelemetry.context.propagation.TextMapSetter;
+
+import java.util.Map;
+
+/**
+ * {@link PythiaSpan} backed by an OpenTelemetry span.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+final class OpenTelemetryPythiaSpan implements PythiaSpan {
+
+  private static final TextMapSetter<Map<String, String>> HEADERS_SETTER =
+      new TextMapSetter<Map<String, String>>() {
+
+        @Override
+        public void set(Map<String, String> carrier, String key, String value) {
+          if (carrier != null) {
+            carrier.put(key, value);
+          }
+        }
+      };
+
+  private final Tracer tracer;
+  private final TextMapPropagator propagator;
+  private final Context context;
+  private final Span span;
+
+  OpenTelemetryPythiaSpan(Tracer tracer, TextMapPropagator propagator, Context context,
+      Span span) {
+    this.tracer = tracer;
+    this.propagator = propagator;
+    this.context = context;
+    this.span = span;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.tracing.PythiaSpan#startChild(java.lang.String, boolean)
+   */
+  @Override
+  public PythiaSpan startChild(String name, boolean remote) {
+    Span child = this.tracer.spanBuilder(name).setParent(this.context)
+        .setSpanKind(remote ? SpanKind.CLIENT : SpanKind.INTERNAL).startSpan();
+    return new OpenTelemetryPythiaSpan(this.tracer, this.propagator, this.context.with(child),
+        child);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.tracing.PythiaSpan#setAttribute(java.lang.String,
+   * java.lang.String)
+   */
+  @Override
+  public void setAttribute(String key, String value) {
+    this.span.setAttribute(key, value);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.tracing.PythiaSpan#setAttribute(java.lang.String, long)
+   */
+  @Override
+  public void setAttribute(String key, long value) {
+    this.span.setAttribute(key, value);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.tracing.PythiaSpan#setAttribute(java.lang.String, boolean)
+   */
+  @Override
+  public void setAttribute(String key, boolean value) {
+    this.span.setAttribute(key, value);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.tracing.PythiaSpan#inject(java.util.Map)
+   */
+  @Override
+  public void inject(Map<String, String> headers) {
+    this.propagator.inject(this.context, headers, HEADERS_SETTER);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.tracing.PythiaSpan#recordError(java.lang.Throwable)
+   */
+  @Override
+  public void recordError(Throwable error) {
+    this.span.recordException(error);
+    this.span.setStatus(StatusCode.ERROR);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.tracing.PythiaSpan#end()
+   */
+  @Override
+  public void end() {
+    this.span.end();
+  }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.opentelemetry;
+
+import com.virgilsecurity.pythia.VirgilInfo;
+import com.virgilsecurity.pythia.tracing.PythiaSpan;
+import com.virgilsecurity.pythia.tracing.PythiaTracer;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+
+/**
+ * {@link PythiaTracer} which records Pythia operations as OpenTelemetry spans. Operation span is
+ * a child of the span which is current when operation starts, and trace context is propagated to
+ * Pythia service with the text map propagator configured in {@link OpenTelemetry}, e.g. as W3C
+ * {@code traceparent} header.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class OpenTelemetryPythiaTracer implements PythiaTracer {
+
+  /**
+   * Name of the instrumentation scope which spans are recorded with.
+   */
+  public static final String INSTRUMENTATION_NAME = "com.virgilsecurity.pythia";
+
+  private final Tracer tracer;
+  private final TextMapPropagator propagator;
+
+  /**
+   * Create a new instance of {@link OpenTelemetryPythiaTracer}.
+   *
+   * @param openTelemetry
+   *          the OpenTelemetry instance, e.g. {@code GlobalOpenTelemetry.get()}.
+   */
+  public OpenTelemetryPythiaTracer(OpenTelemetry openTelemetry) {
+    if (openTelemetry == null) {
+      throw new IllegalArgumentException("OpenTelemetry should be set");
+    }
+    this.tracer = openTelemetry.getTracer(INSTRUMENTATION_NAME, VirgilInfo.VERSION);
+    this.propagator = openTelemetry.getPropagators().getTextMapPropagator();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.tracing.PythiaTracer#startSpan(java.lang.String)
+   */
+  @Override
+  public PythiaSpan startSpan(String name) {
+    Context parent = Context.current();
+    Span span = this.tracer.spanBuilder(name).setParent(parent).setSpanKind(SpanKind.INTERNAL)
+        .startSpan();
+    return new OpenTelemetryPythiaSpan(this.tracer, this.propagator, parent.with(span), span);
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.opentelemetry;
+
+import com.virgilsecurity.pythia.tracing.PythiaSpan;
+import com.virgilsecurity.pythia.tracing.SpanAttributes;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for {@link OpenTelemetryPythiaTracer}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class OpenTelemetryPythiaTracerTest {
+
+  private InMemorySpanExporter exporter;
+  private OpenTelemetryPythiaTracer tracer;
+
+  @BeforeEach
+  public void setup() {
+    this.exporter = InMemorySpanExporter.create();
+    OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+        .setTracerProvider(SdkTracerProvider.builder()
+            .addSpanProcessor(SimpleSpanProcessor.create(this.exporter)).build())
+        .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+        .build();
+    this.tracer = new OpenTelemetryPythiaTracer(openTelemetry);
+  }
+
+  @Test
+  public void startSpan() {
+    PythiaSpan span = this.tracer.startSpan("verifyBreachProofPassword");
+    span.setAttribute(SpanAttributes.KEY_VERSION, 2);
+    PythiaSpan transformSpan = span.startChild("transform", true);
+    transformSpan.setAttribute(SpanAttributes.ENDPOINT, "transform");
+    transformSpan.setAttribute(SpanAttributes.PROVE, true);
+    Map<String, String> headers = new HashMap<>();
+    transformSpan.inject(headers);
+    transformSpan.end();
+    span.end();
+
+    List<SpanData> spans = this.exporter.getFinishedSpanItems();
+    assertEquals(2, spans.size());
+    SpanData transform = spans.get(0);
+    SpanData root = spans.get(1);
+    assertEquals("transform", transform.getName());
+    assertEquals(SpanKind.CLIENT, transform.getKind());
+    assertEquals(root.getSpanId(), transform.getParentSpanId());
+    assertEquals(root.getTraceId(), transform.getTraceId());
+    assertEquals("transform",
+        transform.getAttributes().get(AttributeKey.stringKey(SpanAttributes.ENDPOINT)));
+    assertEquals(Boolean.TRUE,
+        transform.getAttributes().get(AttributeKey.booleanKey(SpanAttributes.PROVE)));
+    assertEquals(SpanKind.INTERNAL, root.getKind());
+    assertEquals(Long.valueOf(2),
+        root.getAttributes().get(AttributeKey.longKey(SpanAttributes.KEY_VERSION)));
+    assertEquals("00-" + transform.getTraceId() + "-" + transform.getSpanId() + "-01",
+        headers.get("traceparent"));
+  }
+
+  @Test
+  public void recordError() {
+    PythiaSpan span = this.tracer.startSpan("createBreachProofPassword");
+    span.recordError(new IllegalStateException("failed"));
+    span.end();
+    span.end();
+
+    List<SpanData> spans = this.exporter.getFinishedSpanItems();
+    assertEquals(1, spans.size());
+    assertEquals(StatusCode.ERROR, spans.get(0).getStatus().getStatusCode());
+    assertEquals("exception", spans.get(0).getEvents().get(0).getName());
+  }
+
+  @Test
+  public void instantiate_nullOpenTelemetry() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new OpenTelemetryPythiaTracer(null);
+    });
+  }
+
+}
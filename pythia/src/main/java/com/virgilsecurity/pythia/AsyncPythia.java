@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia;
+
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Executor-backed facade for {@link Pythia}. Each operation is executed as a separate task of the
+ * executor, so blocking calls don't occupy caller threads. With
+ * {@link #withVirtualThreads(Pythia)} every operation runs on its own virtual thread.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class AsyncPythia implements AutoCloseable {
+
+  private final Pythia pythia;
+  private final ExecutorService executor;
+
+  /**
+   * Create a new instance of {@link AsyncPythia}.
+   *
+   * @param pythia
+   *          the Pythia instance which executes operations.
+   * @param executor
+   *          the executor to run operations on. It is shut down when this facade is closed.
+   */
+  public AsyncPythia(Pythia pythia, ExecutorService executor) {
+    if (pythia == null) {
+      throw new IllegalArgumentException("Pythia should be set");
+    }
+    if (executor == null) {
+      throw new IllegalArgumentException("Executor should be set");
+    }
+    this.pythia = pythia;
+    this.executor = executor;
+  }
+
+  /**
+   * Create a facade which runs each operation on a new virtual thread.
+   *
+   * @param pythia
+   *          the Pythia instance which executes operations.
+   * @return the new facade.
+   * @throws UnsupportedOperationException
+   *           if virtual threads are not supported by the running Java platform.
+   */
+  public static AsyncPythia withVirtualThreads(Pythia pythia) {
+    return new AsyncPythia(pythia, PythiaExecutors.newVirtualThreadPerTaskExecutor());
+  }
+
+  /**
+   * Create breach proof password asynchronously.
+   *
+   * @param password
+   *          the end user's password.
+   * @param deadline
+   *          the deadline of the operation.
+   * @return the future which is completed with the new breach proof password.
+   * @see Pythia#createBreachProofPassword(String, Deadline)
+   */
+  public CompletableFuture<BreachProofPassword> createBreachProofPassword(final String password,
+      final Deadline deadline) {
+    return submit(new Callable<BreachProofPassword>() {
+
+      @Override
+      public BreachProofPassword call() throws Exception {
+        return pythia.createBreachProofPassword(password, deadline);
+      }
+    });
+  }
+
+  /**
+   * Verify an existing breach proof password asynchronously.
+   *
+   * @param password
+   *          the password.
+   * @param breachProofPassword
+   *          the breach proof password.
+   * @param prove
+   *          require include proof for transformation from Virgil Pythia server.
+   * @param deadline
+   *          the deadline of the operation.
+   * @return the future which is completed with {@code true} if password corresponds to breach
+   *         proof password.
+   * @see Pythia#verifyBreachProofPassword(String, BreachProofPassword, boolean, Deadline)
+   */
+  public CompletableFuture<Boolean> verifyBreachProofPassword(final String password,
+      final BreachProofPassword breachProofPassword, final boolean prove,
+      final Deadline deadline) {
+    return submit(new Callable<Boolean>() {
+
+      @Override
+      public Boolean call() throws Exception {
+        return pythia.verifyBreachProofPassword(password, breachProofPassword, prove, deadline);
+      }
+    });
+  }
+
+  /**
+   * Update an existing Pythia breach proof password asynchronously.
+   *
+   * @param updateToken
+   *          the update token.
+   * @param breachProofPassword
+   *          the breach proof password.
+   * @return the future which is completed with the updated breach proof password.
+   * @see Pythia#updateBreachProofPassword(String, BreachProofPassword)
+   */
+  public CompletableFuture<BreachProofPassword> updateBreachProofPassword(
+      final String updateToken, final BreachProofPassword breachProofPassword) {
+    return submit(new Callable<BreachProofPassword>() {
+
+      @Override
+      public BreachProofPassword call() throws Exception {
+        return pythia.updateBreachProofPassword(updateToken, breachProofPassword);
+      }
+    });
+  }
+
+  /**
+   * Shut down the executor. Already submitted operations are completed.
+   */
+  @Override
+  public void close() {
+    this.executor.shutdown();
+  }
+
+  private <T> CompletableFuture<T> submit(final Callable<T> task) {
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      this.executor.execute(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            future.complete(task.call());
+          } catch (Throwable e) {
+            future.completeExceptionally(e);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia;
+
+import com.virgilsecurity.pythia.events.PythiaEvents;
+import com.virgilsecurity.sdk.jwt.Jwt;
+import com.virgilsecurity.sdk.jwt.TokenContext;
+import com.virgilsecurity.sdk.jwt.accessProviders.CachingJwtProvider.RenewJwtCallback;
+import com.virgilsecurity.sdk.jwt.contract.AccessToken;
+import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
+
+import java.util.Date;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caching access token provider which doesn't hold a monitor while token is renewed. A cached
+ * token is returned without locking, and only one thread renews an expired token while others
+ * wait on a {@link ReentrantLock}. This keeps virtual threads unpinned.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class ConcurrentCachingJwtProvider implements AccessTokenProvider {
+
+  private static final long TOKEN_EXPIRATION_MARGIN = 5_000;
+
+  private final RenewJwtCallback renewJwtCallback;
+  private final ReentrantLock renewLock = new ReentrantLock();
+  private volatile Jwt jwt;
+  private volatile long renewCount;
+  private volatile long lastRenewNanos;
+
+  /**
+   * Create a new instance of {@link ConcurrentCachingJwtProvider}.
+   *
+   * @param renewJwtCallback
+   *          the callback which generates a new token when cached one is expired.
+   */
+  public ConcurrentCachingJwtProvider(RenewJwtCallback renewJwtCallback) {
+    if (renewJwtCallback == null) {
+      throw new IllegalArgumentException("Renew JWT callback should be set");
+    }
+    this.renewJwtCallback = renewJwtCallback;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider#getToken(com.virgilsecurity.sdk.
+   * jwt.TokenContext)
+   */
+  @Override
+  public AccessToken getToken(TokenContext tokenContext) {
+    Jwt cached = this.jwt;
+    if (isValid(cached, tokenContext)) {
+      return cached;
+    }
+    renewLock.lock();
+    try {
+      cached = this.jwt;
+      if (isValid(cached, tokenContext)) {
+        return cached;
+      }
+      Object event = PythiaEvents.beginJwtRenew();
+      long start = System.nanoTime();
+      cached = renewJwtCallback.renewJwt(tokenContext);
+      this.lastRenewNanos = System.nanoTime() - start;
+      this.renewCount++;
+      PythiaEvents.endJwtRenew(event, tokenContext.getOperation(), cached != null);
+      this.jwt = cached;
+      return cached;
+    } finally {
+      renewLock.unlock();
+    }
+  }
+
+  /**
+   * Get the expiration time of the cached token.
+   * 
+   * @return the expiration time, or {@code null} if no token is cached.
+   */
+  public Date getTokenExpiresAt() {
+    Jwt cached = this.jwt;
+    if (cached == null || cached.getBodyContent() == null) {
+      return null;
+    }
+    return cached.getBodyContent().getExpiresAt();
+  }
+
+  /**
+   * Get the number of token renewals.
+   * 
+   * @return the number of renewals.
+   */
+  public long getRenewCount() {
+    return renewCount;
+  }
+
+  /**
+   * Get the duration of the last token renewal.
+   * 
+   * @return the duration in nanoseconds, or {@code 0} if token was not renewed yet.
+   */
+  public long getLastRenewNanos() {
+    return lastRenewNanos;
+  }
+
+  private static boolean isValid(Jwt jwt, TokenContext tokenContext) {
+    return jwt != null && !tokenContext.isForceReload()
+        && !jwt.isExpired(new Date(System.currentTimeMillis() + TOKEN_EXPIRATION_MARGIN));
+  }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia;
+
+import com.virgilsecurity.pythia.model.exception.PythiaTimeoutException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The point in time by which a Pythia operation should be completed. A deadline is carried
+ * through all stages of an operation (token acquisition, crypto, HTTP call), and network timeouts
+ * are derived from the remaining budget.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public final class Deadline {
+
+  private static final Deadline NONE = new Deadline(0, false);
+
+  private final long deadlineNanos;
+  private final boolean bounded;
+
+  private Deadline(long deadlineNanos, boolean bounded) {
+    this.deadlineNanos = deadlineNanos;
+    this.bounded = bounded;
+  }
+
+  /**
+   * Get the deadline which never expires.
+   *
+   * @return the unbounded deadline.
+   */
+  public static Deadline none() {
+    return NONE;
+  }
+
+  /**
+   * Create a deadline which expires after the given duration from now.
+   *
+   * @param duration
+   *          the time budget.
+   * @param unit
+   *          the time unit of the {@code duration} argument.
+   * @return the new deadline.
+   */
+  public static Deadline after(long duration, TimeUnit unit) {
+    if (unit == null) {
+      throw new IllegalArgumentException("Time unit should be set");
+    }
+    if (duration < 0) {
+      throw new IllegalArgumentException("Duration should not be negative");
+    }
+    return new Deadline(System.nanoTime() + unit.toNanos(duration), true);
+  }
+
+  /**
+   * Check if this deadline limits operation time.
+   *
+   * @return {@code true} if deadline is bounded, {@code false} if it never expires.
+   */
+  public boolean isBounded() {
+    return bounded;
+  }
+
+  /**
+   * Check if this deadline has already expired.
+   *
+   * @return {@code true} if there is no time left.
+   */
+  public boolean isExpired() {
+    return bounded && deadlineNanos - System.nanoTime() <= 0;
+  }
+
+  /**
+   * Get the time left before this deadline expires.
+   *
+   * @param unit
+   *          the time unit of the result.
+   * @return the remaining time, zero if expired, or {@link Long#MAX_VALUE} if not bounded.
+   */
+  public long timeRemaining(TimeUnit unit) {
+    if (!bounded) {
+      return Long.MAX_VALUE;
+    }
+    long remaining = deadlineNanos - System.nanoTime();
+    return remaining <= 0 ? 0 : unit.convert(remaining, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Derive a timeout from the remaining budget.
+   *
+   * @param configuredMillis
+   *          the configured timeout in milliseconds. Zero means infinite timeout.
+   * @return the smaller of the configured timeout and the remaining time in milliseconds, but at
+   *         least one millisecond for the bounded deadline.
+   */
+  public int timeoutMillis(int configuredMillis) {
+    if (!bounded) {
+      return configuredMillis;
+    }
+    long remaining = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime() + 999_999);
+    int remainingMillis = (int) Math.max(1, Math.min(Integer.MAX_VALUE, remaining));
+    if (configuredMillis <= 0) {
+      return remainingMillis;
+    }
+    return Math.min(configuredMillis, remainingMillis);
+  }
+
+  /**
+   * Make sure that there is time left to proceed with the next stage of an operation.
+   *
+   * @param stage
+   *          the name of the stage which is about to start or has just finished.
+   * @throws PythiaTimeoutException
+   *           if deadline has expired.
+   */
+  public void check(String stage) throws PythiaTimeoutException {
+    if (isExpired()) {
+      throw PythiaTimeoutException.stackless(stage, null);
+    }
+  }
+
+}
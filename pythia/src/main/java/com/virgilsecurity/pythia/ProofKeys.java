@@ -51,7 +51,7 @@ import java.util.List;
  */
 public class ProofKeys {
 
-  private List<ProofKey> proofKeys;
+  private volatile List<ProofKey> proofKeys;
 
   /**
    * Create a new instance of {@link ProofKeys}.
@@ -61,21 +61,33 @@ public class ProofKeys {
    *          data&gt;'.
    */
   public ProofKeys(List<String> proofKeys) {
-    if (proofKeys == null || proofKeys.isEmpty()) {
-      throw new IllegalArgumentException("No public keys found");
-    }
+    this.proofKeys = parsePublicKeys(proofKeys);
+  }
 
-    this.proofKeys = new ArrayList<>(proofKeys.size());
-    for (String proofKey : proofKeys) {
-      this.proofKeys.add(parsePublicKey(proofKey));
-    }
-    Collections.sort(this.proofKeys, new Comparator<ProofKey>() {
+  /**
+   * Replace Pythia public keys. Keys are replaced only if all of them are valid, so operations in
+   * progress see either old keys or new ones.
+   * 
+   * @param proofKeys
+   *          list of Pythia public keys. Key format is 'PK.&lt;version&gt;.&lt;Base64-encoded
+   *          data&gt;'.
+   */
+  public void reload(List<String> proofKeys) {
+    this.proofKeys = parsePublicKeys(proofKeys);
+  }
 
-      @Override
-      public int compare(ProofKey pk1, ProofKey pk2) {
-        return pk2.getVersion() - pk1.getVersion();
-      }
-    });
+  /**
+   * Get versions of Pythia public keys.
+   * 
+   * @return the key versions, the current one goes first.
+   */
+  public List<Integer> getVersions() {
+    List<ProofKey> keys = this.proofKeys;
+    List<Integer> versions = new ArrayList<>(keys.size());
+    for (ProofKey proofKey : keys) {
+      versions.add(proofKey.getVersion());
+    }
+    return versions;
   }
 
   /**
@@ -86,10 +98,11 @@ public class ProofKeys {
    *           if key not found.
    */
   public ProofKey getCurrentKey() {
-    if (this.proofKeys.isEmpty()) {
+    List<ProofKey> keys = this.proofKeys;
+    if (keys.isEmpty()) {
       throw new ProofKeyNotFoundException();
     }
-    return this.proofKeys.get(0);
+    return keys.get(0);
   }
 
   /**
@@ -102,12 +115,46 @@ public class ProofKeys {
    *           if key not found.
    */
   public ProofKey getProofKey(int version) {
+    ProofKey proofKey = findProofKey(version);
+    if (proofKey == null) {
+      throw new ProofKeyNotFoundException(version);
+    }
+    return proofKey;
+  }
+
+  /**
+   * Find Pythia public key by version without throwing an exception if it's not found.
+   * 
+   * @param version
+   *          the key version for search.
+   * @return the Pythia public key, or {@code null} if key not found.
+   */
+  public ProofKey findProofKey(int version) {
     for (ProofKey proofKey : this.proofKeys) {
       if (proofKey.getVersion() == version) {
         return proofKey;
       }
     }
-    throw new ProofKeyNotFoundException();
+    return null;
+  }
+
+  private List<ProofKey> parsePublicKeys(List<String> proofKeys) {
+    if (proofKeys == null || proofKeys.isEmpty()) {
+      throw new IllegalArgumentException("No public keys found");
+    }
+
+    List<ProofKey> keys = new ArrayList<>(proofKeys.size());
+    for (String proofKey : proofKeys) {
+      keys.add(parsePublicKey(proofKey));
+    }
+    Collections.sort(keys, new Comparator<ProofKey>() {
+
+      @Override
+      public int compare(ProofKey pk1, ProofKey pk2) {
+        return pk2.getVersion() - pk1.getVersion();
+      }
+    });
+    return keys;
   }
 
   private ProofKey parsePublicKey(String publicKeyStr) {
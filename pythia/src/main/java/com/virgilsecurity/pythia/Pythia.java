@@ -34,20 +34,53 @@
 package com.virgilsecurity.pythia;
 
 import com.virgilsecurity.crypto.foundation.Base64;
+import com.virgilsecurity.pythia.client.CallPriority;
+import com.virgilsecurity.pythia.client.HttpCallHeaders;
+import com.virgilsecurity.pythia.client.HttpCallTimings;
+import com.virgilsecurity.pythia.client.Priority;
+import com.virgilsecurity.pythia.client.PriorityPythiaClient;
 import com.virgilsecurity.pythia.client.PythiaClient;
 import com.virgilsecurity.pythia.crypto.BlindResult;
 import com.virgilsecurity.pythia.crypto.PythiaCrypto;
+import com.virgilsecurity.pythia.events.PythiaEvents;
+import com.virgilsecurity.pythia.metrics.Operation;
+import com.virgilsecurity.pythia.metrics.Outcome;
+import com.virgilsecurity.pythia.metrics.PythiaMetrics;
+import com.virgilsecurity.pythia.metrics.Stage;
+import com.virgilsecurity.pythia.metrics.StageTimings;
 import com.virgilsecurity.pythia.model.BreachProofPassword;
+import com.virgilsecurity.pythia.model.BreachProofPasswordView;
 import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.PythiaTimeoutException;
 import com.virgilsecurity.pythia.model.exception.TransformVerificationException;
 import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+import com.virgilsecurity.pythia.storage.BreachProofPasswordFile;
+import com.virgilsecurity.pythia.tracing.PythiaSpan;
+import com.virgilsecurity.pythia.tracing.PythiaTracer;
+import com.virgilsecurity.pythia.tracing.SpanAttributes;
 import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
 import com.virgilsecurity.sdk.jwt.TokenContext;
 import com.virgilsecurity.sdk.jwt.contract.AccessToken;
 import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
 import com.virgilsecurity.sdk.utils.StringUtils;
 
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 /**
  * This class is responsible for Pythia password protection interactions.
@@ -61,6 +94,13 @@ public class Pythia {
   private PythiaCrypto pythiaCrypto;
   private PythiaClient pythiaClient;
   private AccessTokenProvider accessTokenProvider;
+  private long operationTimeout;
+  private PythiaMetrics metrics;
+  private boolean timed;
+  private PythiaTracer tracer;
+  private boolean traced;
+  private Executor parallelExecutor;
+  private Priority priority;
 
   /**
    * Create a new instance of {@link Pythia}.
@@ -76,6 +116,44 @@ public class Pythia {
     this.pythiaCrypto = context.getPythiaCrypto();
     this.pythiaClient = context.getPythiaClient();
     this.accessTokenProvider = context.getAccessTokenProvider();
+    this.operationTimeout = context.getOperationTimeout();
+    this.metrics = context.getMetrics() != null ? context.getMetrics() : PythiaMetrics.NOOP;
+    this.timed = this.metrics != PythiaMetrics.NOOP;
+    this.tracer = context.getTracer() != null ? context.getTracer() : PythiaTracer.NOOP;
+    this.traced = this.tracer != PythiaTracer.NOOP;
+    this.parallelExecutor = context.getParallelExecutor();
+  }
+
+  private Pythia(Pythia pythia, Priority priority) {
+    this.proofKeys = pythia.proofKeys;
+    this.pythiaCrypto = pythia.pythiaCrypto;
+    this.pythiaClient = pythia.pythiaClient;
+    this.accessTokenProvider = pythia.accessTokenProvider;
+    this.operationTimeout = pythia.operationTimeout;
+    this.metrics = pythia.metrics;
+    this.timed = pythia.timed;
+    this.tracer = pythia.tracer;
+    this.traced = pythia.traced;
+    this.parallelExecutor = pythia.parallelExecutor;
+    this.priority = priority;
+  }
+
+  /**
+   * Get an instance of {@link Pythia} with the same configuration whose calls to Pythia service
+   * have the given priority. Calls are scheduled by priority when Pythia client is a
+   * {@link PriorityPythiaClient}, other clients ignore it. The priority is set on the thread which
+   * makes every call, so it applies to calls on the parallel executor too. A custom client which
+   * hands calls over to other threads before they reach the priority client loses it.
+   * 
+   * @param priority
+   *          the priority of calls.
+   * @return the Pythia instance which makes calls of the priority.
+   */
+  public Pythia withPriority(Priority priority) {
+    if (priority == null) {
+      throw new IllegalArgumentException("Priority should be set");
+    }
+    return new Pythia(this, priority);
   }
 
   /**
@@ -90,39 +168,59 @@ public class Pythia {
   public BreachProofPassword updateBreachProofPassword(String updateToken,
       BreachProofPassword breachProofPassword) {
     // Verify update token
-    if (StringUtils.isBlank(updateToken)) {
-      throw new IllegalArgumentException("Update token should not be empty");
-    }
+    UpdateToken token = UpdateToken.parse(updateToken);
     if (breachProofPassword == null) {
       throw new IllegalArgumentException("Breach proof password should be set");
     }
-    String[] parts = updateToken.split("\\.");
-    if (parts.length != 4 || !parts[0].equals("UT")) {
-      throw new IllegalArgumentException("Update token has invalid format");
-    }
-    int prevVersion;
-    int nextVersion;
-    byte[] updateTokenData;
-    try {
-      prevVersion = Integer.parseInt(parts[1]);
-      nextVersion = Integer.parseInt(parts[2]);
-      updateTokenData = Base64.decode(parts[3].getBytes());
-    } catch (NumberFormatException e) {
-      throw new IllegalArgumentException("Update token has invalid format");
-    }
 
-    if (nextVersion == breachProofPassword.getVersion()) {
+    if (token.nextVersion == breachProofPassword.getVersion()) {
       throw new IllegalArgumentException("Already migrated");
     }
-    if (prevVersion != breachProofPassword.getVersion()) {
+    if (token.prevVersion != breachProofPassword.getVersion()) {
       throw new IllegalArgumentException("Wrong user version");
     }
 
     byte[] newDeblindedPassword = this.pythiaCrypto
-        .updateDeblinded(breachProofPassword.getDeblindedPassword(), updateTokenData);
+        .updateDeblinded(breachProofPassword.getDeblindedPassword(), token.data);
 
     return new BreachProofPassword(breachProofPassword.getSalt(), newDeblindedPassword,
-        nextVersion);
+        token.nextVersion);
+  }
+
+  /**
+   * Update breach proof passwords of a file in place. Records are updated in parallel on the
+   * common fork-join pool and are not loaded into the heap. Records which have another version
+   * than the previous version of the update token are left unchanged. New deblinded passwords go
+   * through a journal next to the file, so a migration interrupted at any point, even by a crash,
+   * can be run again with the same update token.
+   * 
+   * @param updateToken
+   *          the update token. You can get it at developer dashboard.
+   * @param file
+   *          the breach proof password file opened for writing.
+   * @return the number of updated records.
+   * @throws IOException
+   *           if the journal can't be written, or the file has an unfinished migration with
+   *           another update token.
+   * @see BreachProofPasswordFile#update(int, int, UnaryOperator)
+   */
+  public long updateBreachProofPasswords(String updateToken, BreachProofPasswordFile file)
+      throws IOException {
+    final UpdateToken token = UpdateToken.parse(updateToken);
+    if (file == null) {
+      throw new IllegalArgumentException("Breach proof password file should be set");
+    }
+    if (!file.isWritable()) {
+      throw new IllegalArgumentException("Breach proof password file should be writable");
+    }
+
+    return file.update(token.prevVersion, token.nextVersion, new UnaryOperator<byte[]>() {
+
+      @Override
+      public byte[] apply(byte[] deblindedPassword) {
+        return pythiaCrypto.updateDeblinded(deblindedPassword, token.data);
+      }
+    });
   }
 
   /**
@@ -140,31 +238,72 @@ public class Pythia {
    */
   public BreachProofPassword createBreachProofPassword(String password)
       throws CryptoException, VirgilPythiaServiceException, TransformVerificationException {
-    byte[] salt = this.pythiaCrypto.generateSalt();
-
-    BlindResult blinded = this.pythiaCrypto.blind(password);
-    byte[] blindedPassword = blinded.getBlindedPassword();
-    byte[] blindingSecret = blinded.getBlindingSecret();
+    return createBreachProofPassword(password, newDeadline());
+  }
 
-    ProofKey currentProofKey = this.proofKeys.getCurrentKey();
+  /**
+   * Create breach proof password within the given deadline.
+   * 
+   * @param password
+   *          the end user's password.
+   * @param deadline
+   *          the deadline of the operation.
+   * @return the new breach proof password.
+   * @throws CryptoException
+   *           if some error occurred during crypto operation.
+   * @throws TransformVerificationException
+   *           if transform response doesn't pass validation/
+   * @throws PythiaTimeoutException
+   *           if deadline expired before operation completed.
+   * @throws VirgilPythiaServiceException
+   *           if Pythia service returned an error.
+   */
+  public BreachProofPassword createBreachProofPassword(String password, Deadline deadline)
+      throws CryptoException, VirgilPythiaServiceException, TransformVerificationException {
+    if (deadline == null) {
+      throw new IllegalArgumentException("Deadline should be set");
+    }
+    Operation operation = Operation.CREATE_BREACH_PROOF_PASSWORD;
+    long start = operationStarted(operation);
+    PythiaSpan span = this.tracer.startSpan("createBreachProofPassword");
+    int version = 0;
+    CompletableFuture<String> tokenFuture = null;
+    CompletableFuture<byte[]> deblindFuture = null;
+    try {
+      byte[] salt = this.pythiaCrypto.generateSalt();
+      StageTimings tokenTimings = parallelTimings();
+      tokenFuture = forkToken(operation, tokenTimings, span, deadline);
+      BlindResult blinded = blind(operation, null, span, password);
 
-    TokenContext tokenContext = new TokenContext("pythia-java", "pythia", "transform", false);
-    AccessToken accessToken = accessTokenProvider.getToken(tokenContext);
-    TransformResponse transformResponse = this.pythiaClient.transformPassword(salt, blindedPassword,
-        currentProofKey.getVersion(), true, accessToken.stringRepresentation());
+      ProofKey currentProofKey = this.proofKeys.getCurrentKey();
+      version = currentProofKey.getVersion();
+      span.setAttribute(SpanAttributes.KEY_VERSION, version);
 
-    boolean isTransformVerified = pythiaCrypto.verify(transformResponse.getTransformedPassword(),
-        blindedPassword, salt, currentProofKey.getData(), transformResponse.getProof().getC(),
-        transformResponse.getProof().getU());
+      String token = tokenFuture != null
+          ? join(operation, tokenTimings, tokenFuture, deadline, "token acquisition")
+          : getToken(operation, null, span, deadline);
+      TransformResponse transformResponse = transform(operation, null, span, salt,
+          blinded.getBlindedPassword(), version, true, token, deadline);
+      StageTimings deblindTimings = parallelTimings();
+      deblindFuture = forkDeblind(operation, deblindTimings, span, transformResponse,
+          blinded.getBlindingSecret());
+      verifyProof(operation, null, span, transformResponse, blinded.getBlindedPassword(), salt,
+          currentProofKey, deadline);
+      byte[] deblindedPassword = deblindFuture != null
+          ? join(operation, deblindTimings, deblindFuture, deadline, "deblind")
+          : deblind(operation, null, span, transformResponse, blinded.getBlindingSecret());
 
-    if (!isTransformVerified) {
-      throw new TransformVerificationException();
+      operationCompleted(operation, Outcome.SUCCESS, version, start, null);
+      return new BreachProofPassword(salt, deblindedPassword, version);
+    } catch (Exception e) {
+      cancel(tokenFuture);
+      cancel(deblindFuture);
+      operationCompleted(operation, Outcome.of(e), version, start, e);
+      spanFailed(span, e);
+      throw e;
+    } finally {
+      span.end();
     }
-
-    byte[] deblindedPassword = this.pythiaCrypto.deblind(transformResponse.getTransformedPassword(),
-        blindingSecret);
-
-    return new BreachProofPassword(salt, deblindedPassword, currentProofKey.getVersion());
   }
 
   /**
@@ -187,29 +326,766 @@ public class Pythia {
   public boolean verifyBreachProofPassword(String password, BreachProofPassword breachProofPassword,
       boolean prove)
       throws CryptoException, TransformVerificationException, VirgilPythiaServiceException {
-    TokenContext tokenContext = new TokenContext("pythia-java", "pythia", "transform", false);
-    AccessToken accessToken = accessTokenProvider.getToken(tokenContext);
-    BlindResult blinded = pythiaCrypto.blind(password);
-    byte[] blindedPassword = blinded.getBlindedPassword();
-    byte[] blindingSecret = blinded.getBlindingSecret();
-    ProofKey actualProofKey = this.proofKeys.getProofKey(breachProofPassword.getVersion());
-
-    TransformResponse transformResponse = this.pythiaClient.transformPassword(
-        breachProofPassword.getSalt(), blindedPassword, breachProofPassword.getVersion(), prove,
-        accessToken.stringRepresentation());
-
-    if (prove) {
-      boolean isTransformVerified = pythiaCrypto.verify(transformResponse.getTransformedPassword(),
-          blindedPassword, breachProofPassword.getSalt(), actualProofKey.getData(),
+    return verifyBreachProofPassword(password, breachProofPassword, prove, newDeadline());
+  }
+
+  /**
+   * Verify an existing breach proof password within the given deadline.
+   * 
+   * @param password
+   *          the password.
+   * @param breachProofPassword
+   *          the breach proof password.
+   * @param prove
+   *          require include proof for transformation from Virgil Pythia server.
+   * @param deadline
+   *          the deadline of the operation.
+   * @return {@code true} if password corresponds to breach proof password.
+   * @throws CryptoException
+   *           if some error occurred during crypto operation.
+   * @throws TransformVerificationException
+   *           if transform response doesn't pass validation/
+   * @throws PythiaTimeoutException
+   *           if deadline expired before operation completed.
+   * @throws VirgilPythiaServiceException
+   *           if Pythia service returned an error.
+   */
+  public boolean verifyBreachProofPassword(String password, BreachProofPassword breachProofPassword,
+      boolean prove, Deadline deadline)
+      throws CryptoException, TransformVerificationException, VirgilPythiaServiceException {
+    if (deadline == null) {
+      throw new IllegalArgumentException("Deadline should be set");
+    }
+    return verify(password, breachProofPassword, null, prove, deadline);
+  }
+
+  /**
+   * Verify a breach proof password which is stored in the binary format without decoding it.
+   * 
+   * @param password
+   *          the password.
+   * @param view
+   *          the view of the encoded breach proof password.
+   * @param prove
+   *          require include proof for transformation from Virgil Pythia server.
+   * @return {@code true} if password corresponds to breach proof password.
+   * @throws CryptoException
+   *           if some error occurred during crypto operation.
+   * @throws TransformVerificationException
+   *           if transform response doesn't pass validation/
+   * @throws VirgilPythiaServiceException
+   *           if Pythia service returned an error.
+   * @see #verifyBreachProofPassword(String, BreachProofPasswordView, boolean, Deadline)
+   */
+  public boolean verifyBreachProofPassword(String password, BreachProofPasswordView view,
+      boolean prove)
+      throws CryptoException, TransformVerificationException, VirgilPythiaServiceException {
+    return verifyBreachProofPassword(password, view, prove, newDeadline());
+  }
+
+  /**
+   * Verify a breach proof password which is stored in the binary format within the given
+   * deadline. Salt and version are read from the view, and the deblinded password is compared
+   * with the encoded one in place.
+   * 
+   * @param password
+   *          the password.
+   * @param view
+   *          the view of the encoded breach proof password.
+   * @param prove
+   *          require include proof for transformation from Virgil Pythia server.
+   * @param deadline
+   *          the deadline of the operation.
+   * @return {@code true} if password corresponds to breach proof password.
+   * @throws CryptoException
+   *           if some error occurred during crypto operation.
+   * @throws TransformVerificationException
+   *           if transform response doesn't pass validation/
+   * @throws PythiaTimeoutException
+   *           if deadline expired before operation completed.
+   * @throws VirgilPythiaServiceException
+   *           if Pythia service returned an error.
+   */
+  public boolean verifyBreachProofPassword(String password, BreachProofPasswordView view,
+      boolean prove, Deadline deadline)
+      throws CryptoException, TransformVerificationException, VirgilPythiaServiceException {
+    if (view == null) {
+      throw new IllegalArgumentException("Breach proof password view should be set");
+    }
+    if (deadline == null) {
+      throw new IllegalArgumentException("Deadline should be set");
+    }
+    return verify(password, null, view, prove, deadline);
+  }
+
+  /**
+   * Verify either a breach proof password or its view.
+   */
+  private boolean verify(String password, BreachProofPassword breachProofPassword,
+      BreachProofPasswordView view, boolean prove, Deadline deadline)
+      throws CryptoException, TransformVerificationException, VirgilPythiaServiceException {
+    Operation operation = Operation.VERIFY_BREACH_PROOF_PASSWORD;
+    long start = operationStarted(operation);
+    PythiaSpan span = this.tracer.startSpan("verifyBreachProofPassword");
+    int version;
+    if (view != null) {
+      version = view.getVersion();
+    } else {
+      version = breachProofPassword == null ? 0 : breachProofPassword.getVersion();
+    }
+    CompletableFuture<String> tokenFuture = null;
+    CompletableFuture<byte[]> deblindFuture = null;
+    try {
+      span.setAttribute(SpanAttributes.KEY_VERSION, version);
+      span.setAttribute(SpanAttributes.PROVE, prove);
+
+      StageTimings tokenTimings = parallelTimings();
+      tokenFuture = forkToken(operation, tokenTimings, span, deadline);
+      String token = tokenFuture != null ? null : getToken(operation, null, span, deadline);
+      BlindResult blinded = blind(operation, null, span, password);
+      ProofKey actualProofKey = this.proofKeys.getProofKey(version);
+      byte[] salt = view != null ? view.getSalt() : breachProofPassword.getSalt();
+      if (tokenFuture != null) {
+        token = join(operation, tokenTimings, tokenFuture, deadline, "token acquisition");
+      }
+
+      TransformResponse transformResponse = transform(operation, null, span, salt,
+          blinded.getBlindedPassword(), version, prove, token, deadline);
+      StageTimings deblindTimings = parallelTimings();
+      if (prove) {
+        deblindFuture = forkDeblind(operation, deblindTimings, span, transformResponse,
+            blinded.getBlindingSecret());
+        verifyProof(operation, null, span, transformResponse, blinded.getBlindedPassword(),
+            salt, actualProofKey, deadline);
+      }
+      byte[] deblindedPassword = deblindFuture != null
+          ? join(operation, deblindTimings, deblindFuture, deadline, "deblind")
+          : deblind(operation, null, span, transformResponse, blinded.getBlindingSecret());
+
+      boolean verified = view != null ? view.matchesDeblindedPassword(deblindedPassword)
+          : Arrays.equals(deblindedPassword, breachProofPassword.getDeblindedPassword());
+      operationCompleted(operation, verified ? Outcome.SUCCESS : Outcome.MISMATCH, version, start,
+          null);
+      return verified;
+    } catch (Exception e) {
+      cancel(tokenFuture);
+      cancel(deblindFuture);
+      operationCompleted(operation, Outcome.of(e), version, start, e);
+      spanFailed(span, e);
+      throw e;
+    } finally {
+      span.end();
+    }
+  }
+
+  /**
+   * Verify an existing breach proof password and report the result as an outcome instead of
+   * throwing an exception. Throttling, expired deadlines and proof verification failures are
+   * raised internally without capturing stack traces, and an unknown proof key version is
+   * detected before calling Pythia service, so this method is cheap to call when Pythia service
+   * is overloaded.
+   * 
+   * @param password
+   *          the password.
+   * @param breachProofPassword
+   *          the breach proof password.
+   * @param prove
+   *          require include proof for transformation from Virgil Pythia server.
+   * @return {@link Outcome#SUCCESS} if password corresponds to breach proof password,
+   *         {@link Outcome#MISMATCH} if it doesn't, {@link Outcome#KEY_NOT_FOUND} if proof key of
+   *         breach proof password version is not known, or the outcome of the failure.
+   * @throws IllegalArgumentException
+   *           if password or breach proof password is not set.
+   * @see Outcome#of(Throwable)
+   */
+  public Outcome tryVerifyBreachProofPassword(String password,
+      BreachProofPassword breachProofPassword, boolean prove) {
+    return tryVerifyBreachProofPassword(password, breachProofPassword, prove, newDeadline());
+  }
+
+  /**
+   * Verify an existing breach proof password within the given deadline and report the result as
+   * an outcome instead of throwing an exception.
+   * 
+   * @param password
+   *          the password.
+   * @param breachProofPassword
+   *          the breach proof password.
+   * @param prove
+   *          require include proof for transformation from Virgil Pythia server.
+   * @param deadline
+   *          the deadline of the operation.
+   * @return {@link Outcome#SUCCESS} if password corresponds to breach proof password,
+   *         {@link Outcome#MISMATCH} if it doesn't, {@link Outcome#KEY_NOT_FOUND} if proof key of
+   *         breach proof password version is not known, or the outcome of the failure.
+   * @throws IllegalArgumentException
+   *           if password, breach proof password or deadline is not set.
+   * @see Outcome#of(Throwable)
+   */
+  public Outcome tryVerifyBreachProofPassword(String password,
+      BreachProofPassword breachProofPassword, boolean prove, Deadline deadline) {
+    if (password == null) {
+      throw new IllegalArgumentException("Password should be set");
+    }
+    if (breachProofPassword == null) {
+      throw new IllegalArgumentException("Breach proof password should be set");
+    }
+    if (deadline == null) {
+      throw new IllegalArgumentException("Deadline should be set");
+    }
+    if (this.proofKeys.findProofKey(breachProofPassword.getVersion()) == null) {
+      return Outcome.KEY_NOT_FOUND;
+    }
+    try {
+      return verifyBreachProofPassword(password, breachProofPassword, prove, deadline)
+          ? Outcome.SUCCESS
+          : Outcome.MISMATCH;
+    } catch (CryptoException | TransformVerificationException | VirgilPythiaServiceException e) {
+      return Outcome.of(e);
+    }
+  }
+
+  /**
+   * Create breach proof password on stages of {@link StagedPythia}: blinding runs on the CPU
+   * stage, token acquisition and transform call on the I/O stage, proof verification and
+   * deblinding on the CPU stage again.
+   */
+  CompletableFuture<BreachProofPassword> createBreachProofPassword(final String password,
+      final Deadline deadline, final PythiaStage cpuStage, PythiaStage ioStage) {
+    if (deadline == null) {
+      throw new IllegalArgumentException("Deadline should be set");
+    }
+    final Operation operation = Operation.CREATE_BREACH_PROOF_PASSWORD;
+    long start = operationStarted(operation);
+    final PythiaSpan span = this.tracer.startSpan("createBreachProofPassword");
+    final StageTimings timings = this.timed ? new StageTimings() : null;
+    CompletableFuture<BreachProofPassword> future = new CompletableFuture<>();
+    int version = 0;
+    try {
+      final byte[] salt = this.pythiaCrypto.generateSalt();
+      final ProofKey currentProofKey = this.proofKeys.getCurrentKey();
+      version = currentProofKey.getVersion();
+      span.setAttribute(SpanAttributes.KEY_VERSION, version);
+
+      CompletableFuture<Transformed> transformFuture = transform(operation, timings, span,
+          password, salt, version, true, deadline, cpuStage, ioStage);
+      future = transformFuture
+          .thenCompose(new Function<Transformed, CompletionStage<BreachProofPassword>>() {
+
+            @Override
+            public CompletionStage<BreachProofPassword> apply(final Transformed transformed) {
+              return cpuStage.submit(new Callable<BreachProofPassword>() {
+
+                @Override
+                public BreachProofPassword call() throws Exception {
+                  verifyProof(operation, timings, span, transformed.response,
+                      transformed.blinded.getBlindedPassword(), salt, currentProofKey, deadline);
+                  byte[] deblindedPassword = deblind(operation, timings, span, transformed.response,
+                      transformed.blinded.getBlindingSecret());
+                  return new BreachProofPassword(salt, deblindedPassword,
+                      currentProofKey.getVersion());
+                }
+              }, deadline);
+            }
+          });
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return stagedOperationCompleted(operation, timings, span, version, start, future);
+  }
+
+  /**
+   * Verify an existing breach proof password on stages of {@link StagedPythia}.
+   */
+  CompletableFuture<Boolean> verifyBreachProofPassword(final String password,
+      final BreachProofPassword breachProofPassword, final boolean prove,
+      final Deadline deadline, final PythiaStage cpuStage, PythiaStage ioStage) {
+    if (deadline == null) {
+      throw new IllegalArgumentException("Deadline should be set");
+    }
+    final Operation operation = Operation.VERIFY_BREACH_PROOF_PASSWORD;
+    long start = operationStarted(operation);
+    final PythiaSpan span = this.tracer.startSpan("verifyBreachProofPassword");
+    final StageTimings timings = this.timed ? new StageTimings() : null;
+    int version = breachProofPassword == null ? 0 : breachProofPassword.getVersion();
+    CompletableFuture<Boolean> future = new CompletableFuture<>();
+    try {
+      span.setAttribute(SpanAttributes.KEY_VERSION, version);
+      span.setAttribute(SpanAttributes.PROVE, prove);
+      final ProofKey actualProofKey = this.proofKeys.getProofKey(breachProofPassword.getVersion());
+
+      CompletableFuture<Transformed> transformFuture = transform(operation, timings, span, password,
+          breachProofPassword.getSalt(), version, prove, deadline, cpuStage, ioStage);
+      future = transformFuture.thenCompose(new Function<Transformed, CompletionStage<Boolean>>() {
+
+        @Override
+        public CompletionStage<Boolean> apply(final Transformed transformed) {
+          return cpuStage.submit(new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() throws Exception {
+              if (prove) {
+                verifyProof(operation, timings, span, transformed.response,
+                    transformed.blinded.getBlindedPassword(), breachProofPassword.getSalt(),
+                    actualProofKey, deadline);
+              }
+              byte[] deblindedPassword = deblind(operation, timings, span, transformed.response,
+                  transformed.blinded.getBlindingSecret());
+              return Arrays.equals(deblindedPassword,
+                  breachProofPassword.getDeblindedPassword());
+            }
+          }, deadline);
+        }
+      });
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return stagedOperationCompleted(operation, timings, span, version, start, future);
+  }
+
+  /**
+   * Blind the password on the CPU stage, then get a token and transform the blinded password on
+   * the I/O stage.
+   */
+  private CompletableFuture<Transformed> transform(final Operation operation,
+      final StageTimings timings, final PythiaSpan span, final String password,
+      final byte[] salt, final int version, final boolean prove, final Deadline deadline,
+      PythiaStage cpuStage, final PythiaStage ioStage) {
+    return cpuStage.submit(new Callable<BlindResult>() {
+
+      @Override
+      public BlindResult call() {
+        return blind(operation, timings, span, password);
+      }
+    }, deadline).thenCompose(new Function<BlindResult, CompletionStage<Transformed>>() {
+
+      @Override
+      public CompletionStage<Transformed> apply(final BlindResult blinded) {
+        return ioStage.submit(new Callable<Transformed>() {
+
+          @Override
+          public Transformed call() throws Exception {
+            String token = getToken(operation, timings, span, deadline);
+            TransformResponse transformResponse = transform(operation, timings, span, salt,
+                blinded.getBlindedPassword(), version, prove, token, deadline);
+            return new Transformed(blinded, transformResponse);
+          }
+        }, deadline);
+      }
+    });
+  }
+
+  /**
+   * Report completion of a staged operation before its result is visible to the caller. Stages
+   * are buffered in {@code timings} while they run on stage threads and are reported here, on the
+   * thread which completes the operation.
+   */
+  private <T> CompletableFuture<T> stagedOperationCompleted(final Operation operation,
+      final StageTimings timings, final PythiaSpan span, final int version, final long start,
+      CompletableFuture<T> future) {
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    future.whenComplete(new BiConsumer<T, Throwable>() {
+
+      @Override
+      public void accept(T value, Throwable error) {
+        if (timings != null) {
+          // Stages ran on stage threads, report them on the completing thread
+          timings.report(metrics, operation);
+        }
+        if (error == null) {
+          Outcome outcome = Boolean.FALSE.equals(value) ? Outcome.MISMATCH : Outcome.SUCCESS;
+          operationCompleted(operation, outcome, version, start, null);
+          span.end();
+          result.complete(value);
+          return;
+        }
+        Throwable cause = error;
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+          cause = cause.getCause();
+        }
+        operationCompleted(operation, Outcome.of(cause), version, start, cause);
+        spanFailed(span, cause);
+        span.end();
+        result.completeExceptionally(cause);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Get an access token on the parallel executor while the password is blinded on the calling
+   * thread.
+   * 
+   * @return the token future, or {@code null} when the token should be acquired on the calling
+   *         thread.
+   */
+  private CompletableFuture<String> forkToken(final Operation operation,
+      final StageTimings timings, final PythiaSpan span, final Deadline deadline) {
+    return fork(new Callable<String>() {
+
+      @Override
+      public String call() throws Exception {
+        return getToken(operation, timings, span, deadline);
+      }
+    });
+  }
+
+  /**
+   * Deblind the transformed password on the parallel executor while the proof is verified on the
+   * calling thread.
+   * 
+   * @return the deblinded password future, or {@code null} when the password should be deblinded
+   *         on the calling thread.
+   */
+  private CompletableFuture<byte[]> forkDeblind(final Operation operation,
+      final StageTimings timings, final PythiaSpan span,
+      final TransformResponse transformResponse, final byte[] blindingSecret) {
+    return fork(new Callable<byte[]>() {
+
+      @Override
+      public byte[] call() {
+        return deblind(operation, timings, span, transformResponse, blindingSecret);
+      }
+    });
+  }
+
+  /**
+   * Run an independent step of an operation on the parallel executor. Returns {@code null} in
+   * sequential mode, or when the executor rejected the step.
+   */
+  private <T> CompletableFuture<T> fork(final Callable<T> step) {
+    if (this.parallelExecutor == null) {
+      return null;
+    }
+    try {
+      return CompletableFuture.supplyAsync(new Supplier<T>() {
+
+        @Override
+        public T get() {
+          try {
+            return step.call();
+          } catch (RuntimeException e) {
+            throw e;
+          } catch (Exception e) {
+            throw new CompletionException(e);
+          }
+        }
+      }, this.parallelExecutor);
+    } catch (RejectedExecutionException e) {
+      // Executor is saturated, run the step on the calling thread
+      return null;
+    }
+  }
+
+  /**
+   * Wait for a step which runs on the parallel executor within the deadline and report its
+   * stages on the calling thread.
+   */
+  private <T> T join(Operation operation, StageTimings timings, CompletableFuture<T> future,
+      Deadline deadline, String stage) throws CryptoException, VirgilPythiaServiceException {
+    T result;
+    try {
+      if (deadline.isBounded()) {
+        result = future.get(Math.max(deadline.timeRemaining(TimeUnit.NANOSECONDS), 0L),
+            TimeUnit.NANOSECONDS);
+      } else {
+        result = future.get();
+      }
+    } catch (TimeoutException e) {
+      throw PythiaTimeoutException.stackless(stage, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new VirgilPythiaServiceException("Pythia -> " + stage + " was interrupted", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof VirgilPythiaServiceException) {
+        throw (VirgilPythiaServiceException) cause;
+      }
+      if (cause instanceof CryptoException) {
+        throw (CryptoException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new VirgilPythiaServiceException("Pythia -> " + stage + " failed", cause);
+    }
+    if (timings != null) {
+      timings.report(this.metrics, operation);
+    }
+    return result;
+  }
+
+  private StageTimings parallelTimings() {
+    return this.timed && this.parallelExecutor != null ? new StageTimings() : null;
+  }
+
+  private static void cancel(CompletableFuture<?> future) {
+    if (future != null) {
+      future.cancel(false);
+    }
+  }
+
+  /**
+   * Get an access token for the transform call. Reported as {@link Stage#GET_TOKEN} stage.
+   */
+  private String getToken(Operation operation, StageTimings timings, PythiaSpan span,
+      Deadline deadline)
+      throws CryptoException, PythiaTimeoutException {
+    long time = stageStarted();
+    PythiaSpan stageSpan = span.startChild("getToken", false);
+    try {
+      deadline.check("token acquisition");
+      TokenContext tokenContext = new TokenContext("pythia-java", "pythia", "transform", false);
+      AccessToken accessToken = this.accessTokenProvider.getToken(tokenContext);
+      deadline.check("token acquisition");
+      stageCompleted(operation, timings, Stage.GET_TOKEN, time);
+      return accessToken.stringRepresentation();
+    } catch (Exception e) {
+      spanFailed(stageSpan, e);
+      throw e;
+    } finally {
+      stageSpan.end();
+    }
+  }
+
+  /**
+   * Blind the password. Reported as {@link Stage#BLIND} stage.
+   */
+  private BlindResult blind(Operation operation, StageTimings timings, PythiaSpan span,
+      String password) {
+    long time = stageStarted();
+    PythiaSpan stageSpan = span.startChild("blind", false);
+    try {
+      Object blindEvent = PythiaEvents.beginBlind();
+      BlindResult blinded = this.pythiaCrypto.blind(password);
+      PythiaEvents.endBlind(blindEvent, blinded.getBlindedPassword().length);
+      stageCompleted(operation, timings, Stage.BLIND, time);
+      return blinded;
+    } catch (RuntimeException e) {
+      spanFailed(stageSpan, e);
+      throw e;
+    } finally {
+      stageSpan.end();
+    }
+  }
+
+  /**
+   * Transform the blinded password by Pythia service. Reported as {@link Stage#TRANSFORM}
+   * stage.
+   */
+  private TransformResponse transform(Operation operation, StageTimings timings, PythiaSpan span,
+      byte[] salt, byte[] blindedPassword, int version, boolean prove, String token,
+      Deadline deadline)
+      throws VirgilPythiaServiceException {
+    long time = stageStarted();
+    PythiaSpan stageSpan = startTransformSpan(span, version, prove);
+    try {
+      TransformResponse transformResponse;
+      callStarted(stageSpan);
+      try {
+        transformResponse = this.pythiaClient.transformPassword(salt, blindedPassword, version,
+            prove, token, deadline);
+      } finally {
+        callCompleted(operation, timings);
+      }
+      deadline.check("transform");
+      stageCompleted(operation, timings, Stage.TRANSFORM, time);
+      return transformResponse;
+    } catch (Exception e) {
+      spanFailed(stageSpan, e);
+      throw e;
+    } finally {
+      stageSpan.end();
+    }
+  }
+
+  /**
+   * Verify the transformation proof. Reported as {@link Stage#VERIFY} stage.
+   */
+  private void verifyProof(Operation operation, StageTimings timings, PythiaSpan span,
+      TransformResponse transformResponse, byte[] blindedPassword, byte[] salt, ProofKey proofKey,
+      Deadline deadline)
+      throws TransformVerificationException, PythiaTimeoutException {
+    long time = stageStarted();
+    PythiaSpan stageSpan = span.startChild("verify", false);
+    try {
+      Object verifyEvent = PythiaEvents.beginVerifyProof();
+      boolean isTransformVerified = this.pythiaCrypto.verify(
+          transformResponse.getTransformedPassword(), blindedPassword, salt, proofKey.getData(),
           transformResponse.getProof().getC(), transformResponse.getProof().getU());
+      PythiaEvents.endVerifyProof(verifyEvent, proofKey.getVersion(), isTransformVerified);
       if (!isTransformVerified) {
-        throw new TransformVerificationException();
+        throw new StacklessTransformVerificationException();
       }
+      deadline.check("verify");
+      stageCompleted(operation, timings, Stage.VERIFY, time);
+    } catch (Exception e) {
+      spanFailed(stageSpan, e);
+      throw e;
+    } finally {
+      stageSpan.end();
     }
+  }
+
+  /**
+   * Deblind the transformed password. Reported as {@link Stage#DEBLIND} stage.
+   */
+  private byte[] deblind(Operation operation, StageTimings timings, PythiaSpan span,
+      TransformResponse transformResponse, byte[] blindingSecret) {
+    long time = stageStarted();
+    PythiaSpan stageSpan = span.startChild("deblind", false);
+    try {
+      byte[] transformedPassword = transformResponse.getTransformedPassword();
+      Object deblindEvent = PythiaEvents.beginDeblind();
+      byte[] deblindedPassword = this.pythiaCrypto.deblind(transformedPassword, blindingSecret);
+      PythiaEvents.endDeblind(deblindEvent, transformedPassword.length);
+      stageCompleted(operation, timings, Stage.DEBLIND, time);
+      return deblindedPassword;
+    } catch (RuntimeException e) {
+      spanFailed(stageSpan, e);
+      throw e;
+    } finally {
+      stageSpan.end();
+    }
+  }
+
+  private Deadline newDeadline() {
+    if (this.operationTimeout > 0) {
+      return Deadline.after(this.operationTimeout, TimeUnit.MILLISECONDS);
+    }
+    return Deadline.none();
+  }
 
-    byte[] deblindedPassword = this.pythiaCrypto.deblind(transformResponse.getTransformedPassword(),
-        blindingSecret);
+  private long operationStarted(Operation operation) {
+    if (!this.timed) {
+      return 0L;
+    }
+    this.metrics.operationStarted(operation);
+    return System.nanoTime();
+  }
+
+  private long stageStarted() {
+    return this.timed ? System.nanoTime() : 0L;
+  }
+
+  private long stageCompleted(Operation operation, StageTimings timings, Stage stage,
+      long stageStart) {
+    if (!this.timed) {
+      return 0L;
+    }
+    long now = System.nanoTime();
+    if (timings != null) {
+      timings.add(stage, now - stageStart);
+    } else {
+      this.metrics.stageCompleted(operation, stage, now - stageStart);
+    }
+    return now;
+  }
 
-    return Arrays.equals(deblindedPassword, breachProofPassword.getDeblindedPassword());
+  private PythiaSpan startTransformSpan(PythiaSpan span, int proofKeyVersion, boolean prove) {
+    PythiaSpan transformSpan = span.startChild("transform", true);
+    transformSpan.setAttribute(SpanAttributes.ENDPOINT, "transform");
+    transformSpan.setAttribute(SpanAttributes.KEY_VERSION, proofKeyVersion);
+    transformSpan.setAttribute(SpanAttributes.PROVE, prove);
+    return transformSpan;
+  }
+
+  private void callStarted(PythiaSpan span) {
+    if (this.priority != null) {
+      CallPriority.set(this.priority);
+    }
+    if (this.timed) {
+      HttpCallTimings.start();
+    }
+    if (this.traced) {
+      Map<String, String> headers = new HashMap<>();
+      span.inject(headers);
+      HttpCallHeaders.set(headers);
+    }
+  }
+
+  private void callCompleted(Operation operation, StageTimings timings) {
+    if (this.priority != null) {
+      CallPriority.clear();
+    }
+    if (this.traced) {
+      HttpCallHeaders.clear();
+    }
+    if (!this.timed) {
+      return;
+    }
+    HttpCallTimings callTimings = HttpCallTimings.stop();
+    if (callTimings == null) {
+      return;
+    }
+    if (timings != null) {
+      timings.add(Stage.CONNECT, callTimings.getConnectNanos());
+      timings.add(Stage.WRITE_REQUEST, callTimings.getWriteNanos());
+      timings.add(Stage.SERVER, callTimings.getServerNanos());
+      timings.add(Stage.READ_RESPONSE, callTimings.getReadNanos());
+    } else {
+      this.metrics.stageCompleted(operation, Stage.CONNECT, callTimings.getConnectNanos());
+      this.metrics.stageCompleted(operation, Stage.WRITE_REQUEST, callTimings.getWriteNanos());
+      this.metrics.stageCompleted(operation, Stage.SERVER, callTimings.getServerNanos());
+      this.metrics.stageCompleted(operation, Stage.READ_RESPONSE, callTimings.getReadNanos());
+    }
+  }
+
+  private void operationCompleted(Operation operation, Outcome outcome, int proofKeyVersion,
+      long start, Throwable error) {
+    if (this.timed) {
+      this.metrics.operationCompleted(operation, outcome, proofKeyVersion,
+          System.nanoTime() - start, error);
+    }
+  }
+
+  private static void spanFailed(PythiaSpan span, Throwable error) {
+    span.recordError(error);
+  }
+
+  /**
+   * Parsed update token.
+   */
+  private static final class UpdateToken {
+
+    private final int prevVersion;
+    private final int nextVersion;
+    private final byte[] data;
+
+    private UpdateToken(int prevVersion, int nextVersion, byte[] data) {
+      this.prevVersion = prevVersion;
+      this.nextVersion = nextVersion;
+      this.data = data;
+    }
+
+    private static UpdateToken parse(String updateToken) {
+      if (StringUtils.isBlank(updateToken)) {
+        throw new IllegalArgumentException("Update token should not be empty");
+      }
+      String[] parts = updateToken.split("\\.");
+      if (parts.length != 4 || !parts[0].equals("UT")) {
+        throw new IllegalArgumentException("Update token has invalid format");
+      }
+      try {
+        return new UpdateToken(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+            Base64.decode(parts[3].getBytes()));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Update token has invalid format");
+      }
+    }
+  }
+
+  /**
+   * Blinded password with its transformation.
+   */
+  private static final class Transformed {
+
+    private final BlindResult blinded;
+    private final TransformResponse response;
+
+    private Transformed(BlindResult blinded, TransformResponse response) {
+      this.blinded = blinded;
+      this.response = response;
+    }
   }
 }
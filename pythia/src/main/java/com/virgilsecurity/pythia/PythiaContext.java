@@ -35,8 +35,11 @@ package com.virgilsecurity.pythia;
 
 import com.virgilsecurity.crypto.foundation.Base64;
 import com.virgilsecurity.pythia.client.PythiaClient;
-import com.virgilsecurity.pythia.client.VirgilPythiaClient;
+import com.virgilsecurity.pythia.client.PythiaClientFactory;
 import com.virgilsecurity.pythia.crypto.PythiaCrypto;
+import com.virgilsecurity.pythia.management.PythiaContextMonitor;
+import com.virgilsecurity.pythia.metrics.PythiaMetrics;
+import com.virgilsecurity.pythia.tracing.PythiaTracer;
 import com.virgilsecurity.sdk.common.TimeSpan;
 import com.virgilsecurity.sdk.crypto.VirgilAccessTokenSigner;
 import com.virgilsecurity.sdk.crypto.VirgilCrypto;
@@ -45,12 +48,12 @@ import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
 import com.virgilsecurity.sdk.jwt.Jwt;
 import com.virgilsecurity.sdk.jwt.JwtGenerator;
 import com.virgilsecurity.sdk.jwt.TokenContext;
-import com.virgilsecurity.sdk.jwt.accessProviders.CachingJwtProvider;
 import com.virgilsecurity.sdk.jwt.accessProviders.CachingJwtProvider.RenewJwtCallback;
 import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
 import com.virgilsecurity.sdk.utils.StringUtils;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -69,13 +72,24 @@ public class PythiaContext {
   private AccessTokenProvider accessTokenProvider;
   private PythiaClient pythiaClient;
   private PythiaCrypto pythiaCrypto;
+  private long operationTimeout;
+  private PythiaMetrics metrics;
+  private PythiaContextMonitor monitor;
+  private PythiaTracer tracer;
+  private Executor parallelExecutor;
 
   private PythiaContext(ProofKeys proofKeys, PythiaCrypto pythiaCrypto, PythiaClient client,
-      AccessTokenProvider accessTokenProvider) {
+      AccessTokenProvider accessTokenProvider, long operationTimeout, PythiaMetrics metrics,
+      PythiaContextMonitor monitor, PythiaTracer tracer, Executor parallelExecutor) {
     this.proofKeys = proofKeys;
     this.pythiaCrypto = pythiaCrypto;
     this.pythiaClient = client;
     this.accessTokenProvider = accessTokenProvider;
+    this.operationTimeout = operationTimeout;
+    this.metrics = metrics;
+    this.monitor = monitor;
+    this.tracer = tracer;
+    this.parallelExecutor = parallelExecutor;
   }
 
   /**
@@ -114,6 +128,51 @@ public class PythiaContext {
     return pythiaCrypto;
   }
 
+  /**
+   * Get the default time budget of a Pythia operation.
+   * 
+   * @return the operation timeout in milliseconds. Zero means no timeout.
+   */
+  public long getOperationTimeout() {
+    return operationTimeout;
+  }
+
+  /**
+   * Get the listener of Pythia operation timings.
+   * 
+   * @return the Pythia metrics.
+   */
+  public PythiaMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Get the monitor which is registered as an MBean for this context.
+   * 
+   * @return the monitor, or {@code null} if context was built without JMX name.
+   */
+  public PythiaContextMonitor getMonitor() {
+    return monitor;
+  }
+
+  /**
+   * Get the tracer of Pythia operations.
+   * 
+   * @return the Pythia tracer.
+   */
+  public PythiaTracer getTracer() {
+    return tracer;
+  }
+
+  /**
+   * Get the executor which runs independent steps of a Pythia operation concurrently.
+   * 
+   * @return the parallel executor, or {@code null} if steps run one after another.
+   */
+  public Executor getParallelExecutor() {
+    return parallelExecutor;
+  }
+
   /**
    * The builder for {@link PythiaContext}.
    * 
@@ -128,6 +187,16 @@ public class PythiaContext {
     private VirgilCrypto crypto;
     private PythiaCrypto pythiaCrypto;
     private String pythiaServiceUrl;
+    private PythiaClient pythiaClient;
+    private AccessTokenProvider accessTokenProvider;
+    private Integer connectTimeout;
+    private Integer readTimeout;
+    private boolean useHttp2;
+    private long operationTimeout;
+    private PythiaMetrics metrics = PythiaMetrics.NOOP;
+    private String jmxName;
+    private PythiaTracer tracer = PythiaTracer.NOOP;
+    private Executor parallelExecutor;
 
     /**
      * Build the Pythia-related config.
@@ -135,6 +204,40 @@ public class PythiaContext {
      * @return the instance of Pythia-related config.
      */
     public PythiaContext build() {
+      if (this.pythiaCrypto == null) {
+        LOGGER.severe("Pythia Crypto should be set");
+        throw new IllegalArgumentException("Pythia Crypto should be set");
+      }
+
+      AccessTokenProvider accessTokenProvider = this.accessTokenProvider;
+      if (accessTokenProvider == null) {
+        accessTokenProvider = createAccessTokenProvider();
+      }
+      ProofKeys proofKeys = new ProofKeys(this.proofKeys);
+      PythiaClient client = this.pythiaClient;
+      if (client == null) {
+        if (this.useHttp2) {
+          client = PythiaClientFactory.createHttp2(this.pythiaServiceUrl, this.connectTimeout,
+              this.readTimeout);
+        } else {
+          client = PythiaClientFactory.createDefault(this.pythiaServiceUrl, this.connectTimeout,
+              this.readTimeout);
+        }
+      }
+
+      PythiaMetrics metrics = this.metrics;
+      PythiaContextMonitor monitor = null;
+      if (this.jmxName != null) {
+        monitor = new PythiaContextMonitor(metrics, proofKeys, accessTokenProvider);
+        monitor.register(this.jmxName);
+        metrics = monitor;
+      }
+
+      return new PythiaContext(proofKeys, pythiaCrypto, client, accessTokenProvider,
+          operationTimeout, metrics, monitor, tracer, parallelExecutor);
+    }
+
+    private AccessTokenProvider createAccessTokenProvider() {
       if (StringUtils.isBlank(this.appId)) {
         LOGGER.severe("Application identifier should be set");
         throw new IllegalArgumentException("Application identifier should be set");
@@ -147,10 +250,6 @@ public class PythiaContext {
         LOGGER.severe("API key should be set");
         throw new IllegalArgumentException("API key should be set");
       }
-      if (this.pythiaCrypto == null) {
-        LOGGER.severe("Pythia Crypto should be set");
-        throw new IllegalArgumentException("Pythia Crypto should be set");
-      }
 
       if (this.crypto == null) {
         this.crypto = new VirgilCrypto();
@@ -182,16 +281,7 @@ public class PythiaContext {
           return null;
         }
       };
-      AccessTokenProvider accessTokenProvider = new CachingJwtProvider(renewJwtCallback);
-      ProofKeys proofKeys = new ProofKeys(this.proofKeys);
-      PythiaClient client;
-      if (this.pythiaServiceUrl == null) {
-        client = new VirgilPythiaClient();
-      } else {
-        client = new VirgilPythiaClient(this.pythiaServiceUrl);
-      }
-
-      return new PythiaContext(proofKeys, pythiaCrypto, client, accessTokenProvider);
+      return new ConcurrentCachingJwtProvider(renewJwtCallback);
     }
 
     /**
@@ -278,6 +368,161 @@ public class PythiaContext {
       return this;
     }
 
+    /**
+     * Set Pythia client. When it is set, service URL and timeouts of this builder are ignored.
+     * 
+     * @param pythiaClient
+     *          the Pythia client to set.
+     * @return {@link Builder} instance.
+     */
+    public Builder setPythiaClient(PythiaClient pythiaClient) {
+      this.pythiaClient = pythiaClient;
+      return this;
+    }
+
+    /**
+     * Set access token provider. When it is set, application identifier and API key are not
+     * required.
+     * 
+     * @param accessTokenProvider
+     *          the access token provider to set.
+     * @return {@link Builder} instance.
+     */
+    public Builder setAccessTokenProvider(AccessTokenProvider accessTokenProvider) {
+      this.accessTokenProvider = accessTokenProvider;
+      return this;
+    }
+
+    /**
+     * Set the timeout for establishing a connection to Pythia service.
+     * 
+     * @param connectTimeout
+     *          the connect timeout in milliseconds. Zero means infinite timeout.
+     * @return {@link Builder} instance.
+     */
+    public Builder setConnectTimeout(int connectTimeout) {
+      if (connectTimeout < 0) {
+        throw new IllegalArgumentException("Connect timeout should not be negative");
+      }
+      this.connectTimeout = connectTimeout;
+      return this;
+    }
+
+    /**
+     * Set the timeout for reading Pythia service response.
+     * 
+     * @param readTimeout
+     *          the read timeout in milliseconds. Zero means infinite timeout.
+     * @return {@link Builder} instance.
+     */
+    public Builder setReadTimeout(int readTimeout) {
+      if (readTimeout < 0) {
+        throw new IllegalArgumentException("Read timeout should not be negative");
+      }
+      this.readTimeout = readTimeout;
+      return this;
+    }
+
+    /**
+     * Use {@code VirgilHttp2PythiaClient}, which multiplexes concurrent calls over HTTP/2 and
+     * implements {@link com.virgilsecurity.pythia.client.AsyncPythiaClient}, instead of the
+     * default {@link com.virgilsecurity.pythia.client.VirgilPythiaClient}. The HTTP/2 client is
+     * available on Java 11 and newer only. Ignored when a Pythia client is set.
+     * 
+     * @param useHttp2
+     *          {@code true} to use the HTTP/2 client.
+     * @return {@link Builder} instance.
+     */
+    public Builder setUseHttp2(boolean useHttp2) {
+      this.useHttp2 = useHttp2;
+      return this;
+    }
+
+    /**
+     * Set the default time budget of a Pythia operation. It is used by operations which are
+     * called without an explicit {@link Deadline}.
+     * 
+     * @param operationTimeout
+     *          the operation timeout in milliseconds. Zero means no timeout.
+     * @return {@link Builder} instance.
+     */
+    public Builder setOperationTimeout(long operationTimeout) {
+      if (operationTimeout < 0) {
+        throw new IllegalArgumentException("Operation timeout should not be negative");
+      }
+      this.operationTimeout = operationTimeout;
+      return this;
+    }
+
+    /**
+     * Set the listener of Pythia operation timings. By default timings are not collected.
+     * 
+     * @param metrics
+     *          the Pythia metrics to set.
+     * @return {@link Builder} instance.
+     */
+    public Builder setMetrics(PythiaMetrics metrics) {
+      if (metrics == null) {
+        throw new IllegalArgumentException("Metrics should be set");
+      }
+      this.metrics = metrics;
+      return this;
+    }
+
+    /**
+     * Set the name which context MBean is registered with in the platform MBean server. By
+     * default MBean is not registered.
+     * 
+     * @param jmxName
+     *          the name of the context.
+     * @return {@link Builder} instance.
+     */
+    public Builder setJmxName(String jmxName) {
+      if (StringUtils.isBlank(jmxName)) {
+        throw new IllegalArgumentException("JMX name should not be empty");
+      }
+      this.jmxName = jmxName;
+      return this;
+    }
+
+    /**
+     * Set the tracer of Pythia operations. By default operations are not traced.
+     * 
+     * @param tracer
+     *          the Pythia tracer to set.
+     * @return {@link Builder} instance.
+     */
+    public Builder setTracer(PythiaTracer tracer) {
+      if (tracer == null) {
+        throw new IllegalArgumentException("Tracer should be set");
+      }
+      this.tracer = tracer;
+      return this;
+    }
+
+    /**
+     * Set the executor which runs independent steps of a Pythia operation concurrently. Token is
+     * acquired on this executor while the password is blinded, and the transformed password is
+     * deblinded while the proof is verified. An operation fails as soon as one of its steps
+     * fails. By default steps run one after another on the calling thread.
+     * 
+     * <p>
+     * Steps are short, so the executor should not queue them behind long tasks. When the
+     * executor rejects a step, the step runs on the calling thread.
+     * </p>
+     * 
+     * @param parallelExecutor
+     *          the parallel executor to set.
+     * @return {@link Builder} instance.
+     */
+    public Builder setParallelExecutor(Executor parallelExecutor) {
+      if (parallelExecutor == null) {
+        throw new IllegalArgumentException("Parallel executor should be set");
+      }
+      this.parallelExecutor = parallelExecutor;
+      return this;
+    }
+
   }
 
 }
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia;
+
+import com.virgilsecurity.pythia.model.exception.PythiaTimeoutException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A stage of {@link StagedPythia}: a fixed pool of threads fed by a bounded queue. Tasks which
+ * don't fit into the queue are rejected, so an overloaded stage sheds load instead of buffering it
+ * without bound. A task which waited in the queue past its deadline is not executed.
+ * 
+ * <p>
+ * Every stage counts its tasks and the time they spent queued and running, so each resource can
+ * be sized on its own: a stage with utilization close to one and a growing queue needs more
+ * threads.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class PythiaStage implements AutoCloseable {
+
+  private final String name;
+  private final int threads;
+  private final int queueCapacity;
+  private final ThreadPoolExecutor executor;
+  private final long createdAt;
+  private final LongAdder completedTasks = new LongAdder();
+  private final LongAdder rejectedTasks = new LongAdder();
+  private final LongAdder expiredTasks = new LongAdder();
+  private final LongAdder busyNanos = new LongAdder();
+  private final LongAdder queueNanos = new LongAdder();
+
+  /**
+   * Create a new instance of {@link PythiaStage}.
+   *
+   * @param name
+   *          the stage name. It is used in thread names and timeout errors.
+   * @param threads
+   *          the number of threads.
+   * @param queueCapacity
+   *          the maximum number of tasks waiting for a thread.
+   */
+  public PythiaStage(final String name, int threads, int queueCapacity) {
+    if (name == null || name.isEmpty()) {
+      throw new IllegalArgumentException("Stage name should be set");
+    }
+    if (threads <= 0) {
+      throw new IllegalArgumentException("Number of threads should be positive");
+    }
+    if (queueCapacity <= 0) {
+      throw new IllegalArgumentException("Queue capacity should be positive");
+    }
+    this.name = name;
+    this.threads = threads;
+    this.queueCapacity = queueCapacity;
+    this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+
+          private final AtomicInteger count = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "pythia-" + name + "-" + count.incrementAndGet());
+          }
+        });
+    this.createdAt = System.nanoTime();
+  }
+
+  /**
+   * Execute the task on this stage.
+   * 
+   * @return the future which is completed with the task result, or exceptionally with the task
+   *         error, {@link RejectedExecutionException} if the queue is full, or
+   *         {@link PythiaTimeoutException} if deadline expired while the task was queued.
+   */
+  <T> CompletableFuture<T> submit(final Callable<T> task, final Deadline deadline) {
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    final long submittedAt = System.nanoTime();
+    try {
+      this.executor.execute(new Runnable() {
+
+        @Override
+        public void run() {
+          long startedAt = System.nanoTime();
+          queueNanos.add(startedAt - submittedAt);
+          if (deadline.isExpired()) {
+            expiredTasks.increment();
+            future.completeExceptionally(PythiaTimeoutException.stackless(name + " queue", null));
+            return;
+          }
+          T result = null;
+          Throwable error = null;
+          try {
+            result = task.call();
+          } catch (Throwable e) {
+            error = e;
+          }
+          // Count the task before its result is visible to the next stage
+          busyNanos.add(System.nanoTime() - startedAt);
+          completedTasks.increment();
+          if (error != null) {
+            future.completeExceptionally(error);
+          } else {
+            future.complete(result);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      this.rejectedTasks.increment();
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * Get the stage name.
+   * 
+   * @return the stage name.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Get the number of threads.
+   * 
+   * @return the number of threads.
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Get the maximum number of tasks waiting for a thread.
+   * 
+   * @return the queue capacity.
+   */
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  /**
+   * Get the number of tasks waiting for a thread.
+   * 
+   * @return the queue size.
+   */
+  public int getQueueSize() {
+    return this.executor.getQueue().size();
+  }
+
+  /**
+   * Get the number of threads which are executing tasks.
+   * 
+   * @return the number of active threads.
+   */
+  public int getActiveThreads() {
+    return this.executor.getActiveCount();
+  }
+
+  /**
+   * Get the number of executed tasks.
+   * 
+   * @return the number of completed tasks.
+   */
+  public long getCompletedTasks() {
+    return completedTasks.sum();
+  }
+
+  /**
+   * Get the number of tasks rejected because the queue was full.
+   * 
+   * @return the number of rejected tasks.
+   */
+  public long getRejectedTasks() {
+    return rejectedTasks.sum();
+  }
+
+  /**
+   * Get the number of tasks which were not executed because their deadline expired in the
+   * queue.
+   * 
+   * @return the number of expired tasks.
+   */
+  public long getExpiredTasks() {
+    return expiredTasks.sum();
+  }
+
+  /**
+   * Get the total time threads spent executing tasks.
+   * 
+   * @return the busy time, in nanoseconds.
+   */
+  public long getBusyNanos() {
+    return busyNanos.sum();
+  }
+
+  /**
+   * Get the total time tasks spent waiting in the queue.
+   * 
+   * @return the queue time, in nanoseconds.
+   */
+  public long getQueueNanos() {
+    return queueNanos.sum();
+  }
+
+  /**
+   * Get the share of thread time spent executing tasks since the stage was created. Sample
+   * {@link #getBusyNanos()} periodically to get utilization over a window.
+   * 
+   * @return the utilization, from 0 to 1.
+   */
+  public double getUtilization() {
+    long elapsed = System.nanoTime() - this.createdAt;
+    if (elapsed <= 0) {
+      return 0;
+    }
+    return Math.min(1.0, (double) getBusyNanos() / ((double) elapsed * this.threads));
+  }
+
+  /**
+   * Shut down the stage. Already submitted tasks are completed.
+   */
+  @Override
+  public void close() {
+    this.executor.shutdown();
+  }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia;
+
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Staged facade for {@link Pythia}. Unlike {@link AsyncPythia}, which runs a whole operation on
+ * one thread, every operation is split into stages which run on separate thread pools:
+ * 
+ * <ul>
+ * <li>blinding, proof verification and deblinding run on the CPU stage, which should have about
+ * as many threads as there are cores;</li>
+ * <li>token acquisition and the call to Pythia service run on the I/O stage, which should have
+ * enough threads to cover the number of concurrent calls.</li>
+ * </ul>
+ * 
+ * <p>
+ * So I/O threads never do crypto and CPU threads never wait for the network. Stage queues are
+ * bounded: when a stage is overloaded, operations fail with {@link RejectedExecutionException}
+ * instead of piling up. Use {@link PythiaStage} statistics to size each stage.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class StagedPythia implements AutoCloseable {
+
+  /**
+   * Default number of threads of the I/O stage.
+   */
+  public static final int DEFAULT_IO_THREADS = 64;
+
+  /**
+   * Default capacity of stage queues.
+   */
+  public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+  private final Pythia pythia;
+  private final PythiaStage cpuStage;
+  private final PythiaStage ioStage;
+
+  /**
+   * Create a new instance of {@link StagedPythia} with a CPU stage of one thread per core and an
+   * I/O stage of {@link #DEFAULT_IO_THREADS} threads.
+   *
+   * @param pythia
+   *          the Pythia instance which executes operations.
+   */
+  public StagedPythia(Pythia pythia) {
+    this(pythia,
+        new PythiaStage("cpu", Runtime.getRuntime().availableProcessors(),
+            DEFAULT_QUEUE_CAPACITY),
+        new PythiaStage("io", DEFAULT_IO_THREADS, DEFAULT_QUEUE_CAPACITY));
+  }
+
+  /**
+   * Create a new instance of {@link StagedPythia}.
+   *
+   * @param pythia
+   *          the Pythia instance which executes operations.
+   * @param cpuStage
+   *          the stage of crypto operations. It is closed when this facade is closed.
+   * @param ioStage
+   *          the stage of token acquisition and Pythia service calls. It is closed when this
+   *          facade is closed.
+   */
+  public StagedPythia(Pythia pythia, PythiaStage cpuStage, PythiaStage ioStage) {
+    if (pythia == null) {
+      throw new IllegalArgumentException("Pythia should be set");
+    }
+    if (cpuStage == null) {
+      throw new IllegalArgumentException("CPU stage should be set");
+    }
+    if (ioStage == null) {
+      throw new IllegalArgumentException("I/O stage should be set");
+    }
+    this.pythia = pythia;
+    this.cpuStage = cpuStage;
+    this.ioStage = ioStage;
+  }
+
+  /**
+   * Create breach proof password on stages.
+   *
+   * @param password
+   *          the end user's password.
+   * @param deadline
+   *          the deadline of the operation.
+   * @return the future which is completed with the new breach proof password.
+   * @see Pythia#createBreachProofPassword(String, Deadline)
+   */
+  public CompletableFuture<BreachProofPassword> createBreachProofPassword(String password,
+      Deadline deadline) {
+    return this.pythia.createBreachProofPassword(password, deadline, this.cpuStage,
+        this.ioStage);
+  }
+
+  /**
+   * Verify an existing breach proof password on stages.
+   *
+   * @param password
+   *          the password.
+   * @param breachProofPassword
+   *          the breach proof password.
+   * @param prove
+   *          require include proof for transformation from Virgil Pythia server.
+   * @param deadline
+   *          the deadline of the operation.
+   * @return the future which is completed with {@code true} if password corresponds to breach
+   *         proof password.
+   * @see Pythia#verifyBreachProofPassword(String, BreachProofPassword, boolean, Deadline)
+   */
+  public CompletableFuture<Boolean> verifyBreachProofPassword(String password,
+      BreachProofPassword breachProofPassword, boolean prove, Deadline deadline) {
+    return this.pythia.verifyBreachProofPassword(password, breachProofPassword, prove, deadline,
+        this.cpuStage, this.ioStage);
+  }
+
+  /**
+   * Update an existing Pythia breach proof password on the CPU stage.
+   *
+   * @param updateToken
+   *          the update token.
+   * @param breachProofPassword
+   *          the breach proof password.
+   * @return the future which is completed with the updated breach proof password.
+   * @see Pythia#updateBreachProofPassword(String, BreachProofPassword)
+   */
+  public CompletableFuture<BreachProofPassword> updateBreachProofPassword(
+      final String updateToken, final BreachProofPassword breachProofPassword) {
+    return this.cpuStage.submit(new Callable<BreachProofPassword>() {
+
+      @Override
+      public BreachProofPassword call() {
+        return pythia.updateBreachProofPassword(updateToken, breachProofPassword);
+      }
+    }, Deadline.none());
+  }
+
+  /**
+   * Get the stage of crypto operations.
+   * 
+   * @return the CPU stage.
+   */
+  public PythiaStage getCpuStage() {
+    return cpuStage;
+  }
+
+  /**
+   * Get the stage of token acquisition and Pythia service calls.
+   * 
+   * @return the I/O stage.
+   */
+  public PythiaStage getIoStage() {
+    return ioStage;
+  }
+
+  /**
+   * Shut down both stages. Operations which haven't reached their last stage yet fail with
+   * {@link RejectedExecutionException}.
+   */
+  @Override
+  public void close() {
+    this.cpuStage.close();
+    this.ioStage.close();
+  }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.brainkey;
+
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.PythiaExecutors;
+import com.virgilsecurity.sdk.crypto.VirgilKeyPair;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Executor-backed facade for {@link BrainKey}. With {@link #withVirtualThreads(BrainKey)} every
+ * key pair is generated on its own virtual thread.
+ *
+ * @author Andrii Iakovenko
+ */
+public class AsyncBrainKey implements AutoCloseable {
+
+  private final BrainKey brainKey;
+  private final ExecutorService executor;
+
+  /**
+   * Create a new instance of {@link AsyncBrainKey}.
+   *
+   * @param brainKey the BrainKey instance which generates key pairs.
+   * @param executor the executor to run operations on. It is shut down when this facade is
+   *                 closed.
+   */
+  public AsyncBrainKey(BrainKey brainKey, ExecutorService executor) {
+    if (brainKey == null) {
+      throw new IllegalArgumentException("BrainKey should be set");
+    }
+    if (executor == null) {
+      throw new IllegalArgumentException("Executor should be set");
+    }
+    this.brainKey = brainKey;
+    this.executor = executor;
+  }
+
+  /**
+   * Create a facade which runs each operation on a new virtual thread.
+   *
+   * @param brainKey the BrainKey instance which generates key pairs.
+   *
+   * @return the new facade.
+   *
+   * @throws UnsupportedOperationException if virtual threads are not supported by the running
+   *                                       Java platform.
+   */
+  public static AsyncBrainKey withVirtualThreads(BrainKey brainKey) {
+    return new AsyncBrainKey(brainKey, PythiaExecutors.newVirtualThreadPerTaskExecutor());
+  }
+
+  /**
+   * Generates key pair based on given password and brainkeyId asynchronously.
+   *
+   * @param password   password from which key pair will be generated.
+   * @param brainKeyId brainKey identifier.
+   * @param deadline   the deadline of the operation.
+   *
+   * @return the future which is completed with generated {@link VirgilKeyPair}.
+   *
+   * @see BrainKey#generateKeyPair(String, String, Deadline)
+   */
+  public CompletableFuture<VirgilKeyPair> generateKeyPair(final String password,
+      final String brainKeyId, final Deadline deadline) {
+    final CompletableFuture<VirgilKeyPair> future = new CompletableFuture<>();
+    try {
+      this.executor.execute(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            future.complete(brainKey.generateKeyPair(password, brainKeyId, deadline));
+          } catch (Throwable e) {
+            future.completeExceptionally(e);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * Generates key pairs based on given password for several brainkeyIds asynchronously.
+   *
+   * @param password    password from which key pairs will be generated.
+   * @param brainKeyIds brainKey identifiers.
+   * @param deadline    the deadline of the operation.
+   *
+   * @return the future which is completed with generated key pairs in the order of brainKey
+   *         identifiers.
+   *
+   * @see BrainKey#generateKeyPairs(String, List, Deadline)
+   */
+  public CompletableFuture<List<VirgilKeyPair>> generateKeyPairs(final String password,
+      final List<String> brainKeyIds, final Deadline deadline) {
+    final CompletableFuture<List<VirgilKeyPair>> future = new CompletableFuture<>();
+    try {
+      this.executor.execute(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            future.complete(brainKey.generateKeyPairs(password, brainKeyIds, deadline));
+          } catch (Throwable e) {
+            future.completeExceptionally(e);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * Shut down the executor. Already submitted operations are completed.
+   */
+  @Override
+  public void close() {
+    this.executor.shutdown();
+  }
+
+}
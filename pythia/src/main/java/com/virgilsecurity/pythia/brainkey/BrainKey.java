@@ -33,15 +33,44 @@
 
 package com.virgilsecurity.pythia.brainkey;
 
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.client.AsyncPythiaClient;
+import com.virgilsecurity.pythia.client.HttpCallHeaders;
+import com.virgilsecurity.pythia.client.HttpCallTimings;
 import com.virgilsecurity.pythia.client.PythiaClient;
 import com.virgilsecurity.pythia.crypto.BlindResult;
 import com.virgilsecurity.pythia.crypto.PythiaCrypto;
+import com.virgilsecurity.pythia.events.PythiaEvents;
+import com.virgilsecurity.pythia.metrics.Operation;
+import com.virgilsecurity.pythia.metrics.Outcome;
+import com.virgilsecurity.pythia.metrics.PythiaMetrics;
+import com.virgilsecurity.pythia.metrics.Stage;
+import com.virgilsecurity.pythia.metrics.StageTimings;
+import com.virgilsecurity.pythia.model.exception.PythiaTimeoutException;
 import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+import com.virgilsecurity.pythia.tracing.PythiaSpan;
+import com.virgilsecurity.pythia.tracing.PythiaTracer;
+import com.virgilsecurity.pythia.tracing.SpanAttributes;
+import com.virgilsecurity.sdk.crypto.KeyPairType;
 import com.virgilsecurity.sdk.crypto.VirgilKeyPair;
 import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
 import com.virgilsecurity.sdk.jwt.TokenContext;
 import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
 /**
  * Pythia BrainKey.
  *
@@ -52,6 +81,16 @@ public class BrainKey {
   private PythiaClient client;
   private PythiaCrypto pythiaCrypto;
   private AccessTokenProvider accessTokenProvider;
+  private long operationTimeout;
+  private PythiaMetrics metrics;
+  private boolean timed;
+  private PythiaTracer tracer;
+  private boolean traced;
+  private BrainKeyCache cache;
+  private KeyPairType keyPairType;
+  private Executor keyGenerationExecutor;
+  private Executor seedRequestExecutor;
+  private boolean offloaded;
 
   /**
    * Create a new instance of {@link BrainKey}.
@@ -62,6 +101,16 @@ public class BrainKey {
     this.client = context.getPythiaClient();
     this.pythiaCrypto = context.getPythiaCrypto();
     this.accessTokenProvider = context.getAccessTokenProvider();
+    this.operationTimeout = context.getOperationTimeout();
+    this.metrics = context.getMetrics() != null ? context.getMetrics() : PythiaMetrics.NOOP;
+    this.timed = this.metrics != PythiaMetrics.NOOP;
+    this.tracer = context.getTracer() != null ? context.getTracer() : PythiaTracer.NOOP;
+    this.traced = this.tracer != PythiaTracer.NOOP;
+    this.cache = context.getCache();
+    this.keyPairType = context.getKeyPairType();
+    this.keyGenerationExecutor = context.getKeyGenerationExecutor();
+    this.seedRequestExecutor = context.getSeedRequestExecutor();
+    this.offloaded = isExpensive(this.keyPairType) && this.keyGenerationExecutor != null;
   }
 
   /**
@@ -93,12 +142,522 @@ public class BrainKey {
    */
   public VirgilKeyPair generateKeyPair(String password, String brainKeyId)
       throws CryptoException, VirgilPythiaServiceException {
-    String token = accessTokenProvider.getToken(new TokenContext("pythia", "seed", false))
-        .stringRepresentation();
-    BlindResult blindedResult = pythiaCrypto.blind(password);
-    byte[] seed = client.generateSeed(blindedResult.getBlindedPassword(), brainKeyId, token);
-    byte[] deblindedPassword = pythiaCrypto.deblind(seed, blindedResult.getBlindingSecret());
-    return pythiaCrypto.generateKeyPair(deblindedPassword);
+    return generateKeyPair(password, brainKeyId, newDeadline());
+  }
+
+  /**
+   * Generates key pair based on given password and brainkeyId within the given deadline.
+   *
+   * @param password   password from which key pair will be generated.
+   * @param brainKeyId brainKey identifier (in case one wants to generate several key pairs from 1
+   *                   password).
+   * @param deadline   the deadline of the operation.
+   *
+   * @return generated {@link VirgilKeyPair}.
+   *
+   * @throws CryptoException              if crypto operation failed.
+   * @throws PythiaTimeoutException       if deadline expired before operation completed.
+   * @throws VirgilPythiaServiceException if Pythia service returned an error.
+   */
+  public VirgilKeyPair generateKeyPair(final String password, final String brainKeyId,
+      final Deadline deadline) throws CryptoException, VirgilPythiaServiceException {
+    if (deadline == null) {
+      throw new IllegalArgumentException("Deadline should be set");
+    }
+    if (this.cache == null) {
+      return generateKeyPairUncached(password, brainKeyId, deadline);
+    }
+    return this.cache.get(password, brainKeyId, deadline, new BrainKeyCache.KeyPairLoader() {
+
+      @Override
+      public VirgilKeyPair load() throws CryptoException, VirgilPythiaServiceException {
+        return generateKeyPairUncached(password, brainKeyId, deadline);
+      }
+    });
+  }
+
+  private VirgilKeyPair generateKeyPairUncached(String password, String brainKeyId,
+      Deadline deadline) throws CryptoException, VirgilPythiaServiceException {
+    Operation operation = Operation.GENERATE_KEY_PAIR;
+    long start = operationStarted(operation);
+    PythiaSpan span = this.tracer.startSpan("generateKeyPair");
+    try {
+      String token = getToken(operation, span, deadline);
+      BlindResult blindedResult = blind(operation, span, password);
+      VirgilKeyPair keyPair = generateKeyPair(operation, null, span, token, blindedResult,
+          brainKeyId, deadline);
+
+      operationCompleted(operation, Outcome.SUCCESS, start, null);
+      return keyPair;
+    } catch (Exception e) {
+      operationCompleted(operation, Outcome.of(e), start, e);
+      spanFailed(span, e);
+      throw e;
+    } finally {
+      span.end();
+    }
+  }
+
+  /**
+   * Generates key pairs based on given password for several brainkeyIds.
+   *
+   * @param password    password from which key pairs will be generated.
+   * @param brainKeyIds brainKey identifiers.
+   *
+   * @return generated key pairs in the order of brainKey identifiers.
+   *
+   * @throws CryptoException              if crypto operation failed.
+   * @throws VirgilPythiaServiceException if Pythia service returned an error.
+   * 
+   * @see #generateKeyPairs(String, List, Deadline)
+   */
+  public List<VirgilKeyPair> generateKeyPairs(String password, List<String> brainKeyIds)
+      throws CryptoException, VirgilPythiaServiceException {
+    return generateKeyPairs(password, brainKeyIds, newDeadline());
+  }
+
+  /**
+   * Generates key pairs based on given password for several brainkeyIds within the given
+   * deadline. Password is blinded and access token is obtained once for all key pairs. If
+   * client is an {@link AsyncPythiaClient}, seeds are requested concurrently and every key pair
+   * is derived as soon as its seed is received. If a
+   * {@linkplain BrainKeyContext#getSeedRequestExecutor() seed request executor} is set, every
+   * seed of a blocking client is requested and its key pair is derived on that executor, so
+   * blocking calls of the client run in parallel. Otherwise seeds are requested one by one.
+   * Expensive key pairs (RSA) are derived on the
+   * {@linkplain BrainKeyContext#getKeyGenerationExecutor() key generation executor}.
+   * 
+   * <p>
+   * Reported to metrics as a single {@link Operation#GENERATE_KEY_PAIR} operation.
+   * </p>
+   *
+   * @param password    password from which key pairs will be generated.
+   * @param brainKeyIds brainKey identifiers.
+   * @param deadline    the deadline of the operation.
+   *
+   * @return generated key pairs in the order of brainKey identifiers.
+   *
+   * @throws CryptoException              if crypto operation failed.
+   * @throws PythiaTimeoutException       if deadline expired before operation completed.
+   * @throws VirgilPythiaServiceException if Pythia service returned an error.
+   */
+  public List<VirgilKeyPair> generateKeyPairs(String password, List<String> brainKeyIds,
+      Deadline deadline) throws CryptoException, VirgilPythiaServiceException {
+    if (brainKeyIds == null || brainKeyIds.isEmpty()) {
+      throw new IllegalArgumentException("BrainKey identifiers should not be empty");
+    }
+    if (deadline == null) {
+      throw new IllegalArgumentException("Deadline should be set");
+    }
+    if (this.cache == null) {
+      return generateKeyPairsUncached(password, brainKeyIds, deadline);
+    }
+
+    List<VirgilKeyPair> keyPairs = new ArrayList<>(brainKeyIds.size());
+    List<String> missingBrainKeyIds = new ArrayList<>();
+    for (String brainKeyId : brainKeyIds) {
+      VirgilKeyPair keyPair = this.cache.getIfPresent(password, brainKeyId);
+      keyPairs.add(keyPair);
+      if (keyPair == null) {
+        missingBrainKeyIds.add(brainKeyId);
+      }
+    }
+    if (missingBrainKeyIds.isEmpty()) {
+      return keyPairs;
+    }
+    Iterator<VirgilKeyPair> generatedKeyPairs = generateKeyPairsUncached(password,
+        missingBrainKeyIds, deadline).iterator();
+    for (int i = 0; i < keyPairs.size(); i++) {
+      if (keyPairs.get(i) == null) {
+        VirgilKeyPair keyPair = generatedKeyPairs.next();
+        this.cache.put(password, brainKeyIds.get(i), keyPair);
+        keyPairs.set(i, keyPair);
+      }
+    }
+    return keyPairs;
+  }
+
+  private List<VirgilKeyPair> generateKeyPairsUncached(String password, List<String> brainKeyIds,
+      Deadline deadline) throws CryptoException, VirgilPythiaServiceException {
+    Operation operation = Operation.GENERATE_KEY_PAIR;
+    long start = operationStarted(operation);
+    PythiaSpan span = this.tracer.startSpan("generateKeyPairs");
+    span.setAttribute(SpanAttributes.BATCH_SIZE, brainKeyIds.size());
+    try {
+      String token = getToken(operation, span, deadline);
+      BlindResult blindedResult = blind(operation, span, password);
+
+      List<VirgilKeyPair> keyPairs;
+      if (this.client instanceof AsyncPythiaClient) {
+        keyPairs = generateKeyPairsAsync((AsyncPythiaClient) this.client, operation, span, token,
+            blindedResult, brainKeyIds, deadline);
+      } else if (brainKeyIds.size() > 1
+          && (this.seedRequestExecutor != null || this.offloaded)) {
+        keyPairs = generateKeyPairsParallel(operation, span, token, blindedResult, brainKeyIds,
+            deadline);
+      } else {
+        keyPairs = new ArrayList<>(brainKeyIds.size());
+        for (String brainKeyId : brainKeyIds) {
+          keyPairs.add(generateKeyPair(operation, null, span, token, blindedResult, brainKeyId,
+              deadline));
+        }
+      }
+
+      operationCompleted(operation, Outcome.SUCCESS, start, null);
+      return keyPairs;
+    } catch (Exception e) {
+      operationCompleted(operation, Outcome.of(e), start, e);
+      spanFailed(span, e);
+      throw e;
+    } finally {
+      span.end();
+    }
+  }
+
+  private Deadline newDeadline() {
+    if (this.operationTimeout > 0) {
+      return Deadline.after(this.operationTimeout, TimeUnit.MILLISECONDS);
+    }
+    return Deadline.none();
+  }
+
+  private String getToken(Operation operation, PythiaSpan span, Deadline deadline)
+      throws CryptoException, PythiaTimeoutException {
+    long time = stageStarted();
+    PythiaSpan stageSpan = span.startChild("getToken", false);
+    try {
+      deadline.check("token acquisition");
+      String token = accessTokenProvider.getToken(new TokenContext("pythia", "seed", false))
+          .stringRepresentation();
+      deadline.check("token acquisition");
+      stageCompleted(operation, null, Stage.GET_TOKEN, time);
+      return token;
+    } catch (Exception e) {
+      spanFailed(stageSpan, e);
+      throw e;
+    } finally {
+      stageSpan.end();
+    }
+  }
+
+  private BlindResult blind(Operation operation, PythiaSpan span, String password) {
+    long time = stageStarted();
+    PythiaSpan stageSpan = span.startChild("blind", false);
+    try {
+      Object blindEvent = PythiaEvents.beginBlind();
+      BlindResult blindedResult = pythiaCrypto.blind(password);
+      PythiaEvents.endBlind(blindEvent, blindedResult.getBlindedPassword().length);
+      stageCompleted(operation, null, Stage.BLIND, time);
+      return blindedResult;
+    } catch (RuntimeException e) {
+      spanFailed(stageSpan, e);
+      throw e;
+    } finally {
+      stageSpan.end();
+    }
+  }
+
+  private VirgilKeyPair generateKeyPair(Operation operation, StageTimings timings,
+      PythiaSpan span, String token, BlindResult blindedResult, String brainKeyId,
+      Deadline deadline) throws CryptoException, VirgilPythiaServiceException {
+    byte[] seed = generateSeed(operation, timings, span, token, blindedResult, brainKeyId,
+        deadline);
+    return deriveKeyPair(operation, timings, span, seed, blindedResult);
+  }
+
+  private byte[] generateSeed(Operation operation, StageTimings timings, PythiaSpan span,
+      String token, BlindResult blindedResult, String brainKeyId, Deadline deadline)
+      throws VirgilPythiaServiceException {
+    long time = stageStarted();
+    PythiaSpan stageSpan = startSeedSpan(span);
+    byte[] seed;
+    try {
+      callStarted(stageSpan);
+      try {
+        seed = client.generateSeed(blindedResult.getBlindedPassword(), brainKeyId, token,
+            deadline);
+      } finally {
+        callCompleted(operation, timings);
+      }
+      deadline.check("generate seed");
+      stageCompleted(operation, timings, Stage.GENERATE_SEED, time);
+    } catch (Exception e) {
+      spanFailed(stageSpan, e);
+      throw e;
+    } finally {
+      stageSpan.end();
+    }
+    return seed;
+  }
+
+  /**
+   * Request seeds of a blocking client and derive key pairs on the seed request executor, so seed
+   * requests of all key pairs run in parallel. Without the seed request executor, seeds are
+   * requested one by one and key pairs are derived on the key generation executor, so derivation
+   * of a key pair overlaps with requests of the following seeds.
+   */
+  private List<VirgilKeyPair> generateKeyPairsParallel(final Operation operation,
+      final PythiaSpan span, final String token, final BlindResult blindedResult,
+      List<String> brainKeyIds, final Deadline deadline)
+      throws CryptoException, VirgilPythiaServiceException {
+    List<CompletableFuture<VirgilKeyPair>> futures = new ArrayList<>(brainKeyIds.size());
+    List<StageTimings> stageTimings = new ArrayList<>(brainKeyIds.size());
+    try {
+      for (final String brainKeyId : brainKeyIds) {
+        final StageTimings timings = this.timed ? new StageTimings() : null;
+        stageTimings.add(timings);
+        if (this.seedRequestExecutor == null) {
+          final byte[] seed = generateSeed(operation, null, span, token, blindedResult,
+              brainKeyId, deadline);
+          futures.add(CompletableFuture.supplyAsync(new Supplier<VirgilKeyPair>() {
+
+            @Override
+            public VirgilKeyPair get() {
+              try {
+                return deriveKeyPair(operation, timings, span, seed, blindedResult);
+              } catch (CryptoException e) {
+                throw new CompletionException(e);
+              }
+            }
+          }, this.keyGenerationExecutor));
+          continue;
+        }
+        futures.add(CompletableFuture.supplyAsync(new Supplier<VirgilKeyPair>() {
+
+          @Override
+          public VirgilKeyPair get() {
+            try {
+              return generateKeyPair(operation, timings, span, token, blindedResult, brainKeyId,
+                  deadline);
+            } catch (CryptoException | VirgilPythiaServiceException e) {
+              throw new CompletionException(e);
+            }
+          }
+        }, this.seedRequestExecutor));
+      }
+
+      List<VirgilKeyPair> keyPairs = new ArrayList<>(futures.size());
+      for (int i = 0; i < futures.size(); i++) {
+        keyPairs.add(await(futures.get(i), deadline, "generate key pair"));
+        stagesCompleted(operation, stageTimings.get(i));
+      }
+      return keyPairs;
+    } finally {
+      for (CompletableFuture<VirgilKeyPair> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private List<VirgilKeyPair> generateKeyPairsAsync(AsyncPythiaClient asyncClient,
+      final Operation operation, final PythiaSpan span, String token,
+      final BlindResult blindedResult, List<String> brainKeyIds, Deadline deadline)
+      throws CryptoException, VirgilPythiaServiceException {
+    final long time = stageStarted();
+    List<CompletableFuture<VirgilKeyPair>> futures = new ArrayList<>(brainKeyIds.size());
+    List<StageTimings> stageTimings = new ArrayList<>(brainKeyIds.size());
+    for (String brainKeyId : brainKeyIds) {
+      final PythiaSpan stageSpan = startSeedSpan(span);
+      final StageTimings timings = this.timed ? new StageTimings() : null;
+      stageTimings.add(timings);
+      CompletableFuture<byte[]> seedFuture;
+      callStarted(stageSpan);
+      try {
+        seedFuture = asyncClient.generateSeedAsync(blindedResult.getBlindedPassword(), brainKeyId,
+            token, deadline);
+      } finally {
+        callCompleted(operation, null);
+      }
+      BiFunction<byte[], Throwable, VirgilKeyPair> derivation;
+      derivation = new BiFunction<byte[], Throwable, VirgilKeyPair>() {
+
+        @Override
+        public VirgilKeyPair apply(byte[] seed, Throwable error) {
+          if (error != null) {
+            spanFailed(stageSpan, error);
+            stageSpan.end();
+            throw error instanceof CompletionException ? (CompletionException) error
+                : new CompletionException(error);
+          }
+          stageCompleted(operation, timings, Stage.GENERATE_SEED, time);
+          stageSpan.end();
+          try {
+            return deriveKeyPair(operation, timings, span, seed, blindedResult);
+          } catch (CryptoException e) {
+            throw new CompletionException(e);
+          }
+        }
+      };
+      if (this.offloaded) {
+        // Don't block threads of the client with expensive derivation
+        futures.add(seedFuture.handleAsync(derivation, this.keyGenerationExecutor));
+      } else {
+        futures.add(seedFuture.handle(derivation));
+      }
+    }
+
+    List<VirgilKeyPair> keyPairs = new ArrayList<>(futures.size());
+    try {
+      for (int i = 0; i < futures.size(); i++) {
+        keyPairs.add(await(futures.get(i), deadline, "generate seed"));
+        stagesCompleted(operation, stageTimings.get(i));
+      }
+    } finally {
+      for (CompletableFuture<VirgilKeyPair> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return keyPairs;
+  }
+
+  private VirgilKeyPair deriveKeyPair(Operation operation, StageTimings timings, PythiaSpan span,
+      byte[] seed, BlindResult blindedResult) throws CryptoException {
+    long time = stageStarted();
+    PythiaSpan stageSpan = span.startChild("deblind", false);
+    try {
+      Object deblindEvent = PythiaEvents.beginDeblind();
+      byte[] deblindedPassword = pythiaCrypto.deblind(seed, blindedResult.getBlindingSecret());
+      PythiaEvents.endDeblind(deblindEvent, seed.length);
+      time = stageCompleted(operation, timings, Stage.DEBLIND, time);
+      stageSpan.end();
+
+      stageSpan = span.startChild("generateKeyPair", false);
+      VirgilKeyPair keyPair = pythiaCrypto.generateKeyPair(this.keyPairType, deblindedPassword);
+      stageCompleted(operation, timings, Stage.GENERATE_KEY_PAIR, time);
+      return keyPair;
+    } catch (Exception e) {
+      spanFailed(stageSpan, e);
+      throw e;
+    } finally {
+      stageSpan.end();
+    }
+  }
+
+  /**
+   * Check if deterministic generation of key pairs of the given type is expensive enough to be
+   * offloaded from the calling thread.
+   */
+  static boolean isExpensive(KeyPairType keyPairType) {
+    return keyPairType != null && keyPairType.name().startsWith("RSA");
+  }
+
+  private static PythiaSpan startSeedSpan(PythiaSpan span) {
+    PythiaSpan stageSpan = span.startChild("generateSeed", true);
+    stageSpan.setAttribute(SpanAttributes.ENDPOINT, "generateSeed");
+    return stageSpan;
+  }
+
+  /**
+   * Wait for a result of an asynchronous stage within the deadline.
+   */
+  static <T> T await(CompletableFuture<T> future, Deadline deadline, String stage)
+      throws CryptoException, VirgilPythiaServiceException {
+    try {
+      if (deadline.isBounded()) {
+        return future.get(Math.max(deadline.timeRemaining(TimeUnit.NANOSECONDS), 0L),
+            TimeUnit.NANOSECONDS);
+      }
+      return future.get();
+    } catch (TimeoutException e) {
+      throw new PythiaTimeoutException(stage, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new VirgilPythiaServiceException("BrainKey -> " + stage + " was interrupted", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof VirgilPythiaServiceException) {
+        throw (VirgilPythiaServiceException) cause;
+      }
+      if (cause instanceof CryptoException) {
+        throw (CryptoException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new VirgilPythiaServiceException("BrainKey -> " + stage + " failed", cause);
+    }
+  }
+
+  private long operationStarted(Operation operation) {
+    if (!this.timed) {
+      return 0L;
+    }
+    this.metrics.operationStarted(operation);
+    return System.nanoTime();
+  }
+
+  private long stageStarted() {
+    return this.timed ? System.nanoTime() : 0L;
+  }
+
+  private long stageCompleted(Operation operation, StageTimings timings, Stage stage,
+      long stageStart) {
+    if (!this.timed) {
+      return 0L;
+    }
+    long now = System.nanoTime();
+    if (timings != null) {
+      timings.add(stage, now - stageStart);
+    } else {
+      this.metrics.stageCompleted(operation, stage, now - stageStart);
+    }
+    return now;
+  }
+
+  /**
+   * Report stages which ran on another thread on the calling thread, which completes the
+   * operation.
+   */
+  private void stagesCompleted(Operation operation, StageTimings timings) {
+    if (timings != null) {
+      timings.report(this.metrics, operation);
+    }
+  }
+
+  private void callStarted(PythiaSpan span) {
+    if (this.timed) {
+      HttpCallTimings.start();
+    }
+    if (this.traced) {
+      Map<String, String> headers = new HashMap<>();
+      span.inject(headers);
+      HttpCallHeaders.set(headers);
+    }
+  }
+
+  private void callCompleted(Operation operation, StageTimings stageTimings) {
+    if (this.traced) {
+      HttpCallHeaders.clear();
+    }
+    if (!this.timed) {
+      return;
+    }
+    HttpCallTimings timings = HttpCallTimings.stop();
+    if (timings == null) {
+      return;
+    }
+    if (stageTimings != null) {
+      stageTimings.add(Stage.CONNECT, timings.getConnectNanos());
+      stageTimings.add(Stage.WRITE_REQUEST, timings.getWriteNanos());
+      stageTimings.add(Stage.SERVER, timings.getServerNanos());
+      stageTimings.add(Stage.READ_RESPONSE, timings.getReadNanos());
+    } else {
+      this.metrics.stageCompleted(operation, Stage.CONNECT, timings.getConnectNanos());
+      this.metrics.stageCompleted(operation, Stage.WRITE_REQUEST, timings.getWriteNanos());
+      this.metrics.stageCompleted(operation, Stage.SERVER, timings.getServerNanos());
+      this.metrics.stageCompleted(operation, Stage.READ_RESPONSE, timings.getReadNanos());
+    }
+  }
+
+  private void operationCompleted(Operation operation, Outcome outcome, long start,
+      Throwable error) {
+    if (this.timed) {
+      this.metrics.operationCompleted(operation, outcome, 0, System.nanoTime() - start, error);
+    }
+  }
+
+  private static void spanFailed(PythiaSpan span, Throwable error) {
+    span.recordError(error);
   }
 
   /**
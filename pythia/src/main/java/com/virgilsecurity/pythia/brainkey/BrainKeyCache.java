@@ -0,0 +1,471 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.brainkey;
+
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+import com.virgilsecurity.sdk.crypto.VirgilCrypto;
+import com.virgilsecurity.sdk.crypto.VirgilKeyPair;
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Bounded cache of BrainKey key pairs.
+ * 
+ * <p>
+ * Entries are keyed by HMAC-SHA256 of password and brainKey identifier under a random key which
+ * never leaves the cache, so neither passwords nor their unkeyed hashes are kept in memory.
+ * Private keys are kept exported, every cache hit imports a new key pair, so key pairs returned
+ * to callers are never released by the cache. Exported keys are overwritten with zeros when an
+ * entry expires, is evicted or is invalidated. Least recently used entries are evicted when the
+ * cache is full.
+ * </p>
+ * 
+ * <p>
+ * Concurrent requests of the same key pair are collapsed: only one of them generates the key
+ * pair, and the others wait for it to be cached and import their own copies. A key pair which is
+ * invalidated while it is being generated is not cached.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class BrainKeyCache {
+
+  private static final String HMAC_ALGORITHM = "HmacSHA256";
+  private static final int HMAC_KEY_LENGTH = 32;
+
+  private final int maxSize;
+  private final long ttlNanos;
+  private final VirgilCrypto crypto;
+  private final SecretKeySpec hashKey;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final LinkedHashMap<ByteBuffer, Entry> entries;
+  private final Map<ByteBuffer, CompletableFuture<Void>> loading;
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+
+  private BrainKeyCache(int maxSize, long ttlNanos, VirgilCrypto crypto) {
+    this.maxSize = maxSize;
+    this.ttlNanos = ttlNanos;
+    this.crypto = crypto;
+    byte[] keyData = new byte[HMAC_KEY_LENGTH];
+    new SecureRandom().nextBytes(keyData);
+    this.hashKey = new SecretKeySpec(keyData, HMAC_ALGORITHM);
+    Arrays.fill(keyData, (byte) 0);
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.loading = new HashMap<>();
+  }
+
+  /**
+   * Remove cached key pair.
+   * 
+   * @param password
+   *          the password which key pair was generated from.
+   * @param brainKeyId
+   *          the brainKey identifier, or {@code null} for the default key pair.
+   */
+  public void invalidate(String password, String brainKeyId) {
+    ByteBuffer key = hash(password, brainKeyId);
+    lock.lock();
+    try {
+      Entry entry = this.entries.remove(key);
+      if (entry != null) {
+        entry.zeroize();
+      }
+      // A key pair which is being generated won't be cached
+      this.loading.remove(key);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Remove all cached key pairs.
+   */
+  public void invalidateAll() {
+    lock.lock();
+    try {
+      for (Entry entry : this.entries.values()) {
+        entry.zeroize();
+      }
+      this.entries.clear();
+      this.loading.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get the number of cached key pairs, including expired ones which are not removed yet.
+   * 
+   * @return the number of cached key pairs.
+   */
+  public int getSize() {
+    lock.lock();
+    try {
+      return this.entries.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get the number of requests served from the cache or by a concurrent identical request.
+   * 
+   * @return the number of hits.
+   */
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * Get the number of requests which generated a key pair.
+   * 
+   * @return the number of misses.
+   */
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * Get cached key pair, or generate it with the loader. Concurrent calls for the same key pair
+   * wait until the first one caches it, and import their own copies.
+   */
+  VirgilKeyPair get(String password, String brainKeyId, Deadline deadline, KeyPairLoader loader)
+      throws CryptoException, VirgilPythiaServiceException {
+    ByteBuffer key = hash(password, brainKeyId);
+    while (true) {
+      CompletableFuture<Void> flight;
+      boolean leader = false;
+      byte[] keyData;
+      lock.lock();
+      try {
+        keyData = cachedKeyData(key);
+        flight = this.loading.get(key);
+        if (keyData == null && flight == null) {
+          flight = new CompletableFuture<>();
+          this.loading.put(key, flight);
+          leader = true;
+        }
+      } finally {
+        lock.unlock();
+      }
+
+      if (keyData != null) {
+        this.hitCount.increment();
+        return importKeyPair(keyData);
+      }
+      if (leader) {
+        return load(key, flight, loader);
+      }
+      // The key pair is cached by now, unless it was invalidated or evicted meanwhile
+      BrainKey.await(flight, deadline, "key pair generation");
+    }
+  }
+
+  private VirgilKeyPair load(ByteBuffer key, CompletableFuture<Void> flight,
+      KeyPairLoader loader) throws CryptoException, VirgilPythiaServiceException {
+    this.missCount.increment();
+    try {
+      VirgilKeyPair keyPair = loader.load();
+      Entry entry = newEntry(keyPair);
+      lock.lock();
+      try {
+        if (this.loading.remove(key, flight)) {
+          insert(key, entry);
+        } else {
+          // Invalidated while the key pair was generated
+          entry.zeroize();
+        }
+      } finally {
+        lock.unlock();
+      }
+      flight.complete(null);
+      return keyPair;
+    } catch (Exception e) {
+      lock.lock();
+      try {
+        this.loading.remove(key, flight);
+      } finally {
+        lock.unlock();
+      }
+      flight.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Get cached key pair.
+   * 
+   * @return the key pair, or {@code null} if it is not cached.
+   */
+  VirgilKeyPair getIfPresent(String password, String brainKeyId) throws CryptoException {
+    ByteBuffer key = hash(password, brainKeyId);
+    byte[] keyData;
+    lock.lock();
+    try {
+      keyData = cachedKeyData(key);
+    } finally {
+      lock.unlock();
+    }
+    if (keyData == null) {
+      this.missCount.increment();
+      return null;
+    }
+    this.hitCount.increment();
+    return importKeyPair(keyData);
+  }
+
+  /**
+   * Cache key pair.
+   */
+  void put(String password, String brainKeyId, VirgilKeyPair keyPair) throws CryptoException {
+    put(hash(password, brainKeyId), keyPair);
+  }
+
+  private void put(ByteBuffer key, VirgilKeyPair keyPair) throws CryptoException {
+    Entry entry = newEntry(keyPair);
+    lock.lock();
+    try {
+      insert(key, entry);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Entry newEntry(VirgilKeyPair keyPair) throws CryptoException {
+    return new Entry(this.crypto.exportPrivateKey(keyPair.getPrivateKey()),
+        System.nanoTime() + this.ttlNanos);
+  }
+
+  /**
+   * Cache entry and evict entries above the maximum size. Should be called under lock.
+   */
+  private void insert(ByteBuffer key, Entry entry) {
+    Entry previous = this.entries.put(key, entry);
+    if (previous != null) {
+      previous.zeroize();
+    }
+    if (this.entries.size() > this.maxSize) {
+      removeExpired();
+    }
+    Iterator<Entry> iterator = this.entries.values().iterator();
+    while (this.entries.size() > this.maxSize) {
+      Entry eldest = iterator.next();
+      iterator.remove();
+      eldest.zeroize();
+    }
+  }
+
+  /**
+   * Get a copy of cached private key. Should be called under lock.
+   */
+  private byte[] cachedKeyData(ByteBuffer key) {
+    Entry entry = this.entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.isExpired(System.nanoTime())) {
+      this.entries.remove(key);
+      entry.zeroize();
+      return null;
+    }
+    return entry.keyData.clone();
+  }
+
+  private void removeExpired() {
+    long now = System.nanoTime();
+    Iterator<Entry> iterator = this.entries.values().iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (entry.isExpired(now)) {
+        iterator.remove();
+        entry.zeroize();
+      }
+    }
+  }
+
+  private VirgilKeyPair importKeyPair(byte[] keyData) throws CryptoException {
+    try {
+      return this.crypto.importPrivateKey(keyData);
+    } finally {
+      Arrays.fill(keyData, (byte) 0);
+    }
+  }
+
+  private ByteBuffer hash(String password, String brainKeyId) {
+    if (password == null) {
+      throw new IllegalArgumentException("Password should be set");
+    }
+    byte[] passwordData = password.getBytes(StandardCharsets.UTF_8);
+    try {
+      Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+      mac.init(this.hashKey);
+      mac.update(ByteBuffer.allocate(4).putInt(passwordData.length).array());
+      mac.update(passwordData);
+      if (brainKeyId != null) {
+        mac.update(brainKeyId.getBytes(StandardCharsets.UTF_8));
+      } else {
+        // Distinguishes default key pair from the one with empty identifier
+        mac.update((byte) 0xFF);
+      }
+      return ByteBuffer.wrap(mac.doFinal());
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Cache key couldn't be computed", e);
+    } finally {
+      Arrays.fill(passwordData, (byte) 0);
+    }
+  }
+
+  /**
+   * Generates a key pair on cache miss.
+   */
+  interface KeyPairLoader {
+    VirgilKeyPair load() throws CryptoException, VirgilPythiaServiceException;
+  }
+
+  private static final class Entry {
+
+    private final byte[] keyData;
+    private final long expiresAt;
+
+    private Entry(byte[] keyData, long expiresAt) {
+      this.keyData = keyData;
+      this.expiresAt = expiresAt;
+    }
+
+    private boolean isExpired(long now) {
+      return now - this.expiresAt >= 0;
+    }
+
+    private void zeroize() {
+      Arrays.fill(this.keyData, (byte) 0);
+    }
+  }
+
+  /**
+   * Builder for {@link BrainKeyCache}.
+   * 
+   * @author Andrii Iakovenko
+   *
+   */
+  public static class Builder {
+
+    private int maxSize;
+    private long ttlNanos;
+    private VirgilCrypto crypto;
+
+    /**
+     * Build {@linkplain BrainKeyCache}.
+     * 
+     * @return the built {@linkplain BrainKeyCache}.
+     */
+    public BrainKeyCache build() {
+      if (this.maxSize <= 0) {
+        throw new IllegalArgumentException("Max size should be set");
+      }
+      if (this.ttlNanos <= 0) {
+        throw new IllegalArgumentException("Time to live should be set");
+      }
+      VirgilCrypto crypto = this.crypto;
+      if (crypto == null) {
+        crypto = new VirgilCrypto();
+      }
+      return new BrainKeyCache(this.maxSize, this.ttlNanos, crypto);
+    }
+
+    /**
+     * Set the maximum number of cached key pairs.
+     * 
+     * @param maxSize
+     *          the maximum number of key pairs.
+     * @return this builder instance.
+     */
+    public Builder setMaxSize(int maxSize) {
+      if (maxSize <= 0) {
+        throw new IllegalArgumentException("Max size should be positive");
+      }
+      this.maxSize = maxSize;
+      return this;
+    }
+
+    /**
+     * Set the time a key pair stays in the cache after it was generated.
+     * 
+     * @param ttl
+     *          the time to live.
+     * @param unit
+     *          the time unit of the time to live.
+     * @return this builder instance.
+     */
+    public Builder setTtl(long ttl, TimeUnit unit) {
+      if (ttl <= 0) {
+        throw new IllegalArgumentException("Time to live should be positive");
+      }
+      this.ttlNanos = unit.toNanos(ttl);
+      return this;
+    }
+
+    /**
+     * Set Virgil Crypto which exports and imports cached private keys.
+     * 
+     * @param crypto
+     *          the Virgil Crypto to set.
+     * @return this builder instance.
+     */
+    public Builder setCrypto(VirgilCrypto crypto) {
+      this.crypto = crypto;
+      return this;
+    }
+
+  }
+
+}
@@ -33,11 +33,17 @@
 
 package com.virgilsecurity.pythia.brainkey;
 
+import com.virgilsecurity.pythia.Deadline;
 import com.virgilsecurity.pythia.client.PythiaClient;
 import com.virgilsecurity.pythia.crypto.PythiaCrypto;
+import com.virgilsecurity.pythia.metrics.PythiaMetrics;
+import com.virgilsecurity.pythia.tracing.PythiaTracer;
 import com.virgilsecurity.sdk.crypto.KeyPairType;
 import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * This class stores BrainKey configuration.
  * 
@@ -54,6 +60,15 @@ public class BrainKeyContext {
 
   private KeyPairType keyPairType;
 
+  private long operationTimeout;
+
+  private PythiaMetrics metrics;
+
+  private PythiaTracer tracer;
+  private BrainKeyCache cache;
+  private Executor keyGenerationExecutor;
+  private Executor seedRequestExecutor;
+
   /**
    * Create a new instance of {@link BrainKeyContext}.
    *
@@ -65,14 +80,35 @@ public class BrainKeyContext {
    *          the access token provider.
    * @param keyPairType
    *          the key type.
+   * @param operationTimeout
+   *          the operation timeout in milliseconds.
+   * @param metrics
+   *          the listener of operation timings.
+   * @param tracer
+   *          the tracer of operations.
+   * @param cache
+   *          the cache of key pairs, or {@code null} if key pairs are not cached.
+   * @param keyGenerationExecutor
+   *          the executor of expensive key pair derivations.
+   * @param seedRequestExecutor
+   *          the executor of blocking seed requests, or {@code null} if seeds are requested one
+   *          by one.
    */
   private BrainKeyContext(PythiaCrypto pythiaCrypto, PythiaClient pythiaClient,
-      AccessTokenProvider accessTokenProvider, KeyPairType keyPairType) {
+      AccessTokenProvider accessTokenProvider, KeyPairType keyPairType, long operationTimeout,
+      PythiaMetrics metrics, PythiaTracer tracer, BrainKeyCache cache,
+      Executor keyGenerationExecutor, Executor seedRequestExecutor) {
     super();
     this.pythiaClient = pythiaClient;
     this.pythiaCrypto = pythiaCrypto;
     this.accessTokenProvider = accessTokenProvider;
     this.keyPairType = keyPairType;
+    this.operationTimeout = operationTimeout;
+    this.metrics = metrics;
+    this.tracer = tracer;
+    this.cache = cache;
+    this.keyGenerationExecutor = keyGenerationExecutor;
+    this.seedRequestExecutor = seedRequestExecutor;
   }
 
   /**
@@ -86,6 +122,12 @@ public class BrainKeyContext {
     private PythiaClient pythiaClient;
     private AccessTokenProvider accessTokenProvider;
     private KeyPairType keyPairType;
+    private long operationTimeout;
+    private PythiaMetrics metrics;
+    private PythiaTracer tracer;
+    private BrainKeyCache cache;
+    private Executor keyGenerationExecutor;
+    private Executor seedRequestExecutor;
 
     /**
      * Create a new instance of {@link BrainKeyContext.Builder}.
@@ -93,6 +135,9 @@ public class BrainKeyContext {
      */
     public Builder() {
       keyPairType = KeyPairType.ED25519;
+      metrics = PythiaMetrics.NOOP;
+      tracer = PythiaTracer.NOOP;
+      keyGenerationExecutor = ForkJoinPool.commonPool();
     }
 
     /**
@@ -117,7 +162,9 @@ public class BrainKeyContext {
         throw new IllegalArgumentException("Default key type should be set");
       }
 
-      return new BrainKeyContext(pythiaCrypto, pythiaClient, accessTokenProvider, keyPairType);
+      return new BrainKeyContext(pythiaCrypto, pythiaClient, accessTokenProvider, keyPairType,
+          operationTimeout, metrics, tracer, cache, keyGenerationExecutor,
+          seedRequestExecutor);
     }
 
     /**
@@ -158,7 +205,9 @@ public class BrainKeyContext {
     }
 
     /**
-     * Set key type.
+     * Set key type. Deterministic generation of RSA key pairs is orders of magnitude slower than
+     * generation of elliptic curve key pairs, so it is offloaded to the
+     * {@linkplain #setKeyGenerationExecutor(Executor) key generation executor}.
      * 
      * @param keyPairType
      *          the key type to set
@@ -169,6 +218,105 @@ public class BrainKeyContext {
       return this;
     }
 
+    /**
+     * Set the default time budget of a key pair generation. It is used by operations which are
+     * called without an explicit {@link Deadline}.
+     * 
+     * @param operationTimeout
+     *          the operation timeout in milliseconds. Zero means no timeout.
+     * @return this builder instance.
+     */
+    public Builder setOperationTimeout(long operationTimeout) {
+      if (operationTimeout < 0) {
+        throw new IllegalArgumentException("Operation timeout should not be negative");
+      }
+      this.operationTimeout = operationTimeout;
+      return this;
+    }
+
+    /**
+     * Set the listener of key pair generation timings. By default timings are not collected.
+     * 
+     * @param metrics
+     *          the Pythia metrics to set.
+     * @return this builder instance.
+     */
+    public Builder setMetrics(PythiaMetrics metrics) {
+      if (metrics == null) {
+        throw new IllegalArgumentException("Metrics should be set");
+      }
+      this.metrics = metrics;
+      return this;
+    }
+
+    /**
+     * Set the tracer of key pair generation. By default key pair generation is not traced.
+     * 
+     * @param tracer
+     *          the Pythia tracer to set.
+     * @return this builder instance.
+     */
+    public Builder setTracer(PythiaTracer tracer) {
+      if (tracer == null) {
+        throw new IllegalArgumentException("Tracer should be set");
+      }
+      this.tracer = tracer;
+      return this;
+    }
+
+    /**
+     * Set the cache of generated key pairs. Key pairs are not cached by default. A cache should
+     * not be shared by contexts with different key pair types.
+     * 
+     * @param cache
+     *          the cache to set.
+     * @return this builder instance.
+     */
+    public Builder setCache(BrainKeyCache cache) {
+      if (cache == null) {
+        throw new IllegalArgumentException("Cache should be set");
+      }
+      this.cache = cache;
+      return this;
+    }
+
+    /**
+     * Set the executor of expensive key pair derivations (RSA key pairs). When several key pairs
+     * are generated at once, they are derived on this executor in parallel, and derivation
+     * doesn't block threads of an asynchronous Pythia client. Tasks on this executor are CPU-bound
+     * and never block. Defaults to the common fork-join pool.
+     * 
+     * @param keyGenerationExecutor
+     *          the executor to set.
+     * @return this builder instance.
+     */
+    public Builder setKeyGenerationExecutor(Executor keyGenerationExecutor) {
+      if (keyGenerationExecutor == null) {
+        throw new IllegalArgumentException("Key generation executor should be set");
+      }
+      this.keyGenerationExecutor = keyGenerationExecutor;
+      return this;
+    }
+
+    /**
+     * Set the executor of blocking seed requests. When several key pairs are generated at once
+     * with a blocking Pythia client, seed of every key pair is requested and its key pair is
+     * derived on this executor, so the requests run in parallel. The executor runs blocking
+     * network calls, so it should be dedicated to them. Not set by default, so seeds of a
+     * blocking client are requested one by one.
+     * 
+     * @param seedRequestExecutor
+     *          the executor to set.
+     * @return this builder instance.
+     */
+    public Builder setSeedRequestExecutor(Executor seedRequestExecutor) {
+      if (seedRequestExecutor == null) {
+        throw new IllegalArgumentException("Seed request executor should be set");
+      }
+      this.seedRequestExecutor = seedRequestExecutor;
+      return this;
+    }
+
   }
 
   /**
@@ -206,4 +354,58 @@ public class BrainKeyContext {
   public KeyPairType getKeyPairType() {
     return keyPairType;
   }
+
+  /**
+   * Get the default time budget of a key pair generation.
+   * 
+   * @return the operation timeout in milliseconds. Zero means no timeout.
+   */
+  public long getOperationTimeout() {
+    return operationTimeout;
+  }
+
+  /**
+   * Get the listener of key pair generation timings.
+   * 
+   * @return the Pythia metrics.
+   */
+  public PythiaMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Get the tracer of key pair generation.
+   * 
+   * @return the Pythia tracer.
+   */
+  public PythiaTracer getTracer() {
+    return tracer;
+  }
+
+  /**
+   * Get the cache of generated key pairs.
+   * 
+   * @return the cache, or {@code null} if key pairs are not cached.
+   */
+  public BrainKeyCache getCache() {
+    return cache;
+  }
+
+  /**
+   * Get the executor of expensive key pair derivations.
+   * 
+   * @return the key generation executor.
+   */
+  public Executor getKeyGenerationExecutor() {
+    return keyGenerationExecutor;
+  }
+
+  /**
+   * Get the executor of blocking seed requests.
+   * 
+   * @return the seed request executor, or {@code null} if seeds are requested one by one.
+   */
+  public Executor getSeedRequestExecutor() {
+    return seedRequestExecutor;
+  }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.model.TransformResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link PriorityPythiaClient} of an {@link AsyncPythiaClient}. Asynchronous calls wait for a
+ * permit in the same queues as blocking calls without blocking the calling thread.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+final class AsyncPriorityPythiaClient extends PriorityPythiaClient implements AsyncPythiaClient {
+
+  private final AsyncPythiaClient asyncClient;
+
+  AsyncPriorityPythiaClient(Builder builder) {
+    super(builder);
+    this.asyncClient = (AsyncPythiaClient) getClient();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.AsyncPythiaClient#transformPasswordAsync(byte[],
+   * byte[], java.lang.Integer, boolean, java.lang.String, com.virgilsecurity.pythia.Deadline)
+   */
+  @Override
+  public CompletableFuture<TransformResponse> transformPasswordAsync(final byte[] salt,
+      final byte[] blindedPassword, final Integer version, final boolean includeProof,
+      final String token, final Deadline deadline) {
+    return schedule(deadline, new PendingCall<TransformResponse>() {
+
+      @Override
+      CompletableFuture<TransformResponse> start() {
+        return asyncClient.transformPasswordAsync(salt, blindedPassword, version, includeProof,
+            token, deadline);
+      }
+    });
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.AsyncPythiaClient#generateSeedAsync(byte[],
+   * java.lang.String, java.lang.String, com.virgilsecurity.pythia.Deadline)
+   */
+  @Override
+  public CompletableFuture<byte[]> generateSeedAsync(final byte[] blindedPassword,
+      final String brainKeyId, final String token, final Deadline deadline) {
+    return schedule(deadline, new PendingCall<byte[]>() {
+
+      @Override
+      CompletableFuture<byte[]> start() {
+        return asyncClient.generateSeedAsync(blindedPassword, brainKeyId, token, deadline);
+      }
+    });
+  }
+
+}
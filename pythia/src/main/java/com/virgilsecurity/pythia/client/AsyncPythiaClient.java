@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link PythiaClient} which is able to execute Pythia service calls asynchronously.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public interface AsyncPythiaClient extends PythiaClient {
+
+  /**
+   * Make asynchronous call to Pythia service to transform password.
+   *
+   * @param salt The salt.
+   * @param blindedPassword The blinded password.
+   * @param version The key version.
+   * @param includeProof Set this flag to {@code true} if you need proof data in request.
+   * @param token The authorization token.
+   * @param deadline The deadline of the call.
+   *
+   * @return The future which is completed with the plain model representing response from Pythia
+   *         server, or exceptionally with {@link VirgilPythiaServiceException}.
+   */
+  CompletableFuture<TransformResponse> transformPasswordAsync(byte[] salt,
+                                                              byte[] blindedPassword,
+                                                              Integer version,
+                                                              boolean includeProof,
+                                                              String token,
+                                                              Deadline deadline);
+
+  /**
+   * Make asynchronous call to Pythia service to generate seed using given blinded password and
+   * brainkey id.
+   *
+   * @param blindedPassword Blinded password.
+   * @param brainKeyId Brainkey id.
+   * @param token Authorization token.
+   * @param deadline The deadline of the call.
+   *
+   * @return The future which is completed with generated seed, or exceptionally with
+   *         {@link VirgilPythiaServiceException}.
+   */
+  CompletableFuture<byte[]> generateSeedAsync(byte[] blindedPassword, String brainKeyId,
+      String token, Deadline deadline);
+}
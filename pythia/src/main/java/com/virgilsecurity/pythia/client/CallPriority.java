@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+/**
+ * Priority of calls to Pythia service made by the calling thread. Priority is set with
+ * {@link #set(Priority)} before a call and removed with {@link #clear()} after it. It is used by
+ * {@link PriorityPythiaClient} to schedule the call. This class is internal to the SDK.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class CallPriority {
+
+  private static final ThreadLocal<Priority> CURRENT = new ThreadLocal<>();
+
+  private CallPriority() {
+  }
+
+  /**
+   * Set priority of the next calls on the current thread.
+   * 
+   * @param priority
+   *          the priority.
+   */
+  public static void set(Priority priority) {
+    CURRENT.set(priority);
+  }
+
+  /**
+   * Remove priority set on the current thread.
+   */
+  public static void clear() {
+    CURRENT.remove();
+  }
+
+  /**
+   * Get priority which is set on the current thread.
+   * 
+   * @return the priority, or {@code null} if it is not set.
+   */
+  static Priority get() {
+    return CURRENT.get();
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+import java.util.Map;
+
+/**
+ * Extra headers which Pythia clients add to HTTP requests sent by the calling thread. Headers are
+ * set with {@link #set(Map)} before a call and removed with {@link #clear()} after it. It is used
+ * to propagate trace context to Pythia service. This class is internal to the SDK.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class HttpCallHeaders {
+
+  private static final ThreadLocal<Map<String, String>> CURRENT = new ThreadLocal<>();
+
+  private HttpCallHeaders() {
+  }
+
+  /**
+   * Set headers of the next HTTP calls on the current thread.
+   * 
+   * @param headers
+   *          the headers.
+   */
+  public static void set(Map<String, String> headers) {
+    CURRENT.set(headers);
+  }
+
+  /**
+   * Remove headers set on the current thread.
+   */
+  public static void clear() {
+    CURRENT.remove();
+  }
+
+  /**
+   * Get headers which are set on the current thread.
+   * 
+   * @return the headers, or {@code null} if they are not set.
+   */
+  static Map<String, String> get() {
+    return CURRENT.get();
+  }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+/**
+ * Timings of HTTP call phases collected by blocking calls of {@link VirgilPythiaClient} and of
+ * the HTTP/2 client on Java 11+ for the calling thread.
+ * Collection is started with {@link #start()} before a call and finished with {@link #stop()}
+ * after it, so threads which don't ask for timings don't pay for them. This class is internal to
+ * the SDK.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class HttpCallTimings {
+
+  private static final ThreadLocal<HttpCallTimings> CURRENT = new ThreadLocal<HttpCallTimings>() {
+
+    @Override
+    protected HttpCallTimings initialValue() {
+      return new HttpCallTimings();
+    }
+  };
+
+  private boolean active;
+  private boolean measured;
+  private long connectNanos;
+  private long writeNanos;
+  private long serverNanos;
+  private long readNanos;
+
+  private HttpCallTimings() {
+  }
+
+  /**
+   * Start collecting timings of the next HTTP call on the current thread.
+   */
+  public static void start() {
+    HttpCallTimings timings = CURRENT.get();
+    timings.active = true;
+    timings.measured = false;
+    timings.connectNanos = 0;
+    timings.writeNanos = 0;
+    timings.serverNanos = 0;
+    timings.readNanos = 0;
+  }
+
+  /**
+   * Stop collecting timings on the current thread.
+   * 
+   * @return the timings, or {@code null} if call was not measured. Returned instance is reused by
+   *         the next call on the same thread.
+   */
+  public static HttpCallTimings stop() {
+    HttpCallTimings timings = CURRENT.get();
+    timings.active = false;
+    return timings.measured ? timings : null;
+  }
+
+  /**
+   * Get timings which are collected on the current thread.
+   * 
+   * @return the timings, or {@code null} if they are not collected.
+   */
+  static HttpCallTimings active() {
+    HttpCallTimings timings = CURRENT.get();
+    return timings.active ? timings : null;
+  }
+
+  void record(long connectNanos, long writeNanos, long serverNanos, long readNanos) {
+    this.measured = true;
+    this.connectNanos += connectNanos;
+    this.writeNanos += writeNanos;
+    this.serverNanos += serverNanos;
+    this.readNanos += readNanos;
+  }
+
+  /**
+   * Get the time spent on establishing a connection.
+   * 
+   * @return the time in nanoseconds.
+   */
+  public long getConnectNanos() {
+    return connectNanos;
+  }
+
+  /**
+   * Get the time spent on writing request.
+   * 
+   * @return the time in nanoseconds.
+   */
+  public long getWriteNanos() {
+    return writeNanos;
+  }
+
+  /**
+   * Get the time from request sent to response headers received.
+   * 
+   * @return the time in nanoseconds.
+   */
+  public long getServerNanos() {
+    return serverNanos;
+  }
+
+  /**
+   * Get the time spent on reading response.
+   * 
+   * @return the time in nanoseconds.
+   */
+  public long getReadNanos() {
+    return readNanos;
+  }
+
+}
@@ -0,0 +1,727 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.CallRejectedException;
+import com.virgilsecurity.pythia.model.exception.PythiaTimeoutException;
+import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link PythiaClient} which schedules calls of several priorities within a shared budget of
+ * concurrent calls to Pythia service. Calls which don't get a permit wait in per-priority queues.
+ * When a permit is released, the next call is taken from the queues in proportion to their
+ * weights, so lower priorities are slowed down but never starved. Part of the budget can be
+ * reserved for {@link Priority#INTERACTIVE} calls, so logins don't wait for bulk calls which are
+ * already in flight.
+ * 
+ * <p>
+ * Queues share a bounded capacity. When it is full, a new call preempts the most recently queued
+ * call of a lower priority, which fails with {@link CallRejectedException}. If there is no such
+ * call, the new call fails instead. A call whose deadline expires while queued fails with
+ * {@link PythiaTimeoutException}.
+ * </p>
+ * 
+ * <p>
+ * Priority of a call is taken from {@link com.virgilsecurity.pythia.Pythia#withPriority(Priority)}
+ * which made it. Other calls have the default priority. Priority is read from the thread which
+ * makes the call: {@link com.virgilsecurity.pythia.Pythia} sets it around every call it makes, but
+ * calls which application code makes on executor threads or virtual threads have the default
+ * priority unless these threads set {@link CallPriority}.
+ * </p>
+ * 
+ * <p>
+ * If the scheduled client is an {@link AsyncPythiaClient}, the built client is asynchronous too.
+ * Its asynchronous calls don't block while queued. A call is started when it gets a permit and
+ * releases it on completion. Its priority is read when it is submitted. A queued asynchronous call
+ * which is cancelled or whose deadline expires is dropped when it reaches the head of its queue.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class PriorityPythiaClient implements PythiaClient {
+
+  /**
+   * Default number of concurrent calls to Pythia service.
+   */
+  public static final int DEFAULT_MAX_CONCURRENT_CALLS = 64;
+
+  /**
+   * Default number of calls waiting for a permit.
+   */
+  public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+  private static final int LANES = Priority.values().length;
+  private static final long STRIDE = 1L << 20;
+  private static final int[] DEFAULT_WEIGHTS = { 16, 4, 1 };
+
+  private final PythiaClient client;
+  private final int maxConcurrentCalls;
+  private final int interactiveReserve;
+  private final int queueCapacity;
+  private final Priority defaultPriority;
+  private final long[] strides = new long[LANES];
+  private final long[] passes = new long[LANES];
+  private final List<ArrayDeque<Call>> queues = new ArrayList<>(LANES);
+  private final ArrayDeque<Call> wokenCalls = new ArrayDeque<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final AtomicLongArray completedCalls = new AtomicLongArray(LANES);
+  private final AtomicLongArray preemptedCalls = new AtomicLongArray(LANES);
+  private final AtomicLongArray rejectedCalls = new AtomicLongArray(LANES);
+  private final AtomicLongArray expiredCalls = new AtomicLongArray(LANES);
+  private long pass;
+  private int inFlight;
+  private int queued;
+  private boolean waking;
+
+  PriorityPythiaClient(Builder builder) {
+    this.client = builder.client;
+    this.maxConcurrentCalls = builder.maxConcurrentCalls;
+    this.interactiveReserve = builder.interactiveReserve;
+    this.queueCapacity = builder.queueCapacity;
+    this.defaultPriority = builder.defaultPriority;
+    for (int lane = 0; lane < LANES; lane++) {
+      this.strides[lane] = STRIDE / builder.weights[lane];
+      this.queues.add(new ArrayDeque<Call>());
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaClient#transformPassword(byte[], byte[],
+   * java.lang.Integer, boolean, java.lang.String)
+   */
+  @Override
+  public TransformResponse transformPassword(byte[] salt, byte[] blindedPassword, Integer version,
+      boolean includeProof, String token) throws VirgilPythiaServiceException {
+    return transformPassword(salt, blindedPassword, version, includeProof, token,
+        Deadline.none());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaClient#transformPassword(byte[], byte[],
+   * java.lang.Integer, boolean, java.lang.String, com.virgilsecurity.pythia.Deadline)
+   */
+  @Override
+  public TransformResponse transformPassword(byte[] salt, byte[] blindedPassword, Integer version,
+      boolean includeProof, String token, Deadline deadline)
+      throws VirgilPythiaServiceException {
+    int lane = acquire(deadline);
+    try {
+      return this.client.transformPassword(salt, blindedPassword, version, includeProof, token,
+          deadline);
+    } finally {
+      release(lane);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaClient#generateSeed(byte[], java.lang.String,
+   * java.lang.String)
+   */
+  @Override
+  public byte[] generateSeed(byte[] blindedPassword, String brainKeyId, String token)
+      throws VirgilPythiaServiceException {
+    return generateSeed(blindedPassword, brainKeyId, token, Deadline.none());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaClient#generateSeed(byte[], java.lang.String,
+   * java.lang.String, com.virgilsecurity.pythia.Deadline)
+   */
+  @Override
+  public byte[] generateSeed(byte[] blindedPassword, String brainKeyId, String token,
+      Deadline deadline) throws VirgilPythiaServiceException {
+    int lane = acquire(deadline);
+    try {
+      return this.client.generateSeed(blindedPassword, brainKeyId, token, deadline);
+    } finally {
+      release(lane);
+    }
+  }
+
+  /**
+   * Wait for a permit of the calling thread's priority.
+   * 
+   * @return the lane of the call.
+   */
+  private int acquire(Deadline deadline) throws VirgilPythiaServiceException {
+    int lane = lane();
+    this.lock.lock();
+    try {
+      if (this.queued == 0 && hasPermit(lane)) {
+        this.inFlight++;
+        return lane;
+      }
+      if (this.queued >= this.queueCapacity && !preemptFor(lane)) {
+        this.rejectedCalls.incrementAndGet(lane);
+        throw CallRejectedException.stackless("Pythia call queue is full", false);
+      }
+      Call call = new Call(lane, this.lock.newCondition(), null, deadline);
+      enqueue(call);
+      dispatch();
+      await(call, deadline);
+      return lane;
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * Schedule an asynchronous call of the calling thread's priority without blocking.
+   * 
+   * @return the future which is completed with the result of the call.
+   */
+  <T> CompletableFuture<T> schedule(Deadline deadline, PendingCall<T> pending) {
+    Call call = new Call(lane(), null, pending, deadline);
+    this.lock.lock();
+    try {
+      if (this.queued == 0 && hasPermit(call.lane)) {
+        this.inFlight++;
+        call.granted = true;
+        this.wokenCalls.add(call);
+      } else if (this.queued >= this.queueCapacity && !preemptFor(call.lane)) {
+        this.rejectedCalls.incrementAndGet(call.lane);
+        call.failure = CallRejectedException.stackless("Pythia call queue is full", false);
+        this.wokenCalls.add(call);
+      } else {
+        enqueue(call);
+        dispatch();
+      }
+    } finally {
+      unlock();
+    }
+    return pending.result;
+  }
+
+  private int lane() {
+    Priority priority = CallPriority.get();
+    return (priority != null ? priority : this.defaultPriority).ordinal();
+  }
+
+  private void enqueue(Call call) {
+    ArrayDeque<Call> queue = this.queues.get(call.lane);
+    if (queue.isEmpty()) {
+      // Idle lane doesn't accumulate credit
+      this.passes[call.lane] = Math.max(this.passes[call.lane], this.pass);
+    }
+    queue.add(call);
+    this.queued++;
+  }
+
+  private void await(Call call, Deadline deadline) throws VirgilPythiaServiceException {
+    try {
+      while (!call.granted) {
+        if (startWaking()) {
+          // Don't keep asynchronous calls woken by this thread waiting
+          this.lock.unlock();
+          try {
+            wake();
+          } finally {
+            this.lock.lock();
+          }
+          continue;
+        }
+        if (call.preempted) {
+          throw CallRejectedException.stackless(
+              "Pythia call was preempted by a call of higher priority", true);
+        }
+        if (!deadline.isBounded()) {
+          call.condition.await();
+          continue;
+        }
+        long nanos = deadline.timeRemaining(TimeUnit.NANOSECONDS);
+        if (nanos <= 0) {
+          dequeue(call);
+          this.expiredCalls.incrementAndGet(call.lane);
+          throw PythiaTimeoutException.stackless("priority queue", null);
+        }
+        call.condition.awaitNanos(nanos);
+      }
+    } catch (InterruptedException e) {
+      if (call.granted) {
+        release(call.lane);
+      } else {
+        dequeue(call);
+      }
+      Thread.currentThread().interrupt();
+      throw new VirgilPythiaServiceException("Pythia call was interrupted while queued", e);
+    }
+  }
+
+  private void release(int lane) {
+    this.lock.lock();
+    try {
+      this.inFlight--;
+      this.completedCalls.incrementAndGet(lane);
+      dispatch();
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * Unlock and then start or fail asynchronous calls which were woken under the lock.
+   */
+  private void unlock() {
+    boolean wake = this.lock.getHoldCount() == 1 && startWaking();
+    this.lock.unlock();
+    if (wake) {
+      wake();
+    }
+  }
+
+  private boolean startWaking() {
+    if (this.waking || this.wokenCalls.isEmpty()) {
+      return false;
+    }
+    this.waking = true;
+    return true;
+  }
+
+  /**
+   * Start or fail woken asynchronous calls outside of the lock. Only one thread wakes calls at a
+   * time, so calls which complete immediately don't recurse into the following ones.
+   */
+  private void wake() {
+    while (true) {
+      Call call;
+      this.lock.lock();
+      try {
+        call = this.wokenCalls.poll();
+        if (call == null) {
+          this.waking = false;
+          return;
+        }
+      } finally {
+        this.lock.unlock();
+      }
+      if (call.failure != null) {
+        call.pending.result.completeExceptionally(call.failure);
+      } else {
+        start(call.pending, call.lane);
+      }
+    }
+  }
+
+  private <T> void start(final PendingCall<T> pending, final int lane) {
+    if (pending.result.isDone()) {
+      // Cancelled while queued
+      release(lane);
+      return;
+    }
+    CompletableFuture<T> future;
+    try {
+      future = pending.start();
+    } catch (RuntimeException e) {
+      release(lane);
+      pending.result.completeExceptionally(e);
+      return;
+    }
+    future.whenComplete(new BiConsumer<T, Throwable>() {
+
+      @Override
+      public void accept(T value, Throwable error) {
+        release(lane);
+        if (error != null) {
+          pending.result.completeExceptionally(error);
+        } else {
+          pending.result.complete(value);
+        }
+      }
+    });
+  }
+
+  /**
+   * Grant free permits to queued calls. The next lane is the one with the smallest pass among
+   * lanes which may take a permit, and its pass grows inversely to its weight.
+   */
+  private void dispatch() {
+    while (this.queued > 0) {
+      int next = -1;
+      for (int lane = 0; lane < LANES; lane++) {
+        if (!this.queues.get(lane).isEmpty() && hasPermit(lane)
+            && (next < 0 || this.passes[lane] < this.passes[next])) {
+          next = lane;
+        }
+      }
+      if (next < 0) {
+        return;
+      }
+      Call call = this.queues.get(next).poll();
+      this.queued--;
+      if (call.pending != null) {
+        if (call.pending.result.isDone()) {
+          // Cancelled while queued
+          continue;
+        }
+        if (call.deadline.isExpired()) {
+          this.expiredCalls.incrementAndGet(next);
+          call.failure = PythiaTimeoutException.stackless("priority queue", null);
+          this.wokenCalls.add(call);
+          continue;
+        }
+      }
+      this.pass = this.passes[next];
+      this.passes[next] += this.strides[next];
+      this.inFlight++;
+      call.granted = true;
+      if (call.pending != null) {
+        this.wokenCalls.add(call);
+      } else {
+        call.condition.signal();
+      }
+    }
+  }
+
+  private boolean hasPermit(int lane) {
+    if (lane == Priority.INTERACTIVE.ordinal()) {
+      return this.inFlight < this.maxConcurrentCalls;
+    }
+    return this.inFlight < this.maxConcurrentCalls - this.interactiveReserve;
+  }
+
+  /**
+   * Preempt the most recently queued call of the lowest priority which is lower than the given
+   * one.
+   */
+  private boolean preemptFor(int lane) {
+    for (int victimLane = LANES - 1; victimLane > lane; victimLane--) {
+      Call victim = this.queues.get(victimLane).pollLast();
+      if (victim != null) {
+        this.queued--;
+        this.preemptedCalls.incrementAndGet(victimLane);
+        if (victim.pending != null) {
+          victim.failure = CallRejectedException.stackless(
+              "Pythia call was preempted by a call of higher priority", true);
+          this.wokenCalls.add(victim);
+        } else {
+          victim.preempted = true;
+          victim.condition.signal();
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void dequeue(Call call) {
+    if (this.queues.get(call.lane).remove(call)) {
+      this.queued--;
+    }
+  }
+
+  /**
+   * Get the Pythia client which makes scheduled calls.
+   * 
+   * @return the Pythia client.
+   */
+  public PythiaClient getClient() {
+    return client;
+  }
+
+  /**
+   * Get the number of calls which may run concurrently.
+   * 
+   * @return the maximum number of concurrent calls.
+   */
+  public int getMaxConcurrentCalls() {
+    return maxConcurrentCalls;
+  }
+
+  /**
+   * Get the number of calls which are running.
+   * 
+   * @return the number of calls in flight.
+   */
+  public int getInFlightCalls() {
+    this.lock.lock();
+    try {
+      return this.inFlight;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Get the number of calls of the priority waiting for a permit.
+   * 
+   * @param priority
+   *          the priority.
+   * @return the number of queued calls.
+   */
+  public int getQueuedCalls(Priority priority) {
+    this.lock.lock();
+    try {
+      return this.queues.get(priority.ordinal()).size();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Get the number of completed calls of the priority, including failed ones.
+   * 
+   * @param priority
+   *          the priority.
+   * @return the number of completed calls.
+   */
+  public long getCompletedCalls(Priority priority) {
+    return this.completedCalls.get(priority.ordinal());
+  }
+
+  /**
+   * Get the number of queued calls of the priority which were preempted by calls of a higher
+   * priority.
+   * 
+   * @param priority
+   *          the priority.
+   * @return the number of preempted calls.
+   */
+  public long getPreemptedCalls(Priority priority) {
+    return this.preemptedCalls.get(priority.ordinal());
+  }
+
+  /**
+   * Get the number of calls of the priority which were rejected because queues were full.
+   * 
+   * @param priority
+   *          the priority.
+   * @return the number of rejected calls.
+   */
+  public long getRejectedCalls(Priority priority) {
+    return this.rejectedCalls.get(priority.ordinal());
+  }
+
+  /**
+   * Get the number of calls of the priority whose deadline expired while queued.
+   * 
+   * @param priority
+   *          the priority.
+   * @return the number of expired calls.
+   */
+  public long getExpiredCalls(Priority priority) {
+    return this.expiredCalls.get(priority.ordinal());
+  }
+
+  /**
+   * Asynchronous call which is started when it gets a permit.
+   */
+  abstract static class PendingCall<T> {
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    /**
+     * Start the call.
+     * 
+     * @return the future of the call.
+     */
+    abstract CompletableFuture<T> start();
+  }
+
+  /**
+   * Queued call. Blocking calls wait on the condition, asynchronous calls are pending.
+   */
+  private static final class Call {
+    private final int lane;
+    private final Condition condition;
+    private final PendingCall<?> pending;
+    private final Deadline deadline;
+    private boolean granted;
+    private boolean preempted;
+    private VirgilPythiaServiceException failure;
+
+    private Call(int lane, Condition condition, PendingCall<?> pending, Deadline deadline) {
+      this.lane = lane;
+      this.condition = condition;
+      this.pending = pending;
+      this.deadline = deadline;
+    }
+  }
+
+  /**
+   * The builder for {@link PriorityPythiaClient}.
+   * 
+   * @author Andrii Iakovenko
+   *
+   */
+  public static class Builder {
+    private PythiaClient client;
+    private int maxConcurrentCalls = DEFAULT_MAX_CONCURRENT_CALLS;
+    private int interactiveReserve;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private Priority defaultPriority = Priority.INTERACTIVE;
+    private int[] weights = DEFAULT_WEIGHTS.clone();
+
+    /**
+     * Build the priority Pythia client.
+     * 
+     * @return the instance of priority Pythia client.
+     */
+    public PriorityPythiaClient build() {
+      if (this.client == null) {
+        throw new IllegalArgumentException("Pythia client should be set");
+      }
+      if (this.interactiveReserve >= this.maxConcurrentCalls) {
+        throw new IllegalArgumentException(
+            "Interactive reserve should be less than max concurrent calls");
+      }
+      if (this.client instanceof AsyncPythiaClient) {
+        return new AsyncPriorityPythiaClient(this);
+      }
+      return new PriorityPythiaClient(this);
+    }
+
+    /**
+     * Set Pythia client which makes scheduled calls. If it is an {@link AsyncPythiaClient}, the
+     * built client is an {@link AsyncPythiaClient} too.
+     * 
+     * @param client
+     *          the Pythia client to set.
+     * @return {@link Builder} instance.
+     */
+    public Builder setPythiaClient(PythiaClient client) {
+      if (client == null) {
+        throw new IllegalArgumentException("Pythia client should be set");
+      }
+      this.client = client;
+      return this;
+    }
+
+    /**
+     * Set the budget of concurrent calls shared by all priorities. By default it is
+     * {@value PriorityPythiaClient#DEFAULT_MAX_CONCURRENT_CALLS}.
+     * 
+     * @param maxConcurrentCalls
+     *          the maximum number of concurrent calls.
+     * @return {@link Builder} instance.
+     */
+    public Builder setMaxConcurrentCalls(int maxConcurrentCalls) {
+      if (maxConcurrentCalls <= 0) {
+        throw new IllegalArgumentException("Max concurrent calls should be positive");
+      }
+      this.maxConcurrentCalls = maxConcurrentCalls;
+      return this;
+    }
+
+    /**
+     * Set the number of concurrent calls which only {@link Priority#INTERACTIVE} calls may use. By
+     * default nothing is reserved.
+     * 
+     * @param interactiveReserve
+     *          the number of reserved calls.
+     * @return {@link Builder} instance.
+     */
+    public Builder setInteractiveReserve(int interactiveReserve) {
+      if (interactiveReserve < 0) {
+        throw new IllegalArgumentException("Interactive reserve should not be negative");
+      }
+      this.interactiveReserve = interactiveReserve;
+      return this;
+    }
+
+    /**
+     * Set the number of calls of all priorities which may wait for a permit. By default it is
+     * {@value PriorityPythiaClient#DEFAULT_QUEUE_CAPACITY}.
+     * 
+     * @param queueCapacity
+     *          the queue capacity.
+     * @return {@link Builder} instance.
+     */
+    public Builder setQueueCapacity(int queueCapacity) {
+      if (queueCapacity <= 0) {
+        throw new IllegalArgumentException("Queue capacity should be positive");
+      }
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    /**
+     * Set the share of permits which queued calls of the priority get relative to other
+     * priorities. By default weights of interactive, background and bulk calls are 16, 4 and 1.
+     * 
+     * @param priority
+     *          the priority.
+     * @param weight
+     *          the weight.
+     * @return {@link Builder} instance.
+     */
+    public Builder setWeight(Priority priority, int weight) {
+      if (priority == null) {
+        throw new IllegalArgumentException("Priority should be set");
+      }
+      if (weight <= 0) {
+        throw new IllegalArgumentException("Weight should be positive");
+      }
+      this.weights[priority.ordinal()] = weight;
+      return this;
+    }
+
+    /**
+     * Set the priority of calls which are not tagged with a priority. By default it is
+     * {@link Priority#INTERACTIVE}.
+     * 
+     * @param defaultPriority
+     *          the default priority.
+     * @return {@link Builder} instance.
+     */
+    public Builder setDefaultPriority(Priority defaultPriority) {
+      if (defaultPriority == null) {
+        throw new IllegalArgumentException("Default priority should be set");
+      }
+      this.defaultPriority = defaultPriority;
+      return this;
+    }
+
+  }
+
+}
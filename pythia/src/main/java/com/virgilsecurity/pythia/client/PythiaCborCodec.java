@@ -0,0 +1,647 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+import com.virgilsecurity.pythia.model.GenerateSeedResponse;
+import com.virgilsecurity.pythia.model.Proof;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+import com.virgilsecurity.pythia.model.request.GenerateSeedRequest;
+import com.virgilsecurity.pythia.model.request.TransformPasswordRequest;
+import com.virgilsecurity.sdk.common.HttpError;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CBOR (RFC 7049) {@link PythiaCodec}. Every message is a definite-length map with small unsigned
+ * integer keys, byte array fields are CBOR byte strings:
+ * <ul>
+ * <li>transform password request: 1 - blinded password, 2 - version, 3 - include proof, 4 - user
+ * id;</li>
+ * <li>transform response: 1 - transformed password, 2 - proof map with 1 - value c, 2 - value
+ * u;</li>
+ * <li>generate seed request: 1 - blinded password, 2 - brainkey id;</li>
+ * <li>generate seed response: 1 - seed;</li>
+ * <li>error: 1 - code, 2 - message.</li>
+ * </ul>
+ * Unknown keys are skipped. The codec is stateless and thread-safe.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class PythiaCborCodec implements PythiaCodec {
+
+  private static final String CONTENT_TYPE = "application/cbor";
+
+  private static final int MAJOR_UNSIGNED = 0;
+  private static final int MAJOR_NEGATIVE = 1;
+  private static final int MAJOR_BYTES = 2;
+  private static final int MAJOR_TEXT = 3;
+  private static final int MAJOR_ARRAY = 4;
+  private static final int MAJOR_MAP = 5;
+  private static final int MAJOR_TAG = 6;
+  private static final int FALSE = 0xf4;
+  private static final int TRUE = 0xf5;
+  private static final int NULL = 0xf6;
+
+  /**
+   * The maximum length of byte and text strings accepted by the decoder.
+   */
+  private static final int MAX_LENGTH = 1 << 20;
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#getContentType()
+   */
+  @Override
+  public String getContentType() {
+    return CONTENT_TYPE;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#writeTransformPasswordRequest(
+   * com.virgilsecurity.pythia.model.request.TransformPasswordRequest, java.io.OutputStream)
+   */
+  @Override
+  public void writeTransformPasswordRequest(TransformPasswordRequest request, OutputStream out)
+      throws IOException {
+    CborOutput cbor = new CborOutput(out);
+    cbor.head(MAJOR_MAP, 4);
+    cbor.head(MAJOR_UNSIGNED, 1);
+    cbor.bytesValue(request.getBlindedPassword());
+    cbor.head(MAJOR_UNSIGNED, 2);
+    cbor.intValue(request.getVersion());
+    cbor.head(MAJOR_UNSIGNED, 3);
+    cbor.booleanValue(request.getIncludeProof());
+    cbor.head(MAJOR_UNSIGNED, 4);
+    cbor.bytesValue(request.getSalt());
+    cbor.flush();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#readTransformPasswordRequest(
+   * java.io.InputStream)
+   */
+  @Override
+  public TransformPasswordRequest readTransformPasswordRequest(InputStream in)
+      throws IOException {
+    CborInput cbor = new CborInput(in);
+    byte[] blindedPassword = null;
+    byte[] salt = null;
+    int version = 0;
+    boolean includeProof = false;
+    for (long i = cbor.mapSize(); i > 0; i--) {
+      switch (cbor.key()) {
+        case 1:
+          blindedPassword = cbor.bytesValue();
+          break;
+        case 2:
+          version = cbor.intValue();
+          break;
+        case 3:
+          includeProof = cbor.booleanValue();
+          break;
+        case 4:
+          salt = cbor.bytesValue();
+          break;
+        default:
+          cbor.skipValue();
+      }
+    }
+    if (blindedPassword == null || salt == null) {
+      throw new IOException("Transform password request is incomplete");
+    }
+    return new TransformPasswordRequest(salt, blindedPassword, version, includeProof);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#writeGenerateSeedRequest(
+   * com.virgilsecurity.pythia.model.request.GenerateSeedRequest, java.io.OutputStream)
+   */
+  @Override
+  public void writeGenerateSeedRequest(GenerateSeedRequest request, OutputStream out)
+      throws IOException {
+    CborOutput cbor = new CborOutput(out);
+    boolean hasBrainkeyId = request.getBrainkeyId() != null;
+    cbor.head(MAJOR_MAP, hasBrainkeyId ? 2 : 1);
+    cbor.head(MAJOR_UNSIGNED, 1);
+    cbor.bytesValue(request.getBlindedPassword());
+    if (hasBrainkeyId) {
+      cbor.head(MAJOR_UNSIGNED, 2);
+      cbor.stringValue(request.getBrainkeyId());
+    }
+    cbor.flush();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#readGenerateSeedRequest(
+   * java.io.InputStream)
+   */
+  @Override
+  public GenerateSeedRequest readGenerateSeedRequest(InputStream in) throws IOException {
+    CborInput cbor = new CborInput(in);
+    byte[] blindedPassword = null;
+    String brainkeyId = null;
+    for (long i = cbor.mapSize(); i > 0; i--) {
+      switch (cbor.key()) {
+        case 1:
+          blindedPassword = cbor.bytesValue();
+          break;
+        case 2:
+          brainkeyId = cbor.stringValue();
+          break;
+        default:
+          cbor.skipValue();
+      }
+    }
+    if (blindedPassword == null) {
+      throw new IOException("Generate seed request is incomplete");
+    }
+    return new GenerateSeedRequest(blindedPassword, brainkeyId);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#writeTransformResponse(
+   * com.virgilsecurity.pythia.model.TransformResponse, java.io.OutputStream)
+   */
+  @Override
+  public void writeTransformResponse(TransformResponse response, OutputStream out)
+      throws IOException {
+    CborOutput cbor = new CborOutput(out);
+    Proof proof = response.getProof();
+    cbor.head(MAJOR_MAP, proof == null ? 1 : 2);
+    cbor.head(MAJOR_UNSIGNED, 1);
+    cbor.bytesValue(response.getTransformedPassword());
+    if (proof != null) {
+      cbor.head(MAJOR_UNSIGNED, 2);
+      cbor.head(MAJOR_MAP, 2);
+      cbor.head(MAJOR_UNSIGNED, 1);
+      cbor.bytesValue(proof.getC());
+      cbor.head(MAJOR_UNSIGNED, 2);
+      cbor.bytesValue(proof.getU());
+    }
+    cbor.flush();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#readTransformResponse(
+   * java.io.InputStream)
+   */
+  @Override
+  public TransformResponse readTransformResponse(InputStream in) throws IOException {
+    CborInput cbor = new CborInput(in);
+    byte[] transformedPassword = null;
+    Proof proof = null;
+    for (long i = cbor.mapSize(); i > 0; i--) {
+      switch (cbor.key()) {
+        case 1:
+          transformedPassword = cbor.bytesValue();
+          break;
+        case 2:
+          proof = cbor.nullValue() ? null : readProof(cbor);
+          break;
+        default:
+          cbor.skipValue();
+      }
+    }
+    if (transformedPassword == null) {
+      throw new IOException("Transform response is incomplete");
+    }
+    if (proof == null) {
+      return new TransformResponse(transformedPassword);
+    }
+    return new TransformResponse(transformedPassword, proof);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#writeGenerateSeedResponse(
+   * com.virgilsecurity.pythia.model.GenerateSeedResponse, java.io.OutputStream)
+   */
+  @Override
+  public void writeGenerateSeedResponse(GenerateSeedResponse response, OutputStream out)
+      throws IOException {
+    CborOutput cbor = new CborOutput(out);
+    cbor.head(MAJOR_MAP, 1);
+    cbor.head(MAJOR_UNSIGNED, 1);
+    cbor.bytesValue(response.getSeed());
+    cbor.flush();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#readGenerateSeedResponse(
+   * java.io.InputStream)
+   */
+  @Override
+  public GenerateSeedResponse readGenerateSeedResponse(InputStream in) throws IOException {
+    CborInput cbor = new CborInput(in);
+    byte[] seed = null;
+    for (long i = cbor.mapSize(); i > 0; i--) {
+      if (cbor.key() == 1) {
+        seed = cbor.bytesValue();
+      } else {
+        cbor.skipValue();
+      }
+    }
+    if (seed == null) {
+      throw new IOException("Generate seed response is incomplete");
+    }
+    return new GenerateSeedResponse(seed);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#writeError(int, java.lang.String,
+   * java.io.OutputStream)
+   */
+  @Override
+  public void writeError(int code, String message, OutputStream out) throws IOException {
+    CborOutput cbor = new CborOutput(out);
+    cbor.head(MAJOR_MAP, message == null ? 1 : 2);
+    cbor.head(MAJOR_UNSIGNED, 1);
+    cbor.intValue(code);
+    if (message != null) {
+      cbor.head(MAJOR_UNSIGNED, 2);
+      cbor.stringValue(message);
+    }
+    cbor.flush();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#readError(java.io.InputStream,
+   * com.virgilsecurity.sdk.common.HttpError)
+   */
+  @Override
+  public VirgilPythiaServiceException readError(InputStream in, HttpError httpError)
+      throws IOException {
+    CborInput cbor = new CborInput(in);
+    if (cbor.isEmpty()) {
+      return new VirgilPythiaServiceException(httpError);
+    }
+    int code = 0;
+    String message = null;
+    for (long i = cbor.mapSize(); i > 0; i--) {
+      switch (cbor.key()) {
+        case 1:
+          code = cbor.intValue();
+          break;
+        case 2:
+          message = cbor.stringValue();
+          break;
+        default:
+          cbor.skipValue();
+      }
+    }
+    return PythiaCodecs.serviceException(code, message, httpError);
+  }
+
+  private static Proof readProof(CborInput cbor) throws IOException {
+    byte[] proofC = null;
+    byte[] proofU = null;
+    for (long i = cbor.mapSize(); i > 0; i--) {
+      switch (cbor.key()) {
+        case 1:
+          proofC = cbor.bytesValue();
+          break;
+        case 2:
+          proofU = cbor.bytesValue();
+          break;
+        default:
+          cbor.skipValue();
+      }
+    }
+    return new Proof(proofC, proofU);
+  }
+
+  /**
+   * Buffered CBOR writer.
+   */
+  private static final class CborOutput {
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[64];
+    private int position;
+
+    CborOutput(OutputStream out) {
+      this.out = out;
+    }
+
+    void head(int major, long value) throws IOException {
+      int type = major << 5;
+      if (value < 24) {
+        write(type | (int) value);
+      } else if (value < 0x100) {
+        write(type | 24);
+        write((int) value);
+      } else if (value < 0x10000) {
+        write(type | 25);
+        write((int) (value >> 8));
+        write((int) value);
+      } else if (value < 0x100000000L) {
+        write(type | 26);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+          write((int) (value >> shift));
+        }
+      } else {
+        write(type | 27);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+          write((int) (value >> shift));
+        }
+      }
+    }
+
+    void intValue(int value) throws IOException {
+      if (value >= 0) {
+        head(MAJOR_UNSIGNED, value);
+      } else {
+        head(MAJOR_NEGATIVE, -1L - value);
+      }
+    }
+
+    void booleanValue(boolean value) throws IOException {
+      write(value ? TRUE : FALSE);
+    }
+
+    void bytesValue(byte[] value) throws IOException {
+      if (value == null) {
+        write(NULL);
+        return;
+      }
+      head(MAJOR_BYTES, value.length);
+      writeRaw(value);
+    }
+
+    void stringValue(String value) throws IOException {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      head(MAJOR_TEXT, bytes.length);
+      writeRaw(bytes);
+    }
+
+    void flush() throws IOException {
+      out.write(buffer, 0, position);
+      position = 0;
+      out.flush();
+    }
+
+    private void writeRaw(byte[] value) throws IOException {
+      if (value.length <= buffer.length - position) {
+        System.arraycopy(value, 0, buffer, position, value.length);
+        position += value.length;
+      } else {
+        out.write(buffer, 0, position);
+        position = 0;
+        out.write(value);
+      }
+    }
+
+    private void write(int b) throws IOException {
+      if (position == buffer.length) {
+        out.write(buffer, 0, position);
+        position = 0;
+      }
+      buffer[position++] = (byte) b;
+    }
+  }
+
+  /**
+   * CBOR reader which reads byte strings directly into arrays of exact size.
+   */
+  private static final class CborInput {
+
+    private final InputStream in;
+    private int peeked = -1;
+
+    CborInput(InputStream in) {
+      this.in = in;
+    }
+
+    boolean isEmpty() throws IOException {
+      if (peeked < 0) {
+        peeked = in.read();
+      }
+      return peeked < 0;
+    }
+
+    long mapSize() throws IOException {
+      return head(MAJOR_MAP);
+    }
+
+    int key() throws IOException {
+      int initial = readByte();
+      if (initial >> 5 != MAJOR_UNSIGNED) {
+        // Not an integer key, the value is skipped by caller
+        skip(initial);
+        return -1;
+      }
+      long key = argument(initial);
+      return key > Integer.MAX_VALUE ? -1 : (int) key;
+    }
+
+    boolean nullValue() throws IOException {
+      if (isEmpty()) {
+        throw malformed();
+      }
+      if (peeked == NULL) {
+        peeked = -1;
+        return true;
+      }
+      return false;
+    }
+
+    int intValue() throws IOException {
+      int initial = readByte();
+      int major = initial >> 5;
+      long value = argument(initial);
+      if (major == MAJOR_NEGATIVE && value <= Integer.MAX_VALUE) {
+        return (int) (-1L - value);
+      }
+      if (major != MAJOR_UNSIGNED || value > Integer.MAX_VALUE) {
+        throw malformed();
+      }
+      return (int) value;
+    }
+
+    boolean booleanValue() throws IOException {
+      int initial = readByte();
+      if (initial == TRUE) {
+        return true;
+      }
+      if (initial == FALSE) {
+        return false;
+      }
+      throw malformed();
+    }
+
+    byte[] bytesValue() throws IOException {
+      if (nullValue()) {
+        return null;
+      }
+      return readFully(length(head(MAJOR_BYTES)));
+    }
+
+    String stringValue() throws IOException {
+      if (nullValue()) {
+        return null;
+      }
+      return new String(readFully(length(head(MAJOR_TEXT))), StandardCharsets.UTF_8);
+    }
+
+    void skipValue() throws IOException {
+      skip(readByte());
+    }
+
+    private void skip(int initial) throws IOException {
+      int major = initial >> 5;
+      long value = argument(initial);
+      switch (major) {
+        case MAJOR_BYTES:
+        case MAJOR_TEXT:
+          for (long remaining = length(value); remaining > 0; remaining--) {
+            readByte();
+          }
+          break;
+        case MAJOR_ARRAY:
+          for (long i = 0; i < value; i++) {
+            skipValue();
+          }
+          break;
+        case MAJOR_MAP:
+          for (long i = 0; i < value; i++) {
+            skipValue();
+            skipValue();
+          }
+          break;
+        case MAJOR_TAG:
+          skipValue();
+          break;
+        default:
+          // Integers and simple values have no content
+      }
+    }
+
+    private long head(int expectedMajor) throws IOException {
+      int initial = readByte();
+      if (initial >> 5 != expectedMajor) {
+        throw malformed();
+      }
+      return argument(initial);
+    }
+
+    private long argument(int initial) throws IOException {
+      int info = initial & 0x1f;
+      if (info < 24) {
+        return info;
+      }
+      int size;
+      switch (info) {
+        case 24:
+          size = 1;
+          break;
+        case 25:
+          size = 2;
+          break;
+        case 26:
+          size = 4;
+          break;
+        case 27:
+          size = 8;
+          break;
+        default:
+          // Indefinite length items are not produced by this codec
+          throw malformed();
+      }
+      long value = 0;
+      for (int i = 0; i < size; i++) {
+        value = value << 8 | readByte();
+      }
+      return value;
+    }
+
+    private int length(long value) throws IOException {
+      if (value < 0 || value > MAX_LENGTH) {
+        throw malformed();
+      }
+      return (int) value;
+    }
+
+    private byte[] readFully(int length) throws IOException {
+      byte[] value = new byte[length];
+      int offset = 0;
+      while (offset < length) {
+        int read = in.read(value, offset, length - offset);
+        if (read < 0) {
+          throw malformed();
+        }
+        offset += read;
+      }
+      return value;
+    }
+
+    private int readByte() throws IOException {
+      int b = peeked >= 0 ? peeked : in.read();
+      peeked = -1;
+      if (b < 0) {
+        throw malformed();
+      }
+      return b;
+    }
+
+    private IOException malformed() {
+      return new IOException("Malformed CBOR");
+    }
+  }
+
+}
@@ -33,7 +33,9 @@
 
 package com.virgilsecurity.pythia.client;
 
+import com.virgilsecurity.pythia.Deadline;
 import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.PythiaTimeoutException;
 import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
 
 /**
@@ -74,4 +76,49 @@ public interface PythiaClient {
    */
   byte[] generateSeed(byte[] blindedPassword, String brainKeyId, String token)
       throws VirgilPythiaServiceException;
+
+  /**
+   * Make call to Pythia service to transform password within the given deadline.
+   *
+   * @param salt The salt.
+   * @param blindedPassword The blinded password.
+   * @param version The key version.
+   * @param includeProof Set this flag to {@code true} if you need proof data in request.
+   * @param token The authorization token.
+   * @param deadline The deadline of the call.
+   *
+   * @return The plain model representing response from Pythia server.
+   *
+   * @throws PythiaTimeoutException If deadline expired.
+   * @throws VirgilPythiaServiceException If transformPassword is not successful.
+   */
+  default TransformResponse transformPassword(byte[] salt,
+                                              byte[] blindedPassword,
+                                              Integer version,
+                                              boolean includeProof,
+                                              String token,
+                                              Deadline deadline)
+      throws VirgilPythiaServiceException {
+    deadline.check("transform");
+    return transformPassword(salt, blindedPassword, version, includeProof, token);
+  }
+
+  /**
+   * Generates seed using given blinded password and brainkey id within the given deadline.
+   *
+   * @param blindedPassword Blinded password.
+   * @param brainKeyId Brainkey id.
+   * @param token Authorization token.
+   * @param deadline The deadline of the call.
+   *
+   * @return Generated seed.
+   *
+   * @throws PythiaTimeoutException If deadline expired.
+   * @throws VirgilPythiaServiceException If generateSeed is not successful.
+   */
+  default byte[] generateSeed(byte[] blindedPassword, String brainKeyId, String token,
+      Deadline deadline) throws VirgilPythiaServiceException {
+    deadline.check("generate seed");
+    return generateSeed(blindedPassword, brainKeyId, token);
+  }
 }
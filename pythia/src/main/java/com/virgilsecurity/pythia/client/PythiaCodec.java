@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+import com.virgilsecurity.pythia.model.GenerateSeedResponse;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+import com.virgilsecurity.pythia.model.request.GenerateSeedRequest;
+import com.virgilsecurity.pythia.model.request.TransformPasswordRequest;
+import com.virgilsecurity.sdk.common.HttpError;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Wire format of Pythia service requests and responses. Implementations must be thread-safe.
+ * 
+ * @author Andrii Iakovenko
+ *
+ * @see PythiaCodecs
+ */
+public interface PythiaCodec {
+
+  /**
+   * Get the content type of messages produced by this codec.
+   *
+   * @return the HTTP content type, e.g. {@code application/json; charset=utf-8}.
+   */
+  String getContentType();
+
+  /**
+   * Write transform password request.
+   *
+   * @param request the request to write.
+   * @param out     the output stream. It is flushed but not closed.
+   * @throws IOException if the request can't be written.
+   */
+  void writeTransformPasswordRequest(TransformPasswordRequest request, OutputStream out)
+      throws IOException;
+
+  /**
+   * Read transform password request.
+   *
+   * @param in the input stream.
+   * @return the request.
+   * @throws IOException if the request can't be read or is malformed.
+   */
+  TransformPasswordRequest readTransformPasswordRequest(InputStream in) throws IOException;
+
+  /**
+   * Write generate seed request.
+   *
+   * @param request the request to write.
+   * @param out     the output stream. It is flushed but not closed.
+   * @throws IOException if the request can't be written.
+   */
+  void writeGenerateSeedRequest(GenerateSeedRequest request, OutputStream out)
+      throws IOException;
+
+  /**
+   * Read generate seed request.
+   *
+   * @param in the input stream.
+   * @return the request.
+   * @throws IOException if the request can't be read or is malformed.
+   */
+  GenerateSeedRequest readGenerateSeedRequest(InputStream in) throws IOException;
+
+  /**
+   * Write transform password response.
+   *
+   * @param response the response to write.
+   * @param out      the output stream. It is flushed but not closed.
+   * @throws IOException if the response can't be written.
+   */
+  void writeTransformResponse(TransformResponse response, OutputStream out) throws IOException;
+
+  /**
+   * Read transform password response.
+   *
+   * @param in the input stream.
+   * @return the response.
+   * @throws IOException if the response can't be read or is malformed.
+   */
+  TransformResponse readTransformResponse(InputStream in) throws IOException;
+
+  /**
+   * Write generate seed response.
+   *
+   * @param response the response to write.
+   * @param out      the output stream. It is flushed but not closed.
+   * @throws IOException if the response can't be written.
+   */
+  void writeGenerateSeedResponse(GenerateSeedResponse response, OutputStream out)
+      throws IOException;
+
+  /**
+   * Read generate seed response.
+   *
+   * @param in the input stream.
+   * @return the response.
+   * @throws IOException if the response can't be read or is malformed.
+   */
+  GenerateSeedResponse readGenerateSeedResponse(InputStream in) throws IOException;
+
+  /**
+   * Write service error.
+   *
+   * @param code    the error code.
+   * @param message the error message.
+   * @param out     the output stream. It is flushed but not closed.
+   * @throws IOException if the error can't be written.
+   */
+  void writeError(int code, String message, OutputStream out) throws IOException;
+
+  /**
+   * Read service error and convert it to exception.
+   *
+   * @param in        the input stream with error body.
+   * @param httpError the HTTP error which caused the error body.
+   * @return the exception which corresponds to the error. If error body is empty, exception
+   *         contains HTTP error only.
+   * @throws IOException if the error can't be read or is malformed.
+   */
+  VirgilPythiaServiceException readError(InputStream in, HttpError httpError) throws IOException;
+
+}
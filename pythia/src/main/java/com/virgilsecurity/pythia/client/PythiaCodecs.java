@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+import com.virgilsecurity.pythia.model.exception.ThrottlingException;
+import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+import com.virgilsecurity.sdk.common.HttpError;
+
+/**
+ * Built-in {@link PythiaCodec} implementations.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class PythiaCodecs {
+
+  private static final int THROTTLING_ERROR_CODE = 60007;
+
+  private static final PythiaCodec JSON = new PythiaJsonCodec();
+  private static final PythiaCodec CBOR = new PythiaCborCodec();
+
+  private PythiaCodecs() {
+  }
+
+  /**
+   * Get the JSON codec. This is the default wire format of Pythia service.
+   *
+   * @return the JSON codec.
+   */
+  public static PythiaCodec json() {
+    return JSON;
+  }
+
+  /**
+   * Get the CBOR codec. Messages are CBOR maps with small integer keys, and byte array fields
+   * travel as raw byte strings rather than Base64 text.
+   *
+   * @return the CBOR codec.
+   */
+  public static PythiaCodec cbor() {
+    return CBOR;
+  }
+
+  /**
+   * Find the built-in codec for the HTTP content type.
+   *
+   * @param contentType the HTTP content type. May contain parameters.
+   * @return the matching codec, or the JSON codec if content type is unknown or {@code null}.
+   */
+  public static PythiaCodec forContentType(String contentType) {
+    if (contentType != null && contentType.trim().toLowerCase().startsWith(
+        CBOR.getContentType())) {
+      return CBOR;
+    }
+    return JSON;
+  }
+
+  /**
+   * Create exception which corresponds to service error code.
+   *
+   * @param code      the error code.
+   * @param message   the error message.
+   * @param httpError the HTTP error.
+   * @return the exception.
+   */
+  static VirgilPythiaServiceException serviceException(int code, String message,
+      HttpError httpError) {
+    if (code == THROTTLING_ERROR_CODE) {
+      return new StacklessThrottlingException(code, message, httpError);
+    }
+    return new VirgilPythiaServiceException(code, message, httpError);
+  }
+
+}
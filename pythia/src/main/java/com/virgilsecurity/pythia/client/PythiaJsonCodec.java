@@ -0,0 +1,826 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+import com.virgilsecurity.pythia.model.GenerateSeedResponse;
+import com.virgilsecurity.pythia.model.Proof;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+import com.virgilsecurity.pythia.model.request.GenerateSeedRequest;
+import com.virgilsecurity.pythia.model.request.TransformPasswordRequest;
+import com.virgilsecurity.sdk.common.HttpError;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * JSON {@link PythiaCodec} for Pythia service requests and responses. Unlike reflection based
+ * serialization,
+ * byte array fields are Base64 encoded directly into the output stream and decoded directly
+ * from the input stream, without building intermediate JSON strings. The codec is stateless and
+ * thread-safe.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class PythiaJsonCodec implements PythiaCodec {
+
+  private static final byte[] BLINDED_PASSWORD = ascii("blinded_password");
+  private static final byte[] VERSION = ascii("version");
+  private static final byte[] INCLUDE_PROOF = ascii("include_proof");
+  private static final byte[] USER_ID = ascii("user_id");
+  private static final byte[] BRAINKEY_ID = ascii("brainkey_id");
+  private static final byte[] TRANSFORMED_PASSWORD = ascii("transformed_password");
+  private static final byte[] PROOF = ascii("proof");
+  private static final byte[] VALUE_C = ascii("value_c");
+  private static final byte[] VALUE_U = ascii("value_u");
+  private static final byte[] SEED = ascii("seed");
+  private static final byte[] CODE = ascii("code");
+  private static final byte[] MESSAGE = ascii("message");
+
+  private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#getContentType()
+   */
+  @Override
+  public String getContentType() {
+    return CONTENT_TYPE;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#writeTransformPasswordRequest(
+   * com.virgilsecurity.pythia.model.request.TransformPasswordRequest, java.io.OutputStream)
+   */
+  @Override
+  public void writeTransformPasswordRequest(TransformPasswordRequest request, OutputStream out)
+      throws IOException {
+    JsonOutput json = new JsonOutput(out);
+    json.beginObject();
+    json.name(BLINDED_PASSWORD).base64Value(request.getBlindedPassword());
+    json.name(VERSION).intValue(request.getVersion());
+    json.name(INCLUDE_PROOF).booleanValue(request.getIncludeProof());
+    json.name(USER_ID).base64Value(request.getSalt());
+    json.endObject();
+    json.flush();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#readTransformPasswordRequest(
+   * java.io.InputStream)
+   */
+  @Override
+  public TransformPasswordRequest readTransformPasswordRequest(InputStream in)
+      throws IOException {
+    JsonInput json = new JsonInput(in);
+    byte[] blindedPassword = null;
+    byte[] salt = null;
+    int version = 0;
+    boolean includeProof = false;
+    json.beginObject();
+    while (json.nextField()) {
+      if (json.fieldIs(BLINDED_PASSWORD)) {
+        blindedPassword = json.base64Value();
+      } else if (json.fieldIs(VERSION)) {
+        version = json.intValue();
+      } else if (json.fieldIs(INCLUDE_PROOF)) {
+        includeProof = json.booleanValue();
+      } else if (json.fieldIs(USER_ID)) {
+        salt = json.base64Value();
+      } else {
+        json.skipValue();
+      }
+    }
+    if (blindedPassword == null || salt == null) {
+      throw new IOException("Transform password request is incomplete");
+    }
+    return new TransformPasswordRequest(salt, blindedPassword, version, includeProof);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#writeGenerateSeedRequest(
+   * com.virgilsecurity.pythia.model.request.GenerateSeedRequest, java.io.OutputStream)
+   */
+  @Override
+  public void writeGenerateSeedRequest(GenerateSeedRequest request, OutputStream out)
+      throws IOException {
+    JsonOutput json = new JsonOutput(out);
+    json.beginObject();
+    json.name(BLINDED_PASSWORD).base64Value(request.getBlindedPassword());
+    if (request.getBrainkeyId() != null) {
+      json.name(BRAINKEY_ID).stringValue(request.getBrainkeyId());
+    }
+    json.endObject();
+    json.flush();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#readGenerateSeedRequest(
+   * java.io.InputStream)
+   */
+  @Override
+  public GenerateSeedRequest readGenerateSeedRequest(InputStream in) throws IOException {
+    JsonInput json = new JsonInput(in);
+    byte[] blindedPassword = null;
+    String brainkeyId = null;
+    json.beginObject();
+    while (json.nextField()) {
+      if (json.fieldIs(BLINDED_PASSWORD)) {
+        blindedPassword = json.base64Value();
+      } else if (json.fieldIs(BRAINKEY_ID)) {
+        brainkeyId = json.stringValue();
+      } else {
+        json.skipValue();
+      }
+    }
+    if (blindedPassword == null) {
+      throw new IOException("Generate seed request is incomplete");
+    }
+    return new GenerateSeedRequest(blindedPassword, brainkeyId);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#writeTransformResponse(
+   * com.virgilsecurity.pythia.model.TransformResponse, java.io.OutputStream)
+   */
+  @Override
+  public void writeTransformResponse(TransformResponse response, OutputStream out)
+      throws IOException {
+    JsonOutput json = new JsonOutput(out);
+    json.beginObject();
+    json.name(TRANSFORMED_PASSWORD).base64Value(response.getTransformedPassword());
+    Proof proof = response.getProof();
+    if (proof != null) {
+      json.name(PROOF).beginObject();
+      json.name(VALUE_C).base64Value(proof.getC());
+      json.name(VALUE_U).base64Value(proof.getU());
+      json.endObject();
+    }
+    json.endObject();
+    json.flush();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#readTransformResponse(
+   * java.io.InputStream)
+   */
+  @Override
+  public TransformResponse readTransformResponse(InputStream in) throws IOException {
+    JsonInput json = new JsonInput(in);
+    byte[] transformedPassword = null;
+    Proof proof = null;
+    json.beginObject();
+    while (json.nextField()) {
+      if (json.fieldIs(TRANSFORMED_PASSWORD)) {
+        transformedPassword = json.base64Value();
+      } else if (json.fieldIs(PROOF)) {
+        proof = json.nullValue() ? null : readProof(json);
+      } else {
+        json.skipValue();
+      }
+    }
+    if (transformedPassword == null) {
+      throw new IOException("Transform response is incomplete");
+    }
+    if (proof == null) {
+      return new TransformResponse(transformedPassword);
+    }
+    return new TransformResponse(transformedPassword, proof);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#writeGenerateSeedResponse(
+   * com.virgilsecurity.pythia.model.GenerateSeedResponse, java.io.OutputStream)
+   */
+  @Override
+  public void writeGenerateSeedResponse(GenerateSeedResponse response, OutputStream out)
+      throws IOException {
+    JsonOutput json = new JsonOutput(out);
+    json.beginObject();
+    json.name(SEED).base64Value(response.getSeed());
+    json.endObject();
+    json.flush();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#readGenerateSeedResponse(
+   * java.io.InputStream)
+   */
+  @Override
+  public GenerateSeedResponse readGenerateSeedResponse(InputStream in) throws IOException {
+    JsonInput json = new JsonInput(in);
+    byte[] seed = null;
+    json.beginObject();
+    while (json.nextField()) {
+      if (json.fieldIs(SEED)) {
+        seed = json.base64Value();
+      } else {
+        json.skipValue();
+      }
+    }
+    if (seed == null) {
+      throw new IOException("Generate seed response is incomplete");
+    }
+    return new GenerateSeedResponse(seed);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#writeError(int, java.lang.String,
+   * java.io.OutputStream)
+   */
+  @Override
+  public void writeError(int code, String message, OutputStream out) throws IOException {
+    JsonOutput json = new JsonOutput(out);
+    json.beginObject();
+    json.name(CODE).intValue(code);
+    if (message != null) {
+      json.name(MESSAGE).stringValue(message);
+    }
+    json.endObject();
+    json.flush();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaCodec#readError(java.io.InputStream,
+   * com.virgilsecurity.sdk.common.HttpError)
+   */
+  @Override
+  public VirgilPythiaServiceException readError(InputStream in, HttpError httpError)
+      throws IOException {
+    JsonInput json = new JsonInput(in);
+    if (json.isEmpty()) {
+      return new VirgilPythiaServiceException(httpError);
+    }
+    int code = 0;
+    String message = null;
+    json.beginObject();
+    while (json.nextField()) {
+      if (json.fieldIs(CODE)) {
+        code = json.intValue();
+      } else if (json.fieldIs(MESSAGE)) {
+        message = json.stringValue();
+      } else {
+        json.skipValue();
+      }
+    }
+    return PythiaCodecs.serviceException(code, message, httpError);
+  }
+
+  private static Proof readProof(JsonInput json) throws IOException {
+    byte[] proofC = null;
+    byte[] proofU = null;
+    json.beginObject();
+    while (json.nextField()) {
+      if (json.fieldIs(VALUE_C)) {
+        proofC = json.base64Value();
+      } else if (json.fieldIs(VALUE_U)) {
+        proofU = json.base64Value();
+      } else {
+        json.skipValue();
+      }
+    }
+    return new Proof(proofC, proofU);
+  }
+
+  private static byte[] ascii(String value) {
+    byte[] bytes = new byte[value.length()];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) value.charAt(i);
+    }
+    return bytes;
+  }
+
+  /**
+   * Buffered JSON writer which encodes directly into bytes.
+   */
+  private static final class JsonOutput {
+
+    private static final byte[] BASE64 = ascii(
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[512];
+    private int position;
+    private boolean first;
+
+    JsonOutput(OutputStream out) {
+      this.out = out;
+    }
+
+    void beginObject() throws IOException {
+      write('{');
+      first = true;
+    }
+
+    void endObject() throws IOException {
+      write('}');
+      first = false;
+    }
+
+    JsonOutput name(byte[] name) throws IOException {
+      if (!first) {
+        write(',');
+      }
+      first = false;
+      write('"');
+      for (byte b : name) {
+        write(b);
+      }
+      write('"');
+      write(':');
+      return this;
+    }
+
+    void intValue(int value) throws IOException {
+      if (value < 0) {
+        write('-');
+      }
+      long remaining = Math.abs((long) value);
+      long divisor = 1;
+      while (divisor * 10 <= remaining) {
+        divisor *= 10;
+      }
+      for (; divisor > 0; divisor /= 10) {
+        write('0' + (int) (remaining / divisor % 10));
+      }
+    }
+
+    void booleanValue(boolean value) throws IOException {
+      writeAscii(value ? "true" : "false");
+    }
+
+    void base64Value(byte[] value) throws IOException {
+      if (value == null) {
+        writeAscii("null");
+        return;
+      }
+      write('"');
+      int i = 0;
+      for (; i + 2 < value.length; i += 3) {
+        int bits = (value[i] & 0xff) << 16 | (value[i + 1] & 0xff) << 8 | (value[i + 2] & 0xff);
+        write(BASE64[bits >>> 18]);
+        write(BASE64[bits >>> 12 & 0x3f]);
+        write(BASE64[bits >>> 6 & 0x3f]);
+        write(BASE64[bits & 0x3f]);
+      }
+      int tail = value.length - i;
+      if (tail > 0) {
+        int bits = (value[i] & 0xff) << 16 | (tail == 2 ? (value[i + 1] & 0xff) << 8 : 0);
+        write(BASE64[bits >>> 18]);
+        write(BASE64[bits >>> 12 & 0x3f]);
+        write(tail == 2 ? BASE64[bits >>> 6 & 0x3f] : '=');
+        write('=');
+      }
+      write('"');
+    }
+
+    void stringValue(String value) throws IOException {
+      write('"');
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '"' || c == '\\') {
+          write('\\');
+          write(c);
+        } else if (c < 0x20) {
+          writeAscii("\\u00");
+          write(HEX[c >> 4]);
+          write(HEX[c & 0xf]);
+        } else if (c < 0x80) {
+          write(c);
+        } else if (c < 0x800) {
+          write(0xc0 | c >> 6);
+          write(0x80 | c & 0x3f);
+        } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int codePoint = Character.toCodePoint(c, value.charAt(++i));
+          write(0xf0 | codePoint >> 18);
+          write(0x80 | codePoint >> 12 & 0x3f);
+          write(0x80 | codePoint >> 6 & 0x3f);
+          write(0x80 | codePoint & 0x3f);
+        } else {
+          write(0xe0 | c >> 12);
+          write(0x80 | c >> 6 & 0x3f);
+          write(0x80 | c & 0x3f);
+        }
+      }
+      write('"');
+    }
+
+    void flush() throws IOException {
+      out.write(buffer, 0, position);
+      position = 0;
+      out.flush();
+    }
+
+    private void writeAscii(String value) throws IOException {
+      for (int i = 0; i < value.length(); i++) {
+        write(value.charAt(i));
+      }
+    }
+
+    private void write(int b) throws IOException {
+      if (position == buffer.length) {
+        out.write(buffer, 0, position);
+        position = 0;
+      }
+      buffer[position++] = (byte) b;
+    }
+  }
+
+  /**
+   * Pull JSON reader which decodes directly from bytes.
+   */
+  private static final class JsonInput {
+
+    private static final int[] BASE64 = new int[128];
+
+    static {
+      Arrays.fill(BASE64, -1);
+      for (int i = 0; i < JsonOutput.BASE64.length; i++) {
+        BASE64[JsonOutput.BASE64[i]] = i;
+      }
+    }
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[512];
+    private final byte[] field = new byte[32];
+    private int position;
+    private int limit;
+    private int fieldLength;
+    private boolean first;
+    private byte[] decoded = new byte[512];
+
+    JsonInput(InputStream in) {
+      this.in = in;
+    }
+
+    boolean isEmpty() throws IOException {
+      return peek() < 0;
+    }
+
+    void beginObject() throws IOException {
+      expect('{');
+      first = true;
+    }
+
+    boolean nextField() throws IOException {
+      int c = peek();
+      if (c == '}') {
+        position++;
+        first = false;
+        return false;
+      }
+      if (!first) {
+        expect(',');
+      }
+      first = false;
+      expect('"');
+      fieldLength = 0;
+      for (c = read(); c != '"'; c = read()) {
+        if (c < 0) {
+          throw malformed();
+        }
+        if (c == '\\') {
+          c = read();
+        }
+        if (fieldLength < field.length) {
+          field[fieldLength] = (byte) c;
+        }
+        fieldLength++;
+      }
+      expect(':');
+      return true;
+    }
+
+    boolean fieldIs(byte[] name) {
+      if (fieldLength != name.length) {
+        return false;
+      }
+      for (int i = 0; i < fieldLength; i++) {
+        if (field[i] != name[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    boolean nullValue() throws IOException {
+      if (peek() != 'n') {
+        return false;
+      }
+      literal("null");
+      return true;
+    }
+
+    int intValue() throws IOException {
+      boolean negative = false;
+      int c = peek();
+      if (c == '-') {
+        negative = true;
+        position++;
+        c = peek();
+      }
+      if (c < '0' || c > '9') {
+        throw malformed();
+      }
+      long value = 0;
+      while (c >= '0' && c <= '9') {
+        value = value * 10 + c - '0';
+        if (value > Integer.MAX_VALUE + 1L) {
+          throw malformed();
+        }
+        position++;
+        c = peekRaw();
+      }
+      value = negative ? -value : value;
+      if (value > Integer.MAX_VALUE) {
+        throw malformed();
+      }
+      return (int) value;
+    }
+
+    boolean booleanValue() throws IOException {
+      if (peek() == 't') {
+        literal("true");
+        return true;
+      }
+      literal("false");
+      return false;
+    }
+
+    byte[] base64Value() throws IOException {
+      if (nullValue()) {
+        return null;
+      }
+      expect('"');
+      int length = 0;
+      int bits = 0;
+      int count = 0;
+      for (int c = read(); c != '"'; c = read()) {
+        if (c == '\\') {
+          c = escaped();
+        }
+        if (c == '=') {
+          continue;
+        }
+        int value = c >= 0 && c < BASE64.length ? BASE64[c] : -1;
+        if (value < 0) {
+          throw malformed();
+        }
+        bits = bits << 6 | value;
+        if (++count == 4) {
+          ensureDecoded(length + 3);
+          decoded[length++] = (byte) (bits >> 16);
+          decoded[length++] = (byte) (bits >> 8);
+          decoded[length++] = (byte) bits;
+          bits = 0;
+          count = 0;
+        }
+      }
+      if (count == 1) {
+        throw malformed();
+      }
+      if (count > 1) {
+        ensureDecoded(length + 2);
+        bits <<= 6 * (4 - count);
+        decoded[length++] = (byte) (bits >> 16);
+        if (count == 3) {
+          decoded[length++] = (byte) (bits >> 8);
+        }
+      }
+      byte[] result = new byte[length];
+      System.arraycopy(decoded, 0, result, 0, length);
+      return result;
+    }
+
+    String stringValue() throws IOException {
+      if (nullValue()) {
+        return null;
+      }
+      expect('"');
+      StringBuilder sb = new StringBuilder();
+      for (int c = read(); c != '"'; c = read()) {
+        if (c < 0) {
+          throw malformed();
+        } else if (c == '\\') {
+          sb.append((char) escaped());
+        } else if (c < 0x80) {
+          sb.append((char) c);
+        } else {
+          int continuation;
+          int codePoint;
+          if ((c & 0xe0) == 0xc0) {
+            continuation = 1;
+            codePoint = c & 0x1f;
+          } else if ((c & 0xf0) == 0xe0) {
+            continuation = 2;
+            codePoint = c & 0x0f;
+          } else if ((c & 0xf8) == 0xf0) {
+            continuation = 3;
+            codePoint = c & 0x07;
+          } else {
+            throw malformed();
+          }
+          for (int i = 0; i < continuation; i++) {
+            int next = read();
+            if ((next & 0xc0) != 0x80) {
+              throw malformed();
+            }
+            codePoint = codePoint << 6 | next & 0x3f;
+          }
+          if (!Character.isValidCodePoint(codePoint)) {
+            throw malformed();
+          }
+          sb.appendCodePoint(codePoint);
+        }
+      }
+      return sb.toString();
+    }
+
+    void skipValue() throws IOException {
+      int c = peek();
+      if (c == '"') {
+        position++;
+        for (c = read(); c != '"'; c = read()) {
+          if (c < 0) {
+            throw malformed();
+          }
+          if (c == '\\') {
+            read();
+          }
+        }
+      } else if (c == '{' || c == '[') {
+        position++;
+        int depth = 1;
+        while (depth > 0) {
+          c = read();
+          if (c < 0) {
+            throw malformed();
+          } else if (c == '{' || c == '[') {
+            depth++;
+          } else if (c == '}' || c == ']') {
+            depth--;
+          } else if (c == '"') {
+            position--;
+            skipValue();
+          }
+        }
+      } else if (c == '-' || c >= '0' && c <= '9' || c >= 'a' && c <= 'z') {
+        while (c == '-' || c == '+' || c == '.' || c >= '0' && c <= '9'
+            || c >= 'a' && c <= 'z' || c == 'E') {
+          position++;
+          c = peekRaw();
+        }
+      } else {
+        throw malformed();
+      }
+    }
+
+    private void ensureDecoded(int length) {
+      if (length > decoded.length) {
+        decoded = Arrays.copyOf(decoded, Math.max(length, decoded.length * 2));
+      }
+    }
+
+    private int escaped() throws IOException {
+      int c = read();
+      switch (c) {
+        case 'b':
+          return '\b';
+        case 'f':
+          return '\f';
+        case 'n':
+          return '\n';
+        case 'r':
+          return '\r';
+        case 't':
+          return '\t';
+        case 'u':
+          return hex() << 12 | hex() << 8 | hex() << 4 | hex();
+        case '"':
+        case '\\':
+        case '/':
+          return c;
+        default:
+          throw malformed();
+      }
+    }
+
+    private int hex() throws IOException {
+      int c = read();
+      if (c >= '0' && c <= '9') {
+        return c - '0';
+      } else if (c >= 'a' && c <= 'f') {
+        return c - 'a' + 10;
+      } else if (c >= 'A' && c <= 'F') {
+        return c - 'A' + 10;
+      }
+      throw malformed();
+    }
+
+    private void literal(String value) throws IOException {
+      for (int i = 0; i < value.length(); i++) {
+        if (read() != value.charAt(i)) {
+          throw malformed();
+        }
+      }
+    }
+
+    private void expect(char expected) throws IOException {
+      if (peek() != expected) {
+        throw malformed();
+      }
+      position++;
+    }
+
+    private int peek() throws IOException {
+      int c = peekRaw();
+      while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+        position++;
+        c = peekRaw();
+      }
+      return c;
+    }
+
+    private int peekRaw() throws IOException {
+      if (position == limit) {
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+          limit = 0;
+          return -1;
+        }
+      }
+      return buffer[position] & 0xff;
+    }
+
+    private int read() throws IOException {
+      int c = peekRaw();
+      if (c >= 0) {
+        position++;
+      }
+      return c;
+    }
+
+    private IOException malformed() {
+      return new IOException("Malformed JSON");
+    }
+  }
+
+}
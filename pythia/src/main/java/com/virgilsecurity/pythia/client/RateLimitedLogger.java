@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs each message at most once per interval. Messages logged within the interval are counted,
+ * and the count is appended to the next logged message, so a burst of failures produces one log
+ * record per interval instead of one per failure.
+ * 
+ * <p>
+ * Messages are tracked by their text, so only constant messages should be logged.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+final class RateLimitedLogger {
+
+  private final Logger logger;
+  private final long intervalNanos;
+  private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+
+  /**
+   * Create a new instance of {@link RateLimitedLogger}.
+   * 
+   * @param logger
+   *          the logger to log to.
+   * @param interval
+   *          the minimum interval between records with the same message.
+   * @param unit
+   *          the time unit of the interval.
+   */
+  RateLimitedLogger(Logger logger, long interval, TimeUnit unit) {
+    this.logger = logger;
+    this.intervalNanos = unit.toNanos(interval);
+  }
+
+  /**
+   * Log the message unless it was logged within the interval.
+   * 
+   * @param level
+   *          the message level.
+   * @param message
+   *          the message.
+   * @param thrown
+   *          the error to log with the message, or {@code null}.
+   */
+  void log(Level level, String message, Throwable thrown) {
+    if (!this.logger.isLoggable(level)) {
+      return;
+    }
+    Window window = this.windows.get(message);
+    if (window == null) {
+      Window created = new Window(System.nanoTime());
+      window = this.windows.putIfAbsent(message, created);
+      if (window == null) {
+        window = created;
+      }
+    }
+    long now = System.nanoTime();
+    long next = window.next.get();
+    if (now - next < 0 || !window.next.compareAndSet(next, now + this.intervalNanos)) {
+      window.suppressed.increment();
+      return;
+    }
+    long suppressed = window.suppressed.sumThenReset();
+    if (suppressed > 0) {
+      this.logger.log(level, message + " (" + suppressed + " similar messages suppressed)",
+          thrown);
+    } else {
+      this.logger.log(level, message, thrown);
+    }
+  }
+
+  /**
+   * Time of the next record and the number of suppressed records of a message.
+   */
+  private static final class Window {
+
+    private final AtomicLong next;
+    private final LongAdder suppressed = new LongAdder();
+
+    private Window(long next) {
+      this.next = new AtomicLong(next);
+    }
+  }
+
+}
@@ -34,43 +34,64 @@
 package com.virgilsecurity.pythia.client;
 
 import com.virgilsecurity.common.util.Validator;
-import com.virgilsecurity.pythia.model.GenerateSeedResponse;
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.events.PythiaEvents;
 import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.PythiaTimeoutException;
 import com.virgilsecurity.pythia.model.exception.ThrottlingException;
 import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
 import com.virgilsecurity.pythia.model.request.GenerateSeedRequest;
 import com.virgilsecurity.pythia.model.request.TransformPasswordRequest;
 import com.virgilsecurity.pythia.VirgilInfo;
-import com.virgilsecurity.sdk.common.ErrorResponse;
 import com.virgilsecurity.sdk.common.HttpError;
-import com.virgilsecurity.sdk.utils.ConvertionUtils;
 import com.virgilsecurity.sdk.utils.OsUtils;
 import com.virgilsecurity.sdk.utils.StringUtils;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * {@link PythiaClient} implementation.
  * 
+ * <p>
+ * {@link HttpURLConnection} has no timeout for a whole call, so a {@link Deadline} is enforced in
+ * two ways. The time left is used as connect and read timeout, which bounds each socket read.
+ * And the deadline is checked between the phases of a call: before connecting, after the request
+ * is written and after the response status is received. So a call may overrun its deadline by up
+ * to the time left when the current phase started, but no phase starts after the deadline.
+ * </p>
+ * 
  * @author Andrii Iakovenko
  *
  */
 public final class VirgilPythiaClient implements PythiaClient {
 
   private static final Logger LOGGER = Logger.getLogger(VirgilPythiaClient.class.getName());
+  private static final RateLimitedLogger FAILURE_LOGGER = new RateLimitedLogger(LOGGER, 10,
+      TimeUnit.SECONDS);
   private static final String BASE_URL = "https://api.virgilsecurity.com";
   private static final String VIRGIL_AGENT_HEADER = "virgil-agent";
+  private static final int DEFAULT_CONNECT_TIMEOUT = 10_000;
+  private static final int DEFAULT_READ_TIMEOUT = 30_000;
+  private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+  private static final String TRANSFORM_PATH = "/pythia/v1/password";
+  private static final String SEED_PATH = "pythia/v1/brainkey";
 
   private String bppVirgilAgent;
   private String brainkeyVirgilAgent;
   private URL baseUrl;
+  private volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+  private volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+  private volatile PythiaCodec codec = PythiaCodecs.json();
 
   /**
    * Create a new instance of {@link VirgilPythiaClient}.
@@ -129,21 +150,57 @@ public final class VirgilPythiaClient implements PythiaClient {
   @Override
   public TransformResponse transformPassword(byte[] salt, byte[] blindedPassword, Integer version,
       boolean includeProof, String token) throws VirgilPythiaServiceException {
+    return transformPassword(salt, blindedPassword, version, includeProof, token,
+        Deadline.none());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaClient#transformPassword(byte[], byte[],
+   * java.lang.Integer, boolean, java.lang.String, com.virgilsecurity.pythia.Deadline)
+   */
+  @Override
+  public TransformResponse transformPassword(byte[] salt, byte[] blindedPassword, Integer version,
+      boolean includeProof, String token, Deadline deadline) throws VirgilPythiaServiceException {
 
-    TransformPasswordRequest request = new TransformPasswordRequest(salt, blindedPassword, version,
-        includeProof);
+    final TransformPasswordRequest request = new TransformPasswordRequest(salt, blindedPassword,
+        version, includeProof);
 
+    Object event = PythiaEvents.beginTransform();
+    TransformResponse response = null;
     try {
-      HttpURLConnection urlConnection = createConnection("/pythia/v1/password", token);
-      urlConnection.setRequestProperty(VIRGIL_AGENT_HEADER, bppVirgilAgent);
-      return execute(urlConnection, request, TransformResponse.class);
+      response = execute(TRANSFORM_PATH, token, bppVirgilAgent, deadline, "transform",
+          new Exchange<TransformResponse>() {
+
+            @Override
+            public void writeRequest(PythiaCodec codec, OutputStream out) throws IOException {
+              codec.writeTransformPasswordRequest(request, out);
+            }
+
+            @Override
+            public TransformResponse readResponse(PythiaCodec codec, InputStream in)
+                throws IOException {
+              return codec.readTransformResponse(in);
+            }
+          });
+      return response;
+    } catch (SocketTimeoutException e) {
+      FAILURE_LOGGER.log(Level.SEVERE, "Pythia service didn't respond in time", e);
+      throw PythiaTimeoutException.stackless("transform", e);
+    } catch (ThrottlingException e) {
+      FAILURE_LOGGER.log(Level.WARNING, "Pythia service throttled the request", null);
+      throw e;
     } catch (VirgilPythiaServiceException e) {
-      LOGGER.log(Level.SEVERE, "Pythia service returned an error", e);
+      FAILURE_LOGGER.log(Level.SEVERE, "Pythia service returned an error", e);
       throw e;
     } catch (Exception e) {
-      LOGGER.log(Level.SEVERE, "Some service issue occurred during request executing", e);
+      FAILURE_LOGGER.log(Level.SEVERE, "Some service issue occurred during request executing", e);
       throw new VirgilPythiaServiceException(
           "VirgilPythiaClient -> transformPassword was not successful", e);
+    } finally {
+      endTransform(event, TRANSFORM_PATH, version, includeProof, blindedPassword,
+          response != null ? response.getTransformedPassword() : null);
     }
   }
 
@@ -156,38 +213,151 @@ public final class VirgilPythiaClient implements PythiaClient {
   @Override
   public byte[] generateSeed(byte[] blindedPassword, String brainKeyId, String token)
       throws VirgilPythiaServiceException {
-    GenerateSeedRequest request = new GenerateSeedRequest(blindedPassword, brainKeyId);
+    return generateSeed(blindedPassword, brainKeyId, token, Deadline.none());
+  }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaClient#generateSeed(byte[], java.lang.String,
+   * java.lang.String, com.virgilsecurity.pythia.Deadline)
+   */
+  @Override
+  public byte[] generateSeed(byte[] blindedPassword, String brainKeyId, String token,
+      Deadline deadline) throws VirgilPythiaServiceException {
+    final GenerateSeedRequest request = new GenerateSeedRequest(blindedPassword, brainKeyId);
+
+    Object event = PythiaEvents.beginGenerateSeed();
+    byte[] seed = null;
     try {
-      HttpURLConnection urlConnection = createConnection("pythia/v1/brainkey", token);
-      urlConnection.setRequestProperty(VIRGIL_AGENT_HEADER, brainkeyVirgilAgent);
-      return execute(urlConnection, request, GenerateSeedResponse.class).getSeed();
+      seed = execute(SEED_PATH, token, brainkeyVirgilAgent, deadline, "generate seed",
+          new Exchange<byte[]>() {
+
+            @Override
+            public void writeRequest(PythiaCodec codec, OutputStream out) throws IOException {
+              codec.writeGenerateSeedRequest(request, out);
+            }
+
+            @Override
+            public byte[] readResponse(PythiaCodec codec, InputStream in) throws IOException {
+              return codec.readGenerateSeedResponse(in).getSeed();
+            }
+          });
+      return seed;
+    } catch (SocketTimeoutException e) {
+      FAILURE_LOGGER.log(Level.SEVERE, "Pythia service didn't respond in time", e);
+      throw PythiaTimeoutException.stackless("generate seed", e);
+    } catch (ThrottlingException e) {
+      FAILURE_LOGGER.log(Level.WARNING, "Pythia service throttled the request", null);
+      throw e;
     } catch (VirgilPythiaServiceException e) {
-      LOGGER.log(Level.SEVERE, "Pythia service returned an error", e);
+      FAILURE_LOGGER.log(Level.SEVERE, "Pythia service returned an error", e);
       throw e;
     } catch (Exception e) {
-      LOGGER.log(Level.SEVERE, "Some service issue occurred during request executing", e);
+      FAILURE_LOGGER.log(Level.SEVERE, "Some service issue occurred during request executing", e);
       throw new VirgilPythiaServiceException(
           "VirgilPythiaClient -> generateSeed was not successful", e);
+    } finally {
+      if (event != null) {
+        PythiaEvents.endGenerateSeed(event, endpoint(SEED_PATH),
+            blindedPassword != null ? blindedPassword.length : 0, seed != null ? seed.length : 0);
+      }
+    }
+  }
+
+  /**
+   * Get the connect timeout.
+   *
+   * @return the connect timeout in milliseconds. Zero means infinite timeout.
+   */
+  public int getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  /**
+   * Set the timeout for establishing a connection to Pythia service. The actual timeout is never
+   * longer than the time left before the call deadline.
+   *
+   * @param connectTimeout the connect timeout in milliseconds. Zero means infinite timeout.
+   */
+  public void setConnectTimeout(int connectTimeout) {
+    if (connectTimeout < 0) {
+      throw new IllegalArgumentException("VirgilPythiaClient -> 'connectTimeout' should not be "
+          + "negative");
+    }
+    this.connectTimeout = connectTimeout;
+  }
+
+  /**
+   * Get the read timeout.
+   *
+   * @return the read timeout in milliseconds. Zero means infinite timeout.
+   */
+  public int getReadTimeout() {
+    return readTimeout;
+  }
+
+  /**
+   * Set the timeout for reading Pythia service response. The actual timeout is never longer than
+   * the time left before the call deadline.
+   *
+   * @param readTimeout the read timeout in milliseconds. Zero means infinite timeout.
+   */
+  public void setReadTimeout(int readTimeout) {
+    if (readTimeout < 0) {
+      throw new IllegalArgumentException("VirgilPythiaClient -> 'readTimeout' should not be "
+          + "negative");
     }
+    this.readTimeout = readTimeout;
+  }
+
+  /**
+   * Get the wire format of requests.
+   *
+   * @return the codec.
+   */
+  public PythiaCodec getCodec() {
+    return codec;
+  }
+
+  /**
+   * Set the wire format of requests. JSON is used by default. With another codec the client still
+   * accepts JSON responses, and if Pythia service rejects the content type with
+   * {@code 415 Unsupported Media Type} the request is repeated and the client switches to JSON.
+   *
+   * @param codec the codec, e.g. {@link PythiaCodecs#cbor()}.
+   */
+  public void setCodec(PythiaCodec codec) {
+    Validator.checkNullAgrument(codec, "VirgilPythiaClient -> 'codec' should not be null");
+    this.codec = codec;
   }
 
   /**
    * Create HTTP connection to Pythia service.
    * 
-   * @param spec  the {@code String} to parse as a URL.
-   * @param token access token.
+   * @param spec     the {@code String} to parse as a URL.
+   * @param token    access token.
+   * @param deadline the call deadline which limits connect and read timeouts. The read timeout
+   *                 bounds each socket read, not the whole call.
+   * @param codec    the wire format of the request.
    * @return the created connection.
    * @throws IOException if connection can't be created.
    */
-  private HttpURLConnection createConnection(String spec, String token) throws IOException {
+  private HttpURLConnection createConnection(String spec, String token, Deadline deadline,
+      PythiaCodec codec) throws IOException {
     // Create connection
     URL url = new URL(baseUrl, spec);
     HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+    urlConnection.setConnectTimeout(deadline.timeoutMillis(this.connectTimeout));
+    urlConnection.setReadTimeout(deadline.timeoutMillis(this.readTimeout));
     urlConnection.setRequestMethod("POST");
     urlConnection.setDoOutput(true);
     urlConnection.setUseCaches(false);
-    urlConnection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+    urlConnection.setRequestProperty("Content-Type", codec.getContentType());
+    if (codec != PythiaCodecs.json()) {
+      urlConnection.setRequestProperty("Accept",
+          codec.getContentType() + ", " + PythiaCodecs.json().getContentType());
+    }
 
     // Set authorization token
     if (!StringUtils.isBlank(token)) {
@@ -196,48 +366,96 @@ public final class VirgilPythiaClient implements PythiaClient {
       LOGGER.warning("Provided token is blank");
     }
 
+    Map<String, String> headers = HttpCallHeaders.get();
+    if (headers != null) {
+      for (Map.Entry<String, String> header : headers.entrySet()) {
+        urlConnection.setRequestProperty(header.getKey(), header.getValue());
+      }
+    }
+
     return urlConnection;
   }
 
-  private <T> T execute(HttpURLConnection urlConnection, Object requestBody, Class<T> clazz)
-      throws IOException, VirgilPythiaServiceException {
-    String body = ConvertionUtils.serializeToJson(requestBody);
-    try {
-      // Send payload
-      urlConnection.getOutputStream().write(ConvertionUtils.toBytes(body));
-
-      if (urlConnection.getResponseCode() >= HttpURLConnection.HTTP_BAD_REQUEST) {
-        LOGGER.warning("Http error occurred...");
-        HttpError httpError = new HttpError(urlConnection.getResponseCode(),
-            urlConnection.getResponseMessage());
-
-        // Get error code from request
-        try (InputStream in = new BufferedInputStream(urlConnection.getErrorStream())) {
-          LOGGER.fine("Trying to get error info...");
-          String errBody = ConvertionUtils.toString(in);
-          if (StringUtils.isBlank(errBody)) {
+  private <T> T execute(String spec, String token, String virgilAgent, Deadline deadline,
+      String stage, Exchange<T> exchange) throws IOException, VirgilPythiaServiceException {
+    PythiaCodec requestCodec = this.codec;
+    HttpCallTimings timings = HttpCallTimings.active();
+    while (true) {
+      deadline.check(stage);
+      long start = timings != null ? System.nanoTime() : 0L;
+      HttpURLConnection urlConnection = createConnection(spec, token, deadline, requestCodec);
+      urlConnection.setRequestProperty(VIRGIL_AGENT_HEADER, virgilAgent);
+      try {
+        long connected = 0L;
+        if (timings != null) {
+          urlConnection.connect();
+          connected = System.nanoTime();
+        }
+        // Send payload
+        exchange.writeRequest(requestCodec, urlConnection.getOutputStream());
+        long written = timings != null ? System.nanoTime() : 0L;
+        deadline.check(stage);
+
+        int responseCode = urlConnection.getResponseCode();
+        long responded = timings != null ? System.nanoTime() : 0L;
+        deadline.check(stage);
+        if (responseCode == HTTP_UNSUPPORTED_MEDIA_TYPE && requestCodec != PythiaCodecs.json()) {
+          LOGGER.warning("Pythia service doesn't support " + requestCodec.getContentType()
+              + ", switching to JSON");
+          requestCodec = PythiaCodecs.json();
+          this.codec = requestCodec;
+          continue;
+        }
+        PythiaCodec responseCodec = PythiaCodecs.forContentType(urlConnection.getContentType());
+        if (responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+          LOGGER.fine("Http error occurred...");
+          HttpError httpError = new HttpError(responseCode, urlConnection.getResponseMessage());
+
+          // Get error code from request
+          InputStream errorStream = urlConnection.getErrorStream();
+          if (errorStream == null) {
             throw new VirgilPythiaServiceException(httpError);
-          } else {
-            ErrorResponse error = ConvertionUtils.getGson().fromJson(errBody, ErrorResponse.class);
-            if (error.getCode() == 60007) {
-              throw new ThrottlingException(error.getCode(), error.getMessage(), httpError);
-            } else {
-              throw new VirgilPythiaServiceException(error.getCode(), error.getMessage(),
-                  httpError);
+          }
+          try (InputStream in = errorStream) {
+            LOGGER.fine("Trying to get error info...");
+            VirgilPythiaServiceException error = responseCodec.readError(in, httpError);
+            if (error instanceof ThrottlingException) {
+              PythiaEvents.throttlingHit(urlConnection.getURL().toString(), error.getError());
             }
+            throw error;
           }
         }
-      } else {
         LOGGER.fine("Extracting response body...");
-        try (InputStream instream = new BufferedInputStream(urlConnection.getInputStream())) {
-          String responseBody = ConvertionUtils.toString(instream);
-          T response = ConvertionUtils.getGson().fromJson(responseBody, clazz);
+        try (InputStream in = urlConnection.getInputStream()) {
+          T response = exchange.readResponse(responseCodec, in);
+          if (timings != null) {
+            timings.record(connected - start, written - connected, responded - written,
+                System.nanoTime() - responded);
+          }
           return response;
         }
+      } finally {
+        LOGGER.fine("Disconnecting...");
+        urlConnection.disconnect();
       }
-    } finally {
-      LOGGER.fine("Disconnecting...");
-      urlConnection.disconnect();
+    }
+  }
+
+  private void endTransform(Object event, String spec, Integer version, boolean includeProof,
+      byte[] blindedPassword, byte[] transformedPassword) {
+    if (event == null) {
+      return;
+    }
+    PythiaEvents.endTransform(event, endpoint(spec), version != null ? version : 0, includeProof,
+        blindedPassword != null ? blindedPassword.length : 0,
+        transformedPassword != null ? transformedPassword.length : 0);
+  }
+
+  private String endpoint(String spec) {
+    try {
+      return new URL(baseUrl, spec).toString();
+    } catch (MalformedURLException e) {
+      return spec;
     }
   }
 
@@ -248,4 +466,15 @@ public final class VirgilPythiaClient implements PythiaClient {
     this.brainkeyVirgilAgent = String.format("%1$s;%2$s;%3$s;%4$s", brainkeyProduct,
         VirgilInfo.FAMILY, osName, version);
   }
+
+  /**
+   * Writes a request and reads the response of a single Pythia service call.
+   */
+  private interface Exchange<T> {
+
+    void writeRequest(PythiaCodec codec, OutputStream out) throws IOException;
+
+    T readResponse(PythiaCodec codec, InputStream in) throws IOException;
+  }
+
 }
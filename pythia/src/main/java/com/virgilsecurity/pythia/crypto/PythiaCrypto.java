@@ -34,6 +34,7 @@
 package com.virgilsecurity.pythia.crypto;
 
 import com.virgilsecurity.crypto.pythia.PythiaException;
+import com.virgilsecurity.sdk.crypto.KeyPairType;
 import com.virgilsecurity.sdk.crypto.VirgilKeyPair;
 import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
 
@@ -113,4 +114,26 @@ public interface PythiaCrypto {
    */
   VirgilKeyPair generateKeyPair(byte[] seed) throws CryptoException;
 
+  /**
+   * Generates key pair of given type using random seed. The same seed always produces the same
+   * key pair.
+   *
+   * <p>
+   * Default implementation supports {@link KeyPairType#ED25519} keys only.
+   * </p>
+   *
+   * @param type Type of the key pair.
+   * @param seed Random seed.
+   *
+   * @return Generated key pair.
+   *
+   * @throws CryptoException If crypto operation failed or key pair type is not supported.
+   */
+  default VirgilKeyPair generateKeyPair(KeyPairType type, byte[] seed) throws CryptoException {
+    if (type != KeyPairType.ED25519) {
+      throw new CryptoException("Key pair type " + type + " is not supported");
+    }
+    return generateKeyPair(seed);
+  }
+
 }
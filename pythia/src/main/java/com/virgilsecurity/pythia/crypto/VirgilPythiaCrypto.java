@@ -35,6 +35,7 @@ package com.virgilsecurity.pythia.crypto;
 
 import com.virgilsecurity.crypto.pythia.Pythia;
 import com.virgilsecurity.crypto.pythia.PythiaBlindResult;
+import com.virgilsecurity.sdk.crypto.KeyPairType;
 import com.virgilsecurity.sdk.crypto.VirgilCrypto;
 import com.virgilsecurity.sdk.crypto.VirgilKeyPair;
 import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
@@ -136,6 +137,28 @@ public class VirgilPythiaCrypto implements PythiaCrypto {
     return virgilCrypto.generateKeyPair(seed);
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * com.virgilsecurity.pythia.crypto.PythiaCrypto#generateKeyPair(com.virgilsecurity.sdk.crypto.
+   * KeyPairType, byte[])
+   */
+  @Override
+  public VirgilKeyPair generateKeyPair(KeyPairType type, byte[] seed) throws CryptoException {
+    return virgilCrypto.generateKeyPair(type, seed);
+  }
+
+  /**
+   * Get the number of live {@link VirgilPythiaCrypto} instances which hold native Pythia library
+   * initialized.
+   * 
+   * @return the number of instances.
+   */
+  public static long getInstanceCount() {
+    return INSTANCE_COUNT.get();
+  }
+
   @Override
   protected void finalize() {
     long count = INSTANCE_COUNT.decrementAndGet();
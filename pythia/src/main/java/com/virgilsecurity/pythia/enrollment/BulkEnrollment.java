@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.enrollment;
+
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.StagedPythia;
+import com.virgilsecurity.pythia.metrics.ErrorClasses;
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+import com.virgilsecurity.pythia.tracing.PythiaSpan;
+import com.virgilsecurity.pythia.tracing.PythiaTracer;
+import com.virgilsecurity.pythia.tracing.SpanAttributes;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates breach proof passwords for a stream of users, for example when a tenant is onboarded.
+ * Records are read from an iterator and enrolled on {@link StagedPythia}, so passwords are
+ * blinded, verified and deblinded in parallel on the CPU stage while the I/O stage bounds the
+ * number of concurrent calls to Pythia service. Up to a batch size of records are kept in flight:
+ * as soon as the oldest record completes, the next one is read. Completed records are written to
+ * an {@link EnrollmentSink} in batches in the order of input, failed records included.
+ * 
+ * <p>
+ * Enrollment can be resumed from the offset of the next batch, which the sink stores with every
+ * batch. At most two batches of records are kept in memory, the one being written and the one in
+ * flight. To keep bulk enrollment from slowing down logins, use
+ * {@link StagedPythia} of a {@link com.virgilsecurity.pythia.Pythia} with
+ * {@link com.virgilsecurity.pythia.client.Priority#BULK} priority.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class BulkEnrollment {
+
+  /**
+   * Default number of records in a batch.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 256;
+
+  private static final Logger LOGGER = Logger.getLogger(BulkEnrollment.class.getName());
+
+  private final StagedPythia stagedPythia;
+  private final int batchSize;
+  private final long recordTimeout;
+  private final PythiaTracer tracer;
+
+  private BulkEnrollment(Builder builder) {
+    this.stagedPythia = builder.stagedPythia;
+    this.batchSize = builder.batchSize;
+    this.recordTimeout = builder.recordTimeout;
+    this.tracer = builder.tracer;
+  }
+
+  /**
+   * Enroll all records.
+   * 
+   * @param records
+   *          the records to enroll.
+   * @param sink
+   *          the sink which breach proof passwords are written to.
+   * @return the report of the run.
+   * @throws IOException
+   *           if sink failed to write a batch.
+   * @throws InterruptedException
+   *           if the calling thread was interrupted.
+   */
+  public BulkEnrollmentReport run(Iterator<EnrollmentRecord> records, EnrollmentSink sink)
+      throws IOException, InterruptedException {
+    return run(records, sink, 0L);
+  }
+
+  /**
+   * Enroll records starting from the given position in the input. Records before it are read and
+   * skipped, so the same input should be passed as in the interrupted run.
+   * 
+   * @param records
+   *          the records to enroll, from the beginning of the input.
+   * @param sink
+   *          the sink which breach proof passwords are written to.
+   * @param offset
+   *          the offset of the next batch which was stored by the sink.
+   * @return the report of the run.
+   * @throws IOException
+   *           if sink failed to write a batch.
+   * @throws InterruptedException
+   *           if the calling thread was interrupted.
+   */
+  public BulkEnrollmentReport run(Iterator<EnrollmentRecord> records, EnrollmentSink sink,
+      long offset) throws IOException, InterruptedException {
+    if (records == null) {
+      throw new IllegalArgumentException("Records should be set");
+    }
+    if (sink == null) {
+      throw new IllegalArgumentException("Sink should be set");
+    }
+    if (offset < 0) {
+      throw new IllegalArgumentException("Offset should not be negative");
+    }
+    for (long i = 0; i < offset && records.hasNext(); i++) {
+      records.next();
+    }
+
+    long start = System.nanoTime();
+    long position = offset;
+    long batches = 0;
+    long enrolled = 0;
+    long failed = 0;
+    Map<String, Long> errorCounts = new TreeMap<>();
+    ArrayDeque<PendingRecord> window = new ArrayDeque<>(this.batchSize);
+    List<EnrolledRecord> batch = new ArrayList<>(this.batchSize);
+    PythiaSpan span = null;
+    try {
+      fill(records, window);
+      while (!window.isEmpty()) {
+        if (span == null) {
+          span = this.tracer.startSpan("enrollBatch");
+        }
+        EnrolledRecord result = window.poll().await();
+        batch.add(result);
+        fill(records, window);
+        if (result.isSuccessful()) {
+          enrolled++;
+        } else {
+          failed++;
+          String errorClass = ErrorClasses.nameOf(result.getError());
+          Long count = errorCounts.get(errorClass);
+          errorCounts.put(errorClass, count == null ? 1L : count + 1);
+        }
+        if (batch.size() < this.batchSize && !window.isEmpty()) {
+          continue;
+        }
+
+        span.setAttribute(SpanAttributes.BATCH_SIZE, batch.size());
+        sink.write(position, batch);
+        span.end();
+        span = null;
+        position += batch.size();
+        batches++;
+        batch = new ArrayList<>(this.batchSize);
+        if (LOGGER.isLoggable(Level.FINE)) {
+          LOGGER.fine(new BulkEnrollmentReport(offset, batches, enrolled, failed,
+              System.nanoTime() - start, errorCounts).toString());
+        }
+      }
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      if (span != null) {
+        span.recordError(e);
+        span.end();
+      }
+      for (PendingRecord pending : window) {
+        pending.future.cancel(false);
+      }
+      throw e;
+    }
+    return new BulkEnrollmentReport(offset, batches, enrolled, failed, System.nanoTime() - start,
+        errorCounts);
+  }
+
+  /**
+   * Read records until a batch size of records is in flight.
+   */
+  private void fill(Iterator<EnrollmentRecord> records, ArrayDeque<PendingRecord> window) {
+    while (window.size() < this.batchSize && records.hasNext()) {
+      EnrollmentRecord record = records.next();
+      Deadline deadline = this.recordTimeout > 0
+          ? Deadline.after(this.recordTimeout, TimeUnit.MILLISECONDS)
+          : Deadline.none();
+      window.add(new PendingRecord(record,
+          this.stagedPythia.createBreachProofPassword(record.getPassword(), deadline)));
+    }
+  }
+
+  /**
+   * Record which is being enrolled.
+   */
+  private static final class PendingRecord {
+    private final EnrollmentRecord record;
+    private final CompletableFuture<BreachProofPassword> future;
+
+    private PendingRecord(EnrollmentRecord record,
+        CompletableFuture<BreachProofPassword> future) {
+      this.record = record;
+      this.future = future;
+    }
+
+    private EnrolledRecord await() throws InterruptedException {
+      try {
+        return new EnrolledRecord(this.record, this.future.get(), null);
+      } catch (ExecutionException e) {
+        return new EnrolledRecord(this.record, null, e.getCause());
+      }
+    }
+  }
+
+  /**
+   * The builder for {@link BulkEnrollment}.
+   * 
+   * @author Andrii Iakovenko
+   *
+   */
+  public static class Builder {
+    private StagedPythia stagedPythia;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long recordTimeout;
+    private PythiaTracer tracer = PythiaTracer.NOOP;
+
+    /**
+     * Build the bulk enrollment.
+     * 
+     * @return the instance of bulk enrollment.
+     */
+    public BulkEnrollment build() {
+      if (this.stagedPythia == null) {
+        throw new IllegalArgumentException("Staged Pythia should be set");
+      }
+      if (this.batchSize > this.stagedPythia.getCpuStage().getQueueCapacity()
+          || this.batchSize > this.stagedPythia.getIoStage().getQueueCapacity()) {
+        throw new IllegalArgumentException("Batch size should not exceed stage queue capacity");
+      }
+      return new BulkEnrollment(this);
+    }
+
+    /**
+     * Set staged Pythia which enrolls records. Its I/O stage bounds the number of concurrent
+     * calls to Pythia service.
+     * 
+     * @param stagedPythia
+     *          the staged Pythia to set.
+     * @return {@link Builder} instance.
+     */
+    public Builder setStagedPythia(StagedPythia stagedPythia) {
+      if (stagedPythia == null) {
+        throw new IllegalArgumentException("Staged Pythia should be set");
+      }
+      this.stagedPythia = stagedPythia;
+      return this;
+    }
+
+    /**
+     * Set the number of records which are in flight and written to the sink at once.
+     * It should not exceed queue capacity of stages. By default it is
+     * {@value BulkEnrollment#DEFAULT_BATCH_SIZE}.
+     * 
+     * @param batchSize
+     *          the batch size.
+     * @return {@link Builder} instance.
+     */
+    public Builder setBatchSize(int batchSize) {
+      if (batchSize <= 0) {
+        throw new IllegalArgumentException("Batch size should be positive");
+      }
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Set the time budget of a record, counted from the moment it is read. Records which are not
+     * enrolled in time fail with
+     * {@link com.virgilsecurity.pythia.model.exception.PythiaTimeoutException}.
+     * 
+     * @param recordTimeout
+     *          the record timeout in milliseconds. Zero means no timeout.
+     * @return {@link Builder} instance.
+     */
+    public Builder setRecordTimeout(long recordTimeout) {
+      if (recordTimeout < 0) {
+        throw new IllegalArgumentException("Record timeout should not be negative");
+      }
+      this.recordTimeout = recordTimeout;
+      return this;
+    }
+
+    /**
+     * Set the tracer of batches. By default batches are not traced.
+     * 
+     * @param tracer
+     *          the tracer to set.
+     * @return {@link Builder} instance.
+     */
+    public Builder setTracer(PythiaTracer tracer) {
+      if (tracer == null) {
+        throw new IllegalArgumentException("Tracer should be set");
+      }
+      this.tracer = tracer;
+      return this;
+    }
+
+  }
+
+}
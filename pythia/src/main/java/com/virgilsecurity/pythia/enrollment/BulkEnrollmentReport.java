@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.enrollment;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summary of a {@link BulkEnrollment} run.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class BulkEnrollmentReport {
+
+  private final long offset;
+  private final long batches;
+  private final long enrolled;
+  private final long failed;
+  private final long elapsedNanos;
+  private final Map<String, Long> errorCounts;
+
+  BulkEnrollmentReport(long offset, long batches, long enrolled, long failed, long elapsedNanos,
+      Map<String, Long> errorCounts) {
+    this.offset = offset;
+    this.batches = batches;
+    this.enrolled = enrolled;
+    this.failed = failed;
+    this.elapsedNanos = elapsedNanos;
+    this.errorCounts = Collections.unmodifiableMap(errorCounts);
+  }
+
+  /**
+   * Get the position in the input the run started from.
+   * 
+   * @return the offset of the first processed record.
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  /**
+   * Get the position in the input the next run should start from.
+   * 
+   * @return the offset of the first record which was not written to the sink.
+   */
+  public long getNextOffset() {
+    return offset + getRecords();
+  }
+
+  /**
+   * Get the number of batches written to the sink.
+   * 
+   * @return the number of batches.
+   */
+  public long getBatches() {
+    return batches;
+  }
+
+  /**
+   * Get the number of records written to the sink.
+   * 
+   * @return the number of processed records.
+   */
+  public long getRecords() {
+    return enrolled + failed;
+  }
+
+  /**
+   * Get the number of records enrolled successfully.
+   * 
+   * @return the number of enrolled records.
+   */
+  public long getEnrolled() {
+    return enrolled;
+  }
+
+  /**
+   * Get the number of records which failed to enroll.
+   * 
+   * @return the number of failed records.
+   */
+  public long getFailed() {
+    return failed;
+  }
+
+  /**
+   * Get the number of failed records by error class name.
+   * 
+   * @return the error counters.
+   */
+  public Map<String, Long> getErrorCounts() {
+    return errorCounts;
+  }
+
+  /**
+   * Get the duration of the run.
+   * 
+   * @param unit
+   *          the time unit of the result.
+   * @return the elapsed time.
+   */
+  public long getElapsed(TimeUnit unit) {
+    return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Get the number of processed records per second.
+   * 
+   * @return the throughput of the run.
+   */
+  public double getThroughput() {
+    return elapsedNanos == 0 ? 0.0 : getRecords() * 1e9 / elapsedNanos;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT,
+        "offset %d, %d batches, %d enrolled, %d failed in %d ms, %.1f records/s, errors %s",
+        offset, batches, enrolled, failed, getElapsed(TimeUnit.MILLISECONDS), getThroughput(),
+        errorCounts);
+  }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.enrollment;
+
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+
+/**
+ * Result of enrollment of an {@link EnrollmentRecord}. A failed enrollment doesn't stop
+ * {@link BulkEnrollment}, the failure is reported with {@link #getError()} instead.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class EnrolledRecord {
+
+  private final EnrollmentRecord record;
+  private final BreachProofPassword breachProofPassword;
+  private final Throwable error;
+
+  EnrolledRecord(EnrollmentRecord record, BreachProofPassword breachProofPassword,
+      Throwable error) {
+    this.record = record;
+    this.breachProofPassword = breachProofPassword;
+    this.error = error;
+  }
+
+  /**
+   * Get the record this result belongs to.
+   *
+   * @return the enrollment record.
+   */
+  public EnrollmentRecord getRecord() {
+    return record;
+  }
+
+  /**
+   * Get the created breach proof password.
+   *
+   * @return the breach proof password or {@code null} if enrollment failed.
+   */
+  public BreachProofPassword getBreachProofPassword() {
+    return breachProofPassword;
+  }
+
+  /**
+   * Check if enrollment completed without errors.
+   *
+   * @return {@code true} if enrollment completed without errors.
+   */
+  public boolean isSuccessful() {
+    return error == null;
+  }
+
+  /**
+   * Get the enrollment error.
+   *
+   * @return the error or {@code null} if enrollment completed without errors.
+   */
+  public Throwable getError() {
+    return error;
+  }
+
+}
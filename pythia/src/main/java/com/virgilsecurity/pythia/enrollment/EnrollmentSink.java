@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.enrollment;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of breach proof passwords created by {@link BulkEnrollment}, such as a database
+ * table or a file.
+ * 
+ * <p>
+ * Batches are written one at a time in the order of input records. To make enrollment resumable,
+ * a sink should store the offset of the next batch together with the batch, in the same
+ * transaction, and pass it to {@link BulkEnrollment#run(java.util.Iterator, EnrollmentSink, long)}
+ * after a restart.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public interface EnrollmentSink {
+
+  /**
+   * Write a batch of enrolled records, including the failed ones.
+   * 
+   * @param offset
+   *          the position of the first record of the batch in the input.
+   * @param records
+   *          the enrolled records in the order of input.
+   * @throws IOException
+   *           if batch can't be written. Enrollment stops and the batch is not counted as
+   *           processed.
+   */
+  void write(long offset, List<EnrolledRecord> records) throws IOException;
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.events;
+
+/**
+ * Hooks which emit JDK Flight Recorder events of Pythia operations. On Java 8 all hooks do
+ * nothing. On Java 11 and newer this class is replaced from the multi-release JAR by an
+ * implementation which commits JFR events.
+ * 
+ * <p>
+ * A {@code begin} hook returns an event handle, or {@code null} if the event is disabled. The
+ * handle should be passed to the matching {@code end} hook, which accepts {@code null} as well.
+ * This class is internal to the SDK.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class PythiaEvents {
+
+  private PythiaEvents() {
+  }
+
+  /**
+   * Begin password transformation event.
+   * 
+   * @return the event handle, or {@code null} if event is disabled.
+   */
+  public static Object beginTransform() {
+    return null;
+  }
+
+  /**
+   * End password transformation event.
+   * 
+   * @param event
+   *          the event handle.
+   * @param endpoint
+   *          the Pythia service endpoint.
+   * @param proofKeyVersion
+   *          the proof key version, or {@code 0} if proof key is not used.
+   * @param includeProof
+   *          whether the proof was requested.
+   * @param requestSize
+   *          the size of the blinded password in bytes.
+   * @param responseSize
+   *          the size of the transformed password in bytes, or {@code 0} if call failed.
+   */
+  public static void endTransform(Object event, String endpoint, int proofKeyVersion,
+      boolean includeProof, int requestSize, int responseSize) {
+  }
+
+  /**
+   * Begin brain key seed generation event.
+   * 
+   * @return the event handle, or {@code null} if event is disabled.
+   */
+  public static Object beginGenerateSeed() {
+    return null;
+  }
+
+  /**
+   * End brain key seed generation event.
+   * 
+   * @param event
+   *          the event handle.
+   * @param endpoint
+   *          the Pythia service endpoint.
+   * @param requestSize
+   *          the size of the blinded password in bytes.
+   * @param responseSize
+   *          the size of the seed in bytes, or {@code 0} if call failed.
+   */
+  public static void endGenerateSeed(Object event, String endpoint, int requestSize,
+      int responseSize) {
+  }
+
+  /**
+   * Begin transformation proof verification event.
+   * 
+   * @return the event handle, or {@code null} if event is disabled.
+   */
+  public static Object beginVerifyProof() {
+    return null;
+  }
+
+  /**
+   * End transformation proof verification event.
+   * 
+   * @param event
+   *          the event handle.
+   * @param proofKeyVersion
+   *          the proof key version.
+   * @param verified
+   *          whether the proof is valid.
+   */
+  public static void endVerifyProof(Object event, int proofKeyVersion, boolean verified) {
+  }
+
+  /**
+   * Begin password blinding event.
+   * 
+   * @return the event handle, or {@code null} if event is disabled.
+   */
+  public static Object beginBlind() {
+    return null;
+  }
+
+  /**
+   * End password blinding event.
+   * 
+   * @param event
+   *          the event handle.
+   * @param blindedPasswordSize
+   *          the size of the blinded password in bytes.
+   */
+  public static void endBlind(Object event, int blindedPasswordSize) {
+  }
+
+  /**
+   * Begin deblinding event.
+   * 
+   * @return the event handle, or {@code null} if event is disabled.
+   */
+  public static Object beginDeblind() {
+    return null;
+  }
+
+  /**
+   * End deblinding event.
+   * 
+   * @param event
+   *          the event handle.
+   * @param transformedPasswordSize
+   *          the size of the transformed password in bytes.
+   */
+  public static void endDeblind(Object event, int transformedPasswordSize) {
+  }
+
+  /**
+   * Begin access token renewal event.
+   * 
+   * @return the event handle, or {@code null} if event is disabled.
+   */
+  public static Object beginJwtRenew() {
+    return null;
+  }
+
+  /**
+   * End access token renewal event.
+   * 
+   * @param event
+   *          the event handle.
+   * @param operation
+   *          the operation which token is renewed for.
+   * @param successful
+   *          whether the token was renewed.
+   */
+  public static void endJwtRenew(Object event, String operation, boolean successful) {
+  }
+
+  /**
+   * Emit an event of request rejected by Pythia service because of too many requests.
+   * 
+   * @param endpoint
+   *          the Pythia service endpoint.
+   * @param errorCode
+   *          the service error code.
+   */
+  public static void throttlingHit(String endpoint, int errorCode) {
+  }
+
+}
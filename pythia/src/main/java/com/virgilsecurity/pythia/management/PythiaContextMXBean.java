@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.management;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Management interface of a {@link com.virgilsecurity.pythia.PythiaContext}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public interface PythiaContextMXBean {
+
+  /**
+   * Get the number of completed Pythia operations since counters were reset.
+   * 
+   * @return the number of operations.
+   */
+  long getRequestCount();
+
+  /**
+   * Get the rate of completed Pythia operations over the last minute.
+   * 
+   * @return the number of operations per second.
+   */
+  double getRequestRate();
+
+  /**
+   * Get the number of failed Pythia operations since counters were reset.
+   * 
+   * @return the number of failed operations.
+   */
+  long getErrorCount();
+
+  /**
+   * Get the number of operations rejected by Pythia service because of too many requests.
+   * 
+   * @return the number of throttled operations.
+   */
+  long getThrottlingCount();
+
+  /**
+   * Get the number of operations which exceeded their deadline.
+   * 
+   * @return the number of timed out operations.
+   */
+  long getTimeoutCount();
+
+  /**
+   * Get the number of Pythia operations in progress.
+   * 
+   * @return the number of operations in progress.
+   */
+  int getInFlightRequests();
+
+  /**
+   * Get latency percentiles of Pythia service calls in microseconds. Keys are
+   * {@code <endpoint>.<percentile>}, for example {@code transform.p99}.
+   * 
+   * @return the latency percentiles.
+   */
+  Map<String, Long> getLatencyMicros();
+
+  /**
+   * Get the expiration time of the cached access token.
+   * 
+   * @return the expiration time, or {@code null} if it is unknown.
+   */
+  Date getTokenExpiresAt();
+
+  /**
+   * Get the number of access token renewals.
+   * 
+   * @return the number of renewals, or {@code -1} if it is unknown.
+   */
+  long getTokenRenewCount();
+
+  /**
+   * Get the duration of the last access token renewal.
+   * 
+   * @return the duration in milliseconds, or {@code -1} if it is unknown.
+   */
+  double getLastTokenRenewMillis();
+
+  /**
+   * Get versions of loaded proof keys.
+   * 
+   * @return the key versions, the current one goes first.
+   */
+  List<Integer> getProofKeyVersions();
+
+  /**
+   * Get the number of live {@link com.virgilsecurity.pythia.crypto.VirgilPythiaCrypto} instances.
+   * 
+   * @return the number of instances.
+   */
+  long getCryptoInstanceCount();
+
+  /**
+   * Replace loaded proof keys.
+   * 
+   * @param proofKeys
+   *          list of Pythia public keys. Key format is 'PK.&lt;version&gt;.&lt;Base64-encoded
+   *          data&gt;'.
+   */
+  void reloadProofKeys(List<String> proofKeys);
+
+  /**
+   * Reset operation counters and latency histograms.
+   */
+  void resetCounters();
+
+}
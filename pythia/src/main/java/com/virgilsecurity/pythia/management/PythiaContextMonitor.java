@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.management;
+
+import com.virgilsecurity.pythia.ConcurrentCachingJwtProvider;
+import com.virgilsecurity.pythia.ProofKeys;
+import com.virgilsecurity.pythia.crypto.VirgilPythiaCrypto;
+import com.virgilsecurity.pythia.metrics.LatencyHistogram;
+import com.virgilsecurity.pythia.metrics.Operation;
+import com.virgilsecurity.pythia.metrics.Outcome;
+import com.virgilsecurity.pythia.metrics.PythiaMetrics;
+import com.virgilsecurity.pythia.metrics.Stage;
+import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
+
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Live state of a {@link com.virgilsecurity.pythia.PythiaContext}. The monitor collects
+ * operation counters as {@link PythiaMetrics} and forwards all timings to the delegate metrics.
+ * It is exposed as an MBean when context is built with a JMX name.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class PythiaContextMonitor implements PythiaMetrics, PythiaContextMXBean {
+
+  /**
+   * The JMX domain of Pythia MBeans.
+   */
+  public static final String DOMAIN = "com.virgilsecurity.pythia";
+
+  private static final Logger LOGGER = Logger.getLogger(PythiaContextMonitor.class.getName());
+  private static final double[] PERCENTILES = { 50, 90, 99 };
+
+  private final PythiaMetrics delegate;
+  private final ProofKeys proofKeys;
+  private final AccessTokenProvider accessTokenProvider;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private volatile Counters counters = new Counters();
+  private volatile ObjectName objectName;
+
+  /**
+   * Create a new instance of {@link PythiaContextMonitor}.
+   * 
+   * @param delegate
+   *          the metrics which receive all timings.
+   * @param proofKeys
+   *          the proof keys of the context.
+   * @param accessTokenProvider
+   *          the access token provider of the context.
+   */
+  public PythiaContextMonitor(PythiaMetrics delegate, ProofKeys proofKeys,
+      AccessTokenProvider accessTokenProvider) {
+    if (delegate == null) {
+      throw new IllegalArgumentException("Metrics should be set");
+    }
+    if (proofKeys == null) {
+      throw new IllegalArgumentException("Proof keys should be set");
+    }
+    this.delegate = delegate;
+    this.proofKeys = proofKeys;
+    this.accessTokenProvider = accessTokenProvider;
+  }
+
+  /**
+   * Register this monitor in the platform MBean server.
+   * 
+   * @param name
+   *          the name of the context.
+   * @return the object name of registered MBean.
+   * @throws IllegalArgumentException
+   *           if MBean with the same name is already registered.
+   */
+  public ObjectName register(String name) {
+    try {
+      ObjectName objectName = new ObjectName(DOMAIN + ":type=PythiaContext,name="
+          + ObjectName.quote(name));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+      this.objectName = objectName;
+      return objectName;
+    } catch (JMException e) {
+      LOGGER.log(Level.SEVERE, "Pythia context MBean couldn't be registered", e);
+      throw new IllegalArgumentException("Pythia context MBean couldn't be registered", e);
+    }
+  }
+
+  /**
+   * Unregister this monitor from the platform MBean server. Does nothing if monitor is not
+   * registered.
+   */
+  public void unregister() {
+    ObjectName name = this.objectName;
+    if (name == null) {
+      return;
+    }
+    this.objectName = null;
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+    } catch (JMException e) {
+      LOGGER.log(Level.WARNING, "Pythia context MBean couldn't be unregistered", e);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.metrics.PythiaMetrics#operationStarted(
+   * com.virgilsecurity.pythia.metrics.Operation)
+   */
+  @Override
+  public void operationStarted(Operation operation) {
+    this.inFlight.incrementAndGet();
+    this.delegate.operationStarted(operation);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.metrics.PythiaMetrics#stageCompleted(
+   * com.virgilsecurity.pythia.metrics.Operation, com.virgilsecurity.pythia.metrics.Stage, long)
+   */
+  @Override
+  public void stageCompleted(Operation operation, Stage stage, long nanos) {
+    if (stage == Stage.TRANSFORM) {
+      this.counters.transform.record(nanos);
+    } else if (stage == Stage.GENERATE_SEED) {
+      this.counters.generateSeed.record(nanos);
+    }
+    this.delegate.stageCompleted(operation, stage, nanos);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.metrics.PythiaMetrics#operationCompleted(
+   * com.virgilsecurity.pythia.metrics.Operation, com.virgilsecurity.pythia.metrics.Outcome, int,
+   * long, java.lang.Throwable)
+   */
+  @Override
+  public void operationCompleted(Operation operation, Outcome outcome, int proofKeyVersion,
+      long nanos, Throwable error) {
+    this.inFlight.decrementAndGet();
+    Counters current = this.counters;
+    current.requests.increment();
+    current.rate.increment();
+    if (outcome != Outcome.SUCCESS && outcome != Outcome.MISMATCH) {
+      current.errors.increment();
+    }
+    if (outcome == Outcome.THROTTLED) {
+      current.throttled.increment();
+    } else if (outcome == Outcome.TIMEOUT) {
+      current.timeouts.increment();
+    }
+    this.delegate.operationCompleted(operation, outcome, proofKeyVersion, nanos, error);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.management.PythiaContextMXBean#getRequestCount()
+   */
+  @Override
+  public long getRequestCount() {
+    return this.counters.requests.sum();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.management.PythiaContextMXBean#getRequestRate()
+   */
+  @Override
+  public double getRequestRate() {
+    return this.counters.rate.perSecond();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.management.PythiaContextMXBean#getErrorCount()
+   */
+  @Override
+  public long getErrorCount() {
+    return this.counters.errors.sum();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.management.PythiaContextMXBean#getThrottlingCount()
+   */
+  @Override
+  public long getThrottlingCount() {
+    return this.counters.throttled.sum();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.management.PythiaContextMXBean#getTimeoutCount()
+   */
+  @Override
+  public long getTimeoutCount() {
+    return this.counters.timeouts.sum();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.management.PythiaContextMXBean#getInFlightRequests()
+   */
+  @Override
+  public int getInFlightRequests() {
+    return this.inFlight.get();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.management.PythiaContextMXBean#getLatencyMicros()
+   */
+  @Override
+  public Map<String, Long> getLatencyMicros() {
+    Counters current = this.counters;
+    Map<String, Long> latencies = new LinkedHashMap<>();
+    putLatencies(latencies, "transform", current.transform);
+    putLatencies(latencies, "generateSeed", current.generateSeed);
+    return latencies;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.management.PythiaContextMXBean#getTokenExpiresAt()
+   */
+  @Override
+  public Date getTokenExpiresAt() {
+    if (this.accessTokenProvider instanceof ConcurrentCachingJwtProvider) {
+      return ((ConcurrentCachingJwtProvider) this.accessTokenProvider).getTokenExpiresAt();
+    }
+    return null;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.management.PythiaContextMXBean#getTokenRenewCount()
+   */
+  @Override
+  public long getTokenRenewCount() {
+    if (this.accessTokenProvider instanceof ConcurrentCachingJwtProvider) {
+      return ((ConcurrentCachingJwtProvider) this.accessTokenProvider).getRenewCount();
+    }
+    return -1;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.management.PythiaContextMXBean#getLastTokenRenewMillis()
+   */
+  @Override
+  public double getLastTokenRenewMillis() {
+    if (this.accessTokenProvider instanceof ConcurrentCachingJwtProvider) {
+      return ((ConcurrentCachingJwtProvider) this.accessTokenProvider).getLastRenewNanos() / 1e6;
+    }
+    return -1;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.management.PythiaContextMXBean#getProofKeyVersions()
+   */
+  @Override
+  public List<Integer> getProofKeyVersions() {
+    return this.proofKeys.getVersions();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.management.PythiaContextMXBean#getCryptoInstanceCount()
+   */
+  @Override
+  public long getCryptoInstanceCount() {
+    return VirgilPythiaCrypto.getInstanceCount();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.management.PythiaContextMXBean#reloadProofKeys(java.util.List)
+   */
+  @Override
+  public void reloadProofKeys(List<String> proofKeys) {
+    this.proofKeys.reload(proofKeys);
+    LOGGER.info("Proof keys reloaded, versions " + this.proofKeys.getVersions());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.management.PythiaContextMXBean#resetCounters()
+   */
+  @Override
+  public void resetCounters() {
+    this.counters = new Counters();
+  }
+
+  private static void putLatencies(Map<String, Long> latencies, String endpoint,
+      LatencyHistogram histogram) {
+    for (double percentile : PERCENTILES) {
+      latencies.put(endpoint + ".p" + (int) percentile,
+          TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtPercentile(percentile)));
+    }
+    latencies.put(endpoint + ".max", TimeUnit.NANOSECONDS.toMicros(histogram.getMax()));
+  }
+
+  /**
+   * Counters which are replaced as a whole on reset.
+   */
+  private static final class Counters {
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LatencyHistogram transform = new LatencyHistogram();
+    private final LatencyHistogram generateSeed = new LatencyHistogram();
+    private final RateCounter rate = new RateCounter();
+  }
+
+  /**
+   * Lock-free counter of events per second over a one minute window. Every slot packs the second
+   * it belongs to and the number of events in that second.
+   */
+  private static final class RateCounter {
+    private static final int WINDOW = 60;
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final long origin = System.nanoTime();
+    private final AtomicLongArray slots = new AtomicLongArray(WINDOW);
+
+    private void increment() {
+      long second = currentSecond();
+      int index = (int) (second % WINDOW);
+      while (true) {
+        long slot = this.slots.get(index);
+        long updated;
+        if (slot >>> COUNT_BITS == second) {
+          if ((slot & COUNT_MASK) == COUNT_MASK) {
+            return;
+          }
+          updated = slot + 1;
+        } else {
+          updated = (second << COUNT_BITS) | 1;
+        }
+        if (this.slots.compareAndSet(index, slot, updated)) {
+          return;
+        }
+      }
+    }
+
+    private double perSecond() {
+      long second = currentSecond();
+      long count = 0;
+      for (int i = 0; i < WINDOW; i++) {
+        long slot = this.slots.get(i);
+        if (second - (slot >>> COUNT_BITS) < WINDOW) {
+          count += slot & COUNT_MASK;
+        }
+      }
+      return (double) count / Math.min(second + 1, WINDOW);
+    }
+
+    private long currentSecond() {
+      return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - this.origin);
+    }
+  }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link PythiaMetrics} which collect timings into {@link LatencyHistogram} per operation stage
+ * and per operation outcome, and count errors by their class.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class HistogramPythiaMetrics implements PythiaMetrics {
+
+  private final LatencyHistogram[][] stages;
+  private final LatencyHistogram[][] operations;
+  private final ConcurrentMap<String, LongAdder> errors;
+
+  /**
+   * Create a new instance of {@link HistogramPythiaMetrics}.
+   */
+  public HistogramPythiaMetrics() {
+    int operationCount = Operation.values().length;
+    this.stages = new LatencyHistogram[operationCount][Stage.values().length];
+    this.operations = new LatencyHistogram[operationCount][Outcome.values().length];
+    for (int i = 0; i < operationCount; i++) {
+      fill(this.stages[i]);
+      fill(this.operations[i]);
+    }
+    this.errors = new ConcurrentHashMap<>();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.metrics.PythiaMetrics#stageCompleted(
+   * com.virgilsecurity.pythia.metrics.Operation, com.virgilsecurity.pythia.metrics.Stage, long)
+   */
+  @Override
+  public void stageCompleted(Operation operation, Stage stage, long nanos) {
+    this.stages[operation.ordinal()][stage.ordinal()].record(nanos);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.metrics.PythiaMetrics#operationCompleted(
+   * com.virgilsecurity.pythia.metrics.Operation, com.virgilsecurity.pythia.metrics.Outcome, int,
+   * long, java.lang.Throwable)
+   */
+  @Override
+  public void operationCompleted(Operation operation, Outcome outcome, int proofKeyVersion,
+      long nanos, Throwable error) {
+    this.operations[operation.ordinal()][outcome.ordinal()].record(nanos);
+    if (error != null) {
+      String errorClass = ErrorClasses.nameOf(error);
+      LongAdder counter = this.errors.get(errorClass);
+      if (counter == null) {
+        LongAdder newCounter = new LongAdder();
+        counter = this.errors.putIfAbsent(errorClass, newCounter);
+        if (counter == null) {
+          counter = newCounter;
+        }
+      }
+      counter.increment();
+    }
+  }
+
+  /**
+   * Get the histogram of stage timings.
+   * 
+   * @param operation
+   *          the operation.
+   * @param stage
+   *          the stage of the operation.
+   * @return the histogram.
+   */
+  public LatencyHistogram getStageHistogram(Operation operation, Stage stage) {
+    return this.stages[operation.ordinal()][stage.ordinal()];
+  }
+
+  /**
+   * Get the histogram of operation timings.
+   * 
+   * @param operation
+   *          the operation.
+   * @param outcome
+   *          the outcome of the operation.
+   * @return the histogram.
+   */
+  public LatencyHistogram getOperationHistogram(Operation operation, Outcome outcome) {
+    return this.operations[operation.ordinal()][outcome.ordinal()];
+  }
+
+  /**
+   * Get the number of failed operations by error class name.
+   * 
+   * @return the snapshot of error counters.
+   */
+  public Map<String, Long> getErrorCounts() {
+    Map<String, Long> counts = new TreeMap<>();
+    for (Map.Entry<String, LongAdder> entry : this.errors.entrySet()) {
+      counts.put(entry.getKey(), entry.getValue().sum());
+    }
+    return counts;
+  }
+
+  private static void fill(LatencyHistogram[] histograms) {
+    for (int i = 0; i < histograms.length; i++) {
+      histograms[i] = new LatencyHistogram();
+    }
+  }
+
+}
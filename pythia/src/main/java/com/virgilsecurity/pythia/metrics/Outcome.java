@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.metrics;
+
+import com.virgilsecurity.pythia.model.exception.ProofKeyNotFoundException;
+import com.virgilsecurity.pythia.model.exception.PythiaTimeoutException;
+import com.virgilsecurity.pythia.model.exception.ThrottlingException;
+import com.virgilsecurity.pythia.model.exception.TransformVerificationException;
+import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+
+/**
+ * Outcome of a Pythia operation reported to {@link PythiaMetrics}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public enum Outcome {
+
+  /**
+   * Operation completed successfully.
+   */
+  SUCCESS,
+
+  /**
+   * Password verification completed, but password doesn't match breach proof password.
+   */
+  MISMATCH,
+
+  /**
+   * Transformation proof returned by Pythia service is not valid.
+   */
+  VERIFICATION_FAILED,
+
+  /**
+   * Proof key of the version used by breach proof password is not known.
+   */
+  KEY_NOT_FOUND,
+
+  /**
+   * Operation deadline expired.
+   */
+  TIMEOUT,
+
+  /**
+   * Pythia service rejected the request because of too many requests.
+   */
+  THROTTLED,
+
+  /**
+   * Pythia service returned an error.
+   */
+  SERVICE_ERROR,
+
+  /**
+   * Any other error.
+   */
+  ERROR;
+
+  /**
+   * Get the outcome of an operation failed with the given error.
+   * 
+   * @param error
+   *          the error.
+   * @return the outcome.
+   */
+  public static Outcome of(Throwable error) {
+    if (error instanceof PythiaTimeoutException) {
+      return TIMEOUT;
+    }
+    if (error instanceof ThrottlingException) {
+      return THROTTLED;
+    }
+    if (error instanceof VirgilPythiaServiceException) {
+      return SERVICE_ERROR;
+    }
+    if (error instanceof TransformVerificationException) {
+      return VERIFICATION_FAILED;
+    }
+    if (error instanceof ProofKeyNotFoundException) {
+      return KEY_NOT_FOUND;
+    }
+    return ERROR;
+  }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.metrics;
+
+/**
+ * Listener of Pythia operation timings. Implementations are called on the thread which performs
+ * the operation, so they should be fast, thread-safe and should not throw.
+ * 
+ * <p>
+ * Each operation reports its start, then its stages in execution order with the time spent in
+ * every stage, and then its completion with the total time and outcome. A stage which failed is
+ * not reported.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public interface PythiaMetrics {
+
+  /**
+   * Metrics which ignore all timings. Operations don't read the clock when this instance is used.
+   */
+  PythiaMetrics NOOP = new PythiaMetrics() {
+
+    @Override
+    public void stageCompleted(Operation operation, Stage stage, long nanos) {
+    }
+
+    @Override
+    public void operationCompleted(Operation operation, Outcome outcome, int proofKeyVersion,
+        long nanos, Throwable error) {
+    }
+  };
+
+  /**
+   * Called when an operation is started.
+   * 
+   * @param operation
+   *          the operation.
+   */
+  default void operationStarted(Operation operation) {
+  }
+
+  /**
+   * Called when a stage of an operation is completed.
+   * 
+   * @param operation
+   *          the operation.
+   * @param stage
+   *          the completed stage.
+   * @param nanos
+   *          the time spent in the stage, in nanoseconds.
+   */
+  void stageCompleted(Operation operation, Stage stage, long nanos);
+
+  /**
+   * Called when an operation is completed, successfully or not.
+   * 
+   * @param operation
+   *          the operation.
+   * @param outcome
+   *          the operation outcome.
+   * @param proofKeyVersion
+   *          the version of the proof key used by the operation, or {@code 0} if operation
+   *          doesn't use proof keys.
+   * @param nanos
+   *          the operation time, in nanoseconds.
+   * @param error
+   *          the error which operation failed with, or {@code null}.
+   */
+  void operationCompleted(Operation operation, Outcome outcome, int proofKeyVersion, long nanos,
+      Throwable error);
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.metrics;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Pythia operation captured by {@link SlowOperationSampler} with its stage breakdown.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class SlowOperation {
+
+  private final long timestamp;
+  private final String threadName;
+  private final Operation operation;
+  private final Outcome outcome;
+  private final int proofKeyVersion;
+  private final long nanos;
+  private final long[] stageNanos;
+  private final String errorClass;
+
+  SlowOperation(Operation operation, Outcome outcome, int proofKeyVersion, long nanos,
+      long[] stageNanos, Throwable error) {
+    this.timestamp = System.currentTimeMillis();
+    this.threadName = Thread.currentThread().getName();
+    this.operation = operation;
+    this.outcome = outcome;
+    this.proofKeyVersion = proofKeyVersion;
+    this.nanos = nanos;
+    this.stageNanos = stageNanos;
+    this.errorClass = error != null ? ErrorClasses.nameOf(error) : null;
+  }
+
+  /**
+   * Get the time when operation completed.
+   * 
+   * @return the time in milliseconds since epoch.
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * Get the name of the thread which performed operation.
+   * 
+   * @return the thread name.
+   */
+  public String getThreadName() {
+    return threadName;
+  }
+
+  /**
+   * Get the operation.
+   * 
+   * @return the operation.
+   */
+  public Operation getOperation() {
+    return operation;
+  }
+
+  /**
+   * Get the operation outcome.
+   * 
+   * @return the outcome.
+   */
+  public Outcome getOutcome() {
+    return outcome;
+  }
+
+  /**
+   * Get the proof key version used by operation.
+   * 
+   * @return the proof key version, or {@code 0} if operation doesn't use proof keys.
+   */
+  public int getProofKeyVersion() {
+    return proofKeyVersion;
+  }
+
+  /**
+   * Get the operation time.
+   * 
+   * @return the time in nanoseconds.
+   */
+  public long getNanos() {
+    return nanos;
+  }
+
+  /**
+   * Get the time spent in the stage.
+   * 
+   * @param stage
+   *          the stage.
+   * @return the time in nanoseconds, or {@code -1} if stage was not completed.
+   */
+  public long getStageNanos(Stage stage) {
+    return stageNanos[stage.ordinal()];
+  }
+
+  /**
+   * Get the completed stages with time spent in them.
+   * 
+   * @return the stage times in nanoseconds, in stage order.
+   */
+  public Map<Stage, Long> getStages() {
+    Map<Stage, Long> stages = new EnumMap<>(Stage.class);
+    for (Stage stage : Stage.values()) {
+      if (stageNanos[stage.ordinal()] >= 0) {
+        stages.put(stage, stageNanos[stage.ordinal()]);
+      }
+    }
+    return stages;
+  }
+
+  /**
+   * Get the class of error which operation failed with.
+   * 
+   * @return the error class name, or {@code null} if operation didn't fail.
+   */
+  public String getErrorClass() {
+    return errorClass;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    StringBuilder sb = new StringBuilder();
+    sb.append(format.format(new Date(timestamp))).append(' ').append(threadName).append(' ')
+        .append(operation).append(' ').append(outcome).append(' ').append(millis(nanos))
+        .append(" ms");
+    if (proofKeyVersion > 0) {
+      sb.append(" key=").append(proofKeyVersion);
+    }
+    sb.append(" [");
+    boolean first = true;
+    for (Map.Entry<Stage, Long> stage : getStages().entrySet()) {
+      if (!first) {
+        sb.append(", ");
+      }
+      first = false;
+      sb.append(stage.getKey()).append('=').append(millis(stage.getValue())).append(" ms");
+    }
+    sb.append(']');
+    if (errorClass != null) {
+      sb.append(" error=").append(errorClass);
+    }
+    return sb.toString();
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+  }
+
+}
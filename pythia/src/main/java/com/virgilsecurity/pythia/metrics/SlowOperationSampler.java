@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link PythiaMetrics} which capture operations slower than a threshold with their stage
+ * breakdown into a bounded ring buffer. When buffer is full, the oldest operations are
+ * overwritten.
+ * 
+ * <p>
+ * Stages are collected per thread, so operations should report their stages on the thread which
+ * completes them. Operations whose stages run on other threads buffer them in
+ * {@link StageTimings} and report them right before completion.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class SlowOperationSampler implements PythiaMetrics {
+
+  private static final int STAGES = Stage.values().length;
+
+  private final PythiaMetrics delegate;
+  private final long thresholdNanos;
+  private final AtomicReferenceArray<SlowOperation> buffer;
+  private final AtomicLong sequence = new AtomicLong();
+  private final ThreadLocal<long[]> stages = new ThreadLocal<long[]>() {
+
+    @Override
+    protected long[] initialValue() {
+      long[] stageNanos = new long[STAGES];
+      Arrays.fill(stageNanos, -1L);
+      return stageNanos;
+    }
+  };
+
+  /**
+   * Create a new instance of {@link SlowOperationSampler}.
+   * 
+   * @param threshold
+   *          operations which take at least this time are captured.
+   * @param unit
+   *          the time unit of the threshold.
+   * @param capacity
+   *          the maximum number of captured operations kept.
+   */
+  public SlowOperationSampler(long threshold, TimeUnit unit, int capacity) {
+    this(PythiaMetrics.NOOP, threshold, unit, capacity);
+  }
+
+  /**
+   * Create a new instance of {@link SlowOperationSampler}.
+   * 
+   * @param delegate
+   *          the metrics which receive all timings.
+   * @param threshold
+   *          operations which take at least this time are captured.
+   * @param unit
+   *          the time unit of the threshold.
+   * @param capacity
+   *          the maximum number of captured operations kept.
+   */
+  public SlowOperationSampler(PythiaMetrics delegate, long threshold, TimeUnit unit,
+      int capacity) {
+    if (delegate == null) {
+      throw new IllegalArgumentException("Metrics should be set");
+    }
+    if (threshold < 0) {
+      throw new IllegalArgumentException("Threshold should not be negative");
+    }
+    if (unit == null) {
+      throw new IllegalArgumentException("Time unit should be set");
+    }
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity should be positive");
+    }
+    this.delegate = delegate;
+    this.thresholdNanos = unit.toNanos(threshold);
+    this.buffer = new AtomicReferenceArray<>(capacity);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.metrics.PythiaMetrics#operationStarted(
+   * com.virgilsecurity.pythia.metrics.Operation)
+   */
+  @Override
+  public void operationStarted(Operation operation) {
+    Arrays.fill(this.stages.get(), -1L);
+    this.delegate.operationStarted(operation);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.metrics.PythiaMetrics#stageCompleted(
+   * com.virgilsecurity.pythia.metrics.Operation, com.virgilsecurity.pythia.metrics.Stage, long)
+   */
+  @Override
+  public void stageCompleted(Operation operation, Stage stage, long nanos) {
+    this.stages.get()[stage.ordinal()] = nanos;
+    this.delegate.stageCompleted(operation, stage, nanos);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.metrics.PythiaMetrics#operationCompleted(
+   * com.virgilsecurity.pythia.metrics.Operation, com.virgilsecurity.pythia.metrics.Outcome, int,
+   * long, java.lang.Throwable)
+   */
+  @Override
+  public void operationCompleted(Operation operation, Outcome outcome, int proofKeyVersion,
+      long nanos, Throwable error) {
+    long[] stageNanos = this.stages.get();
+    if (nanos >= this.thresholdNanos) {
+      SlowOperation slowOperation = new SlowOperation(operation, outcome, proofKeyVersion, nanos,
+          stageNanos.clone(), error);
+      long index = this.sequence.getAndIncrement();
+      this.buffer.set((int) (index % this.buffer.length()), slowOperation);
+    }
+    // Don't leak stages into the next operation completed on this thread
+    Arrays.fill(stageNanos, -1L);
+    this.delegate.operationCompleted(operation, outcome, proofKeyVersion, nanos, error);
+  }
+
+  /**
+   * Get the number of captured operations, including ones which were overwritten.
+   * 
+   * @return the number of captured operations.
+   */
+  public long getCapturedCount() {
+    return this.sequence.get();
+  }
+
+  /**
+   * Get captured operations which are kept in the buffer.
+   * 
+   * @return the captured operations, the oldest first.
+   */
+  public List<SlowOperation> getSlowOperations() {
+    int capacity = this.buffer.length();
+    long end = this.sequence.get();
+    long start = Math.max(0, end - capacity);
+    List<SlowOperation> operations = new ArrayList<>((int) (end - start));
+    for (long i = start; i < end; i++) {
+      SlowOperation operation = this.buffer.get((int) (i % capacity));
+      if (operation != null) {
+        operations.add(operation);
+      }
+    }
+    return operations;
+  }
+
+  /**
+   * Dump captured operations which are kept in the buffer.
+   * 
+   * @return the captured operations, one per line, the oldest first.
+   */
+  public String dump() {
+    StringBuilder sb = new StringBuilder();
+    for (SlowOperation operation : getSlowOperations()) {
+      sb.append(operation).append(System.lineSeparator());
+    }
+    return sb.toString();
+  }
+
+}
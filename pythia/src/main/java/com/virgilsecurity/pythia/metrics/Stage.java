@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.metrics;
+
+/**
+ * Stages of a Pythia operation reported to {@link PythiaMetrics}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public enum Stage {
+
+  /**
+   * Access token acquisition.
+   */
+  GET_TOKEN,
+
+  /**
+   * Password blinding.
+   */
+  BLIND,
+
+  /**
+   * Connection to Pythia service. This and following HTTP stages are parts of {@link #TRANSFORM}
+   * or {@link #GENERATE_SEED} stage, they are reported before it and only by clients which
+   * measure them.
+   */
+  CONNECT,
+
+  /**
+   * Request encoding and writing.
+   */
+  WRITE_REQUEST,
+
+  /**
+   * Time from request sent to response headers received.
+   */
+  SERVER,
+
+  /**
+   * Response reading and decoding.
+   */
+  READ_RESPONSE,
+
+  /**
+   * Password transformation call to Pythia service.
+   */
+  TRANSFORM,
+
+  /**
+   * Seed generation call to Pythia service.
+   */
+  GENERATE_SEED,
+
+  /**
+   * Transformation proof verification.
+   */
+  VERIFY,
+
+  /**
+   * Transformed password deblinding.
+   */
+  DEBLIND,
+
+  /**
+   * Key pair generation from the deblinded seed.
+   */
+  GENERATE_KEY_PAIR
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Stage timings of an operation whose stages run on several threads. Metrics such as
+ * {@link SlowOperationSampler} collect stages per thread, so such operations buffer their stages
+ * and report them on the thread which completes the operation, right before
+ * {@link PythiaMetrics#operationCompleted(Operation, Outcome, int, long, Throwable)}.
+ * 
+ * <p>
+ * An instance should be used by one thread at a time. This class is internal to the SDK.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class StageTimings {
+
+  private Stage[] stages;
+  private long[] nanos;
+  private int size;
+
+  /**
+   * Create a new instance of {@link StageTimings}.
+   */
+  public StageTimings() {
+    this.stages = new Stage[Stage.values().length];
+    this.nanos = new long[this.stages.length];
+  }
+
+  /**
+   * Add the time spent in a stage.
+   * 
+   * @param stage
+   *          the completed stage.
+   * @param stageNanos
+   *          the time spent in the stage, in nanoseconds.
+   */
+  public void add(Stage stage, long stageNanos) {
+    if (this.size == this.stages.length) {
+      this.stages = Arrays.copyOf(this.stages, this.size * 2);
+      this.nanos = Arrays.copyOf(this.nanos, this.size * 2);
+    }
+    this.stages[this.size] = stage;
+    this.nanos[this.size] = stageNanos;
+    this.size++;
+  }
+
+  /**
+   * Add all stages of other timings, which were collected by another thread.
+   * 
+   * @param other
+   *          the timings to add.
+   */
+  public void addAll(StageTimings other) {
+    for (int i = 0; i < other.size; i++) {
+      add(other.stages[i], other.nanos[i]);
+    }
+  }
+
+  /**
+   * Report buffered stages in the order they were added and clear the buffer.
+   * 
+   * @param metrics
+   *          the metrics to report to.
+   * @param operation
+   *          the operation the stages belong to.
+   */
+  public void report(PythiaMetrics metrics, Operation operation) {
+    for (int i = 0; i < this.size; i++) {
+      metrics.stageCompleted(operation, this.stages[i], this.nanos[i]);
+      this.stages[i] = null;
+    }
+    this.size = 0;
+  }
+
+}
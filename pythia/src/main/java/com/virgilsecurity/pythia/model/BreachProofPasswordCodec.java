@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.model;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary encoding of {@link BreachProofPassword} for storage. The layout is fixed and
+ * big-endian:
+ * 
+ * <pre>
+ * offset  size  field
+ * 0       1     format, {@value #FORMAT_V1}
+ * 1       4     proof key version
+ * 5       2     salt length, S
+ * 7       2     deblinded password length, D
+ * 9       S     salt
+ * 9 + S   D     deblinded password
+ * </pre>
+ * 
+ * <p>
+ * A breach proof password with a 32 byte salt and a 384 byte deblinded password takes 425 bytes,
+ * against 560 bytes of the same fields as Base64 strings. Encoded records can be read without
+ * decoding with {@link BreachProofPasswordView}.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class BreachProofPasswordCodec {
+
+  /**
+   * The first and current format of the encoding.
+   */
+  public static final int FORMAT_V1 = 1;
+
+  /**
+   * Size of the fixed part of the encoding which precedes salt and deblinded password.
+   */
+  public static final int HEADER_SIZE = 9;
+
+  static final int VERSION_OFFSET = 1;
+  static final int SALT_LENGTH_OFFSET = 5;
+  static final int DEBLINDED_LENGTH_OFFSET = 7;
+  static final int MAX_FIELD_LENGTH = 0xFFFF;
+
+  private BreachProofPasswordCodec() {
+  }
+
+  /**
+   * Get the number of bytes the breach proof password takes when encoded.
+   * 
+   * @param breachProofPassword
+   *          the breach proof password.
+   * @return the encoded size in bytes.
+   */
+  public static int encodedSize(BreachProofPassword breachProofPassword) {
+    return HEADER_SIZE + breachProofPassword.getSalt().length
+        + breachProofPassword.getDeblindedPassword().length;
+  }
+
+  /**
+   * Encode the breach proof password into a new array.
+   * 
+   * @param breachProofPassword
+   *          the breach proof password.
+   * @return the encoded breach proof password.
+   */
+  public static byte[] encode(BreachProofPassword breachProofPassword) {
+    byte[] encoded = new byte[encodedSize(breachProofPassword)];
+    encode(breachProofPassword, ByteBuffer.wrap(encoded));
+    return encoded;
+  }
+
+  /**
+   * Encode the breach proof password at the position of the buffer and advance the position.
+   * 
+   * @param breachProofPassword
+   *          the breach proof password.
+   * @param buffer
+   *          the buffer to write to.
+   * @throws BufferOverflowException
+   *           if there is not enough space remaining in the buffer.
+   */
+  public static void encode(BreachProofPassword breachProofPassword, ByteBuffer buffer) {
+    if (breachProofPassword == null) {
+      throw new IllegalArgumentException("Breach proof password should be set");
+    }
+    byte[] salt = breachProofPassword.getSalt();
+    byte[] deblindedPassword = breachProofPassword.getDeblindedPassword();
+    if (salt.length > MAX_FIELD_LENGTH || deblindedPassword.length > MAX_FIELD_LENGTH) {
+      throw new IllegalArgumentException("Breach proof password is too long to encode");
+    }
+    if (buffer.remaining() < encodedSize(breachProofPassword)) {
+      throw new BufferOverflowException();
+    }
+    int position = buffer.position();
+    buffer.put(position, (byte) FORMAT_V1);
+    putInt(buffer, position + VERSION_OFFSET, breachProofPassword.getVersion());
+    putShort(buffer, position + SALT_LENGTH_OFFSET, salt.length);
+    putShort(buffer, position + DEBLINDED_LENGTH_OFFSET, deblindedPassword.length);
+    buffer.position(position + HEADER_SIZE);
+    buffer.put(salt);
+    buffer.put(deblindedPassword);
+  }
+
+  /**
+   * Decode a breach proof password.
+   * 
+   * @param encoded
+   *          the encoded breach proof password.
+   * @return the decoded breach proof password.
+   * @throws IllegalArgumentException
+   *           if the encoding is malformed.
+   */
+  public static BreachProofPassword decode(byte[] encoded) {
+    return decode(ByteBuffer.wrap(encoded));
+  }
+
+  /**
+   * Decode a breach proof password at the position of the buffer and advance the position.
+   * 
+   * @param buffer
+   *          the buffer to read from.
+   * @return the decoded breach proof password.
+   * @throws IllegalArgumentException
+   *           if the encoding is malformed.
+   */
+  public static BreachProofPassword decode(ByteBuffer buffer) {
+    int position = buffer.position();
+    int length = validate(buffer, position);
+    byte[] salt = new byte[getShort(buffer, position + SALT_LENGTH_OFFSET)];
+    byte[] deblindedPassword = new byte[getShort(buffer, position + DEBLINDED_LENGTH_OFFSET)];
+    int version = getInt(buffer, position + VERSION_OFFSET);
+    buffer.position(position + HEADER_SIZE);
+    buffer.get(salt);
+    buffer.get(deblindedPassword);
+    buffer.position(position + length);
+    return new BreachProofPassword(salt, deblindedPassword, version);
+  }
+
+  /**
+   * Check the encoding at the offset of the buffer.
+   * 
+   * @return the encoded length.
+   */
+  static int validate(ByteBuffer buffer, int offset) {
+    int limit = buffer.limit();
+    if (offset < 0 || limit - offset < HEADER_SIZE) {
+      throw new IllegalArgumentException("Breach proof password is truncated");
+    }
+    int format = buffer.get(offset) & 0xFF;
+    if (format != FORMAT_V1) {
+      throw new IllegalArgumentException("Breach proof password format " + format
+          + " is not supported");
+    }
+    int length = HEADER_SIZE + getShort(buffer, offset + SALT_LENGTH_OFFSET)
+        + getShort(buffer, offset + DEBLINDED_LENGTH_OFFSET);
+    if (limit - offset < length) {
+      throw new IllegalArgumentException("Breach proof password is truncated");
+    }
+    return length;
+  }
+
+  static int getInt(ByteBuffer buffer, int index) {
+    return (buffer.get(index) & 0xFF) << 24 | (buffer.get(index + 1) & 0xFF) << 16
+        | (buffer.get(index + 2) & 0xFF) << 8 | (buffer.get(index + 3) & 0xFF);
+  }
+
+  static int getShort(ByteBuffer buffer, int index) {
+    return (buffer.get(index) & 0xFF) << 8 | (buffer.get(index + 1) & 0xFF);
+  }
+
+  private static void putInt(ByteBuffer buffer, int index, int value) {
+    buffer.put(index, (byte) (value >>> 24));
+    buffer.put(index + 1, (byte) (value >>> 16));
+    buffer.put(index + 2, (byte) (value >>> 8));
+    buffer.put(index + 3, (byte) value);
+  }
+
+  private static void putShort(ByteBuffer buffer, int index, int value) {
+    buffer.put(index, (byte) (value >>> 8));
+    buffer.put(index + 1, (byte) value);
+  }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable read-only view of a breach proof password encoded with
+ * {@link BreachProofPasswordCodec}. Fields are read straight from the wrapped buffer, so a view can
+ * be pointed at each record of a cache or a file in turn without allocating.
+ * 
+ * <p>
+ * A view is not thread-safe and does not copy the buffer; changes to the buffer are visible
+ * through the view.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class BreachProofPasswordView {
+
+  private ByteBuffer buffer;
+  private int offset;
+  private int saltLength;
+  private int deblindedPasswordLength;
+
+  /**
+   * Point the view at the encoded breach proof password which starts at the offset of the buffer.
+   * 
+   * @param buffer
+   *          the buffer which holds the encoded breach proof password.
+   * @param offset
+   *          the absolute offset of the encoded breach proof password.
+   * @return this view.
+   * @throws IllegalArgumentException
+   *           if the encoding is malformed.
+   */
+  public BreachProofPasswordView wrap(ByteBuffer buffer, int offset) {
+    BreachProofPasswordCodec.validate(buffer, offset);
+    this.buffer = buffer;
+    this.offset = offset;
+    this.saltLength = BreachProofPasswordCodec.getShort(buffer,
+        offset + BreachProofPasswordCodec.SALT_LENGTH_OFFSET);
+    this.deblindedPasswordLength = BreachProofPasswordCodec.getShort(buffer,
+        offset + BreachProofPasswordCodec.DEBLINDED_LENGTH_OFFSET);
+    return this;
+  }
+
+  /**
+   * Get password version.
+   * 
+   * @return the version.
+   */
+  public int getVersion() {
+    return BreachProofPasswordCodec.getInt(buffer(),
+        this.offset + BreachProofPasswordCodec.VERSION_OFFSET);
+  }
+
+  /**
+   * Get the salt length.
+   * 
+   * @return the salt length in bytes.
+   */
+  public int getSaltLength() {
+    buffer();
+    return this.saltLength;
+  }
+
+  /**
+   * Get the deblinded password length.
+   * 
+   * @return the deblinded password length in bytes.
+   */
+  public int getDeblindedPasswordLength() {
+    buffer();
+    return this.deblindedPasswordLength;
+  }
+
+  /**
+   * Get the number of bytes the encoded breach proof password takes in the buffer.
+   * 
+   * @return the encoded length in bytes.
+   */
+  public int getEncodedLength() {
+    buffer();
+    return BreachProofPasswordCodec.HEADER_SIZE + this.saltLength + this.deblindedPasswordLength;
+  }
+
+  /**
+   * Get a copy of the salt.
+   * 
+   * @return the salt.
+   */
+  public byte[] getSalt() {
+    byte[] salt = new byte[getSaltLength()];
+    copy(saltOffset(), salt);
+    return salt;
+  }
+
+  /**
+   * Get a copy of the deblinded password.
+   * 
+   * @return the deblinded password.
+   */
+  public byte[] getDeblindedPassword() {
+    byte[] deblindedPassword = new byte[getDeblindedPasswordLength()];
+    copy(saltOffset() + this.saltLength, deblindedPassword);
+    return deblindedPassword;
+  }
+
+  /**
+   * Compare the deblinded password with the one in the buffer in constant time, without copying
+   * it out of the buffer.
+   * 
+   * @param deblindedPassword
+   *          the deblinded password to compare with.
+   * @return {@code true} if deblinded passwords are equal.
+   */
+  public boolean matchesDeblindedPassword(byte[] deblindedPassword) {
+    if (deblindedPassword == null || deblindedPassword.length != getDeblindedPasswordLength()) {
+      return false;
+    }
+    int index = saltOffset() + this.saltLength;
+    int diff = 0;
+    for (int i = 0; i < deblindedPassword.length; i++) {
+      diff |= this.buffer.get(index + i) ^ deblindedPassword[i];
+    }
+    return diff == 0;
+  }
+
+  /**
+   * Copy the viewed breach proof password into a new {@link BreachProofPassword}.
+   * 
+   * @return the breach proof password.
+   */
+  public BreachProofPassword toBreachProofPassword() {
+    return new BreachProofPassword(getSalt(), getDeblindedPassword(), getVersion());
+  }
+
+  private int saltOffset() {
+    return this.offset + BreachProofPasswordCodec.HEADER_SIZE;
+  }
+
+  private void copy(int index, byte[] dst) {
+    ByteBuffer source = buffer().duplicate();
+    source.position(index);
+    source.get(dst);
+  }
+
+  private ByteBuffer buffer() {
+    if (this.buffer == null) {
+      throw new IllegalStateException("View is not wrapped around a buffer");
+    }
+    return this.buffer;
+  }
+
+}
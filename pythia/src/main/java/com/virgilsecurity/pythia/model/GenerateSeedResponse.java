@@ -46,6 +46,22 @@ public class GenerateSeedResponse {
   @SerializedName("seed")
   private byte[] seed;
 
+  /**
+   * Create a new instance of {@link GenerateSeedResponse}.
+   *
+   */
+  public GenerateSeedResponse() {
+  }
+
+  /**
+   * Create a new instance of {@link GenerateSeedResponse}.
+   *
+   * @param seed the seed.
+   */
+  public GenerateSeedResponse(byte[] seed) {
+    this.seed = seed;
+  }
+
   /**
    * Get the seed.
    * 
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.model.exception;
+
+/**
+ * This exception occurred if a call was rejected by the client before it reached Pythia service,
+ * because the client's call queue was full or the call was preempted by a call of higher
+ * priority. Unlike a {@link ThrottlingException} returned by Pythia service, its error code is
+ * always {@link #ERROR_CODE}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class CallRejectedException extends ThrottlingException {
+
+  private static final long serialVersionUID = 6163204722580853627L;
+
+  /**
+   * The error code of calls rejected by the client.
+   */
+  public static final int ERROR_CODE = 0;
+
+  private final boolean preempted;
+
+  /**
+   * Create a new instance of {@link CallRejectedException}.
+   * 
+   * @param message
+   *          the detail message.
+   * @param preempted
+   *          {@code true} if the call was preempted by a call of higher priority, {@code false}
+   *          if the call queue was full.
+   */
+  public CallRejectedException(String message, boolean preempted) {
+    super(ERROR_CODE, message, null);
+    this.preempted = preempted;
+  }
+
+  /**
+   * Create a {@link CallRejectedException} which doesn't capture a stack trace. Used when calls
+   * are rejected in bulk.
+   * 
+   * @param message
+   *          the detail message.
+   * @param preempted
+   *          {@code true} if the call was preempted by a call of higher priority, {@code false}
+   *          if the call queue was full.
+   * @return the exception.
+   */
+  public static CallRejectedException stackless(String message, boolean preempted) {
+    return new StacklessCallRejectedException(message, preempted);
+  }
+
+  /**
+   * Check whether the call was preempted by a call of higher priority.
+   * 
+   * @return {@code true} if the call was preempted, {@code false} if the call queue was full.
+   */
+  public boolean isPreempted() {
+    return preempted;
+  }
+
+}
@@ -43,4 +43,21 @@ public class ProofKeyNotFoundException extends RuntimeException {
 
   private static final long serialVersionUID = -9158397431024566306L;
 
+  /**
+   * Create a new instance of {@link ProofKeyNotFoundException}.
+   *
+   */
+  public ProofKeyNotFoundException() {
+  }
+
+  /**
+   * Create a new instance of {@link ProofKeyNotFoundException}.
+   *
+   * @param version
+   *          the version of the proof key which wasn't found.
+   */
+  public ProofKeyNotFoundException(int version) {
+    super("Proof key version " + version + " not found");
+  }
+
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.model.exception;
+
+/**
+ * This exception occurred if Pythia operation didn't complete before its deadline.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class PythiaTimeoutException extends VirgilPythiaServiceException {
+
+  private static final long serialVersionUID = 2694461396380914277L;
+
+  private final String stage;
+
+  /**
+   * Create a new instance of {@link PythiaTimeoutException}.
+   *
+   * @param stage
+   *          the operation stage at which deadline was exceeded.
+   */
+  public PythiaTimeoutException(String stage) {
+    super("Deadline exceeded at " + stage);
+    this.stage = stage;
+  }
+
+  /**
+   * Create a new instance of {@link PythiaTimeoutException}.
+   *
+   * @param stage
+   *          the operation stage at which deadline was exceeded.
+   * @param cause
+   *          the cause (which is saved for later retrieval by the {@link #getCause()} method).
+   */
+  public PythiaTimeoutException(String stage, Throwable cause) {
+    this(stage);
+    initCause(cause);
+  }
+
+  /**
+   * Create a {@link PythiaTimeoutException} which doesn't capture a stack trace. Used on hot paths
+   * where deadlines may expire in bulk.
+   *
+   * @param stage
+   *          the operation stage at which deadline was exceeded.
+   * @param cause
+   *          the cause, or {@code null} if there is none.
+   * @return the exception.
+   */
+  public static PythiaTimeoutException stackless(String stage, Throwable cause) {
+    if (cause == null) {
+      return new StacklessTimeoutException(stage);
+    }
+    return new StacklessTimeoutException(stage, cause);
+  }
+
+  /**
+   * Get the operation stage at which deadline was exceeded.
+   * 
+   * @return the stage name.
+   */
+  public String getStage() {
+    return stage;
+  }
+
+}
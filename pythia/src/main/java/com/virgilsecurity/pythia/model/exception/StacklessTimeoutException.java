@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.model.exception;
+
+/**
+ * {@link PythiaTimeoutException} which doesn't capture a stack trace. Deadlines expire in bulk
+ * when Pythia service is overloaded, and the stage name tells where the time ran out.
+ * Instances are created with {@link PythiaTimeoutException#stackless(String, Throwable)}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+final class StacklessTimeoutException extends PythiaTimeoutException {
+
+  private static final long serialVersionUID = 8860356829735416474L;
+
+  /**
+   * Create a new instance of {@link StacklessTimeoutException}.
+   *
+   * @param stage
+   *          the operation stage at which deadline was exceeded.
+   */
+  StacklessTimeoutException(String stage) {
+    super(stage);
+  }
+
+  /**
+   * Create a new instance of {@link StacklessTimeoutException}.
+   *
+   * @param stage
+   *          the operation stage at which deadline was exceeded.
+   * @param cause
+   *          the cause (which is saved for later retrieval by the {@link #getCause()} method).
+   */
+  StacklessTimeoutException(String stage, Throwable cause) {
+    super(stage, cause);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Throwable#fillInStackTrace()
+   */
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+
+}
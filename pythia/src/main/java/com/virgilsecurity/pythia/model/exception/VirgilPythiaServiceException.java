@@ -50,6 +50,7 @@ public class VirgilPythiaServiceException extends VirgilException {
   private int error;
   private String message;
   private HttpError httpError;
+  private transient String detailMessage;
 
   /**
    * Create a new instance of {@link VirgilPythiaServiceException}.
@@ -109,21 +110,26 @@ public class VirgilPythiaServiceException extends VirgilException {
   }
 
   /**
-   * Get the detail message.
+   * Get the detail message. The message is formatted on the first call, so exceptions which are
+   * handled without reading the message don't pay for it.
    * 
    * @return the detail message.
    */
   public String getMessage() {
-    StringBuilder sb = new StringBuilder("\n");
-    if (httpError != null) {
-      sb.append("Http response: ").append(httpError.getCode());
-      if (!StringUtils.isBlank(httpError.getMessage())) {
-        sb.append(":").append(httpError.getMessage());
+    String detailMessage = this.detailMessage;
+    if (detailMessage == null) {
+      String serverResponse = "Server response: " + error + ":" + message;
+      if (httpError == null) {
+        detailMessage = "\n" + serverResponse;
+      } else if (StringUtils.isBlank(httpError.getMessage())) {
+        detailMessage = "\nHttp response: " + httpError.getCode() + "\n" + serverResponse;
+      } else {
+        detailMessage = "\nHttp response: " + httpError.getCode() + ":" + httpError.getMessage()
+            + "\n" + serverResponse;
       }
-      sb.append("\n");
+      this.detailMessage = detailMessage;
     }
-    sb.append("Server response: ").append(error).append(":").append(message);
-    return sb.toString();
+    return detailMessage;
   }
 
   /**
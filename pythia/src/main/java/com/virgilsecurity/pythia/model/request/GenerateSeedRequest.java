@@ -69,4 +69,22 @@ public class GenerateSeedRequest {
     this.brainkeyId = brainkeyId;
   }
 
+  /**
+   * Get the blinded password.
+   *
+   * @return the blinded password.
+   */
+  public byte[] getBlindedPassword() {
+    return blindedPassword;
+  }
+
+  /**
+   * Get the Brainkey ID.
+   *
+   * @return the Brainkey ID value, or {@code null} if it's not set.
+   */
+  public String getBrainkeyId() {
+    return brainkeyId;
+  }
+
 }
@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Memory-mapped file of breach proof passwords written with {@link BreachProofPasswordFileWriter}.
+ * Records have a fixed stride, so any record is located by its index, and the file is scanned
+ * through the operating system page cache instead of the heap. Files bigger than 2 GB are mapped
+ * in several segments.
+ * 
+ * <p>
+ * The file starts with a {@value #HEADER_SIZE} byte big-endian header:
+ * </p>
+ * 
+ * <pre>
+ * offset  size  field
+ * 0       4     magic, "PYBP"
+ * 4       1     format, 1
+ * 6       2     user key length, K
+ * 8       2     salt length, S
+ * 10      2     deblinded password length, D
+ * 16      8     number of records
+ * </pre>
+ * 
+ * <p>
+ * and is followed by records:
+ * </p>
+ * 
+ * <pre>
+ * offset     size  field
+ * 0          4     proof key version
+ * 4          2     length of the UTF-8 user key
+ * 6          K     user key, padded with zeroes
+ * 6 + K      S     salt
+ * 6 + K + S  D     deblinded password
+ * </pre>
+ * 
+ * <p>
+ * A file opened for writing can be updated in place with
+ * {@link BreachProofPasswordRecord#update(byte[], int)}, or with
+ * {@link #update(int, int, UnaryOperator)} which survives crashes. Records of a file can be
+ * processed in parallel with {@code StreamSupport.stream(file.spliterator(), true)}.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class BreachProofPasswordFile implements Closeable {
+
+  /**
+   * Size of the file header.
+   */
+  public static final int HEADER_SIZE = 32;
+
+  static final int MAGIC = 0x50594250;
+  static final int FORMAT_V1 = 1;
+  static final int FORMAT_OFFSET = 4;
+  static final int USER_KEY_LENGTH_OFFSET = 6;
+  static final int SALT_LENGTH_OFFSET = 8;
+  static final int DEBLINDED_LENGTH_OFFSET = 10;
+  static final int SIZE_OFFSET = 16;
+  static final int RECORD_HEADER_SIZE = 6;
+
+  private final Path path;
+  private final FileChannel channel;
+  private final boolean writable;
+  private final int userKeyLength;
+  private final int saltLength;
+  private final int deblindedPasswordLength;
+  private final int stride;
+  private final long size;
+  private final int segmentRecords;
+  private final MappedByteBuffer[] segments;
+
+  private BreachProofPasswordFile(Path path, FileChannel channel, boolean writable,
+      int maxSegmentSize) throws IOException {
+    this.path = path;
+    this.channel = channel;
+    this.writable = writable;
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    while (header.hasRemaining()) {
+      if (channel.read(header, header.position()) < 0) {
+        throw new IOException("Breach proof password file is truncated");
+      }
+    }
+    if (header.getInt(0) != MAGIC) {
+      throw new IOException("Not a breach proof password file");
+    }
+    int format = header.get(FORMAT_OFFSET) & 0xFF;
+    if (format != FORMAT_V1) {
+      throw new IOException("Breach proof password file format " + format + " is not supported");
+    }
+    this.userKeyLength = header.getShort(USER_KEY_LENGTH_OFFSET) & 0xFFFF;
+    this.saltLength = header.getShort(SALT_LENGTH_OFFSET) & 0xFFFF;
+    this.deblindedPasswordLength = header.getShort(DEBLINDED_LENGTH_OFFSET) & 0xFFFF;
+    this.stride = stride(this.userKeyLength, this.saltLength, this.deblindedPasswordLength);
+    this.size = header.getLong(SIZE_OFFSET);
+    if (this.size < 0 || channel.size() < HEADER_SIZE + this.size * this.stride) {
+      throw new IOException("Breach proof password file is truncated");
+    }
+
+    this.segmentRecords = Math.max(1, maxSegmentSize / this.stride);
+    int segmentCount = (int) ((this.size + this.segmentRecords - 1) / this.segmentRecords);
+    this.segments = new MappedByteBuffer[segmentCount];
+    MapMode mode = writable ? MapMode.READ_WRITE : MapMode.READ_ONLY;
+    for (int i = 0; i < segmentCount; i++) {
+      long first = (long) i * this.segmentRecords;
+      long records = Math.min(this.segmentRecords, this.size - first);
+      this.segments[i] = channel.map(mode, HEADER_SIZE + first * this.stride,
+          records * this.stride);
+    }
+  }
+
+  /**
+   * Open a breach proof password file.
+   * 
+   * @param path
+   *          the file path.
+   * @param writable
+   *          {@code true} if records should be updated in place.
+   * @return the opened file.
+   * @throws IOException
+   *           if the file can't be opened or is malformed.
+   */
+  public static BreachProofPasswordFile open(Path path, boolean writable) throws IOException {
+    return open(path, writable, Integer.MAX_VALUE);
+  }
+
+  static BreachProofPasswordFile open(Path path, boolean writable, int maxSegmentSize)
+      throws IOException {
+    FileChannel channel = writable
+        ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+        : FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      return new BreachProofPasswordFile(path, channel, writable, maxSegmentSize);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  static int stride(int userKeyLength, int saltLength, int deblindedPasswordLength) {
+    return RECORD_HEADER_SIZE + userKeyLength + saltLength + deblindedPasswordLength;
+  }
+
+  /**
+   * Get the number of records.
+   * 
+   * @return the number of records.
+   */
+  public long size() {
+    return this.size;
+  }
+
+  /**
+   * Get maximum length of UTF-8 encoded user keys.
+   * 
+   * @return the user key length in bytes.
+   */
+  public int getUserKeyLength() {
+    return this.userKeyLength;
+  }
+
+  /**
+   * Get the salt length.
+   * 
+   * @return the salt length in bytes.
+   */
+  public int getSaltLength() {
+    return this.saltLength;
+  }
+
+  /**
+   * Get the deblinded password length.
+   * 
+   * @return the deblinded password length in bytes.
+   */
+  public int getDeblindedPasswordLength() {
+    return this.deblindedPasswordLength;
+  }
+
+  /**
+   * Check if records can be updated.
+   * 
+   * @return {@code true} if the file is opened for writing.
+   */
+  public boolean isWritable() {
+    return this.writable;
+  }
+
+  /**
+   * Get the record at the index.
+   * 
+   * @param index
+   *          the record index.
+   * @return the record.
+   */
+  public BreachProofPasswordRecord get(long index) {
+    return new BreachProofPasswordRecord(this).moveTo(index);
+  }
+
+  /**
+   * Create a spliterator over all records of the file. The spliterator reuses one
+   * {@link BreachProofPasswordRecord} for all records it visits, so the record passed to an
+   * action is valid only until the action returns. Split spliterators visit disjoint ranges of
+   * records and can be used from different threads.
+   * 
+   * @return the spliterator.
+   */
+  public Spliterator<BreachProofPasswordRecord> spliterator() {
+    return new RecordSpliterator(0, this.size);
+  }
+
+  /**
+   * Replace deblinded passwords of all records of the previous version and set them to the next
+   * version. New deblinded passwords are computed in parallel into a journal next to the file,
+   * named as the file with {@code .journal} suffix, and are copied into the file once all of them
+   * are written to the storage device. If the update is interrupted, for example by a crash, run
+   * it again with the same versions and function: it either starts over or finishes copying, so
+   * no record is updated twice. The journal is deleted when the update completes.
+   * 
+   * @param prevVersion
+   *          the version of records to update.
+   * @param nextVersion
+   *          the version of updated records.
+   * @param update
+   *          the function which computes a new deblinded password from the current one.
+   * @return the number of updated records.
+   * @throws IOException
+   *           if the journal can't be written, or it belongs to an unfinished update with other
+   *           versions.
+   * @throws IllegalStateException
+   *           if the file is opened read-only.
+   */
+  public long update(int prevVersion, int nextVersion, UnaryOperator<byte[]> update)
+      throws IOException {
+    if (!this.writable) {
+      throw new IllegalStateException("Breach proof password file is opened read-only");
+    }
+    if (update == null) {
+      throw new IllegalArgumentException("Update function should be set");
+    }
+    return new BreachProofPasswordJournal(this, prevVersion, nextVersion).run(update);
+  }
+
+  /**
+   * Write updated records to the storage device.
+   */
+  public void force() {
+    if (this.writable) {
+      for (MappedByteBuffer segment : this.segments) {
+        segment.force();
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.io.Closeable#close()
+   */
+  @Override
+  public void close() throws IOException {
+    force();
+    this.channel.close();
+  }
+
+  Path getPath() {
+    return this.path;
+  }
+
+  int getStride() {
+    return this.stride;
+  }
+
+  ByteBuffer segment(int index) {
+    return this.segments[index].duplicate();
+  }
+
+  int segmentOf(long index) {
+    return (int) (index / this.segmentRecords);
+  }
+
+  int offsetOf(long index) {
+    return (int) (index % this.segmentRecords) * this.stride;
+  }
+
+  /**
+   * Spliterator over a range of record indexes.
+   */
+  private final class RecordSpliterator implements Spliterator<BreachProofPasswordRecord> {
+
+    private long index;
+    private final long fence;
+    private BreachProofPasswordRecord record;
+
+    private RecordSpliterator(long index, long fence) {
+      this.index = index;
+      this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super BreachProofPasswordRecord> action) {
+      if (this.index >= this.fence) {
+        return false;
+      }
+      action.accept(record().moveTo(this.index++));
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super BreachProofPasswordRecord> action) {
+      BreachProofPasswordRecord current = record();
+      while (this.index < this.fence) {
+        action.accept(current.moveTo(this.index++));
+      }
+    }
+
+    @Override
+    public Spliterator<BreachProofPasswordRecord> trySplit() {
+      long mid = (this.index + this.fence) >>> 1;
+      if (mid <= this.index) {
+        return null;
+      }
+      Spliterator<BreachProofPasswordRecord> prefix = new RecordSpliterator(this.index, mid);
+      this.index = mid;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return this.fence - this.index;
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED | SIZED | SUBSIZED | NONNULL;
+    }
+
+    private BreachProofPasswordRecord record() {
+      if (this.record == null) {
+        this.record = new BreachProofPasswordRecord(BreachProofPasswordFile.this);
+      }
+      return this.record;
+    }
+  }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.storage;
+
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes breach proof passwords into a {@link BreachProofPasswordFile}. Salt and deblinded
+ * password lengths are taken from the first written password, and all other passwords must have
+ * the same lengths. The record count is written on {@link #close()}, so a file which wasn't
+ * closed reads as empty.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class BreachProofPasswordFileWriter implements Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final FileChannel channel;
+  private final int userKeyLength;
+  private int saltLength;
+  private int deblindedPasswordLength;
+  private int stride;
+  private ByteBuffer buffer;
+  private long size;
+  private boolean closed;
+
+  /**
+   * Create a new instance of {@link BreachProofPasswordFileWriter}. An existing file is
+   * overwritten.
+   * 
+   * @param path
+   *          the file path.
+   * @param userKeyLength
+   *          maximum length of UTF-8 encoded user keys.
+   * @throws IOException
+   *           if the file can't be created.
+   */
+  public BreachProofPasswordFileWriter(Path path, int userKeyLength) throws IOException {
+    if (userKeyLength < 0 || userKeyLength > 0xFFFF) {
+      throw new IllegalArgumentException("User key length should be between 0 and 65535");
+    }
+    this.userKeyLength = userKeyLength;
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    try {
+      writeHeader();
+    } catch (IOException e) {
+      this.channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Append a breach proof password.
+   * 
+   * @param userKey
+   *          the key which identifies the user, for example a database id.
+   * @param breachProofPassword
+   *          the breach proof password.
+   * @throws IOException
+   *           if the record can't be written.
+   */
+  public void write(String userKey, BreachProofPassword breachProofPassword) throws IOException {
+    if (this.closed) {
+      throw new IllegalStateException("Writer is closed");
+    }
+    if (userKey == null) {
+      throw new IllegalArgumentException("User key should be set");
+    }
+    if (breachProofPassword == null) {
+      throw new IllegalArgumentException("Breach proof password should be set");
+    }
+    byte[] key = userKey.getBytes(StandardCharsets.UTF_8);
+    if (key.length > this.userKeyLength) {
+      throw new IllegalArgumentException("User key should be at most " + this.userKeyLength
+          + " bytes long");
+    }
+    byte[] salt = breachProofPassword.getSalt();
+    byte[] deblindedPassword = breachProofPassword.getDeblindedPassword();
+    if (this.buffer == null) {
+      if (salt.length > 0xFFFF || deblindedPassword.length > 0xFFFF) {
+        throw new IllegalArgumentException("Breach proof password is too long to store");
+      }
+      this.saltLength = salt.length;
+      this.deblindedPasswordLength = deblindedPassword.length;
+      this.stride = BreachProofPasswordFile.stride(this.userKeyLength, this.saltLength,
+          this.deblindedPasswordLength);
+      this.buffer = ByteBuffer.allocateDirect(Math.max(1, BUFFER_SIZE / this.stride)
+          * this.stride);
+    } else if (salt.length != this.saltLength
+        || deblindedPassword.length != this.deblindedPasswordLength) {
+      throw new IllegalArgumentException("Breach proof passwords should have the same length");
+    }
+
+    if (this.buffer.remaining() < this.stride) {
+      flush();
+    }
+    this.buffer.putInt(breachProofPassword.getVersion());
+    this.buffer.putShort((short) key.length);
+    this.buffer.put(key);
+    for (int i = key.length; i < this.userKeyLength; i++) {
+      this.buffer.put((byte) 0);
+    }
+    this.buffer.put(salt);
+    this.buffer.put(deblindedPassword);
+    this.size++;
+  }
+
+  /**
+   * Get the number of written records.
+   * 
+   * @return the number of records.
+   */
+  public long size() {
+    return this.size;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.io.Closeable#close()
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    try {
+      flush();
+      writeHeader();
+      this.channel.force(true);
+    } finally {
+      this.channel.close();
+    }
+  }
+
+  private void flush() throws IOException {
+    if (this.buffer == null) {
+      return;
+    }
+    this.buffer.flip();
+    while (this.buffer.hasRemaining()) {
+      this.channel.write(this.buffer);
+    }
+    this.buffer.clear();
+  }
+
+  private void writeHeader() throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(BreachProofPasswordFile.HEADER_SIZE);
+    header.putInt(0, BreachProofPasswordFile.MAGIC);
+    header.put(BreachProofPasswordFile.FORMAT_OFFSET, (byte) BreachProofPasswordFile.FORMAT_V1);
+    header.putShort(BreachProofPasswordFile.USER_KEY_LENGTH_OFFSET, (short) this.userKeyLength);
+    header.putShort(BreachProofPasswordFile.SALT_LENGTH_OFFSET, (short) this.saltLength);
+    header.putShort(BreachProofPasswordFile.DEBLINDED_LENGTH_OFFSET,
+        (short) this.deblindedPasswordLength);
+    header.putLong(BreachProofPasswordFile.SIZE_OFFSET, this.size);
+    int position = 0;
+    while (header.hasRemaining()) {
+      position += this.channel.write(header, position);
+    }
+    if (this.channel.position() < BreachProofPasswordFile.HEADER_SIZE) {
+      this.channel.position(BreachProofPasswordFile.HEADER_SIZE);
+    }
+  }
+
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+import java.util.stream.StreamSupport;
+
+/**
+ * Redo journal of an in-place update of a {@link BreachProofPasswordFile}. New deblinded passwords
+ * are computed into the journal first, without touching the file. Once the journal is forced to
+ * the storage device and marked as committed, they are copied into the file. Copying is
+ * idempotent, so a crash in any phase is recovered by running the same update again: an
+ * uncommitted journal is discarded, and a committed one is copied again.
+ * 
+ * <p>
+ * The journal starts with a {@value #HEADER_SIZE} byte big-endian header:
+ * </p>
+ * 
+ * <pre>
+ * offset  size  field
+ * 0       4     magic, "PYBJ"
+ * 4       1     format, 1
+ * 5       1     state, 0 - preparing, 1 - committed
+ * 6       2     deblinded password length, D
+ * 8       4     previous proof key version
+ * 12      4     next proof key version
+ * 16      8     number of records
+ * </pre>
+ * 
+ * <p>
+ * and is followed by an entry of 1 + D bytes for every record of the file. The first byte of an
+ * entry is 1 if the record is updated, and the new deblinded password follows it.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+final class BreachProofPasswordJournal {
+
+  static final int HEADER_SIZE = 32;
+
+  private static final int MAGIC = 0x5059424A;
+  private static final int FORMAT_V1 = 1;
+  private static final int FORMAT_OFFSET = 4;
+  private static final int STATE_OFFSET = 5;
+  private static final int DEBLINDED_LENGTH_OFFSET = 6;
+  private static final int PREV_VERSION_OFFSET = 8;
+  private static final int NEXT_VERSION_OFFSET = 12;
+  private static final int SIZE_OFFSET = 16;
+  private static final byte PREPARING = 0;
+  private static final byte COMMITTED = 1;
+
+  private final BreachProofPasswordFile file;
+  private final Path path;
+  private final int prevVersion;
+  private final int nextVersion;
+  private final int entrySize;
+
+  BreachProofPasswordJournal(BreachProofPasswordFile file, int prevVersion, int nextVersion) {
+    this.file = file;
+    this.path = journalPath(file.getPath());
+    this.prevVersion = prevVersion;
+    this.nextVersion = nextVersion;
+    this.entrySize = 1 + file.getDeblindedPasswordLength();
+  }
+
+  static Path journalPath(Path path) {
+    return path.resolveSibling(path.getFileName() + ".journal");
+  }
+
+  /**
+   * Run the update, or finish an interrupted one.
+   * 
+   * @return the number of updated records.
+   */
+  long run(UnaryOperator<byte[]> update) throws IOException {
+    try (FileChannel channel = open()) {
+      if (!isCommitted(channel)) {
+        prepare(channel, update);
+      }
+      long updated = apply(channel);
+      this.file.force();
+      Files.delete(this.path);
+      return updated;
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Write and commit the journal without applying it, as if the update was interrupted.
+   */
+  void prepare(UnaryOperator<byte[]> update) throws IOException {
+    try (FileChannel channel = open()) {
+      prepare(channel, update);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private FileChannel open() throws IOException {
+    return FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Check if the journal holds a committed update with the same versions, which should be
+   * applied again.
+   */
+  private boolean isCommitted(FileChannel channel) throws IOException {
+    if (channel.size() < HEADER_SIZE) {
+      return false;
+    }
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    while (header.hasRemaining()) {
+      channel.read(header, header.position());
+    }
+    if (header.getInt(0) != MAGIC || header.get(FORMAT_OFFSET) != FORMAT_V1
+        || header.get(STATE_OFFSET) != COMMITTED) {
+      return false;
+    }
+    int prev = header.getInt(PREV_VERSION_OFFSET);
+    int next = header.getInt(NEXT_VERSION_OFFSET);
+    if (prev != this.prevVersion || next != this.nextVersion
+        || header.getLong(SIZE_OFFSET) != this.file.size() || (header.getShort(
+            DEBLINDED_LENGTH_OFFSET) & 0xFFFF) != this.file.getDeblindedPasswordLength()) {
+      throw new IOException("Breach proof password file has an unfinished update from version "
+          + prev + " to " + next + ", run it again with the same update token");
+    }
+    return true;
+  }
+
+  private void writeHeader(FileChannel channel, byte state) {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(0, MAGIC);
+    header.put(FORMAT_OFFSET, (byte) FORMAT_V1);
+    header.put(STATE_OFFSET, state);
+    header.putShort(DEBLINDED_LENGTH_OFFSET, (short) this.file.getDeblindedPasswordLength());
+    header.putInt(PREV_VERSION_OFFSET, this.prevVersion);
+    header.putInt(NEXT_VERSION_OFFSET, this.nextVersion);
+    header.putLong(SIZE_OFFSET, this.file.size());
+    write(channel, header, 0);
+  }
+
+  /**
+   * Compute new deblinded passwords of records of the previous version into the journal and
+   * commit it.
+   */
+  private void prepare(FileChannel channel, UnaryOperator<byte[]> update) throws IOException {
+    channel.truncate(0);
+    writeHeader(channel, PREPARING);
+    compute(channel, update);
+    channel.force(true);
+    writeHeader(channel, COMMITTED);
+    channel.force(true);
+  }
+
+  private void compute(final FileChannel channel, final UnaryOperator<byte[]> update) {
+    StreamSupport.stream(this.file.spliterator(), true)
+        .mapToLong(new ToLongFunction<BreachProofPasswordRecord>() {
+
+          @Override
+          public long applyAsLong(BreachProofPasswordRecord record) {
+            if (record.getVersion() != prevVersion) {
+              return 0;
+            }
+            ByteBuffer entry = ByteBuffer.allocate(entrySize);
+            entry.put((byte) 1);
+            entry.put(update.apply(record.getDeblindedPassword()));
+            entry.flip();
+            write(channel, entry, position(record.getIndex()));
+            return 1;
+          }
+        }).sum();
+  }
+
+  /**
+   * Copy new deblinded passwords from the journal into the file.
+   */
+  private long apply(final FileChannel channel) {
+    return StreamSupport.stream(this.file.spliterator(), true)
+        .mapToLong(new ToLongFunction<BreachProofPasswordRecord>() {
+
+          @Override
+          public long applyAsLong(BreachProofPasswordRecord record) {
+            ByteBuffer entry = ByteBuffer.allocate(entrySize);
+            long position = position(record.getIndex());
+            try {
+              while (entry.hasRemaining()) {
+                if (channel.read(entry, position + entry.position()) < 0) {
+                  // Entries of trailing records which are not updated are not written
+                  return 0;
+                }
+              }
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+            if (entry.get(0) != 1) {
+              return 0;
+            }
+            byte[] deblindedPassword = new byte[entrySize - 1];
+            entry.position(1);
+            entry.get(deblindedPassword);
+            record.update(deblindedPassword, nextVersion);
+            return 1;
+          }
+        }).sum();
+  }
+
+  private long position(long index) {
+    return HEADER_SIZE + index * this.entrySize;
+  }
+
+  private static void write(FileChannel channel, ByteBuffer buffer, long position) {
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, position + buffer.position());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+}
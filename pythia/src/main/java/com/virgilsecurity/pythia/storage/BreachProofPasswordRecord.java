@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.storage;
+
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable view of a record of {@link BreachProofPasswordFile}. Fields are read from and written
+ * to the mapped file directly. A record is not thread-safe.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class BreachProofPasswordRecord {
+
+  private final BreachProofPasswordFile file;
+  private final ByteBuffer[] segments;
+  private ByteBuffer buffer;
+  private int offset;
+  private long index = -1;
+
+  BreachProofPasswordRecord(BreachProofPasswordFile file) {
+    this.file = file;
+    this.segments = new ByteBuffer[file.segmentOf(Math.max(0, file.size() - 1)) + 1];
+  }
+
+  /**
+   * Point the record at another index of the file.
+   * 
+   * @param index
+   *          the record index.
+   * @return this record.
+   */
+  public BreachProofPasswordRecord moveTo(long index) {
+    if (index < 0 || index >= this.file.size()) {
+      throw new IndexOutOfBoundsException("Record " + index + " is out of range");
+    }
+    int segment = this.file.segmentOf(index);
+    if (this.segments[segment] == null) {
+      this.segments[segment] = this.file.segment(segment);
+    }
+    this.buffer = this.segments[segment];
+    this.offset = this.file.offsetOf(index);
+    this.index = index;
+    return this;
+  }
+
+  /**
+   * Get the record index.
+   * 
+   * @return the index.
+   */
+  public long getIndex() {
+    return this.index;
+  }
+
+  /**
+   * Get password version.
+   * 
+   * @return the version.
+   */
+  public int getVersion() {
+    return buffer().getInt(this.offset);
+  }
+
+  /**
+   * Get the user key.
+   * 
+   * @return the user key.
+   */
+  public String getUserKey() {
+    int length = buffer().getShort(this.offset + 4) & 0xFFFF;
+    byte[] userKey = new byte[length];
+    read(this.offset + BreachProofPasswordFile.RECORD_HEADER_SIZE, userKey);
+    return new String(userKey, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Get a copy of the salt.
+   * 
+   * @return the salt.
+   */
+  public byte[] getSalt() {
+    byte[] salt = new byte[this.file.getSaltLength()];
+    read(saltOffset(), salt);
+    return salt;
+  }
+
+  /**
+   * Get a copy of the deblinded password.
+   * 
+   * @return the deblinded password.
+   */
+  public byte[] getDeblindedPassword() {
+    byte[] deblindedPassword = new byte[this.file.getDeblindedPasswordLength()];
+    read(deblindedPasswordOffset(), deblindedPassword);
+    return deblindedPassword;
+  }
+
+  /**
+   * Compare the deblinded password with the one in the file in constant time, without copying it
+   * out of the file.
+   * 
+   * @param deblindedPassword
+   *          the deblinded password to compare with.
+   * @return {@code true} if deblinded passwords are equal.
+   */
+  public boolean matchesDeblindedPassword(byte[] deblindedPassword) {
+    if (deblindedPassword == null
+        || deblindedPassword.length != this.file.getDeblindedPasswordLength()) {
+      return false;
+    }
+    ByteBuffer current = buffer();
+    int start = deblindedPasswordOffset();
+    int diff = 0;
+    for (int i = 0; i < deblindedPassword.length; i++) {
+      diff |= current.get(start + i) ^ deblindedPassword[i];
+    }
+    return diff == 0;
+  }
+
+  /**
+   * Copy the record into a new {@link BreachProofPassword}.
+   * 
+   * @return the breach proof password.
+   */
+  public BreachProofPassword toBreachProofPassword() {
+    return new BreachProofPassword(getSalt(), getDeblindedPassword(), getVersion());
+  }
+
+  /**
+   * Replace the deblinded password and the version of the record in place. The deblinded
+   * password is written first, so a crash between the two writes leaves a new deblinded password
+   * with the old version. Use {@link BreachProofPasswordFile#update(int, int,
+   * java.util.function.UnaryOperator)} to update records in a way which survives crashes.
+   * 
+   * @param deblindedPassword
+   *          the new deblinded password.
+   * @param version
+   *          the new password version.
+   * @throws IllegalStateException
+   *           if the file is opened read-only.
+   */
+  public void update(byte[] deblindedPassword, int version) {
+    if (!this.file.isWritable()) {
+      throw new IllegalStateException("Breach proof password file is opened read-only");
+    }
+    if (deblindedPassword == null
+        || deblindedPassword.length != this.file.getDeblindedPasswordLength()) {
+      throw new IllegalArgumentException("Deblinded password should be "
+          + this.file.getDeblindedPasswordLength() + " bytes long");
+    }
+    ByteBuffer current = buffer();
+    current.position(deblindedPasswordOffset());
+    current.put(deblindedPassword);
+    current.putInt(this.offset, version);
+  }
+
+  private int saltOffset() {
+    return this.offset + BreachProofPasswordFile.RECORD_HEADER_SIZE
+        + this.file.getUserKeyLength();
+  }
+
+  private int deblindedPasswordOffset() {
+    return saltOffset() + this.file.getSaltLength();
+  }
+
+  private void read(int position, byte[] dst) {
+    ByteBuffer current = buffer();
+    current.position(position);
+    current.get(dst);
+  }
+
+  private ByteBuffer buffer() {
+    if (this.buffer == null) {
+      throw new IllegalStateException("Record is not positioned");
+    }
+    return this.buffer;
+  }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.tracing;
+
+import java.util.Map;
+
+/**
+ * A span of Pythia operation or its stage. Spans are used by the thread which started them only.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public interface PythiaSpan {
+
+  /**
+   * Span which doesn't record anything.
+   */
+  PythiaSpan NOOP = new PythiaSpan() {
+
+    @Override
+    public PythiaSpan startChild(String name, boolean remote) {
+      return this;
+    }
+
+    @Override
+    public void setAttribute(String key, String value) {
+    }
+
+    @Override
+    public void setAttribute(String key, long value) {
+    }
+
+    @Override
+    public void setAttribute(String key, boolean value) {
+    }
+
+    @Override
+    public void inject(Map<String, String> headers) {
+    }
+
+    @Override
+    public void recordError(Throwable error) {
+    }
+
+    @Override
+    public void end() {
+    }
+  };
+
+  /**
+   * Start a child span.
+   * 
+   * @param name
+   *          the span name.
+   * @param remote
+   *          {@code true} if span covers a call to a remote service.
+   * @return the started span.
+   */
+  PythiaSpan startChild(String name, boolean remote);
+
+  /**
+   * Set a string attribute.
+   * 
+   * @param key
+   *          the attribute key.
+   * @param value
+   *          the attribute value.
+   */
+  void setAttribute(String key, String value);
+
+  /**
+   * Set a numeric attribute.
+   * 
+   * @param key
+   *          the attribute key.
+   * @param value
+   *          the attribute value.
+   */
+  void setAttribute(String key, long value);
+
+  /**
+   * Set a boolean attribute.
+   * 
+   * @param key
+   *          the attribute key.
+   * @param value
+   *          the attribute value.
+   */
+  void setAttribute(String key, boolean value);
+
+  /**
+   * Put the headers which propagate this span context to a remote service.
+   * 
+   * @param headers
+   *          the HTTP request headers to put propagation headers to.
+   */
+  void inject(Map<String, String> headers);
+
+  /**
+   * Mark span as failed.
+   * 
+   * @param error
+   *          the error which span failed with.
+   */
+  void recordError(Throwable error);
+
+  /**
+   * End the span. Span ignores all calls after it is ended.
+   */
+  void end();
+
+}
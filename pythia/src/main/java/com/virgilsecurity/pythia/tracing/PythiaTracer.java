@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.tracing;
+
+/**
+ * Hook for distributed tracing of Pythia operations. Implementations adapt a tracing library
+ * (e.g. OpenTelemetry) without making Pythia SDK depend on it.
+ * 
+ * <p>
+ * Each operation opens a root span, which is a child of the caller's current trace if tracing
+ * library supports that, and opens a child span for every stage. The span of the call to Pythia
+ * service injects its context into the HTTP request headers, so the service hop is a part of the
+ * same trace.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public interface PythiaTracer {
+
+  /**
+   * Tracer which doesn't record anything. Operations don't inject any headers when this instance
+   * is used.
+   */
+  PythiaTracer NOOP = new PythiaTracer() {
+
+    @Override
+    public PythiaSpan startSpan(String name) {
+      return PythiaSpan.NOOP;
+    }
+  };
+
+  /**
+   * Start the root span of a Pythia operation.
+   * 
+   * @param name
+   *          the span name.
+   * @return the started span.
+   */
+  PythiaSpan startSpan(String name);
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+/**
+ * Creates {@link PythiaClient} instances. The default client is {@link VirgilPythiaClient} on
+ * every platform. On Java 11 and newer {@link VirgilHttp2PythiaClient}, which multiplexes
+ * concurrent calls over HTTP/2, is available on request.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class PythiaClientFactory {
+
+  private static final String BASE_URL = "https://api.virgilsecurity.com";
+  private static final int DEFAULT_CONNECT_TIMEOUT = 10_000;
+  private static final int DEFAULT_READ_TIMEOUT = 30_000;
+
+  private PythiaClientFactory() {
+  }
+
+  /**
+   * Create the default Pythia client.
+   *
+   * @param baseUrl        the service url to fire requests to, or {@code null} for the default
+   *                       Virgil service url.
+   * @param connectTimeout the connect timeout in milliseconds, or {@code null} for the default
+   *                       value.
+   * @param readTimeout    the read timeout in milliseconds, or {@code null} for the default value.
+   * @return the new Pythia client.
+   */
+  public static PythiaClient createDefault(String baseUrl, Integer connectTimeout,
+      Integer readTimeout) {
+    VirgilPythiaClient client;
+    if (baseUrl == null) {
+      client = new VirgilPythiaClient();
+    } else {
+      client = new VirgilPythiaClient(baseUrl);
+    }
+    if (connectTimeout != null) {
+      client.setConnectTimeout(connectTimeout);
+    }
+    if (readTimeout != null) {
+      client.setReadTimeout(readTimeout);
+    }
+    return client;
+  }
+
+  /**
+   * Create the HTTP/2 Pythia client.
+   *
+   * @param baseUrl        the service url to fire requests to, or {@code null} for the default
+   *                       Virgil service url.
+   * @param connectTimeout the connect timeout in milliseconds, or {@code null} for the default
+   *                       value.
+   * @param readTimeout    the read timeout in milliseconds, or {@code null} for the default value.
+   * @return the new Pythia client.
+   */
+  public static PythiaClient createHttp2(String baseUrl, Integer connectTimeout,
+      Integer readTimeout) {
+    return new VirgilHttp2PythiaClient(baseUrl == null ? BASE_URL : baseUrl,
+        connectTimeout == null ? DEFAULT_CONNECT_TIMEOUT : connectTimeout,
+        readTimeout == null ? DEFAULT_READ_TIMEOUT : readTimeout);
+  }
+
+}
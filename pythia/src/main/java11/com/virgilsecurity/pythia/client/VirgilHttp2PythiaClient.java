@@ -0,0 +1,518 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+import com.virgilsecurity.common.util.Validator;
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.VirgilInfo;
+import com.virgilsecurity.pythia.events.PythiaEvents;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.PythiaTimeoutException;
+import com.virgilsecurity.pythia.model.exception.ThrottlingException;
+import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+import com.virgilsecurity.pythia.model.request.GenerateSeedRequest;
+import com.virgilsecurity.pythia.model.request.TransformPasswordRequest;
+import com.virgilsecurity.sdk.common.HttpError;
+import com.virgilsecurity.sdk.utils.OsUtils;
+import com.virgilsecurity.sdk.utils.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link PythiaClient} implementation based on {@link HttpClient}. Requests are multiplexed over
+ * a small number of HTTP/2 connections, so many concurrent calls share the same connection.
+ * 
+ * <p>
+ * Blocking calls report their {@link HttpCallTimings}. Connection setup isn't visible through
+ * {@link HttpClient}, so it's included in the server time and the connect time is always zero.
+ * Asynchronous calls complete on client threads and report no breakdown.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class VirgilHttp2PythiaClient implements AsyncPythiaClient {
+
+  private static final Logger LOGGER = Logger.getLogger(VirgilHttp2PythiaClient.class.getName());
+  private static final RateLimitedLogger FAILURE_LOGGER = new RateLimitedLogger(LOGGER, 10,
+      TimeUnit.SECONDS);
+  private static final String BASE_URL = "https://api.virgilsecurity.com";
+  private static final String VIRGIL_AGENT_HEADER = "virgil-agent";
+  private static final int DEFAULT_CONNECT_TIMEOUT = 10_000;
+  private static final int DEFAULT_READ_TIMEOUT = 30_000;
+  private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+  private static final String TRANSFORM_PATH = "pythia/v1/password";
+  private static final String SEED_PATH = "pythia/v1/brainkey";
+
+  private final HttpClient httpClient;
+  private final URI baseUri;
+  private final int readTimeout;
+  private String bppVirgilAgent;
+  private String brainkeyVirgilAgent;
+  private volatile PythiaCodec codec = PythiaCodecs.json();
+
+  /**
+   * Create a new instance of {@link VirgilHttp2PythiaClient}.
+   *
+   */
+  public VirgilHttp2PythiaClient() {
+    this(BASE_URL);
+  }
+
+  /**
+   * Create a new instance of {@link VirgilHttp2PythiaClient}.
+   *
+   * @param baseUrl the service url to fire requests to.
+   */
+  public VirgilHttp2PythiaClient(String baseUrl) {
+    this(baseUrl, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+  }
+
+  /**
+   * Create a new instance of {@link VirgilHttp2PythiaClient}.
+   *
+   * @param baseUrl        the service url to fire requests to.
+   * @param connectTimeout the connect timeout in milliseconds. Zero means infinite timeout.
+   * @param readTimeout    the timeout of receiving response in milliseconds. Zero means infinite
+   *                       timeout.
+   */
+  public VirgilHttp2PythiaClient(String baseUrl, int connectTimeout, int readTimeout) {
+    this(baseUrl, createHttpClient(connectTimeout), readTimeout);
+  }
+
+  /**
+   * Create a new instance of {@link VirgilHttp2PythiaClient} which shares the given
+   * {@link HttpClient} and its connections.
+   *
+   * @param baseUrl     the service url to fire requests to.
+   * @param httpClient  the HTTP client.
+   * @param readTimeout the timeout of receiving response in milliseconds. Zero means infinite
+   *                    timeout.
+   */
+  public VirgilHttp2PythiaClient(String baseUrl, HttpClient httpClient, int readTimeout) {
+    Validator.checkNullAgrument(baseUrl,
+        "VirgilHttp2PythiaClient -> 'baseUrl' should not be null");
+    Validator.checkNullAgrument(httpClient,
+        "VirgilHttp2PythiaClient -> 'httpClient' should not be null");
+    if (readTimeout < 0) {
+      throw new IllegalArgumentException("VirgilHttp2PythiaClient -> 'readTimeout' should not be "
+          + "negative");
+    }
+    try {
+      this.baseUri = new URI(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/");
+    } catch (URISyntaxException e) {
+      LOGGER.log(Level.SEVERE, "Base URL has wrong format", e);
+      throw new IllegalArgumentException("VirgilHttp2PythiaClient -> 'baseUrl' has wrong format");
+    }
+    this.httpClient = httpClient;
+    this.readTimeout = readTimeout;
+    buildVirgilAgent("bpp", "brainkey", VirgilInfo.VERSION);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaClient#transformPassword(byte[], byte[],
+   * java.lang.Integer, boolean, java.lang.String)
+   */
+  @Override
+  public TransformResponse transformPassword(byte[] salt, byte[] blindedPassword, Integer version,
+      boolean includeProof, String token) throws VirgilPythiaServiceException {
+    return transformPassword(salt, blindedPassword, version, includeProof, token,
+        Deadline.none());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaClient#transformPassword(byte[], byte[],
+   * java.lang.Integer, boolean, java.lang.String, com.virgilsecurity.pythia.Deadline)
+   */
+  @Override
+  public TransformResponse transformPassword(byte[] salt, byte[] blindedPassword, Integer version,
+      boolean includeProof, String token, Deadline deadline) throws VirgilPythiaServiceException {
+    HttpCallTimings timings = HttpCallTimings.active();
+    CallTimes times = timings != null ? new CallTimes() : null;
+    TransformResponse response = await(transformPassword(salt, blindedPassword, version,
+        includeProof, token, deadline, times));
+    record(timings, times);
+    return response;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaClient#generateSeed(byte[], java.lang.String,
+   * java.lang.String)
+   */
+  @Override
+  public byte[] generateSeed(byte[] blindedPassword, String brainKeyId, String token)
+      throws VirgilPythiaServiceException {
+    return generateSeed(blindedPassword, brainKeyId, token, Deadline.none());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.PythiaClient#generateSeed(byte[], java.lang.String,
+   * java.lang.String, com.virgilsecurity.pythia.Deadline)
+   */
+  @Override
+  public byte[] generateSeed(byte[] blindedPassword, String brainKeyId, String token,
+      Deadline deadline) throws VirgilPythiaServiceException {
+    HttpCallTimings timings = HttpCallTimings.active();
+    CallTimes times = timings != null ? new CallTimes() : null;
+    byte[] seed = await(generateSeed(blindedPassword, brainKeyId, token, deadline, times));
+    record(timings, times);
+    return seed;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.AsyncPythiaClient#transformPasswordAsync(byte[],
+   * byte[], java.lang.Integer, boolean, java.lang.String, com.virgilsecurity.pythia.Deadline)
+   */
+  @Override
+  public CompletableFuture<TransformResponse> transformPasswordAsync(byte[] salt,
+      byte[] blindedPassword, Integer version, boolean includeProof, String token,
+      Deadline deadline) {
+    return transformPassword(salt, blindedPassword, version, includeProof, token, deadline, null);
+  }
+
+  private CompletableFuture<TransformResponse> transformPassword(byte[] salt,
+      byte[] blindedPassword, Integer version, boolean includeProof, String token,
+      Deadline deadline, CallTimes times) {
+    TransformPasswordRequest request = new TransformPasswordRequest(salt, blindedPassword, version,
+        includeProof);
+    Object event = PythiaEvents.beginTransform();
+    CompletableFuture<TransformResponse> future = execute(TRANSFORM_PATH, token, bppVirgilAgent,
+        deadline,
+        new Exchange<TransformResponse>() {
+
+          @Override
+          public void writeRequest(PythiaCodec codec, OutputStream out) throws IOException {
+            codec.writeTransformPasswordRequest(request, out);
+          }
+
+          @Override
+          public TransformResponse readResponse(PythiaCodec codec, InputStream in)
+              throws IOException {
+            return codec.readTransformResponse(in);
+          }
+        }, "transform", this.codec, HttpCallHeaders.get(), times);
+    if (event == null) {
+      return future;
+    }
+    return future.whenComplete((response, error) -> {
+      endTransform(event, TRANSFORM_PATH, version, includeProof, blindedPassword,
+          response != null ? response.getTransformedPassword() : null);
+    });
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.virgilsecurity.pythia.client.AsyncPythiaClient#generateSeedAsync(byte[],
+   * java.lang.String, java.lang.String, com.virgilsecurity.pythia.Deadline)
+   */
+  @Override
+  public CompletableFuture<byte[]> generateSeedAsync(byte[] blindedPassword, String brainKeyId,
+      String token, Deadline deadline) {
+    return generateSeed(blindedPassword, brainKeyId, token, deadline, null);
+  }
+
+  private CompletableFuture<byte[]> generateSeed(byte[] blindedPassword, String brainKeyId,
+      String token, Deadline deadline, CallTimes times) {
+    GenerateSeedRequest request = new GenerateSeedRequest(blindedPassword, brainKeyId);
+    Object event = PythiaEvents.beginGenerateSeed();
+    CompletableFuture<byte[]> future = execute(SEED_PATH, token, brainkeyVirgilAgent, deadline,
+        new Exchange<byte[]>() {
+
+          @Override
+          public void writeRequest(PythiaCodec codec, OutputStream out) throws IOException {
+            codec.writeGenerateSeedRequest(request, out);
+          }
+
+          @Override
+          public byte[] readResponse(PythiaCodec codec, InputStream in) throws IOException {
+            return codec.readGenerateSeedResponse(in).getSeed();
+          }
+        }, "generate seed", this.codec, HttpCallHeaders.get(), times);
+    if (event == null) {
+      return future;
+    }
+    return future.whenComplete((seed, error) -> {
+      PythiaEvents.endGenerateSeed(event, baseUri.resolve(SEED_PATH).toString(),
+          blindedPassword != null ? blindedPassword.length : 0, seed != null ? seed.length : 0);
+    });
+  }
+
+  /**
+   * Get the wire format of requests.
+   *
+   * @return the codec.
+   */
+  public PythiaCodec getCodec() {
+    return codec;
+  }
+
+  /**
+   * Set the wire format of requests. JSON is used by default. With another codec the client still
+   * accepts JSON responses, and if Pythia service rejects the content type with
+   * {@code 415 Unsupported Media Type} the request is repeated and the client switches to JSON.
+   *
+   * @param codec the codec, e.g. {@link PythiaCodecs#cbor()}.
+   */
+  public void setCodec(PythiaCodec codec) {
+    Validator.checkNullAgrument(codec, "VirgilHttp2PythiaClient -> 'codec' should not be null");
+    this.codec = codec;
+  }
+
+  private <T> CompletableFuture<T> execute(String spec, String token, String virgilAgent,
+      Deadline deadline, Exchange<T> exchange, String stage, PythiaCodec requestCodec,
+      Map<String, String> headers, CallTimes times) {
+    if (deadline.isExpired()) {
+      return CompletableFuture.failedFuture(PythiaTimeoutException.stackless(stage, null));
+    }
+    long start = times != null ? System.nanoTime() : 0L;
+    ByteArrayOutputStream body = new ByteArrayOutputStream(512);
+    try {
+      exchange.writeRequest(requestCodec, body);
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(toServiceException(e, stage));
+    }
+    HttpRequest.Builder builder = HttpRequest.newBuilder(baseUri.resolve(spec))
+        .header("Content-Type", requestCodec.getContentType())
+        .header(VIRGIL_AGENT_HEADER, virgilAgent)
+        .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()));
+    if (requestCodec != PythiaCodecs.json()) {
+      builder.header("Accept",
+          requestCodec.getContentType() + ", " + PythiaCodecs.json().getContentType());
+    }
+    int timeout = deadline.timeoutMillis(this.readTimeout);
+    if (timeout > 0) {
+      builder.timeout(Duration.ofMillis(timeout));
+    }
+    if (headers != null) {
+      for (Map.Entry<String, String> header : headers.entrySet()) {
+        builder.header(header.getKey(), header.getValue());
+      }
+    }
+    // Set authorization token
+    if (!StringUtils.isBlank(token)) {
+      builder.header("Authorization", "Virgil " + token);
+    } else {
+      LOGGER.warning("Provided token is blank");
+    }
+
+    HttpResponse.BodyHandler<byte[]> bodyHandler = HttpResponse.BodyHandlers.ofByteArray();
+    long sent = 0L;
+    if (times != null) {
+      sent = System.nanoTime();
+      times.writeNanos += sent - start;
+      bodyHandler = responseInfo -> {
+        times.headersReceived = System.nanoTime();
+        return HttpResponse.BodySubscribers.ofByteArray();
+      };
+    }
+    long requestSent = sent;
+    return httpClient.sendAsync(builder.build(), bodyHandler)
+        .handle((response, error) -> {
+          if (error != null) {
+            throw new CompletionException(toServiceException(error, stage));
+          }
+          if (response.statusCode() == HTTP_UNSUPPORTED_MEDIA_TYPE
+              && requestCodec != PythiaCodecs.json()) {
+            LOGGER.warning("Pythia service doesn't support " + requestCodec.getContentType()
+                + ", switching to JSON");
+            this.codec = PythiaCodecs.json();
+            return execute(spec, token, virgilAgent, deadline, exchange, stage,
+                PythiaCodecs.json(), headers, times);
+          }
+          try {
+            T result = parseResponse(response, exchange);
+            if (times != null) {
+              times.serverNanos += times.headersReceived - requestSent;
+              times.readNanos += System.nanoTime() - times.headersReceived;
+              times.measured = true;
+            }
+            return CompletableFuture.completedFuture(result);
+          } catch (ThrottlingException e) {
+            FAILURE_LOGGER.log(Level.WARNING, "Pythia service throttled the request", null);
+            throw new CompletionException(e);
+          } catch (VirgilPythiaServiceException e) {
+            FAILURE_LOGGER.log(Level.SEVERE, "Pythia service returned an error", e);
+            throw new CompletionException(e);
+          } catch (IOException e) {
+            throw new CompletionException(toServiceException(e, stage));
+          }
+        }).thenCompose(Function.identity());
+  }
+
+  private <T> T parseResponse(HttpResponse<byte[]> response, Exchange<T> exchange)
+      throws VirgilPythiaServiceException, IOException {
+    PythiaCodec responseCodec = PythiaCodecs
+        .forContentType(response.headers().firstValue("Content-Type").orElse(null));
+    InputStream in = new ByteArrayInputStream(response.body());
+    if (response.statusCode() >= HttpURLConnection.HTTP_BAD_REQUEST) {
+      LOGGER.fine("Http error occurred...");
+      VirgilPythiaServiceException error = responseCodec.readError(in,
+          new HttpError(response.statusCode(), ""));
+      if (error instanceof ThrottlingException) {
+        PythiaEvents.throttlingHit(response.uri().toString(), error.getError());
+      }
+      throw error;
+    }
+    LOGGER.fine("Extracting response body...");
+    return exchange.readResponse(responseCodec, in);
+  }
+
+  private void endTransform(Object event, String spec, Integer version, boolean includeProof,
+      byte[] blindedPassword, byte[] transformedPassword) {
+    PythiaEvents.endTransform(event, baseUri.resolve(spec).toString(),
+        version != null ? version : 0, includeProof,
+        blindedPassword != null ? blindedPassword.length : 0,
+        transformedPassword != null ? transformedPassword.length : 0);
+  }
+
+  private static VirgilPythiaServiceException toServiceException(Throwable error, String stage) {
+    Throwable cause = error instanceof CompletionException && error.getCause() != null
+        ? error.getCause()
+        : error;
+    if (cause instanceof VirgilPythiaServiceException) {
+      return (VirgilPythiaServiceException) cause;
+    }
+    if (cause instanceof HttpTimeoutException) {
+      FAILURE_LOGGER.log(Level.SEVERE, "Pythia service didn't respond in time", cause);
+      return PythiaTimeoutException.stackless(stage, cause);
+    }
+    FAILURE_LOGGER.log(Level.SEVERE, "Some service issue occurred during request executing",
+        cause);
+    return new VirgilPythiaServiceException(
+        "VirgilHttp2PythiaClient -> " + stage + " was not successful", cause);
+  }
+
+  /**
+   * Record timings of a completed call on the calling thread. {@link HttpClient} doesn't expose
+   * connection setup, so it's reported as a part of the server time.
+   */
+  private static void record(HttpCallTimings timings, CallTimes times) {
+    if (timings != null && times.measured) {
+      timings.record(0L, times.writeNanos, times.serverNanos, times.readNanos);
+    }
+  }
+
+  private static <T> T await(CompletableFuture<T> future) throws VirgilPythiaServiceException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new VirgilPythiaServiceException("VirgilHttp2PythiaClient -> call was interrupted", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof VirgilPythiaServiceException) {
+        throw (VirgilPythiaServiceException) cause;
+      }
+      throw new VirgilPythiaServiceException("VirgilHttp2PythiaClient -> call was not successful",
+          cause);
+    }
+  }
+
+  private static HttpClient createHttpClient(int connectTimeout) {
+    if (connectTimeout < 0) {
+      throw new IllegalArgumentException("VirgilHttp2PythiaClient -> 'connectTimeout' should not "
+          + "be negative");
+    }
+    HttpClient.Builder builder = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2)
+        .followRedirects(HttpClient.Redirect.NEVER);
+    if (connectTimeout > 0) {
+      builder.connectTimeout(Duration.ofMillis(connectTimeout));
+    }
+    return builder.build();
+  }
+
+  private void buildVirgilAgent(String bppProduct, String brainkeyProduct, String version) {
+    String osName = OsUtils.getOsAgentName();
+    this.bppVirgilAgent = String.format("%1$s;%2$s;%3$s;%4$s", bppProduct, VirgilInfo.FAMILY,
+        osName, version);
+    this.brainkeyVirgilAgent = String.format("%1$s;%2$s;%3$s;%4$s", brainkeyProduct,
+        VirgilInfo.FAMILY, osName, version);
+  }
+
+  /**
+   * Timings of a call which are measured on HTTP client threads. Fields are published to the
+   * calling thread by completion of the call future.
+   */
+  private static final class CallTimes {
+
+    private long writeNanos;
+    private long headersReceived;
+    private long serverNanos;
+    private long readNanos;
+    private boolean measured;
+  }
+
+  /**
+   * Writes a request and reads the response of a single Pythia service call.
+   */
+  private interface Exchange<T> {
+
+    void writeRequest(PythiaCodec codec, OutputStream out) throws IOException;
+
+    T readResponse(PythiaCodec codec, InputStream in) throws IOException;
+  }
+
+}
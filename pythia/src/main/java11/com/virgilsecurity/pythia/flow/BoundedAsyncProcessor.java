@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.flow;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * {@link Flow.Processor} which maps every item with an asynchronous operation and keeps the number
+ * of outstanding items bounded. Items are requested from upstream only when downstream has
+ * unsatisfied demand and there is a free in-flight slot, so nothing is buffered beyond
+ * {@code maxInFlight} items. Results are emitted in completion order.
+ *
+ * @param <I> the type of input items.
+ * @param <O> the type of results.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+final class BoundedAsyncProcessor<I, O> implements Flow.Processor<I, O> {
+
+  private final Function<? super I, CompletableFuture<O>> operation;
+  private final int maxInFlight;
+
+  private final Queue<O> results = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger wip = new AtomicInteger();
+  private final AtomicLong requested = new AtomicLong();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicLong pendingUpstream = new AtomicLong();
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+
+  private volatile Flow.Subscription upstream;
+  private volatile Flow.Subscriber<? super O> downstream;
+  private volatile boolean upstreamDone;
+  private volatile Throwable error;
+  private volatile boolean cancelled;
+  private boolean terminated;
+
+  /**
+   * Create a new instance of {@link BoundedAsyncProcessor}.
+   *
+   * @param operation
+   *          the asynchronous operation applied to every item.
+   * @param maxInFlight
+   *          the maximum number of items requested from upstream but not yet emitted.
+   */
+  BoundedAsyncProcessor(Function<? super I, CompletableFuture<O>> operation, int maxInFlight) {
+    if (operation == null) {
+      throw new IllegalArgumentException("Operation should be set");
+    }
+    if (maxInFlight <= 0) {
+      throw new IllegalArgumentException("Max in-flight items number should be positive");
+    }
+    this.operation = operation;
+    this.maxInFlight = maxInFlight;
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super O> subscriber) {
+    if (subscriber == null) {
+      throw new NullPointerException("Subscriber should be set");
+    }
+    if (!subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(new Flow.Subscription() {
+
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+      });
+      subscriber.onError(new IllegalStateException("Only one subscriber is supported"));
+      return;
+    }
+    subscriber.onSubscribe(new Flow.Subscription() {
+
+      @Override
+      public void request(long n) {
+        if (n <= 0) {
+          error = new IllegalArgumentException("Requested items number should be positive");
+          upstreamDone = true;
+          cancelUpstream();
+        } else {
+          addRequested(n);
+        }
+        drain();
+      }
+
+      @Override
+      public void cancel() {
+        cancelled = true;
+        cancelUpstream();
+        drain();
+      }
+    });
+    this.downstream = subscriber;
+    drain();
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    if (this.upstream != null || cancelled) {
+      subscription.cancel();
+      return;
+    }
+    this.upstream = subscription;
+    drain();
+  }
+
+  @Override
+  public void onNext(I item) {
+    pendingUpstream.decrementAndGet();
+    inFlight.incrementAndGet();
+    CompletableFuture<O> future;
+    try {
+      future = operation.apply(item);
+    } catch (RuntimeException e) {
+      future = CompletableFuture.failedFuture(e);
+    }
+    future.whenComplete((result, e) -> {
+      if (e != null) {
+        onError(e);
+      } else {
+        results.offer(result);
+        drain();
+      }
+    });
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    if (this.error == null) {
+      this.error = throwable;
+    }
+    this.upstreamDone = true;
+    cancelUpstream();
+    drain();
+  }
+
+  @Override
+  public void onComplete() {
+    this.upstreamDone = true;
+    drain();
+  }
+
+  private void addRequested(long n) {
+    long current;
+    long next;
+    do {
+      current = requested.get();
+      next = current + n < 0 ? Long.MAX_VALUE : current + n;
+    } while (!requested.compareAndSet(current, next));
+  }
+
+  private void cancelUpstream() {
+    Flow.Subscription subscription = this.upstream;
+    if (subscription != null) {
+      subscription.cancel();
+    }
+  }
+
+  private void drain() {
+    if (wip.getAndIncrement() != 0) {
+      return;
+    }
+    int missed = 1;
+    do {
+      Flow.Subscriber<? super O> subscriber = this.downstream;
+      if (terminated || cancelled) {
+        results.clear();
+      } else if (subscriber != null) {
+        O result;
+        while (requested.get() > 0 && error == null && (result = results.poll()) != null) {
+          inFlight.decrementAndGet();
+          if (requested.get() != Long.MAX_VALUE) {
+            requested.decrementAndGet();
+          }
+          subscriber.onNext(result);
+        }
+
+        if (error != null) {
+          terminated = true;
+          results.clear();
+          subscriber.onError(error);
+        } else if (upstreamDone && inFlight.get() == 0 && results.isEmpty()) {
+          terminated = true;
+          subscriber.onComplete();
+        } else if (!upstreamDone && this.upstream != null) {
+          long outstanding = inFlight.get() + pendingUpstream.get();
+          long wanted = Math.min(maxInFlight - outstanding, requested.get() - outstanding);
+          if (wanted > 0) {
+            pendingUpstream.addAndGet(wanted);
+            this.upstream.request(wanted);
+          }
+        }
+      }
+      missed = wip.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.flow;
+
+import com.virgilsecurity.pythia.Deadline;
+
+/**
+ * Request to create a breach proof password in a Flow pipeline. The class can be extended to carry
+ * application data, which is available from {@link EnrollmentResult#getRequest()}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class EnrollmentRequest {
+
+  private final String password;
+  private final Deadline deadline;
+
+  /**
+   * Create a new instance of {@link EnrollmentRequest} without a deadline.
+   *
+   * @param password
+   *          the end user's password.
+   */
+  public EnrollmentRequest(String password) {
+    this(password, Deadline.none());
+  }
+
+  /**
+   * Create a new instance of {@link EnrollmentRequest}.
+   *
+   * @param password
+   *          the end user's password.
+   * @param deadline
+   *          the deadline of the enrollment.
+   */
+  public EnrollmentRequest(String password, Deadline deadline) {
+    if (deadline == null) {
+      throw new IllegalArgumentException("Deadline should be set");
+    }
+    this.password = password;
+    this.deadline = deadline;
+  }
+
+  /**
+   * Get the password.
+   *
+   * @return the end user's password.
+   */
+  public String getPassword() {
+    return password;
+  }
+
+  /**
+   * Get the deadline.
+   *
+   * @return the deadline of the enrollment.
+   */
+  public Deadline getDeadline() {
+    return deadline;
+  }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.flow;
+
+import com.virgilsecurity.pythia.AsyncPythia;
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+
+/**
+ * Factory of {@link Flow.Processor}s which run Pythia operations over a stream of requests.
+ * 
+ * <p>
+ * Each processor keeps at most {@code maxInFlight} requests between the source and the subscriber:
+ * requests are pulled from upstream only when the subscriber has outstanding demand and a slot is
+ * free, so a slow subscriber or a slow Pythia service slows down the source instead of growing a
+ * buffer. Results are emitted in completion order. Operation failures are reported within results,
+ * the stream is terminated only by upstream errors.
+ * </p>
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class PythiaFlows {
+
+  private PythiaFlows() {
+  }
+
+  /**
+   * Create a processor which verifies passwords.
+   *
+   * @param pythia
+   *          the Pythia facade which executes verifications.
+   * @param maxInFlight
+   *          the maximum number of verifications in progress.
+   * @return the new processor. It supports a single subscriber.
+   */
+  public static Flow.Processor<VerificationRequest, VerificationResult> verification(
+      final AsyncPythia pythia, int maxInFlight) {
+    if (pythia == null) {
+      throw new IllegalArgumentException("Pythia should be set");
+    }
+    return new BoundedAsyncProcessor<VerificationRequest, VerificationResult>(request -> {
+      CompletableFuture<Boolean> future = pythia.verifyBreachProofPassword(request.getPassword(),
+          request.getBreachProofPassword(), request.isProve(), request.getDeadline());
+      return future.handle((verified, e) -> new VerificationResult(request,
+          Boolean.TRUE.equals(verified), unwrap(e)));
+    }, maxInFlight);
+  }
+
+  /**
+   * Create a processor which creates breach proof passwords.
+   *
+   * @param pythia
+   *          the Pythia facade which executes enrollments.
+   * @param maxInFlight
+   *          the maximum number of enrollments in progress.
+   * @return the new processor. It supports a single subscriber.
+   */
+  public static Flow.Processor<EnrollmentRequest, EnrollmentResult> enrollment(
+      final AsyncPythia pythia, int maxInFlight) {
+    if (pythia == null) {
+      throw new IllegalArgumentException("Pythia should be set");
+    }
+    return new BoundedAsyncProcessor<EnrollmentRequest, EnrollmentResult>(request -> {
+      CompletableFuture<BreachProofPassword> future = pythia
+          .createBreachProofPassword(request.getPassword(), request.getDeadline());
+      return future.handle((bpp, e) -> new EnrollmentResult(request, bpp, unwrap(e)));
+    }, maxInFlight);
+  }
+
+  private static Throwable unwrap(Throwable e) {
+    if (e instanceof CompletionException && e.getCause() != null) {
+      return e.getCause();
+    }
+    return e;
+  }
+
+}
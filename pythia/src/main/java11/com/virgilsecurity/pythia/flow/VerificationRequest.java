@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.flow;
+
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+
+/**
+ * Request to verify a password against a breach proof password in a Flow pipeline. The class can
+ * be extended to carry application data, e.g. a connection or user identifier, which is available
+ * from {@link VerificationResult#getRequest()}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class VerificationRequest {
+
+  private final String password;
+  private final BreachProofPassword breachProofPassword;
+  private final boolean prove;
+  private final Deadline deadline;
+
+  /**
+   * Create a new instance of {@link VerificationRequest} without a deadline.
+   *
+   * @param password
+   *          the password.
+   * @param breachProofPassword
+   *          the breach proof password.
+   * @param prove
+   *          require include proof for transformation from Virgil Pythia server.
+   */
+  public VerificationRequest(String password, BreachProofPassword breachProofPassword,
+      boolean prove) {
+    this(password, breachProofPassword, prove, Deadline.none());
+  }
+
+  /**
+   * Create a new instance of {@link VerificationRequest}.
+   *
+   * @param password
+   *          the password.
+   * @param breachProofPassword
+   *          the breach proof password.
+   * @param prove
+   *          require include proof for transformation from Virgil Pythia server.
+   * @param deadline
+   *          the deadline of the verification.
+   */
+  public VerificationRequest(String password, BreachProofPassword breachProofPassword,
+      boolean prove, Deadline deadline) {
+    if (deadline == null) {
+      throw new IllegalArgumentException("Deadline should be set");
+    }
+    this.password = password;
+    this.breachProofPassword = breachProofPassword;
+    this.prove = prove;
+    this.deadline = deadline;
+  }
+
+  /**
+   * Get the password.
+   *
+   * @return the password.
+   */
+  public String getPassword() {
+    return password;
+  }
+
+  /**
+   * Get the breach proof password.
+   *
+   * @return the breach proof password.
+   */
+  public BreachProofPassword getBreachProofPassword() {
+    return breachProofPassword;
+  }
+
+  /**
+   * Check if proof of transformation is required.
+   *
+   * @return {@code true} if proof is required.
+   */
+  public boolean isProve() {
+    return prove;
+  }
+
+  /**
+   * Get the deadline.
+   *
+   * @return the deadline of the verification.
+   */
+  public Deadline getDeadline() {
+    return deadline;
+  }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.flow;
+
+/**
+ * Result of a {@link VerificationRequest}. A failed verification doesn't terminate the stream, the
+ * failure is reported with {@link #getError()} instead.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public final class VerificationResult {
+
+  private final VerificationRequest request;
+  private final boolean verified;
+  private final Throwable error;
+
+  VerificationResult(VerificationRequest request, boolean verified, Throwable error) {
+    this.request = request;
+    this.verified = verified;
+    this.error = error;
+  }
+
+  /**
+   * Get the request this result belongs to.
+   *
+   * @return the verification request.
+   */
+  public VerificationRequest getRequest() {
+    return request;
+  }
+
+  /**
+   * Check if password corresponds to breach proof password.
+   *
+   * @return {@code true} if password was verified successfully.
+   */
+  public boolean isVerified() {
+    return verified;
+  }
+
+  /**
+   * Check if verification completed without errors.
+   *
+   * @return {@code true} if verification completed without errors.
+   */
+  public boolean isSuccessful() {
+    return error == null;
+  }
+
+  /**
+   * Get the verification error.
+   *
+   * @return the error or {@code null} if verification completed without errors.
+   */
+  public Throwable getError() {
+    return error;
+  }
+
+}
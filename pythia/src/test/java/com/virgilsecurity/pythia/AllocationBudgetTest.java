@@ -0,0 +1,463 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia;
+
+import com.sun.net.httpserver.HttpServer;
+import com.virgilsecurity.crypto.pythia.PythiaComputeTransformationKeyPairResult;
+import com.virgilsecurity.crypto.pythia.PythiaException;
+import com.virgilsecurity.crypto.pythia.PythiaProveResult;
+import com.virgilsecurity.crypto.pythia.PythiaTransformResult;
+import com.virgilsecurity.pythia.brainkey.BrainKey;
+import com.virgilsecurity.pythia.brainkey.BrainKeyContext;
+import com.virgilsecurity.pythia.client.PythiaClient;
+import com.virgilsecurity.pythia.client.PythiaCodec;
+import com.virgilsecurity.pythia.client.PythiaCodecs;
+import com.virgilsecurity.pythia.client.VirgilPythiaClient;
+import com.virgilsecurity.pythia.crypto.BlindResult;
+import com.virgilsecurity.pythia.crypto.PythiaCrypto;
+import com.virgilsecurity.pythia.crypto.VirgilPythiaCrypto;
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+import com.virgilsecurity.pythia.model.GenerateSeedResponse;
+import com.virgilsecurity.pythia.model.Proof;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.request.TransformPasswordRequest;
+import com.virgilsecurity.sdk.crypto.VirgilKeyPair;
+import com.virgilsecurity.sdk.jwt.TokenContext;
+import com.virgilsecurity.sdk.jwt.contract.AccessToken;
+import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Properties;
+
+import static com.virgilsecurity.crypto.pythia.Pythia.computeTransformationKeyPair;
+import static com.virgilsecurity.crypto.pythia.Pythia.prove;
+import static com.virgilsecurity.crypto.pythia.Pythia.transform;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Allocation regression tests for the SDK hot paths. Most operations are executed with stub
+ * client and crypto, which return preallocated results, so only allocations of the SDK itself are
+ * measured. Operations with {@code .crypto} and {@code .client} suffix replace the stub with
+ * {@link VirgilPythiaCrypto} or with {@link VirgilPythiaClient} talking to a local HTTP server, so
+ * regressions in code the stubs bypass are caught as well. Bytes allocated per operation by the
+ * calling thread should not exceed the budget from {@code allocation-budgets.properties}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class AllocationBudgetTest {
+
+  private static final int WARMUP_ITERATIONS = 20_000;
+  private static final int ITERATIONS = 20_000;
+  // Every HTTP call opens a new connection, so the client is measured on fewer calls
+  private static final int HTTP_ITERATIONS = 1_000;
+  private static final String PASSWORD = "some password";
+  private static final String UPDATE_TOKEN = "UT.1.2.AQIDBAUGBwgJCgsMDQ4PEBESExQVFhcYGRobHB0eHyA=";
+
+  private static com.sun.management.ThreadMXBean threadMXBean;
+  private static Properties budgets;
+
+  private StubPythiaClient client;
+  private Pythia pythia;
+  private BrainKey brainKey;
+  private BreachProofPassword breachProofPassword;
+  private HttpServer server;
+
+  @BeforeAll
+  public static void setupClass() throws Exception {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    assumeTrue(bean instanceof com.sun.management.ThreadMXBean,
+        "Thread allocated memory is not available");
+    threadMXBean = (com.sun.management.ThreadMXBean) bean;
+    assumeTrue(threadMXBean.isThreadAllocatedMemorySupported(),
+        "Thread allocated memory is not supported");
+    threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+    budgets = new Properties();
+    try (InputStream in = AllocationBudgetTest.class
+        .getResourceAsStream("allocation-budgets.properties")) {
+      assertNotNull(in, "Allocation budgets not found");
+      budgets.load(in);
+    }
+  }
+
+  @BeforeEach
+  public void setup() {
+    StubPythiaCrypto pythiaCrypto = new StubPythiaCrypto();
+    this.client = new StubPythiaClient();
+    AccessTokenProvider accessTokenProvider = new StubAccessTokenProvider();
+
+    PythiaContext context = new PythiaContext.Builder()
+        .setProofKeys(Arrays.asList("PK.1.AQIDBAUGBwgJCgsMDQ4PEBESExQVFhcYGRobHB0eHyA=",
+            "PK.2.AgMEBQYHCAkKCwwNDg8QERITFBUWFxgZGhscHR4fICE="))
+        .setPythiaCrypto(pythiaCrypto).setPythiaClient(this.client)
+        .setAccessTokenProvider(accessTokenProvider).build();
+    this.pythia = new Pythia(context);
+    this.brainKey = new BrainKey(new BrainKeyContext.Builder().setPythiaCrypto(pythiaCrypto)
+        .setPythiaClient(this.client).setAccessTokenProvider(accessTokenProvider).build());
+    this.breachProofPassword = new BreachProofPassword(pythiaCrypto.generateSalt(),
+        StubPythiaCrypto.DEBLINDED_PASSWORD, 1);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    if (this.server != null) {
+      this.server.stop(0);
+    }
+  }
+
+  @Test
+  public void verifyBreachProofPassword() throws Exception {
+    assertWithinBudget("verifyBreachProofPassword", () -> {
+      assertTrue(this.pythia.verifyBreachProofPassword(PASSWORD, this.breachProofPassword, false));
+    });
+  }
+
+  @Test
+  public void verifyBreachProofPassword_prove() throws Exception {
+    assertWithinBudget("verifyBreachProofPassword.prove", () -> {
+      assertTrue(this.pythia.verifyBreachProofPassword(PASSWORD, this.breachProofPassword, true));
+    });
+  }
+
+  @Test
+  public void createBreachProofPassword() throws Exception {
+    assertWithinBudget("createBreachProofPassword", () -> {
+      this.pythia.createBreachProofPassword(PASSWORD);
+    });
+  }
+
+  @Test
+  public void updateBreachProofPassword() throws Exception {
+    assertWithinBudget("updateBreachProofPassword", () -> {
+      this.pythia.updateBreachProofPassword(UPDATE_TOKEN, this.breachProofPassword);
+    });
+  }
+
+  @Test
+  public void generateKeyPair() throws Exception {
+    assertWithinBudget("generateKeyPair", () -> {
+      this.brainKey.generateKeyPair(PASSWORD, "brainkey-id");
+    });
+  }
+
+  @Test
+  public void verifyBreachProofPassword_crypto() throws Exception {
+    Pythia cryptoPythia = cryptoPythia();
+    BreachProofPassword bpp = cryptoPythia.createBreachProofPassword(PASSWORD);
+    assertWithinBudget("verifyBreachProofPassword.crypto", () -> {
+      assertTrue(cryptoPythia.verifyBreachProofPassword(PASSWORD, bpp, false));
+    });
+  }
+
+  @Test
+  public void verifyBreachProofPassword_prove_crypto() throws Exception {
+    Pythia cryptoPythia = cryptoPythia();
+    BreachProofPassword bpp = cryptoPythia.createBreachProofPassword(PASSWORD);
+    assertWithinBudget("verifyBreachProofPassword.prove.crypto", () -> {
+      assertTrue(cryptoPythia.verifyBreachProofPassword(PASSWORD, bpp, true));
+    });
+  }
+
+  @Test
+  public void createBreachProofPassword_crypto() throws Exception {
+    Pythia cryptoPythia = cryptoPythia();
+    assertWithinBudget("createBreachProofPassword.crypto", () -> {
+      cryptoPythia.createBreachProofPassword(PASSWORD);
+    });
+  }
+
+  @Test
+  public void verifyBreachProofPassword_client() throws Exception {
+    Pythia clientPythia = new Pythia(new PythiaContext.Builder()
+        .setProofKeys(Arrays.asList("PK.1.AQIDBAUGBwgJCgsMDQ4PEBESExQVFhcYGRobHB0eHyA="))
+        .setPythiaCrypto(new StubPythiaCrypto()).setPythiaClient(virgilPythiaClient())
+        .setAccessTokenProvider(new StubAccessTokenProvider()).build());
+    assertWithinBudget("verifyBreachProofPassword.client", HTTP_ITERATIONS, () -> {
+      assertTrue(clientPythia.verifyBreachProofPassword(PASSWORD, this.breachProofPassword,
+          true));
+    });
+  }
+
+  @Test
+  public void generateKeyPair_client() throws Exception {
+    BrainKey clientBrainKey = new BrainKey(new BrainKeyContext.Builder()
+        .setPythiaCrypto(new StubPythiaCrypto()).setPythiaClient(virgilPythiaClient())
+        .setAccessTokenProvider(new StubAccessTokenProvider()).build());
+    assertWithinBudget("generateKeyPair.client", HTTP_ITERATIONS, () -> {
+      clientBrainKey.generateKeyPair(PASSWORD, "brainkey-id");
+    });
+  }
+
+  @Test
+  public void jsonCodec() throws Exception {
+    assertWithinBudget("jsonCodec", codecRoundTrip(PythiaCodecs.json()));
+  }
+
+  @Test
+  public void cborCodec() throws Exception {
+    assertWithinBudget("cborCodec", codecRoundTrip(PythiaCodecs.cbor()));
+  }
+
+  /**
+   * Encode a transform request and decode a transform response like {@code VirgilPythiaClient}
+   * does for every call.
+   */
+  private AllocatingOperation codecRoundTrip(PythiaCodec codec) throws Exception {
+    TransformPasswordRequest request = new TransformPasswordRequest(new byte[32],
+        StubPythiaCrypto.BLIND_RESULT.getBlindedPassword(), 1, true);
+    ByteArrayOutputStream response = new ByteArrayOutputStream();
+    codec.writeTransformResponse(this.client.transformResponse, response);
+    byte[] responseBytes = response.toByteArray();
+    return () -> {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+      codec.writeTransformPasswordRequest(request, out);
+      codec.readTransformResponse(new ByteArrayInputStream(responseBytes));
+    };
+  }
+
+  /**
+   * Create Pythia which uses {@link VirgilPythiaCrypto}. Transformation is computed in-process by
+   * the crypto library, so its results are counted in the budget too.
+   */
+  private static Pythia cryptoPythia() throws Exception {
+    PythiaCrypto pythiaCrypto = new VirgilPythiaCrypto();
+    TransformingPythiaClient transformingClient = new TransformingPythiaClient();
+    return new Pythia(new PythiaContext.Builder()
+        .setProofKeys(transformingClient.getProofKeys()).setPythiaCrypto(pythiaCrypto)
+        .setPythiaClient(transformingClient)
+        .setAccessTokenProvider(new StubAccessTokenProvider()).build());
+  }
+
+  /**
+   * Start a local HTTP server which answers every transform and seed request with the same
+   * response, and create {@link VirgilPythiaClient} which calls it.
+   */
+  private VirgilPythiaClient virgilPythiaClient() throws Exception {
+    ByteArrayOutputStream transformResponse = new ByteArrayOutputStream();
+    PythiaCodecs.json().writeTransformResponse(this.client.transformResponse, transformResponse);
+    ByteArrayOutputStream seedResponse = new ByteArrayOutputStream();
+    PythiaCodecs.json().writeGenerateSeedResponse(new GenerateSeedResponse(this.client.seed),
+        seedResponse);
+    final byte[] transformBody = transformResponse.toByteArray();
+    final byte[] seedBody = seedResponse.toByteArray();
+
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    this.server.createContext("/", exchange -> {
+      try (InputStream in = exchange.getRequestBody()) {
+        byte[] buffer = new byte[1024];
+        while (in.read(buffer) >= 0) {
+          // Discard request
+        }
+      }
+      byte[] body = exchange.getRequestURI().getPath().contains("brainkey") ? seedBody
+          : transformBody;
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    this.server.start();
+    return new VirgilPythiaClient("http://127.0.0.1:" + this.server.getAddress().getPort());
+  }
+
+  private static void assertWithinBudget(String operation, AllocatingOperation task)
+      throws Exception {
+    assertWithinBudget(operation, ITERATIONS, task);
+  }
+
+  private static void assertWithinBudget(String operation, int iterations,
+      AllocatingOperation task) throws Exception {
+    String budget = budgets.getProperty(operation);
+    assertNotNull(budget, "Allocation budget of " + operation + " is not set");
+
+    int warmupIterations = Math.min(WARMUP_ITERATIONS, iterations);
+    for (int i = 0; i < warmupIterations; i++) {
+      task.run();
+    }
+    long threadId = Thread.currentThread().getId();
+    long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < iterations; i++) {
+      task.run();
+    }
+    long allocated = (threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore)
+        / iterations;
+
+    assertTrue(allocated <= Long.parseLong(budget.trim()), operation + " allocated " + allocated
+        + " bytes per operation, budget is " + budget.trim());
+  }
+
+  @FunctionalInterface
+  private interface AllocatingOperation {
+    void run() throws Exception;
+  }
+
+  private static final class StubPythiaCrypto implements PythiaCrypto {
+
+    static final BlindResult BLIND_RESULT = new BlindResult(new byte[32], new byte[32]);
+    static final byte[] DEBLINDED_PASSWORD = new byte[384];
+
+    private final byte[] salt = new byte[32];
+    private final byte[] updatedPassword = new byte[384];
+    private final VirgilKeyPair keyPair = new VirgilKeyPair(null, null);
+
+    @Override
+    public BlindResult blind(String password) {
+      return BLIND_RESULT;
+    }
+
+    @Override
+    public byte[] deblind(byte[] transformedPassword, byte[] blindingSecret) {
+      return DEBLINDED_PASSWORD;
+    }
+
+    @Override
+    public boolean verify(byte[] transformedPassword, byte[] blindedPassword, byte[] tweak,
+        byte[] transformationPublicKey, byte[] proofC, byte[] proofU) throws PythiaException {
+      return true;
+    }
+
+    @Override
+    public byte[] updateDeblinded(byte[] deblindedPassword, byte[] updateToken) {
+      return this.updatedPassword;
+    }
+
+    @Override
+    public byte[] generateSalt() {
+      return this.salt;
+    }
+
+    @Override
+    public VirgilKeyPair generateKeyPair(byte[] seed) {
+      return this.keyPair;
+    }
+  }
+
+  private static final class StubPythiaClient implements PythiaClient {
+
+    private final TransformResponse transformResponse = new TransformResponse(new byte[384],
+        new Proof(new byte[65], new byte[32]));
+    private final byte[] seed = new byte[384];
+
+    @Override
+    public TransformResponse transformPassword(byte[] salt, byte[] blindedPassword,
+        Integer version, boolean includeProof, String token) {
+      return this.transformResponse;
+    }
+
+    @Override
+    public byte[] generateSeed(byte[] blindedPassword, String brainKeyId, String token) {
+      return this.seed;
+    }
+  }
+
+  /**
+   * Pythia client which transforms passwords in-process with the crypto library, like Pythia
+   * service does.
+   */
+  private static final class TransformingPythiaClient implements PythiaClient {
+
+    private final PythiaComputeTransformationKeyPairResult keyPair = computeTransformationKeyPair(
+        bytes("allocation-budget"), bytes("pythia secret"), bytes("pythia scope secret"));
+
+    List<String> getProofKeys() {
+      return Arrays.asList("PK.1."
+          + Base64.getEncoder().encodeToString(this.keyPair.getTransformationPublicKey()));
+    }
+
+    @Override
+    public TransformResponse transformPassword(byte[] salt, byte[] blindedPassword,
+        Integer version, boolean includeProof, String token) {
+      PythiaTransformResult transformResult = transform(blindedPassword, salt,
+          this.keyPair.getTransformationPrivateKey());
+      if (!includeProof) {
+        return new TransformResponse(transformResult.getTransformedPassword());
+      }
+      PythiaProveResult proveResult = prove(transformResult.getTransformedPassword(),
+          blindedPassword, transformResult.getTransformedTweak(),
+          this.keyPair.getTransformationPrivateKey(),
+          this.keyPair.getTransformationPublicKey());
+      return new TransformResponse(transformResult.getTransformedPassword(),
+          new Proof(proveResult.getProofValueC(), proveResult.getProofValueU()));
+    }
+
+    @Override
+    public byte[] generateSeed(byte[] blindedPassword, String brainKeyId, String token) {
+      throw new UnsupportedOperationException();
+    }
+
+    private static byte[] bytes(String value) {
+      return value.getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  private static final class StubAccessTokenProvider implements AccessTokenProvider {
+
+    private final AccessToken token = new AccessToken() {
+
+      @Override
+      public String getIdentity() {
+        return "alice";
+      }
+
+      @Override
+      public String stringRepresentation() {
+        return "token";
+      }
+    };
+
+    @Override
+    public AccessToken getToken(TokenContext tokenContext) {
+      return this.token;
+    }
+  }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia;
+
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+import com.virgilsecurity.pythia.model.exception.ThrottlingException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link AsyncPythia}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+@ExtendWith(MockitoExtension.class)
+public class AsyncPythiaTest {
+
+  @Mock
+  private Pythia pythia;
+
+  @Test
+  public void createBreachProofPassword() throws Exception {
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 1 }, 1);
+    when(pythia.createBreachProofPassword(anyString(), any(Deadline.class))).thenReturn(bpp);
+
+    try (AsyncPythia asyncPythia = new AsyncPythia(pythia, Executors.newSingleThreadExecutor())) {
+      assertSame(bpp, asyncPythia.createBreachProofPassword("password", Deadline.none()).get());
+    }
+  }
+
+  @Test
+  public void verifyBreachProofPassword_virtualThreads() throws Exception {
+    assumeTrue(PythiaExecutors.isVirtualThreadSupported());
+    when(pythia.verifyBreachProofPassword(anyString(), any(BreachProofPassword.class),
+        anyBoolean(), any(Deadline.class))).thenReturn(true);
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 1 }, 1);
+
+    try (AsyncPythia asyncPythia = AsyncPythia.withVirtualThreads(pythia)) {
+      assertTrue(asyncPythia.verifyBreachProofPassword("password", bpp, false, Deadline.none())
+          .get());
+    }
+  }
+
+  @Test
+  public void verifyBreachProofPassword_error() throws Exception {
+    when(pythia.verifyBreachProofPassword(anyString(), any(BreachProofPassword.class),
+        anyBoolean(), any(Deadline.class)))
+        .thenThrow(new ThrottlingException(60007, "Too many requests", null));
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 1 }, 1);
+
+    try (AsyncPythia asyncPythia = new AsyncPythia(pythia, Executors.newSingleThreadExecutor())) {
+      ExecutionException e = assertThrows(ExecutionException.class, () -> {
+        asyncPythia.verifyBreachProofPassword("password", bpp, false, Deadline.none()).get();
+      });
+      assertTrue(e.getCause() instanceof ThrottlingException);
+    }
+  }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia;
+
+import com.virgilsecurity.sdk.jwt.Jwt;
+import com.virgilsecurity.sdk.jwt.TokenContext;
+import com.virgilsecurity.sdk.jwt.accessProviders.CachingJwtProvider.RenewJwtCallback;
+import com.virgilsecurity.sdk.jwt.contract.AccessToken;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ConcurrentCachingJwtProvider}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+@ExtendWith(MockitoExtension.class)
+public class ConcurrentCachingJwtProviderTest {
+
+  @Mock
+  private Jwt jwt;
+
+  @Mock
+  private Jwt expiredJwt;
+
+  @Test
+  public void getToken_cached() throws Exception {
+    when(jwt.isExpired(any(Date.class))).thenReturn(false);
+    final AtomicInteger renewals = new AtomicInteger();
+    final ConcurrentCachingJwtProvider provider = new ConcurrentCachingJwtProvider(
+        new RenewJwtCallback() {
+
+          @Override
+          public Jwt renewJwt(TokenContext tokenContext) {
+            renewals.incrementAndGet();
+            return jwt;
+          }
+        });
+    final TokenContext tokenContext = new TokenContext("pythia", "transform", false);
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<AccessToken>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        futures.add(executor.submit(new Callable<AccessToken>() {
+
+          @Override
+          public AccessToken call() throws Exception {
+            return provider.getToken(tokenContext);
+          }
+        }));
+      }
+      for (Future<AccessToken> future : futures) {
+        assertSame(jwt, future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(1, renewals.get());
+  }
+
+  @Test
+  public void getToken_expired() {
+    when(expiredJwt.isExpired(any(Date.class))).thenReturn(true);
+    final List<Jwt> tokens = new ArrayList<>();
+    tokens.add(expiredJwt);
+    tokens.add(jwt);
+    ConcurrentCachingJwtProvider provider = new ConcurrentCachingJwtProvider(
+        new RenewJwtCallback() {
+
+          @Override
+          public Jwt renewJwt(TokenContext tokenContext) {
+            return tokens.remove(0);
+          }
+        });
+    TokenContext tokenContext = new TokenContext("pythia", "transform", false);
+
+    assertSame(expiredJwt, provider.getToken(tokenContext));
+    assertSame(jwt, provider.getToken(tokenContext));
+  }
+
+  @Test
+  public void create_noCallback() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new ConcurrentCachingJwtProvider(null);
+    });
+  }
+
+}
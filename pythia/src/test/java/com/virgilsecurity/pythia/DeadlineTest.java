@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia;
+
+import com.virgilsecurity.pythia.model.exception.PythiaTimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link Deadline}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class DeadlineTest {
+
+  @Test
+  public void none() throws PythiaTimeoutException {
+    Deadline deadline = Deadline.none();
+    assertFalse(deadline.isBounded());
+    assertFalse(deadline.isExpired());
+    assertEquals(Long.MAX_VALUE, deadline.timeRemaining(TimeUnit.MILLISECONDS));
+    assertEquals(5000, deadline.timeoutMillis(5000));
+    assertEquals(0, deadline.timeoutMillis(0));
+    deadline.check("stage");
+  }
+
+  @Test
+  public void after() throws PythiaTimeoutException {
+    Deadline deadline = Deadline.after(1, TimeUnit.HOURS);
+    assertTrue(deadline.isBounded());
+    assertFalse(deadline.isExpired());
+    assertTrue(deadline.timeRemaining(TimeUnit.MINUTES) > 58);
+    assertEquals(5000, deadline.timeoutMillis(5000));
+    assertTrue(deadline.timeoutMillis(0) > 5000);
+    deadline.check("stage");
+  }
+
+  @Test
+  public void expired() {
+    Deadline deadline = Deadline.after(0, TimeUnit.MILLISECONDS);
+    assertTrue(deadline.isExpired());
+    assertEquals(0, deadline.timeRemaining(TimeUnit.NANOSECONDS));
+    assertEquals(1, deadline.timeoutMillis(5000));
+
+    PythiaTimeoutException e = assertThrows(PythiaTimeoutException.class, () -> {
+      deadline.check("stage");
+    });
+    assertEquals("stage", e.getStage());
+    assertEquals(0, e.getStackTrace().length);
+  }
+
+  @Test
+  public void after_negative() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      Deadline.after(-1, TimeUnit.MILLISECONDS);
+    });
+  }
+
+}
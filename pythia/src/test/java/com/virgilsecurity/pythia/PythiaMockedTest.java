@@ -0,0 +1,514 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia;
+
+import com.virgilsecurity.pythia.client.PythiaClient;
+import com.virgilsecurity.pythia.crypto.BlindResult;
+import com.virgilsecurity.pythia.crypto.PythiaCrypto;
+import com.virgilsecurity.pythia.metrics.ErrorClasses;
+import com.virgilsecurity.pythia.metrics.HistogramPythiaMetrics;
+import com.virgilsecurity.pythia.metrics.Operation;
+import com.virgilsecurity.pythia.metrics.Outcome;
+import com.virgilsecurity.pythia.metrics.Stage;
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+import com.virgilsecurity.pythia.model.BreachProofPasswordCodec;
+import com.virgilsecurity.pythia.model.BreachProofPasswordView;
+import com.virgilsecurity.pythia.model.Proof;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.PythiaTimeoutException;
+import com.virgilsecurity.pythia.model.exception.ThrottlingException;
+import com.virgilsecurity.pythia.model.exception.TransformVerificationException;
+import com.virgilsecurity.pythia.storage.BreachProofPasswordFile;
+import com.virgilsecurity.pythia.storage.BreachProofPasswordFileWriter;
+import com.virgilsecurity.pythia.storage.BreachProofPasswordRecord;
+import com.virgilsecurity.pythia.tracing.PythiaSpan;
+import com.virgilsecurity.pythia.tracing.PythiaTracer;
+import com.virgilsecurity.pythia.tracing.SpanAttributes;
+import com.virgilsecurity.sdk.jwt.contract.AccessToken;
+import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link Pythia} with mocked dependencies.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class PythiaMockedTest {
+
+  @Mock
+  private PythiaContext context;
+
+  @Mock
+  private PythiaCrypto pythiaCrypto;
+
+  @Mock
+  private PythiaClient pythiaClient;
+
+  @Mock
+  private AccessTokenProvider accessTokenProvider;
+
+  @Mock
+  private AccessToken accessToken;
+
+  private Pythia pythia;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    when(context.getProofKeys()).thenReturn(
+        new ProofKeys(Collections.singletonList("PK.1.AQID")));
+    when(context.getPythiaCrypto()).thenReturn(pythiaCrypto);
+    when(context.getPythiaClient()).thenReturn(pythiaClient);
+    when(context.getAccessTokenProvider()).thenReturn(accessTokenProvider);
+
+    when(accessTokenProvider.getToken(any())).thenReturn(accessToken);
+    when(accessToken.stringRepresentation()).thenReturn("token");
+    when(pythiaCrypto.generateSalt()).thenReturn(new byte[32]);
+    when(pythiaCrypto.blind(anyString()))
+        .thenReturn(new BlindResult(new byte[] { 1 }, new byte[] { 2 }));
+
+    this.pythia = new Pythia(context);
+  }
+
+  @Test
+  public void createBreachProofPassword_expiredDeadline() throws Exception {
+    Deadline deadline = Deadline.after(0, TimeUnit.MILLISECONDS);
+
+    assertThrows(PythiaTimeoutException.class, () -> {
+      this.pythia.createBreachProofPassword("password", deadline);
+    });
+    verify(pythiaClient, never()).transformPassword(any(), any(), anyInt(), anyBoolean(),
+        anyString(), any(Deadline.class));
+  }
+
+  @Test
+  public void verifyBreachProofPassword_expiredDeadline() throws Exception {
+    Deadline deadline = Deadline.after(0, TimeUnit.MILLISECONDS);
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 3 }, 1);
+
+    assertThrows(PythiaTimeoutException.class, () -> {
+      this.pythia.verifyBreachProofPassword("password", bpp, true, deadline);
+    });
+    verify(pythiaClient, never()).transformPassword(any(), any(), anyInt(), anyBoolean(),
+        anyString(), any(Deadline.class));
+  }
+
+  @Test
+  public void verifyBreachProofPassword_view() throws Exception {
+    byte[] salt = new byte[32];
+    salt[0] = 9;
+    when(pythiaClient.transformPassword(eq(salt), any(), eq(1), eq(false), anyString(),
+        any(Deadline.class))).thenReturn(new TransformResponse(new byte[] { 4 }));
+    when(pythiaCrypto.deblind(any(), any())).thenReturn(new byte[] { 5, 6 });
+    ByteBuffer buffer = ByteBuffer.allocate(128);
+    buffer.position(3);
+    BreachProofPasswordCodec.encode(new BreachProofPassword(salt, new byte[] { 5, 6 }, 1),
+        buffer);
+    BreachProofPasswordCodec.encode(new BreachProofPassword(salt, new byte[] { 5, 7 }, 1),
+        buffer);
+    BreachProofPasswordView view = new BreachProofPasswordView();
+
+    view.wrap(buffer, 3);
+    assertTrue(this.pythia.verifyBreachProofPassword("password", view, false));
+    view.wrap(buffer, 3 + view.getEncodedLength());
+    assertFalse(this.pythia.verifyBreachProofPassword("password", view, false));
+  }
+
+  @Test
+  public void createBreachProofPassword_nullDeadline() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      this.pythia.createBreachProofPassword("password", null);
+    });
+  }
+
+  @Test
+  public void verifyBreachProofPassword_metrics() throws Exception {
+    HistogramPythiaMetrics metrics = new HistogramPythiaMetrics();
+    when(context.getMetrics()).thenReturn(metrics);
+    when(pythiaClient.transformPassword(any(), any(), anyInt(), eq(false), anyString(),
+        any(Deadline.class))).thenReturn(new TransformResponse(new byte[] { 4 }));
+    when(pythiaCrypto.deblind(any(), any())).thenReturn(new byte[] { 5 });
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 3 }, 1);
+
+    assertFalse(new Pythia(context).verifyBreachProofPassword("password", bpp, false));
+
+    Operation operation = Operation.VERIFY_BREACH_PROOF_PASSWORD;
+    for (Stage stage : new Stage[] { Stage.GET_TOKEN, Stage.BLIND, Stage.TRANSFORM,
+        Stage.DEBLIND }) {
+      assertEquals(1, metrics.getStageHistogram(operation, stage).getCount(), stage.name());
+    }
+    assertEquals(0, metrics.getStageHistogram(operation, Stage.VERIFY).getCount());
+    assertEquals(1, metrics.getOperationHistogram(operation, Outcome.MISMATCH).getCount());
+    assertEquals(0, metrics.getOperationHistogram(operation, Outcome.SUCCESS).getCount());
+  }
+
+  @Test
+  public void createBreachProofPassword_metricsTimeout() throws Exception {
+    HistogramPythiaMetrics metrics = new HistogramPythiaMetrics();
+    when(context.getMetrics()).thenReturn(metrics);
+    Deadline deadline = Deadline.after(0, TimeUnit.MILLISECONDS);
+
+    assertThrows(PythiaTimeoutException.class, () -> {
+      new Pythia(context).createBreachProofPassword("password", deadline);
+    });
+
+    Operation operation = Operation.CREATE_BREACH_PROOF_PASSWORD;
+    assertEquals(1, metrics.getStageHistogram(operation, Stage.BLIND).getCount());
+    assertEquals(0, metrics.getStageHistogram(operation, Stage.GET_TOKEN).getCount());
+    assertEquals(1, metrics.getOperationHistogram(operation, Outcome.TIMEOUT).getCount());
+    assertEquals(Long.valueOf(1),
+        metrics.getErrorCounts().get(PythiaTimeoutException.class.getName()));
+  }
+
+  @Test
+  public void createBreachProofPassword_parallel() throws Exception {
+    HistogramPythiaMetrics metrics = new HistogramPythiaMetrics();
+    when(context.getMetrics()).thenReturn(metrics);
+    ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+      return new Thread(runnable, "parallel");
+    });
+    when(context.getParallelExecutor()).thenReturn(executor);
+    Map<String, String> threads = new ConcurrentHashMap<>();
+    when(accessTokenProvider.getToken(any())).thenAnswer(invocation -> {
+      threads.put("getToken", Thread.currentThread().getName());
+      return accessToken;
+    });
+    when(pythiaClient.transformPassword(any(), any(), anyInt(), eq(true), anyString(),
+        any(Deadline.class))).thenReturn(new TransformResponse(new byte[] { 4 },
+            new Proof(new byte[] { 6 }, new byte[] { 7 })));
+    when(pythiaCrypto.verify(any(), any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+      threads.put("verify", Thread.currentThread().getName());
+      return true;
+    });
+    when(pythiaCrypto.deblind(any(), any())).thenAnswer(invocation -> {
+      threads.put("deblind", Thread.currentThread().getName());
+      return new byte[] { 5 };
+    });
+
+    try {
+      BreachProofPassword bpp = new Pythia(context).createBreachProofPassword("password",
+          Deadline.none());
+
+      assertArrayEquals(new byte[] { 5 }, bpp.getDeblindedPassword());
+      assertEquals("parallel", threads.get("getToken"));
+      assertEquals("parallel", threads.get("deblind"));
+      assertEquals(Thread.currentThread().getName(), threads.get("verify"));
+      Operation operation = Operation.CREATE_BREACH_PROOF_PASSWORD;
+      for (Stage stage : new Stage[] { Stage.GET_TOKEN, Stage.BLIND, Stage.TRANSFORM,
+          Stage.VERIFY, Stage.DEBLIND }) {
+        assertEquals(1, metrics.getStageHistogram(operation, stage).getCount(), stage.name());
+      }
+      assertEquals(1, metrics.getOperationHistogram(operation, Outcome.SUCCESS).getCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void verifyBreachProofPassword_parallelVerificationFailed() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    when(context.getParallelExecutor()).thenReturn(executor);
+    when(pythiaClient.transformPassword(any(), any(), anyInt(), eq(true), anyString(),
+        any(Deadline.class))).thenReturn(new TransformResponse(new byte[] { 4 },
+            new Proof(new byte[] { 6 }, new byte[] { 7 })));
+    when(pythiaCrypto.verify(any(), any(), any(), any(), any(), any())).thenReturn(false);
+    CountDownLatch release = new CountDownLatch(1);
+    when(pythiaCrypto.deblind(any(), any())).thenAnswer(invocation -> {
+      release.await(5, TimeUnit.SECONDS);
+      return new byte[] { 5 };
+    });
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 5 }, 1);
+
+    try {
+      // Failed verification doesn't wait for deblinding
+      long start = System.nanoTime();
+      assertThrows(TransformVerificationException.class, () -> {
+        new Pythia(context).verifyBreachProofPassword("password", bpp, true,
+            Deadline.after(2, TimeUnit.SECONDS));
+      });
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void tryVerifyBreachProofPassword() throws Exception {
+    when(pythiaClient.transformPassword(any(), any(), anyInt(), eq(false), anyString(),
+        any(Deadline.class))).thenReturn(new TransformResponse(new byte[] { 4 }));
+    when(pythiaCrypto.deblind(any(), any())).thenReturn(new byte[] { 5 });
+
+    assertEquals(Outcome.SUCCESS, this.pythia.tryVerifyBreachProofPassword("password",
+        new BreachProofPassword(new byte[32], new byte[] { 5 }, 1), false));
+    assertEquals(Outcome.MISMATCH, this.pythia.tryVerifyBreachProofPassword("password",
+        new BreachProofPassword(new byte[32], new byte[] { 3 }, 1), false));
+    assertEquals(Outcome.KEY_NOT_FOUND, this.pythia.tryVerifyBreachProofPassword("password",
+        new BreachProofPassword(new byte[32], new byte[] { 5 }, 7), false));
+  }
+
+  @Test
+  public void tryVerifyBreachProofPassword_invalidArguments() {
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 5 }, 1);
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      this.pythia.tryVerifyBreachProofPassword(null, bpp, false);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      this.pythia.tryVerifyBreachProofPassword("password", null, false);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      this.pythia.tryVerifyBreachProofPassword("password", bpp, false, null);
+    });
+  }
+
+  @Test
+  public void tryVerifyBreachProofPassword_verificationFailed() throws Exception {
+    when(pythiaClient.transformPassword(any(), any(), anyInt(), eq(true), anyString(),
+        any(Deadline.class))).thenReturn(new TransformResponse(new byte[] { 4 },
+            new Proof(new byte[] { 6 }, new byte[] { 7 })));
+    when(pythiaCrypto.verify(any(), any(), any(), any(), any(), any())).thenReturn(false);
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 5 }, 1);
+
+    assertEquals(Outcome.VERIFICATION_FAILED,
+        this.pythia.tryVerifyBreachProofPassword("password", bpp, true));
+
+    // Failure raised by Pythia skips stack trace, but is reported as the public exception
+    TransformVerificationException e = assertThrows(TransformVerificationException.class, () -> {
+      this.pythia.verifyBreachProofPassword("password", bpp, true);
+    });
+    assertEquals(0, e.getStackTrace().length);
+    assertEquals(TransformVerificationException.class.getName(), ErrorClasses.nameOf(e));
+    assertTrue(new TransformVerificationException().getStackTrace().length > 0);
+  }
+
+  @Test
+  public void tryVerifyBreachProofPassword_throttled() throws Exception {
+    ThrottlingException error = new ThrottlingException(60007, "Too many requests", null);
+    when(pythiaClient.transformPassword(any(), any(), anyInt(), anyBoolean(), anyString(),
+        any(Deadline.class))).thenThrow(error);
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 5 }, 1);
+
+    assertEquals(Outcome.THROTTLED, this.pythia.tryVerifyBreachProofPassword("password", bpp,
+        false));
+    assertTrue(error.getStackTrace().length > 0);
+  }
+
+  @Test
+  public void verifyBreachProofPassword_tracing() throws Exception {
+    RecordingTracer tracer = new RecordingTracer();
+    when(context.getTracer()).thenReturn(tracer);
+    when(pythiaClient.transformPassword(any(), any(), anyInt(), eq(false), anyString(),
+        any(Deadline.class))).thenReturn(new TransformResponse(new byte[] { 4 }));
+    when(pythiaCrypto.deblind(any(), any())).thenReturn(new byte[] { 5 });
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 3 }, 1);
+
+    assertFalse(new Pythia(context).verifyBreachProofPassword("password", bpp, false));
+
+    assertEquals(5, tracer.spans.size());
+    RecordingSpan root = tracer.spans.get(0);
+    assertEquals("verifyBreachProofPassword", root.name);
+    assertEquals(1L, root.attributes.get(SpanAttributes.KEY_VERSION));
+    assertEquals(false, root.attributes.get(SpanAttributes.PROVE));
+    String[] stages = { "getToken", "blind", "transform", "deblind" };
+    for (int i = 0; i < stages.length; i++) {
+      RecordingSpan span = tracer.spans.get(i + 1);
+      assertEquals(stages[i], span.name);
+      assertSame(root, span.parent);
+      assertTrue(span.ended, span.name);
+      assertFalse(span.remote ^ "transform".equals(span.name), span.name);
+    }
+    RecordingSpan transform = tracer.spans.get(3);
+    assertEquals("transform", transform.attributes.get(SpanAttributes.ENDPOINT));
+    assertEquals(1, transform.injected);
+    assertTrue(root.ended);
+    assertNull(root.error);
+  }
+
+  @Test
+  public void createBreachProofPassword_tracingTimeout() throws Exception {
+    RecordingTracer tracer = new RecordingTracer();
+    when(context.getTracer()).thenReturn(tracer);
+    Deadline deadline = Deadline.after(0, TimeUnit.MILLISECONDS);
+
+    assertThrows(PythiaTimeoutException.class, () -> {
+      new Pythia(context).createBreachProofPassword("password", deadline);
+    });
+
+    assertEquals(3, tracer.spans.size());
+    RecordingSpan tokenSpan = tracer.spans.get(2);
+    assertEquals("getToken", tokenSpan.name);
+    assertTrue(tokenSpan.error instanceof PythiaTimeoutException);
+    assertTrue(tokenSpan.ended);
+    assertNull(tracer.spans.get(1).error);
+    assertTrue(tracer.spans.get(0).error instanceof PythiaTimeoutException);
+    for (RecordingSpan span : tracer.spans) {
+      assertEquals(1, span.ends, span.name);
+    }
+  }
+
+  @Test
+  public void updateBreachProofPasswords_file(@TempDir Path tempDir) throws Exception {
+    Path path = tempDir.resolve("passwords.bpp");
+    try (BreachProofPasswordFileWriter writer = new BreachProofPasswordFileWriter(path, 8)) {
+      for (int i = 0; i < 100; i++) {
+        writer.write("user" + i, new BreachProofPassword(new byte[] { (byte) i },
+            new byte[] { 1, 2 }, i == 0 ? 2 : 1));
+      }
+    }
+    when(pythiaCrypto.updateDeblinded(any(), any())).thenReturn(new byte[] { 3, 4 });
+
+    try (BreachProofPasswordFile file = BreachProofPasswordFile.open(path, true)) {
+      assertEquals(99, this.pythia.updateBreachProofPasswords("UT.1.2.AQID", file));
+      assertEquals(0, this.pythia.updateBreachProofPasswords("UT.1.2.AQID", file));
+    }
+
+    try (BreachProofPasswordFile file = BreachProofPasswordFile.open(path, false)) {
+      assertArrayEquals(new byte[] { 1, 2 }, file.get(0).getDeblindedPassword());
+      BreachProofPasswordRecord record = file.get(42);
+      assertEquals(2, record.getVersion());
+      assertEquals("user42", record.getUserKey());
+      assertArrayEquals(new byte[] { 42 }, record.getSalt());
+      assertArrayEquals(new byte[] { 3, 4 }, record.getDeblindedPassword());
+    }
+  }
+
+  private static class RecordingTracer implements PythiaTracer {
+    private final List<RecordingSpan> spans = new ArrayList<>();
+
+    @Override
+    public PythiaSpan startSpan(String name) {
+      return new RecordingSpan(this, name, null, false);
+    }
+  }
+
+  private static class RecordingSpan implements PythiaSpan {
+    private final RecordingTracer tracer;
+    private final String name;
+    private final RecordingSpan parent;
+    private final boolean remote;
+    private final Map<String, Object> attributes = new HashMap<>();
+    private int injected;
+    private Throwable error;
+    private boolean ended;
+    private int ends;
+
+    RecordingSpan(RecordingTracer tracer, String name, RecordingSpan parent, boolean remote) {
+      this.tracer = tracer;
+      this.name = name;
+      this.parent = parent;
+      this.remote = remote;
+      tracer.spans.add(this);
+    }
+
+    @Override
+    public PythiaSpan startChild(String name, boolean remote) {
+      return new RecordingSpan(this.tracer, name, this, remote);
+    }
+
+    @Override
+    public void setAttribute(String key, String value) {
+      this.attributes.put(key, value);
+    }
+
+    @Override
+    public void setAttribute(String key, long value) {
+      this.attributes.put(key, value);
+    }
+
+    @Override
+    public void setAttribute(String key, boolean value) {
+      this.attributes.put(key, value);
+    }
+
+    @Override
+    public void inject(Map<String, String> headers) {
+      this.injected++;
+      headers.put("traceparent", "00-" + this.name);
+    }
+
+    @Override
+    public void recordError(Throwable error) {
+      if (!this.ended) {
+        this.error = error;
+      }
+    }
+
+    @Override
+    public void end() {
+      this.ended = true;
+      this.ends++;
+    }
+  }
+
+}
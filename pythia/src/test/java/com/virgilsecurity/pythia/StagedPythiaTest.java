@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia;
+
+import com.virgilsecurity.pythia.client.PythiaClient;
+import com.virgilsecurity.pythia.crypto.BlindResult;
+import com.virgilsecurity.pythia.crypto.PythiaCrypto;
+import com.virgilsecurity.pythia.metrics.HistogramPythiaMetrics;
+import com.virgilsecurity.pythia.metrics.Operation;
+import com.virgilsecurity.pythia.metrics.Outcome;
+import com.virgilsecurity.pythia.metrics.SlowOperation;
+import com.virgilsecurity.pythia.metrics.SlowOperationSampler;
+import com.virgilsecurity.pythia.metrics.Stage;
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+import com.virgilsecurity.pythia.model.Proof;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.PythiaTimeoutException;
+import com.virgilsecurity.pythia.model.exception.ThrottlingException;
+import com.virgilsecurity.sdk.jwt.contract.AccessToken;
+import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link StagedPythia} and {@link PythiaStage}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class StagedPythiaTest {
+
+  @Mock
+  private PythiaContext context;
+
+  @Mock
+  private PythiaCrypto pythiaCrypto;
+
+  @Mock
+  private PythiaClient pythiaClient;
+
+  @Mock
+  private AccessTokenProvider accessTokenProvider;
+
+  @Mock
+  private AccessToken accessToken;
+
+  private HistogramPythiaMetrics metrics;
+  private List<String> threads;
+  private StagedPythia stagedPythia;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    this.metrics = new HistogramPythiaMetrics();
+    this.threads = new CopyOnWriteArrayList<>();
+    when(context.getProofKeys()).thenReturn(
+        new ProofKeys(Collections.singletonList("PK.1.AQID")));
+    when(context.getPythiaCrypto()).thenReturn(pythiaCrypto);
+    when(context.getPythiaClient()).thenReturn(pythiaClient);
+    when(context.getAccessTokenProvider()).thenReturn(accessTokenProvider);
+    when(context.getMetrics()).thenReturn(metrics);
+
+    when(accessTokenProvider.getToken(any())).thenReturn(accessToken);
+    when(accessToken.stringRepresentation()).thenReturn("token");
+    when(pythiaCrypto.generateSalt()).thenReturn(new byte[32]);
+    when(pythiaCrypto.blind(anyString())).thenAnswer(invocation -> {
+      this.threads.add("blind " + Thread.currentThread().getName());
+      return new BlindResult(new byte[] { 1 }, new byte[] { 2 });
+    });
+    when(pythiaClient.transformPassword(any(), any(), anyInt(), anyBoolean(), anyString(),
+        any(Deadline.class))).thenAnswer(invocation -> {
+          this.threads.add("transform " + Thread.currentThread().getName());
+          return new TransformResponse(new byte[] { 4 }, new Proof(new byte[] { 6 },
+              new byte[] { 7 }));
+        });
+    when(pythiaCrypto.verify(any(), any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+      this.threads.add("verify " + Thread.currentThread().getName());
+      return true;
+    });
+    when(pythiaCrypto.deblind(any(), any())).thenAnswer(invocation -> {
+      this.threads.add("deblind " + Thread.currentThread().getName());
+      return new byte[] { 5 };
+    });
+
+    this.stagedPythia = new StagedPythia(new Pythia(context), new PythiaStage("cpu", 2, 16),
+        new PythiaStage("io", 2, 16));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    this.stagedPythia.close();
+  }
+
+  @Test
+  public void verifyBreachProofPassword() throws Exception {
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 5 }, 1);
+
+    assertTrue(this.stagedPythia.verifyBreachProofPassword("password", bpp, true,
+        Deadline.none()).get(5, TimeUnit.SECONDS));
+
+    assertEquals(4, this.threads.size());
+    assertTrue(this.threads.get(0).startsWith("blind pythia-cpu-"));
+    assertTrue(this.threads.get(1).startsWith("transform pythia-io-"));
+    assertTrue(this.threads.get(2).startsWith("verify pythia-cpu-"));
+    assertTrue(this.threads.get(3).startsWith("deblind pythia-cpu-"));
+
+    Operation operation = Operation.VERIFY_BREACH_PROOF_PASSWORD;
+    for (Stage stage : new Stage[] { Stage.GET_TOKEN, Stage.BLIND, Stage.TRANSFORM,
+        Stage.VERIFY, Stage.DEBLIND }) {
+      assertEquals(1, metrics.getStageHistogram(operation, stage).getCount(), stage.name());
+    }
+    assertEquals(1, metrics.getOperationHistogram(operation, Outcome.SUCCESS).getCount());
+    assertEquals(2, this.stagedPythia.getCpuStage().getCompletedTasks());
+    assertEquals(1, this.stagedPythia.getIoStage().getCompletedTasks());
+  }
+
+  @Test
+  public void verifyBreachProofPassword_slowOperationSampler() throws Exception {
+    SlowOperationSampler sampler = new SlowOperationSampler(0, TimeUnit.MILLISECONDS, 10);
+    when(context.getMetrics()).thenReturn(sampler);
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 5 }, 1);
+
+    try (StagedPythia staged = new StagedPythia(new Pythia(context))) {
+      assertTrue(staged.verifyBreachProofPassword("password", bpp, true, Deadline.none())
+          .get(5, TimeUnit.SECONDS));
+    }
+
+    SlowOperation operation = sampler.getSlowOperations().get(0);
+    for (Stage stage : new Stage[] { Stage.GET_TOKEN, Stage.BLIND, Stage.TRANSFORM,
+        Stage.VERIFY, Stage.DEBLIND }) {
+      assertTrue(operation.getStageNanos(stage) >= 0, stage.name());
+    }
+  }
+
+  @Test
+  public void verifyBreachProofPassword_mismatch() throws Exception {
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 3 }, 1);
+
+    assertFalse(this.stagedPythia.verifyBreachProofPassword("password", bpp, false,
+        Deadline.none()).get(5, TimeUnit.SECONDS));
+
+    Operation operation = Operation.VERIFY_BREACH_PROOF_PASSWORD;
+    assertEquals(0, metrics.getStageHistogram(operation, Stage.VERIFY).getCount());
+    assertEquals(1, metrics.getOperationHistogram(operation, Outcome.MISMATCH).getCount());
+  }
+
+  @Test
+  public void createBreachProofPassword() throws Exception {
+    BreachProofPassword bpp = this.stagedPythia.createBreachProofPassword("password",
+        Deadline.none()).get(5, TimeUnit.SECONDS);
+
+    assertArrayEquals(new byte[] { 5 }, bpp.getDeblindedPassword());
+    assertEquals(1, bpp.getVersion());
+    assertEquals(1, metrics.getOperationHistogram(Operation.CREATE_BREACH_PROOF_PASSWORD,
+        Outcome.SUCCESS).getCount());
+  }
+
+  @Test
+  public void createBreachProofPassword_serviceError() throws Exception {
+    when(pythiaClient.transformPassword(any(), any(), anyInt(), eq(true), anyString(),
+        any(Deadline.class))).thenThrow(new ThrottlingException(60007, "Too many requests", null));
+
+    CompletableFuture<BreachProofPassword> future = this.stagedPythia
+        .createBreachProofPassword("password", Deadline.none());
+
+    ExecutionException e = assertThrows(ExecutionException.class, () -> {
+      future.get(5, TimeUnit.SECONDS);
+    });
+    assertTrue(e.getCause() instanceof ThrottlingException);
+    assertEquals(1, metrics.getOperationHistogram(Operation.CREATE_BREACH_PROOF_PASSWORD,
+        Outcome.THROTTLED).getCount());
+  }
+
+  @Test
+  public void submit_queueFull() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    try (PythiaStage stage = new PythiaStage("test", 1, 1)) {
+      CompletableFuture<Boolean> running = stage.submit(() -> release.await(5, TimeUnit.SECONDS),
+          Deadline.none());
+      CompletableFuture<Boolean> queued = stage.submit(() -> true, Deadline.none());
+      CompletableFuture<Boolean> rejected = stage.submit(() -> true, Deadline.none());
+
+      ExecutionException e = assertThrows(ExecutionException.class, () -> {
+        rejected.get(5, TimeUnit.SECONDS);
+      });
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+      assertEquals(1, stage.getRejectedTasks());
+
+      release.countDown();
+      assertTrue(running.get(5, TimeUnit.SECONDS));
+      assertTrue(queued.get(5, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void submit_expiredInQueue() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    try (PythiaStage stage = new PythiaStage("test", 1, 1)) {
+      stage.submit(() -> release.await(5, TimeUnit.SECONDS), Deadline.none());
+      CompletableFuture<Boolean> queued = stage.submit(() -> true,
+          Deadline.after(50, TimeUnit.MILLISECONDS));
+      Thread.sleep(100);
+      release.countDown();
+
+      ExecutionException e = assertThrows(ExecutionException.class, () -> {
+        queued.get(5, TimeUnit.SECONDS);
+      });
+      assertTrue(e.getCause() instanceof PythiaTimeoutException);
+      assertEquals("test queue", ((PythiaTimeoutException) e.getCause()).getStage());
+      assertEquals(1, stage.getExpiredTasks());
+    }
+  }
+
+  @Test
+  public void utilization() throws Exception {
+    try (PythiaStage stage = new PythiaStage("test", 1, 1)) {
+      stage.submit(() -> {
+        Thread.sleep(100);
+        return true;
+      }, Deadline.none()).get(5, TimeUnit.SECONDS);
+
+      assertTrue(stage.getBusyNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+      assertTrue(stage.getUtilization() > 0);
+      assertEquals(1, stage.getCompletedTasks());
+    }
+  }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.brainkey;
+
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.model.exception.ThrottlingException;
+import com.virgilsecurity.sdk.crypto.VirgilCrypto;
+import com.virgilsecurity.sdk.crypto.VirgilKeyPair;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for {@link BrainKeyCache}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class BrainKeyCacheTest {
+
+  private VirgilCrypto crypto;
+  private AtomicInteger loads;
+
+  @BeforeEach
+  public void setup() {
+    this.crypto = new VirgilCrypto();
+    this.loads = new AtomicInteger();
+  }
+
+  @Test
+  public void get_hit() throws Exception {
+    BrainKeyCache cache = cache(10, 1, TimeUnit.HOURS);
+
+    VirgilKeyPair generated = cache.get("password", "id", Deadline.none(), loader(1));
+    VirgilKeyPair cached = cache.get("password", "id", Deadline.none(), loader(2));
+
+    assertEquals(1, this.loads.get());
+    assertArrayEquals(export(generated), export(cached));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void get_differentIds() throws Exception {
+    BrainKeyCache cache = cache(10, 1, TimeUnit.HOURS);
+
+    cache.get("password", null, Deadline.none(), loader(1));
+    cache.get("password", "", Deadline.none(), loader(2));
+    cache.get("password2", null, Deadline.none(), loader(3));
+
+    assertEquals(3, this.loads.get());
+    assertEquals(3, cache.getSize());
+  }
+
+  @Test
+  public void get_expired() throws Exception {
+    BrainKeyCache cache = cache(10, 50, TimeUnit.MILLISECONDS);
+
+    cache.get("password", "id", Deadline.none(), loader(1));
+    Thread.sleep(100);
+    VirgilKeyPair keyPair = cache.get("password", "id", Deadline.none(), loader(2));
+
+    assertEquals(2, this.loads.get());
+    assertArrayEquals(export(this.crypto.generateKeyPair(seed(2))), export(keyPair));
+  }
+
+  @Test
+  public void put_evictsLeastRecentlyUsed() throws Exception {
+    BrainKeyCache cache = cache(2, 1, TimeUnit.HOURS);
+
+    cache.put("password", "a", this.crypto.generateKeyPair(seed(1)));
+    cache.put("password", "b", this.crypto.generateKeyPair(seed(2)));
+    assertNotNull(cache.getIfPresent("password", "a"));
+    cache.put("password", "c", this.crypto.generateKeyPair(seed(3)));
+
+    assertEquals(2, cache.getSize());
+    assertNotNull(cache.getIfPresent("password", "a"));
+    assertNull(cache.getIfPresent("password", "b"));
+    assertNotNull(cache.getIfPresent("password", "c"));
+  }
+
+  @Test
+  public void invalidate() throws Exception {
+    BrainKeyCache cache = cache(10, 1, TimeUnit.HOURS);
+    cache.put("password", "a", this.crypto.generateKeyPair(seed(1)));
+    cache.put("password", "b", this.crypto.generateKeyPair(seed(2)));
+
+    cache.invalidate("password", "a");
+    assertNull(cache.getIfPresent("password", "a"));
+    assertNotNull(cache.getIfPresent("password", "b"));
+
+    cache.invalidateAll();
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void get_singleFlight() throws Exception {
+    final BrainKeyCache cache = cache(10, 1, TimeUnit.HOURS);
+    final CountDownLatch release = new CountDownLatch(1);
+    final BrainKeyCache.KeyPairLoader loader = () -> {
+      this.loads.incrementAndGet();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return this.crypto.generateKeyPair(seed(1));
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<VirgilKeyPair>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(() -> {
+          return cache.get("password", "id", Deadline.after(5, TimeUnit.SECONDS), loader);
+        }));
+      }
+      Thread.sleep(200);
+      release.countDown();
+      byte[] expected = export(this.crypto.generateKeyPair(seed(1)));
+      Set<VirgilKeyPair> keyPairs = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (Future<VirgilKeyPair> future : futures) {
+        VirgilKeyPair keyPair = future.get(5, TimeUnit.SECONDS);
+        assertArrayEquals(expected, export(keyPair));
+        keyPairs.add(keyPair);
+      }
+      // Every caller owns its key pair
+      assertEquals(futures.size(), keyPairs.size());
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1, this.loads.get());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void get_invalidatedWhileLoading() throws Exception {
+    final BrainKeyCache cache = cache(10, 1, TimeUnit.HOURS);
+
+    VirgilKeyPair keyPair = cache.get("password", "id", Deadline.none(), () -> {
+      cache.invalidate("password", "id");
+      return this.crypto.generateKeyPair(seed(1));
+    });
+
+    assertNotNull(keyPair);
+    assertEquals(0, cache.getSize());
+    cache.get("password", "id", Deadline.none(), loader(2));
+    assertEquals(1, this.loads.get());
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void get_failureNotCached() throws Exception {
+    BrainKeyCache cache = cache(10, 1, TimeUnit.HOURS);
+
+    assertThrows(ThrottlingException.class, () -> {
+      cache.get("password", "id", Deadline.none(), () -> {
+        throw new ThrottlingException(60007, "Too many requests", null);
+      });
+    });
+    assertEquals(0, cache.getSize());
+    cache.get("password", "id", Deadline.none(), loader(1));
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void build_noMaxSize() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new BrainKeyCache.Builder().setTtl(1, TimeUnit.HOURS).build();
+    });
+  }
+
+  private BrainKeyCache cache(int maxSize, long ttl, TimeUnit unit) {
+    return new BrainKeyCache.Builder().setMaxSize(maxSize).setTtl(ttl, unit).setCrypto(crypto)
+        .build();
+  }
+
+  private BrainKeyCache.KeyPairLoader loader(final int seed) {
+    return () -> {
+      this.loads.incrementAndGet();
+      return this.crypto.generateKeyPair(seed(seed));
+    };
+  }
+
+  private byte[] export(VirgilKeyPair keyPair) throws Exception {
+    return this.crypto.exportPrivateKey(keyPair.getPrivateKey());
+  }
+
+  private static byte[] seed(int value) {
+    byte[] seed = new byte[32];
+    Arrays.fill(seed, (byte) value);
+    return seed;
+  }
+
+}
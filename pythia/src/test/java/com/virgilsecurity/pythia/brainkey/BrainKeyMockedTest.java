@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.brainkey;
+
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.client.AsyncPythiaClient;
+import com.virgilsecurity.pythia.client.PythiaClient;
+import com.virgilsecurity.pythia.crypto.BlindResult;
+import com.virgilsecurity.pythia.crypto.PythiaCrypto;
+import com.virgilsecurity.pythia.metrics.SlowOperation;
+import com.virgilsecurity.pythia.metrics.SlowOperationSampler;
+import com.virgilsecurity.pythia.metrics.Stage;
+import com.virgilsecurity.pythia.model.exception.ThrottlingException;
+import com.virgilsecurity.sdk.crypto.KeyPairType;
+import com.virgilsecurity.sdk.crypto.VirgilCrypto;
+import com.virgilsecurity.sdk.crypto.VirgilKeyPair;
+import com.virgilsecurity.sdk.jwt.contract.AccessToken;
+import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link BrainKey} with mocked dependencies.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class BrainKeyMockedTest {
+
+  private static final byte[] BLINDED_PASSWORD = { 1 };
+  private static final byte[] BLINDING_SECRET = { 2 };
+  private static final byte[] SIGNING_SEED = { 3 };
+  private static final byte[] BACKUP_SEED = { 4 };
+
+  @Mock
+  private PythiaCrypto pythiaCrypto;
+
+  @Mock
+  private AccessTokenProvider accessTokenProvider;
+
+  @Mock
+  private AccessToken accessToken;
+
+  private VirgilKeyPair signingKeyPair;
+  private VirgilKeyPair backupKeyPair;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    when(accessTokenProvider.getToken(any())).thenReturn(accessToken);
+    when(accessToken.stringRepresentation()).thenReturn("token");
+    when(pythiaCrypto.blind(anyString()))
+        .thenReturn(new BlindResult(BLINDED_PASSWORD, BLINDING_SECRET));
+    when(pythiaCrypto.deblind(any(), eq(BLINDING_SECRET)))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+
+    this.signingKeyPair = mock(VirgilKeyPair.class);
+    this.backupKeyPair = mock(VirgilKeyPair.class);
+    when(pythiaCrypto.generateKeyPair(any(KeyPairType.class), eq(SIGNING_SEED)))
+        .thenReturn(this.signingKeyPair);
+    when(pythiaCrypto.generateKeyPair(any(KeyPairType.class), eq(BACKUP_SEED)))
+        .thenReturn(this.backupKeyPair);
+  }
+
+  @Test
+  public void generateKeyPairs() throws Exception {
+    PythiaClient client = mock(PythiaClient.class);
+    when(client.generateSeed(any(), eq("signing"), anyString(), any(Deadline.class)))
+        .thenReturn(SIGNING_SEED);
+    when(client.generateSeed(any(), eq("backup"), anyString(), any(Deadline.class)))
+        .thenReturn(BACKUP_SEED);
+
+    List<VirgilKeyPair> keyPairs = brainKey(client).generateKeyPairs("password",
+        Arrays.asList("signing", "backup"));
+
+    assertEquals(2, keyPairs.size());
+    assertSame(this.signingKeyPair, keyPairs.get(0));
+    assertSame(this.backupKeyPair, keyPairs.get(1));
+    verify(pythiaCrypto, times(1)).blind("password");
+    verify(accessTokenProvider, times(1)).getToken(any());
+  }
+
+  @Test
+  public void generateKeyPairs_parallelSeeds() throws Exception {
+    // Every seed request waits for the other one, so they have to run in parallel
+    final CountDownLatch requested = new CountDownLatch(2);
+    PythiaClient client = mock(PythiaClient.class);
+    when(client.generateSeed(any(), anyString(), anyString(), any(Deadline.class)))
+        .thenAnswer(invocation -> {
+          requested.countDown();
+          assertTrue(requested.await(5, TimeUnit.SECONDS));
+          return "signing".equals(invocation.getArgument(1)) ? SIGNING_SEED : BACKUP_SEED;
+        });
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    SlowOperationSampler sampler = new SlowOperationSampler(0, TimeUnit.MILLISECONDS, 10);
+    try {
+      BrainKey brainKey = new BrainKey(new BrainKeyContext.Builder().setPythiaClient(client)
+          .setPythiaCrypto(pythiaCrypto).setAccessTokenProvider(accessTokenProvider)
+          .setSeedRequestExecutor(executor).setMetrics(sampler).build());
+
+      List<VirgilKeyPair> keyPairs = brainKey.generateKeyPairs("password",
+          Arrays.asList("signing", "backup"));
+
+      assertSame(this.signingKeyPair, keyPairs.get(0));
+      assertSame(this.backupKeyPair, keyPairs.get(1));
+      SlowOperation operation = sampler.getSlowOperations().get(0);
+      assertTrue(operation.getStageNanos(Stage.GENERATE_SEED) >= 0);
+      assertTrue(operation.getStageNanos(Stage.GENERATE_KEY_PAIR) >= 0);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void generateKeyPairs_sequentialSeeds() throws Exception {
+    PythiaClient client = mock(PythiaClient.class);
+    final List<String> requestThreads = new CopyOnWriteArrayList<>();
+    when(client.generateSeed(any(), anyString(), anyString(), any(Deadline.class)))
+        .thenAnswer(invocation -> {
+          requestThreads.add(Thread.currentThread().getName());
+          return "signing".equals(invocation.getArgument(1)) ? SIGNING_SEED : BACKUP_SEED;
+        });
+
+    // Without seed request executor, blocking calls never leave the calling thread
+    List<VirgilKeyPair> keyPairs = brainKey(client).generateKeyPairs("password",
+        Arrays.asList("signing", "backup"));
+
+    assertSame(this.signingKeyPair, keyPairs.get(0));
+    assertSame(this.backupKeyPair, keyPairs.get(1));
+    String thread = Thread.currentThread().getName();
+    assertEquals(Arrays.asList(thread, thread), requestThreads);
+    assertNull(new BrainKeyContext.Builder().setPythiaClient(client)
+        .setPythiaCrypto(pythiaCrypto).setAccessTokenProvider(accessTokenProvider).build()
+        .getSeedRequestExecutor());
+  }
+
+  @Test
+  public void generateKeyPairs_asyncClient() throws Exception {
+    AsyncPythiaClient client = mock(AsyncPythiaClient.class);
+    CompletableFuture<byte[]> signingSeed = new CompletableFuture<>();
+    when(client.generateSeedAsync(any(), eq("signing"), anyString(), any(Deadline.class)))
+        .thenReturn(signingSeed);
+    when(client.generateSeedAsync(any(), eq("backup"), anyString(), any(Deadline.class)))
+        .thenReturn(CompletableFuture.completedFuture(BACKUP_SEED));
+
+    // Seeds arrive in reverse order
+    new Thread(() -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      signingSeed.complete(SIGNING_SEED);
+    }).start();
+    List<VirgilKeyPair> keyPairs = brainKey(client).generateKeyPairs("password",
+        Arrays.asList("signing", "backup"));
+
+    assertSame(this.signingKeyPair, keyPairs.get(0));
+    assertSame(this.backupKeyPair, keyPairs.get(1));
+    verify(pythiaCrypto, times(1)).blind("password");
+    verify(client, never()).generateSeed(any(), anyString(), anyString(), any(Deadline.class));
+  }
+
+  @Test
+  public void generateKeyPairs_asyncClientStages() throws Exception {
+    AsyncPythiaClient client = mock(AsyncPythiaClient.class);
+    CompletableFuture<byte[]> signingSeed = new CompletableFuture<>();
+    when(client.generateSeedAsync(any(), eq("signing"), anyString(), any(Deadline.class)))
+        .thenReturn(signingSeed);
+    when(client.generateSeedAsync(any(), eq("backup"), anyString(), any(Deadline.class)))
+        .thenReturn(CompletableFuture.completedFuture(BACKUP_SEED));
+    SlowOperationSampler sampler = new SlowOperationSampler(0, TimeUnit.MILLISECONDS, 10);
+    BrainKey brainKey = new BrainKey(new BrainKeyContext.Builder().setPythiaClient(client)
+        .setPythiaCrypto(pythiaCrypto).setAccessTokenProvider(accessTokenProvider)
+        .setMetrics(sampler).build());
+
+    // The seed completes on another thread, which derives the key pair
+    new Thread(() -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      signingSeed.complete(SIGNING_SEED);
+    }).start();
+    brainKey.generateKeyPairs("password", Arrays.asList("signing", "backup"));
+
+    // Stages of both key pairs are reported on the calling thread
+    SlowOperation operation = sampler.getSlowOperations().get(0);
+    assertTrue(operation.getStageNanos(Stage.GENERATE_SEED) >= 0);
+    assertTrue(operation.getStageNanos(Stage.DEBLIND) >= 0);
+    assertTrue(operation.getStageNanos(Stage.GENERATE_KEY_PAIR) >= 0);
+  }
+
+  @Test
+  public void generateKeyPairs_asyncClientError() throws Exception {
+    AsyncPythiaClient client = mock(AsyncPythiaClient.class);
+    CompletableFuture<byte[]> failedSeed = new CompletableFuture<>();
+    failedSeed.completeExceptionally(new ThrottlingException(60007, "Too many requests", null));
+    when(client.generateSeedAsync(any(), eq("signing"), anyString(), any(Deadline.class)))
+        .thenReturn(CompletableFuture.completedFuture(SIGNING_SEED));
+    when(client.generateSeedAsync(any(), eq("backup"), anyString(), any(Deadline.class)))
+        .thenReturn(failedSeed);
+
+    assertThrows(ThrottlingException.class, () -> {
+      brainKey(client).generateKeyPairs("password", Arrays.asList("signing", "backup"));
+    });
+  }
+
+  @Test
+  public void generateKeyPairs_noBrainKeyIds() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      brainKey(mock(PythiaClient.class)).generateKeyPairs("password",
+          Collections.<String>emptyList());
+    });
+  }
+
+  @Test
+  public void generateKeyPairs_cached() throws Exception {
+    VirgilCrypto crypto = new VirgilCrypto();
+    byte[] seed = new byte[32];
+    when(pythiaCrypto.generateKeyPair(KeyPairType.ED25519, seed))
+        .thenReturn(crypto.generateKeyPair(seed));
+    PythiaClient client = mock(PythiaClient.class);
+    when(client.generateSeed(any(), anyString(), anyString(), any(Deadline.class)))
+        .thenReturn(seed);
+    BrainKeyCache cache = new BrainKeyCache.Builder().setMaxSize(10).setTtl(1, TimeUnit.HOURS)
+        .setCrypto(crypto).build();
+    BrainKey brainKey = new BrainKey(new BrainKeyContext.Builder().setPythiaClient(client)
+        .setPythiaCrypto(pythiaCrypto).setAccessTokenProvider(accessTokenProvider)
+        .setCache(cache).build());
+
+    brainKey.generateKeyPair("password", "signing");
+    List<VirgilKeyPair> keyPairs = brainKey.generateKeyPairs("password",
+        Arrays.asList("signing", "backup"));
+    brainKey.generateKeyPair("password", "backup");
+
+    assertEquals(2, keyPairs.size());
+    verify(client, times(1)).generateSeed(any(), eq("signing"), anyString(),
+        any(Deadline.class));
+    verify(client, times(1)).generateSeed(any(), eq("backup"), anyString(),
+        any(Deadline.class));
+    assertEquals(2, cache.getHitCount());
+  }
+
+  @Test
+  public void generateKeyPair_keyPairType() throws Exception {
+    PythiaClient client = mock(PythiaClient.class);
+    when(client.generateSeed(any(), eq("signing"), anyString(), any(Deadline.class)))
+        .thenReturn(SIGNING_SEED);
+    BrainKey brainKey = new BrainKey(new BrainKeyContext.Builder().setPythiaClient(client)
+        .setPythiaCrypto(pythiaCrypto).setAccessTokenProvider(accessTokenProvider)
+        .setKeyPairType(KeyPairType.SECP256R1).build());
+
+    assertSame(this.signingKeyPair, brainKey.generateKeyPair("password", "signing"));
+    verify(pythiaCrypto).generateKeyPair(KeyPairType.SECP256R1, SIGNING_SEED);
+  }
+
+  @Test
+  public void generateKeyPairs_expensiveKeyPairType() throws Exception {
+    PythiaClient client = mock(PythiaClient.class);
+    when(client.generateSeed(any(), eq("signing"), anyString(), any(Deadline.class)))
+        .thenReturn(SIGNING_SEED);
+    when(client.generateSeed(any(), eq("backup"), anyString(), any(Deadline.class)))
+        .thenReturn(BACKUP_SEED);
+    final List<String> derivationThreads = new CopyOnWriteArrayList<>();
+    when(pythiaCrypto.generateKeyPair(eq(KeyPairType.RSA_2048), any())).thenAnswer(invocation -> {
+      derivationThreads.add(Thread.currentThread().getName());
+      byte[] seed = invocation.getArgument(1);
+      return seed == SIGNING_SEED ? this.signingKeyPair : this.backupKeyPair;
+    });
+    ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+      return new Thread(runnable, "keygen");
+    });
+    SlowOperationSampler sampler = new SlowOperationSampler(0, TimeUnit.MILLISECONDS, 10);
+    try {
+      BrainKey brainKey = new BrainKey(new BrainKeyContext.Builder().setPythiaClient(client)
+          .setPythiaCrypto(pythiaCrypto).setAccessTokenProvider(accessTokenProvider)
+          .setKeyPairType(KeyPairType.RSA_2048).setKeyGenerationExecutor(executor)
+          .setMetrics(sampler).build());
+
+      List<VirgilKeyPair> keyPairs = brainKey.generateKeyPairs("password",
+          Arrays.asList("signing", "backup"));
+
+      assertSame(this.signingKeyPair, keyPairs.get(0));
+      assertSame(this.backupKeyPair, keyPairs.get(1));
+      assertEquals(Arrays.asList("keygen", "keygen"), derivationThreads);
+      // Stages of derivation on the executor are reported on the calling thread
+      SlowOperation operation = sampler.getSlowOperations().get(0);
+      assertTrue(operation.getStageNanos(Stage.DEBLIND) >= 0);
+      assertTrue(operation.getStageNanos(Stage.GENERATE_KEY_PAIR) >= 0);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void isExpensive() {
+    assertTrue(BrainKey.isExpensive(KeyPairType.RSA_4096));
+    assertFalse(BrainKey.isExpensive(KeyPairType.ED25519));
+    assertFalse(BrainKey.isExpensive(KeyPairType.SECP256R1));
+  }
+
+  private BrainKey brainKey(PythiaClient client) {
+    BrainKeyContext context = new BrainKeyContext.Builder().setPythiaClient(client)
+        .setPythiaCrypto(pythiaCrypto).setAccessTokenProvider(accessTokenProvider).build();
+    return new BrainKey(context);
+  }
+
+}
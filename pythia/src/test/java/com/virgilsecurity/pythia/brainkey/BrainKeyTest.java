@@ -60,6 +60,7 @@ import org.junit.jupiter.api.Test;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -144,6 +145,21 @@ public class BrainKeyTest extends ConfigurableTest {
         keyPair4.getPrivateKey().getIdentifier()));
   }
 
+  @Test
+  public void generateKeyPairs() throws CryptoException, VirgilPythiaServiceException {
+    String brainKeyId = sample.get("kBrainKeyId");
+    List<VirgilKeyPair> keyPairs = this.brainKey.generateKeyPairs(sample.get("kPassword1"),
+        Arrays.asList(null, brainKeyId));
+
+    VirgilKeyPair keyPair1 = this.brainKey.generateKeyPair(sample.get("kPassword1"));
+    VirgilKeyPair keyPair2 = this.brainKey.generateKeyPair(sample.get("kPassword1"),
+        brainKeyId);
+    assertArrayEquals(keyPair1.getPrivateKey().getIdentifier(),
+        keyPairs.get(0).getPrivateKey().getIdentifier());
+    assertArrayEquals(keyPair2.getPrivateKey().getIdentifier(),
+        keyPairs.get(1).getPrivateKey().getIdentifier());
+  }
+
   @Test
   public void generateKeyPair_fakeClient() throws VirgilPythiaServiceException, CryptoException {
     // YTC-21
@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.Pythia;
+import com.virgilsecurity.pythia.PythiaContext;
+import com.virgilsecurity.pythia.crypto.BlindResult;
+import com.virgilsecurity.pythia.crypto.PythiaCrypto;
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.PythiaTimeoutException;
+import com.virgilsecurity.pythia.model.exception.CallRejectedException;
+import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+import com.virgilsecurity.sdk.jwt.contract.AccessToken;
+import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link PriorityPythiaClient}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class PriorityPythiaClientTest {
+
+  private static final int BLOCKER = 0;
+
+  private PythiaClient delegate;
+  private CountDownLatch release;
+  private List<Integer> calls;
+  private ExecutorService executor;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    this.release = new CountDownLatch(1);
+    this.calls = new CopyOnWriteArrayList<>();
+    this.executor = Executors.newCachedThreadPool();
+    this.delegate = mock(PythiaClient.class);
+    when(this.delegate.generateSeed(any(), anyString(), anyString(), any(Deadline.class)))
+        .thenAnswer(invocation -> {
+          byte[] tag = invocation.getArgument(0);
+          this.calls.add((int) tag[0]);
+          if (tag[0] == BLOCKER) {
+            this.release.await(5, TimeUnit.SECONDS);
+          }
+          return tag;
+        });
+  }
+
+  @AfterEach
+  public void tearDown() {
+    this.release.countDown();
+    this.executor.shutdownNow();
+  }
+
+  @Test
+  public void priorityOrder() throws Exception {
+    PriorityPythiaClient client = new PriorityPythiaClient.Builder().setPythiaClient(delegate)
+        .setMaxConcurrentCalls(1).build();
+    CompletableFuture<byte[]> blocker = call(client, Priority.BULK, BLOCKER);
+    awaitInFlight(client, 1);
+    CompletableFuture<byte[]> bulk = call(client, Priority.BULK, 3);
+    awaitQueued(client, Priority.BULK, 1);
+    CompletableFuture<byte[]> background = call(client, Priority.BACKGROUND, 2);
+    awaitQueued(client, Priority.BACKGROUND, 1);
+    CompletableFuture<byte[]> interactive = call(client, Priority.INTERACTIVE, 1);
+    awaitQueued(client, Priority.INTERACTIVE, 1);
+
+    this.release.countDown();
+    CompletableFuture.allOf(blocker, bulk, background, interactive).get(5, TimeUnit.SECONDS);
+
+    assertEquals(Arrays.asList(BLOCKER, 1, 2, 3), this.calls);
+    assertEquals(2, client.getCompletedCalls(Priority.BULK));
+    assertEquals(0, client.getInFlightCalls());
+  }
+
+  @Test
+  public void weightedSharing() throws Exception {
+    PriorityPythiaClient client = new PriorityPythiaClient.Builder().setPythiaClient(delegate)
+        .setMaxConcurrentCalls(1).build();
+    CompletableFuture<byte[]> blocker = call(client, Priority.INTERACTIVE, BLOCKER);
+    awaitInFlight(client, 1);
+    CompletableFuture<?>[] futures = new CompletableFuture<?>[20];
+    for (int i = 0; i < 10; i++) {
+      futures[2 * i] = call(client, Priority.BULK, 3);
+      awaitQueued(client, Priority.BULK, i + 1);
+      futures[2 * i + 1] = call(client, Priority.BACKGROUND, 2);
+      awaitQueued(client, Priority.BACKGROUND, i + 1);
+    }
+
+    this.release.countDown();
+    blocker.get(5, TimeUnit.SECONDS);
+    CompletableFuture.allOf(futures).get(5, TimeUnit.SECONDS);
+
+    // Background calls get four permits for every bulk one, but bulk calls are not starved
+    List<Integer> first = this.calls.subList(1, 11);
+    assertEquals(8, Collections.frequency(first, 2));
+    assertEquals(2, Collections.frequency(first, 3));
+  }
+
+  @Test
+  public void preemption() throws Exception {
+    PriorityPythiaClient client = new PriorityPythiaClient.Builder().setPythiaClient(delegate)
+        .setMaxConcurrentCalls(1).setQueueCapacity(1).build();
+    CompletableFuture<byte[]> blocker = call(client, Priority.BULK, BLOCKER);
+    awaitInFlight(client, 1);
+    CompletableFuture<byte[]> bulk = call(client, Priority.BULK, 3);
+    awaitQueued(client, Priority.BULK, 1);
+
+    CompletableFuture<byte[]> interactive = call(client, Priority.INTERACTIVE, 1);
+
+    ExecutionException e = assertThrows(ExecutionException.class, () -> {
+      bulk.get(5, TimeUnit.SECONDS);
+    });
+    assertTrue(((CallRejectedException) e.getCause()).isPreempted());
+    assertEquals(1, client.getPreemptedCalls(Priority.BULK));
+    this.release.countDown();
+    blocker.get(5, TimeUnit.SECONDS);
+    interactive.get(5, TimeUnit.SECONDS);
+    assertEquals(Arrays.asList(BLOCKER, 1), this.calls);
+  }
+
+  @Test
+  public void queueFull() throws Exception {
+    PriorityPythiaClient client = new PriorityPythiaClient.Builder().setPythiaClient(delegate)
+        .setMaxConcurrentCalls(1).setQueueCapacity(1).build();
+    call(client, Priority.INTERACTIVE, BLOCKER);
+    awaitInFlight(client, 1);
+    call(client, Priority.INTERACTIVE, 1);
+    awaitQueued(client, Priority.INTERACTIVE, 1);
+
+    // A bulk call can't preempt an interactive one
+    ExecutionException e = assertThrows(ExecutionException.class, () -> {
+      call(client, Priority.BULK, 3).get(5, TimeUnit.SECONDS);
+    });
+    CallRejectedException rejected = (CallRejectedException) e.getCause();
+    assertFalse(rejected.isPreempted());
+    assertEquals(CallRejectedException.ERROR_CODE, rejected.getError());
+    assertEquals(0, rejected.getStackTrace().length);
+    assertEquals(1, client.getRejectedCalls(Priority.BULK));
+  }
+
+  @Test
+  public void deadlineExpiredInQueue() throws Exception {
+    PriorityPythiaClient client = new PriorityPythiaClient.Builder().setPythiaClient(delegate)
+        .setMaxConcurrentCalls(1).build();
+    call(client, Priority.INTERACTIVE, BLOCKER);
+    awaitInFlight(client, 1);
+
+    PythiaTimeoutException e = assertThrows(PythiaTimeoutException.class, () -> {
+      client.generateSeed(new byte[] { 1 }, "id", "token",
+          Deadline.after(50, TimeUnit.MILLISECONDS));
+    });
+    assertEquals("priority queue", e.getStage());
+    assertEquals(1, client.getExpiredCalls(Priority.INTERACTIVE));
+    assertEquals(0, client.getQueuedCalls(Priority.INTERACTIVE));
+  }
+
+  @Test
+  public void interactiveReserve() throws Exception {
+    PriorityPythiaClient client = new PriorityPythiaClient.Builder().setPythiaClient(delegate)
+        .setMaxConcurrentCalls(2).setInteractiveReserve(1).build();
+    call(client, Priority.BULK, BLOCKER);
+    awaitInFlight(client, 1);
+    call(client, Priority.BACKGROUND, 2);
+    awaitQueued(client, Priority.BACKGROUND, 1);
+
+    // Reserved permit is free for logins while background calls wait
+    call(client, Priority.INTERACTIVE, 1).get(5, TimeUnit.SECONDS);
+    assertEquals(1, client.getQueuedCalls(Priority.BACKGROUND));
+  }
+
+  @Test
+  public void asyncClient() throws Exception {
+    final CompletableFuture<byte[]> blocker = new CompletableFuture<>();
+    AsyncPythiaClient delegate = mock(AsyncPythiaClient.class);
+    when(delegate.generateSeedAsync(any(), anyString(), anyString(), any(Deadline.class)))
+        .thenAnswer(invocation -> {
+          byte[] tag = invocation.getArgument(0);
+          this.calls.add((int) tag[0]);
+          return tag[0] == BLOCKER ? blocker : CompletableFuture.completedFuture(tag);
+        });
+    PriorityPythiaClient client = new PriorityPythiaClient.Builder().setPythiaClient(delegate)
+        .setMaxConcurrentCalls(1).build();
+    assertTrue(client instanceof AsyncPythiaClient);
+    AsyncPythiaClient asyncClient = (AsyncPythiaClient) client;
+
+    // Calls are queued without blocking the calling thread
+    asyncCall(asyncClient, Priority.BULK, BLOCKER, Deadline.none());
+    CompletableFuture<byte[]> bulk = asyncCall(asyncClient, Priority.BULK, 3, Deadline.none());
+    CompletableFuture<byte[]> expired = asyncCall(asyncClient, Priority.BULK, 4,
+        Deadline.after(0, TimeUnit.MILLISECONDS));
+    CompletableFuture<byte[]> cancelled = asyncCall(asyncClient, Priority.BACKGROUND, 5,
+        Deadline.none());
+    CompletableFuture<byte[]> background = asyncCall(asyncClient, Priority.BACKGROUND, 2,
+        Deadline.none());
+    CompletableFuture<byte[]> interactive = asyncCall(asyncClient, Priority.INTERACTIVE, 1,
+        Deadline.none());
+    assertEquals(5, client.getQueuedCalls(Priority.BULK)
+        + client.getQueuedCalls(Priority.BACKGROUND) + client.getQueuedCalls(Priority.INTERACTIVE));
+    cancelled.cancel(false);
+
+    blocker.complete(new byte[] { BLOCKER });
+    CompletableFuture.allOf(bulk, background, interactive).get(5, TimeUnit.SECONDS);
+
+    assertEquals(Arrays.asList(BLOCKER, 1, 2, 3), this.calls);
+    ExecutionException e = assertThrows(ExecutionException.class, () -> {
+      expired.get(5, TimeUnit.SECONDS);
+    });
+    assertTrue(e.getCause() instanceof PythiaTimeoutException);
+    assertEquals(1, client.getExpiredCalls(Priority.BULK));
+    assertEquals(0, client.getInFlightCalls());
+  }
+
+  @Test
+  public void blockingClientIsNotAsync() {
+    PriorityPythiaClient client = new PriorityPythiaClient.Builder().setPythiaClient(delegate)
+        .build();
+
+    assertFalse(client instanceof AsyncPythiaClient);
+  }
+
+  @Test
+  public void pythiaWithPriority() throws Exception {
+    final List<Priority> priorities = new CopyOnWriteArrayList<>();
+    PythiaClient delegate = mock(PythiaClient.class);
+    when(delegate.transformPassword(any(), any(), anyInt(), anyBoolean(), anyString(),
+        any(Deadline.class))).thenAnswer(invocation -> {
+          priorities.add(CallPriority.get());
+          return new TransformResponse(new byte[] { 4 });
+        });
+    PythiaCrypto crypto = mock(PythiaCrypto.class);
+    when(crypto.blind(anyString())).thenReturn(new BlindResult(new byte[] { 1 },
+        new byte[] { 2 }));
+    when(crypto.deblind(any(), any())).thenReturn(new byte[] { 3 });
+    AccessToken token = mock(AccessToken.class);
+    when(token.stringRepresentation()).thenReturn("token");
+    AccessTokenProvider tokenProvider = mock(AccessTokenProvider.class);
+    when(tokenProvider.getToken(any())).thenReturn(token);
+    PythiaContext context = new PythiaContext.Builder()
+        .setProofKeys(Collections.singletonList("PK.1.AQID")).setPythiaCrypto(crypto)
+        .setPythiaClient(new PriorityPythiaClient.Builder().setPythiaClient(delegate).build())
+        .setAccessTokenProvider(tokenProvider).build();
+    Pythia pythia = new Pythia(context);
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 3 }, 1);
+
+    assertTrue(pythia.withPriority(Priority.BULK).verifyBreachProofPassword("password", bpp,
+        false));
+    assertTrue(pythia.verifyBreachProofPassword("password", bpp, false));
+
+    assertEquals(Arrays.asList(Priority.BULK, null), priorities);
+    assertNull(CallPriority.get());
+  }
+
+  private CompletableFuture<byte[]> call(final PriorityPythiaClient client,
+      final Priority priority, final int tag) {
+    return CompletableFuture.supplyAsync(() -> {
+      CallPriority.set(priority);
+      try {
+        return client.generateSeed(new byte[] { (byte) tag }, "id", "token", Deadline.none());
+      } catch (VirgilPythiaServiceException e) {
+        throw new CompletionException(e);
+      } finally {
+        CallPriority.clear();
+      }
+    }, this.executor);
+  }
+
+  private static CompletableFuture<byte[]> asyncCall(AsyncPythiaClient client,
+      Priority priority, int tag, Deadline deadline) {
+    CallPriority.set(priority);
+    try {
+      return client.generateSeedAsync(new byte[] { (byte) tag }, "id", "token", deadline);
+    } finally {
+      CallPriority.clear();
+    }
+  }
+
+  private static void awaitInFlight(PriorityPythiaClient client, int calls)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (client.getInFlightCalls() != calls && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(calls, client.getInFlightCalls());
+  }
+
+  private static void awaitQueued(PriorityPythiaClient client, Priority priority, int calls)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (client.getQueuedCalls(priority) != calls && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(calls, client.getQueuedCalls(priority));
+  }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+import com.virgilsecurity.pythia.model.GenerateSeedResponse;
+import com.virgilsecurity.pythia.model.Proof;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.ThrottlingException;
+import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+import com.virgilsecurity.pythia.model.request.GenerateSeedRequest;
+import com.virgilsecurity.pythia.model.request.TransformPasswordRequest;
+import com.virgilsecurity.sdk.common.HttpError;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link PythiaCborCodec}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class PythiaCborCodecTest {
+
+  private final PythiaCodec codec = PythiaCodecs.cbor();
+  private final Random random = new Random(42);
+
+  @Test
+  public void transformPasswordRequest() throws IOException {
+    TransformPasswordRequest request = new TransformPasswordRequest(bytes(16), bytes(384), 300,
+        true);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    codec.writeTransformPasswordRequest(request, out);
+
+    TransformPasswordRequest decoded = codec
+        .readTransformPasswordRequest(new ByteArrayInputStream(out.toByteArray()));
+    assertArrayEquals(request.getSalt(), decoded.getSalt());
+    assertArrayEquals(request.getBlindedPassword(), decoded.getBlindedPassword());
+    assertEquals(300, decoded.getVersion());
+    assertTrue(decoded.getIncludeProof());
+
+    ByteArrayOutputStream json = new ByteArrayOutputStream();
+    PythiaCodecs.json().writeTransformPasswordRequest(request, json);
+    assertTrue(out.size() < json.size() * 4 / 5);
+  }
+
+  @Test
+  public void generateSeedRequest() throws IOException {
+    GenerateSeedRequest request = new GenerateSeedRequest(bytes(384), "brainkey \u4e2d");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    codec.writeGenerateSeedRequest(request, out);
+
+    GenerateSeedRequest decoded = codec
+        .readGenerateSeedRequest(new ByteArrayInputStream(out.toByteArray()));
+    assertArrayEquals(request.getBlindedPassword(), decoded.getBlindedPassword());
+    assertEquals(request.getBrainkeyId(), decoded.getBrainkeyId());
+  }
+
+  @Test
+  public void transformResponse() throws IOException {
+    TransformResponse response = new TransformResponse(bytes(384),
+        new Proof(bytes(32), bytes(32)));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    codec.writeTransformResponse(response, out);
+
+    TransformResponse decoded = codec
+        .readTransformResponse(new ByteArrayInputStream(out.toByteArray()));
+    assertArrayEquals(response.getTransformedPassword(), decoded.getTransformedPassword());
+    assertArrayEquals(response.getProof().getC(), decoded.getProof().getC());
+    assertArrayEquals(response.getProof().getU(), decoded.getProof().getU());
+  }
+
+  @Test
+  public void transformResponse_unknownKeys() throws IOException {
+    // {"x": [1, -2], 1: h'0102', 7: {1: "a"}, 2: null}
+    byte[] cbor = { (byte) 0xa4, 0x61, 'x', (byte) 0x82, 0x01, 0x21, 0x01, 0x42, 0x01, 0x02,
+        0x07, (byte) 0xa1, 0x01, 0x61, 'a', 0x02, (byte) 0xf6 };
+
+    TransformResponse decoded = codec.readTransformResponse(new ByteArrayInputStream(cbor));
+    assertArrayEquals(new byte[] { 1, 2 }, decoded.getTransformedPassword());
+    assertNull(decoded.getProof());
+  }
+
+  @Test
+  public void generateSeedResponse() throws IOException {
+    GenerateSeedResponse response = new GenerateSeedResponse(bytes(70000));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    codec.writeGenerateSeedResponse(response, out);
+
+    GenerateSeedResponse decoded = codec
+        .readGenerateSeedResponse(new ByteArrayInputStream(out.toByteArray()));
+    assertArrayEquals(response.getSeed(), decoded.getSeed());
+  }
+
+  @Test
+  public void error() throws IOException {
+    HttpError httpError = new HttpError(429, "");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    codec.writeError(60007, "Too many requests", out);
+
+    VirgilPythiaServiceException e = codec
+        .readError(new ByteArrayInputStream(out.toByteArray()), httpError);
+    assertTrue(e instanceof ThrottlingException);
+    assertEquals(60007, e.getError());
+
+    e = codec.readError(new ByteArrayInputStream(new byte[0]), httpError);
+    assertSame(httpError, e.getHttpError());
+  }
+
+  @Test
+  public void malformed() {
+    assertThrows(IOException.class, () -> {
+      // Byte string is shorter than its declared length
+      codec.readGenerateSeedResponse(new ByteArrayInputStream(new byte[] { (byte) 0xa1, 0x01,
+          0x45, 0x01 }));
+    });
+    assertThrows(IOException.class, () -> {
+      // Indefinite length map
+      codec.readGenerateSeedResponse(new ByteArrayInputStream(new byte[] { (byte) 0xbf }));
+    });
+    assertThrows(IOException.class, () -> {
+      codec.readTransformResponse(new ByteArrayInputStream(new byte[] { (byte) 0xa0 }));
+    });
+  }
+
+  @Test
+  public void forContentType() {
+    assertSame(PythiaCodecs.cbor(), PythiaCodecs.forContentType("application/cbor"));
+    assertSame(PythiaCodecs.json(),
+        PythiaCodecs.forContentType("application/json; charset=utf-8"));
+    assertSame(PythiaCodecs.json(), PythiaCodecs.forContentType(null));
+  }
+
+  private byte[] bytes(int length) {
+    byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+import com.virgilsecurity.pythia.model.GenerateSeedResponse;
+import com.virgilsecurity.pythia.model.Proof;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.ThrottlingException;
+import com.virgilsecurity.pythia.model.exception.VirgilPythiaServiceException;
+import com.virgilsecurity.pythia.model.request.GenerateSeedRequest;
+import com.virgilsecurity.pythia.model.request.TransformPasswordRequest;
+import com.virgilsecurity.sdk.common.HttpError;
+import com.virgilsecurity.sdk.utils.ConvertionUtils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link PythiaJsonCodec}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class PythiaJsonCodecTest {
+
+  private final PythiaJsonCodec codec = new PythiaJsonCodec();
+  private final Random random = new Random(42);
+
+  @Test
+  public void transformPasswordRequest_compatibleWithGson() throws IOException {
+    for (int length = 1; length < 8; length++) {
+      TransformPasswordRequest request = new TransformPasswordRequest(bytes(length),
+          bytes(length + 383), 2, true);
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      codec.writeTransformPasswordRequest(request, out);
+      TransformPasswordRequest gsonDecoded = ConvertionUtils.getGson().fromJson(
+          ConvertionUtils.toString(out.toByteArray()), TransformPasswordRequest.class);
+      assertArrayEquals(request.getSalt(), gsonDecoded.getSalt());
+      assertArrayEquals(request.getBlindedPassword(), gsonDecoded.getBlindedPassword());
+
+      TransformPasswordRequest decoded = codec
+          .readTransformPasswordRequest(stream(ConvertionUtils.serializeToJson(request)));
+      assertArrayEquals(request.getSalt(), decoded.getSalt());
+      assertArrayEquals(request.getBlindedPassword(), decoded.getBlindedPassword());
+      assertEquals(2, decoded.getVersion());
+      assertTrue(decoded.getIncludeProof());
+    }
+  }
+
+  @Test
+  public void generateSeedRequest_compatibleWithGson() throws IOException {
+    GenerateSeedRequest request = new GenerateSeedRequest(bytes(384),
+        "id \"\u00e9\u4e2d\ud83d\ude00\"\n");
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    codec.writeGenerateSeedRequest(request, out);
+    GenerateSeedRequest gsonDecoded = ConvertionUtils.getGson()
+        .fromJson(ConvertionUtils.toString(out.toByteArray()), GenerateSeedRequest.class);
+    assertArrayEquals(request.getBlindedPassword(), gsonDecoded.getBlindedPassword());
+    assertEquals(request.getBrainkeyId(), gsonDecoded.getBrainkeyId());
+
+    GenerateSeedRequest decoded = codec
+        .readGenerateSeedRequest(new ByteArrayInputStream(out.toByteArray()));
+    assertArrayEquals(request.getBlindedPassword(), decoded.getBlindedPassword());
+    assertEquals(request.getBrainkeyId(), decoded.getBrainkeyId());
+  }
+
+  @Test
+  public void transformResponse() throws IOException {
+    TransformResponse response = new TransformResponse(bytes(384),
+        new Proof(bytes(32), bytes(32)));
+    String json = ConvertionUtils.serializeToJson(response);
+
+    TransformResponse decoded = codec.readTransformResponse(stream(json));
+    assertArrayEquals(response.getTransformedPassword(), decoded.getTransformedPassword());
+    assertArrayEquals(response.getProof().getC(), decoded.getProof().getC());
+    assertArrayEquals(response.getProof().getU(), decoded.getProof().getU());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    codec.writeTransformResponse(response, out);
+    decoded = ConvertionUtils.getGson().fromJson(ConvertionUtils.toString(out.toByteArray()),
+        TransformResponse.class);
+    assertArrayEquals(response.getTransformedPassword(), decoded.getTransformedPassword());
+    assertArrayEquals(response.getProof().getU(), decoded.getProof().getU());
+  }
+
+  @Test
+  public void transformResponse_withoutProofAndUnknownFields() throws IOException {
+    TransformResponse decoded = codec.readTransformResponse(stream(
+        " {\"unknown\": {\"a\": [1, 2.5e3, \"}\"], \"b\": null}, \"proof\": null,\n"
+            + "  \"transformed_password\": \"AQID\\/w==\", \"flag\": true}"));
+    assertArrayEquals(new byte[] { 1, 2, 3, (byte) 0xff }, decoded.getTransformedPassword());
+    assertNull(decoded.getProof());
+  }
+
+  @Test
+  public void generateSeedResponse() throws IOException {
+    GenerateSeedResponse response = new GenerateSeedResponse(bytes(384));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    codec.writeGenerateSeedResponse(response, out);
+
+    GenerateSeedResponse decoded = codec
+        .readGenerateSeedResponse(new ByteArrayInputStream(out.toByteArray()));
+    assertArrayEquals(response.getSeed(), decoded.getSeed());
+  }
+
+  @Test
+  public void readError() throws IOException {
+    HttpError httpError = new HttpError(429, "");
+    VirgilPythiaServiceException e = codec.readError(
+        stream("{\"code\":60007,\"message\":\"Too many \\u0072equests\"}"), httpError);
+    assertTrue(e instanceof ThrottlingException);
+    assertEquals(60007, e.getError());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    codec.writeError(40000, "Invalid \"user_id\"", out);
+    e = codec.readError(new ByteArrayInputStream(out.toByteArray()), httpError);
+    assertFalse(e instanceof ThrottlingException);
+    assertEquals(40000, e.getError());
+    assertTrue(e.getMessage().endsWith("40000:Invalid \"user_id\""));
+
+    e = codec.readError(stream("  "), httpError);
+    assertEquals(httpError, e.getHttpError());
+  }
+
+  @Test
+  public void malformed() {
+    assertThrows(IOException.class, () -> {
+      codec.readGenerateSeedResponse(stream("{\"seed\":\"AQ?D\"}"));
+    });
+    assertThrows(IOException.class, () -> {
+      codec.readGenerateSeedResponse(stream("{\"seed\":\"AQID\""));
+    });
+    assertThrows(IOException.class, () -> {
+      codec.readTransformResponse(stream("{\"proof\":{}}"));
+    });
+    assertThrows(IOException.class, () -> {
+      codec.readTransformResponse(stream("<html></html>"));
+    });
+  }
+
+  private byte[] bytes(int length) {
+    byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+
+  private static InputStream stream(String json) {
+    return new ByteArrayInputStream(ConvertionUtils.toBytes(json));
+  }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+import com.virgilsecurity.pythia.model.exception.ThrottlingException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Unit tests for {@link RateLimitedLogger}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class RateLimitedLoggerTest {
+
+  private Logger logger;
+  private final List<LogRecord> records = new CopyOnWriteArrayList<>();
+  private final Handler handler = new Handler() {
+
+    @Override
+    public void publish(LogRecord record) {
+      records.add(record);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  };
+
+  @BeforeEach
+  public void setup() {
+    this.logger = Logger.getLogger(RateLimitedLoggerTest.class.getName());
+    this.logger.setUseParentHandlers(false);
+    this.logger.addHandler(this.handler);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    this.logger.removeHandler(this.handler);
+  }
+
+  @Test
+  public void log_burst() {
+    RateLimitedLogger rateLimited = new RateLimitedLogger(this.logger, 1, TimeUnit.HOURS);
+    ThrottlingException error = new StacklessThrottlingException(60007, "Too many requests",
+        null);
+
+    for (int i = 0; i < 1000; i++) {
+      rateLimited.log(Level.WARNING, "Pythia service throttled the request", error);
+    }
+    rateLimited.log(Level.SEVERE, "Pythia service returned an error", null);
+
+    assertEquals(2, this.records.size());
+    assertEquals("Pythia service throttled the request", this.records.get(0).getMessage());
+    assertSame(error, this.records.get(0).getThrown());
+    assertEquals(0, error.getStackTrace().length);
+    assertEquals("Pythia service returned an error", this.records.get(1).getMessage());
+  }
+
+  @Test
+  public void log_suppressedCount() throws InterruptedException {
+    RateLimitedLogger rateLimited = new RateLimitedLogger(this.logger, 50,
+        TimeUnit.MILLISECONDS);
+
+    for (int i = 0; i < 4; i++) {
+      rateLimited.log(Level.WARNING, "Pythia service throttled the request", null);
+    }
+    Thread.sleep(100);
+    rateLimited.log(Level.WARNING, "Pythia service throttled the request", null);
+
+    assertEquals(2, this.records.size());
+    assertEquals("Pythia service throttled the request (3 similar messages suppressed)",
+        this.records.get(1).getMessage());
+  }
+
+  @Test
+  public void log_notLoggable() {
+    this.logger.setLevel(Level.SEVERE);
+    try {
+      RateLimitedLogger rateLimited = new RateLimitedLogger(this.logger, 1, TimeUnit.HOURS);
+      rateLimited.log(Level.WARNING, "Pythia service throttled the request", null);
+      rateLimited.log(Level.SEVERE, "Pythia service returned an error", null);
+
+      assertEquals(1, this.records.size());
+      assertEquals(Level.SEVERE, this.records.get(0).getLevel());
+    } finally {
+      this.logger.setLevel(null);
+    }
+  }
+
+}
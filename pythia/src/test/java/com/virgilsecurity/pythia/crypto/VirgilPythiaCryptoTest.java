@@ -37,6 +37,7 @@ import com.virgilsecurity.crypto.pythia.Pythia;
 import com.virgilsecurity.crypto.pythia.PythiaComputeTransformationKeyPairResult;
 import com.virgilsecurity.crypto.pythia.PythiaTransformResult;
 import com.virgilsecurity.pythia.SampleDataHolder;
+import com.virgilsecurity.sdk.crypto.KeyPairType;
 import com.virgilsecurity.sdk.crypto.VirgilKeyPair;
 import com.virgilsecurity.sdk.crypto.VirgilPrivateKey;
 import com.virgilsecurity.sdk.crypto.VirgilPublicKey;
@@ -161,6 +162,20 @@ public class VirgilPythiaCryptoTest {
     assertArrayEquals(privateKey.getIdentifier(), publicKey.getIdentifier());
   }
 
+  @Test
+  public void generateKeyPair_keyPairType() throws CryptoException {
+    byte[] seed = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+
+    VirgilKeyPair keyPair1 = this.pythiaCrypto.generateKeyPair(KeyPairType.SECP256R1, seed);
+    VirgilKeyPair keyPair2 = this.pythiaCrypto.generateKeyPair(KeyPairType.SECP256R1, seed);
+    VirgilKeyPair keyPair3 = this.pythiaCrypto.generateKeyPair(KeyPairType.ED25519, seed);
+
+    assertArrayEquals(keyPair1.getPrivateKey().getIdentifier(),
+        keyPair2.getPrivateKey().getIdentifier());
+    assertArrayEquals(keyPair3.getPrivateKey().getIdentifier(),
+        this.pythiaCrypto.generateKeyPair(seed).getPrivateKey().getIdentifier());
+  }
+
   @Test
   public void blind_concurrent() throws InterruptedException {
     final String password = this.sample.get("kPassword");
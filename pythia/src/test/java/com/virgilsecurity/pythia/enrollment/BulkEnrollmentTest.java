@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.enrollment;
+
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.ProofKeys;
+import com.virgilsecurity.pythia.Pythia;
+import com.virgilsecurity.pythia.PythiaContext;
+import com.virgilsecurity.pythia.PythiaStage;
+import com.virgilsecurity.pythia.StagedPythia;
+import com.virgilsecurity.pythia.client.PythiaClient;
+import com.virgilsecurity.pythia.crypto.BlindResult;
+import com.virgilsecurity.pythia.crypto.PythiaCrypto;
+import com.virgilsecurity.pythia.model.Proof;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.sdk.jwt.contract.AccessToken;
+import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link BulkEnrollment}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class BulkEnrollmentTest {
+
+  @Mock
+  private PythiaContext context;
+
+  @Mock
+  private PythiaCrypto pythiaCrypto;
+
+  @Mock
+  private PythiaClient pythiaClient;
+
+  @Mock
+  private AccessTokenProvider accessTokenProvider;
+
+  @Mock
+  private AccessToken accessToken;
+
+  private StagedPythia stagedPythia;
+  private List<Long> offsets;
+  private List<EnrolledRecord> written;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    when(context.getProofKeys()).thenReturn(
+        new ProofKeys(Collections.singletonList("PK.1.AQID")));
+    when(context.getPythiaCrypto()).thenReturn(pythiaCrypto);
+    when(context.getPythiaClient()).thenReturn(pythiaClient);
+    when(context.getAccessTokenProvider()).thenReturn(accessTokenProvider);
+    when(accessTokenProvider.getToken(any())).thenReturn(accessToken);
+    when(accessToken.stringRepresentation()).thenReturn("token");
+    when(pythiaCrypto.generateSalt()).thenReturn(new byte[32]);
+    when(pythiaCrypto.blind(anyString())).thenAnswer(invocation -> {
+      String password = invocation.getArgument(0);
+      return new BlindResult(password.getBytes("UTF-8"), new byte[] { 2 });
+    });
+    when(pythiaClient.transformPassword(any(), any(), anyInt(), anyBoolean(), anyString(),
+        any(Deadline.class))).thenAnswer(invocation -> {
+          return new TransformResponse(invocation.getArgument(1), new Proof(new byte[] { 6 },
+              new byte[] { 7 }));
+        });
+    when(pythiaCrypto.verify(any(), any(), any(), any(), any(), any())).thenReturn(true);
+    when(pythiaCrypto.deblind(any(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+    this.stagedPythia = new StagedPythia(new Pythia(context), new PythiaStage("cpu", 2, 16),
+        new PythiaStage("io", 4, 16));
+    this.offsets = new ArrayList<>();
+    this.written = new ArrayList<>();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    this.stagedPythia.close();
+  }
+
+  @Test
+  public void run() throws Exception {
+    BulkEnrollmentReport report = enrollment(2).run(records(5).iterator(), this::write);
+
+    assertEquals(Arrays.asList(0L, 2L, 4L), this.offsets);
+    assertEquals(5, this.written.size());
+    for (int i = 0; i < 5; i++) {
+      EnrolledRecord record = this.written.get(i);
+      assertEquals("user" + i, record.getRecord().getId());
+      assertTrue(record.isSuccessful());
+      assertArrayEquals(("password" + i).getBytes("UTF-8"),
+          record.getBreachProofPassword().getDeblindedPassword());
+    }
+    assertEquals(3, report.getBatches());
+    assertEquals(5, report.getEnrolled());
+    assertEquals(0, report.getFailed());
+    assertEquals(5, report.getNextOffset());
+  }
+
+  @Test
+  public void run_keepsRecordsInFlight() throws Exception {
+    final Iterator<EnrollmentRecord> input = records(5).iterator();
+    final AtomicInteger read = new AtomicInteger();
+    Iterator<EnrollmentRecord> records = new Iterator<EnrollmentRecord>() {
+
+      @Override
+      public boolean hasNext() {
+        return input.hasNext();
+      }
+
+      @Override
+      public EnrollmentRecord next() {
+        read.incrementAndGet();
+        return input.next();
+      }
+    };
+    final List<Integer> readOnWrite = new ArrayList<>();
+
+    enrollment(2).run(records, (offset, batch) -> {
+      readOnWrite.add(read.get());
+      write(offset, batch);
+    });
+
+    // The next batch is already in flight when a batch is written
+    assertEquals(Arrays.asList(4, 5, 5), readOnWrite);
+    assertEquals(5, this.written.size());
+    for (int i = 0; i < 5; i++) {
+      assertEquals("user" + i, this.written.get(i).getRecord().getId());
+    }
+  }
+
+  @Test
+  public void run_failedRecords() throws Exception {
+    when(pythiaCrypto.verify(eq("password1".getBytes("UTF-8")), any(), any(), any(), any(),
+        any())).thenReturn(false);
+
+    BulkEnrollmentReport report = enrollment(2).run(records(3).iterator(), this::write);
+
+    assertEquals(3, this.written.size());
+    assertFalse(this.written.get(1).isSuccessful());
+    assertTrue(this.written.get(2).isSuccessful());
+    assertEquals(2, report.getEnrolled());
+    assertEquals(1, report.getFailed());
+    assertEquals(Long.valueOf(1), report.getErrorCounts().get(
+        "com.virgilsecurity.pythia.model.exception.TransformVerificationException"));
+  }
+
+  @Test
+  public void run_resume() throws Exception {
+    BulkEnrollmentReport report = enrollment(2).run(records(5).iterator(), this::write, 3);
+
+    assertEquals(Arrays.asList(3L), this.offsets);
+    assertEquals("user3", this.written.get(0).getRecord().getId());
+    assertEquals(2, report.getRecords());
+    assertEquals(3, report.getOffset());
+    assertEquals(5, report.getNextOffset());
+  }
+
+  @Test
+  public void run_sinkFailed() throws Exception {
+    EnrollmentSink sink = (offset, records) -> {
+      if (offset > 0) {
+        throw new IOException("Disk is full");
+      }
+      write(offset, records);
+    };
+
+    assertThrows(IOException.class, () -> {
+      enrollment(2).run(records(5).iterator(), sink);
+    });
+    assertEquals(Arrays.asList(0L), this.offsets);
+  }
+
+  @Test
+  public void build_batchExceedsQueue() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      enrollment(17);
+    });
+  }
+
+  @Test
+  public void build_negativeRecordTimeout() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new BulkEnrollment.Builder().setRecordTimeout(-1);
+    });
+  }
+
+  private BulkEnrollment enrollment(int batchSize) {
+    return new BulkEnrollment.Builder().setStagedPythia(this.stagedPythia)
+        .setBatchSize(batchSize).build();
+  }
+
+  private void write(long offset, List<EnrolledRecord> records) {
+    this.offsets.add(offset);
+    this.written.addAll(records);
+  }
+
+  private static List<EnrollmentRecord> records(int count) {
+    List<EnrollmentRecord> records = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      records.add(new EnrollmentRecord("user" + i, "password" + i));
+    }
+    return records;
+  }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.management;
+
+import com.virgilsecurity.pythia.PythiaContext;
+import com.virgilsecurity.pythia.client.PythiaClient;
+import com.virgilsecurity.pythia.crypto.PythiaCrypto;
+import com.virgilsecurity.pythia.metrics.HistogramPythiaMetrics;
+import com.virgilsecurity.pythia.metrics.Operation;
+import com.virgilsecurity.pythia.metrics.Outcome;
+import com.virgilsecurity.pythia.metrics.Stage;
+import com.virgilsecurity.pythia.model.exception.ThrottlingException;
+import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link PythiaContextMonitor}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class PythiaContextMonitorTest {
+
+  private static final String PROOF_KEY_1 = "PK.1.AQID";
+  private static final String PROOF_KEY_2 = "PK.2.BAUG";
+
+  private MBeanServer server;
+  private HistogramPythiaMetrics metrics;
+  private PythiaContext context;
+  private ObjectName objectName;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    this.server = ManagementFactory.getPlatformMBeanServer();
+    this.metrics = new HistogramPythiaMetrics();
+    this.context = new PythiaContext.Builder().setProofKeys(Arrays.asList(PROOF_KEY_1))
+        .setPythiaCrypto(mock(PythiaCrypto.class)).setPythiaClient(mock(PythiaClient.class))
+        .setAccessTokenProvider(mock(AccessTokenProvider.class)).setMetrics(this.metrics)
+        .setJmxName("test").build();
+    this.objectName = new ObjectName(PythiaContextMonitor.DOMAIN
+        + ":type=PythiaContext,name=\"test\"");
+  }
+
+  @AfterEach
+  public void tearDown() {
+    this.context.getMonitor().unregister();
+  }
+
+  @Test
+  public void register() {
+    assertTrue(this.server.isRegistered(this.objectName));
+    assertTrue(this.context.getMetrics() instanceof PythiaContextMonitor);
+
+    this.context.getMonitor().unregister();
+    assertFalse(this.server.isRegistered(this.objectName));
+  }
+
+  @Test
+  public void register_duplicate() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      new PythiaContext.Builder().setProofKeys(Arrays.asList(PROOF_KEY_1))
+          .setPythiaCrypto(mock(PythiaCrypto.class)).setPythiaClient(mock(PythiaClient.class))
+          .setAccessTokenProvider(mock(AccessTokenProvider.class)).setJmxName("test").build();
+    });
+  }
+
+  @Test
+  public void counters() throws Exception {
+    PythiaContextMonitor monitor = this.context.getMonitor();
+    Operation operation = Operation.VERIFY_BREACH_PROOF_PASSWORD;
+
+    monitor.operationStarted(operation);
+    monitor.operationStarted(operation);
+    assertEquals(2, this.server.getAttribute(this.objectName, "InFlightRequests"));
+
+    monitor.stageCompleted(operation, Stage.TRANSFORM, TimeUnit.MILLISECONDS.toNanos(20));
+    monitor.operationCompleted(operation, Outcome.SUCCESS, 1, 1_000, null);
+    monitor.operationCompleted(operation, Outcome.THROTTLED, 1, 1_000,
+        new ThrottlingException(60007, "Too many requests", null));
+
+    assertEquals(0, this.server.getAttribute(this.objectName, "InFlightRequests"));
+    assertEquals(2L, this.server.getAttribute(this.objectName, "RequestCount"));
+    assertEquals(1L, this.server.getAttribute(this.objectName, "ErrorCount"));
+    assertEquals(1L, this.server.getAttribute(this.objectName, "ThrottlingCount"));
+    assertTrue((Double) this.server.getAttribute(this.objectName, "RequestRate") > 0);
+    long p99 = monitor.getLatencyMicros().get("transform.p99");
+    assertTrue(p99 >= 17_500 && p99 <= 22_500, "p99 " + p99);
+    assertTrue(this.server.getAttribute(this.objectName, "LatencyMicros") instanceof TabularData);
+
+    // Timings are forwarded to user's metrics
+    assertEquals(1, this.metrics.getStageHistogram(operation, Stage.TRANSFORM).getCount());
+
+    this.server.invoke(this.objectName, "resetCounters", null, null);
+    assertEquals(0L, this.server.getAttribute(this.objectName, "RequestCount"));
+    assertEquals(0L, (long) monitor.getLatencyMicros().get("transform.max"));
+  }
+
+  @Test
+  public void reloadProofKeys() throws Exception {
+    assertArrayEquals(new Integer[] { 1 },
+        (Integer[]) this.server.getAttribute(this.objectName, "ProofKeyVersions"));
+
+    this.server.invoke(this.objectName, "reloadProofKeys",
+        new Object[] { new String[] { PROOF_KEY_1, PROOF_KEY_2 } },
+        new String[] { String[].class.getName() });
+
+    assertArrayEquals(new Integer[] { 2, 1 },
+        (Integer[]) this.server.getAttribute(this.objectName, "ProofKeyVersions"));
+    assertEquals(2, this.context.getProofKeys().getCurrentKey().getVersion());
+  }
+
+  @Test
+  public void token_unknownProvider() throws Exception {
+    assertEquals(-1L, this.server.getAttribute(this.objectName, "TokenRenewCount"));
+  }
+
+}
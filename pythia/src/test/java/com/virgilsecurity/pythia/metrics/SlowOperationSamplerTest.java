@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import com.virgilsecurity.pythia.Pythia;
+import com.virgilsecurity.pythia.PythiaContext;
+import com.virgilsecurity.pythia.client.VirgilPythiaClient;
+import com.virgilsecurity.pythia.crypto.BlindResult;
+import com.virgilsecurity.pythia.crypto.PythiaCrypto;
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+import com.virgilsecurity.sdk.jwt.contract.AccessToken;
+import com.virgilsecurity.sdk.jwt.contract.AccessTokenProvider;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SlowOperationSampler}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class SlowOperationSamplerTest {
+
+  private static final Operation OPERATION = Operation.VERIFY_BREACH_PROOF_PASSWORD;
+
+  @Test
+  public void threshold() {
+    HistogramPythiaMetrics metrics = new HistogramPythiaMetrics();
+    SlowOperationSampler sampler = new SlowOperationSampler(metrics, 1, TimeUnit.MILLISECONDS,
+        10);
+
+    run(sampler, 999_999L);
+    run(sampler, 1_500_000L);
+
+    assertEquals(1, sampler.getCapturedCount());
+    SlowOperation operation = sampler.getSlowOperations().get(0);
+    assertEquals(1_500_000L, operation.getNanos());
+    assertEquals(100L, operation.getStageNanos(Stage.BLIND));
+    assertEquals(-1L, operation.getStageNanos(Stage.VERIFY));
+    assertEquals(2, metrics.getOperationHistogram(OPERATION, Outcome.SUCCESS).getCount());
+  }
+
+  @Test
+  public void stagesClearedOnCompletion() {
+    SlowOperationSampler sampler = new SlowOperationSampler(0, TimeUnit.MILLISECONDS, 10);
+
+    run(sampler, 1L);
+    sampler.operationCompleted(OPERATION, Outcome.SUCCESS, 1, 2L, null);
+
+    SlowOperation operation = sampler.getSlowOperations().get(1);
+    assertEquals(-1L, operation.getStageNanos(Stage.BLIND));
+  }
+
+  @Test
+  public void ringBuffer() {
+    SlowOperationSampler sampler = new SlowOperationSampler(0, TimeUnit.MILLISECONDS, 3);
+
+    for (long i = 1; i <= 5; i++) {
+      run(sampler, i);
+    }
+
+    List<SlowOperation> operations = sampler.getSlowOperations();
+    assertEquals(5, sampler.getCapturedCount());
+    assertEquals(3, operations.size());
+    assertEquals(3L, operations.get(0).getNanos());
+    assertEquals(5L, operations.get(2).getNanos());
+    assertEquals(3, sampler.dump().split(System.lineSeparator()).length);
+  }
+
+  @Test
+  public void stageTimings() {
+    SlowOperationSampler sampler = new SlowOperationSampler(0, TimeUnit.MILLISECONDS, 10);
+    StageTimings timings = new StageTimings();
+    timings.add(Stage.BLIND, 100L);
+    timings.add(Stage.DEBLIND, 200L);
+
+    // Stages reported on another thread don't leak into the operation completed here
+    run(sampler, 1L);
+    sampler.stageCompleted(OPERATION, Stage.VERIFY, 300L);
+    timings.report(sampler, OPERATION);
+    sampler.operationCompleted(OPERATION, Outcome.SUCCESS, 1, 2L, null);
+
+    SlowOperation operation = sampler.getSlowOperations().get(1);
+    assertEquals(100L, operation.getStageNanos(Stage.BLIND));
+    assertEquals(200L, operation.getStageNanos(Stage.DEBLIND));
+    assertEquals(300L, operation.getStageNanos(Stage.VERIFY));
+    assertEquals(-1L, operation.getStageNanos(Stage.TRANSFORM));
+  }
+
+  @Test
+  public void httpStages() throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", exchange -> {
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      byte[] body = "{\"transformed_password\":\"BwgJ\"}".getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+    try {
+      PythiaCrypto crypto = mock(PythiaCrypto.class);
+      when(crypto.blind(anyString())).thenReturn(new BlindResult(new byte[] { 1 },
+          new byte[] { 2 }));
+      when(crypto.deblind(any(), any())).thenReturn(new byte[] { 3 });
+      AccessToken token = mock(AccessToken.class);
+      when(token.stringRepresentation()).thenReturn("token");
+      AccessTokenProvider tokenProvider = mock(AccessTokenProvider.class);
+      when(tokenProvider.getToken(any())).thenReturn(token);
+      SlowOperationSampler sampler = new SlowOperationSampler(100, TimeUnit.MILLISECONDS, 10);
+      PythiaContext context = new PythiaContext.Builder()
+          .setProofKeys(Collections.singletonList("PK.1.AQID")).setPythiaCrypto(crypto)
+          .setPythiaClient(new VirgilPythiaClient("http://127.0.0.1:"
+              + server.getAddress().getPort()))
+          .setAccessTokenProvider(tokenProvider).setMetrics(sampler).build();
+
+      BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 3 }, 1);
+      assertTrue(new Pythia(context).verifyBreachProofPassword("password", bpp, false));
+
+      SlowOperation operation = sampler.getSlowOperations().get(0);
+      assertEquals(Outcome.SUCCESS, operation.getOutcome());
+      for (Stage stage : new Stage[] { Stage.GET_TOKEN, Stage.BLIND, Stage.CONNECT,
+          Stage.WRITE_REQUEST, Stage.SERVER, Stage.READ_RESPONSE, Stage.TRANSFORM,
+          Stage.DEBLIND }) {
+        assertTrue(operation.getStageNanos(stage) >= 0, stage.name());
+      }
+      assertTrue(operation.getStageNanos(Stage.SERVER) >= TimeUnit.MILLISECONDS.toNanos(150));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  private static void run(SlowOperationSampler sampler, long nanos) {
+    sampler.operationStarted(OPERATION);
+    sampler.stageCompleted(OPERATION, Stage.BLIND, 100L);
+    sampler.operationCompleted(OPERATION, Outcome.SUCCESS, 1, nanos, null);
+  }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link BreachProofPasswordCodec} and {@link BreachProofPasswordView}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class BreachProofPasswordCodecTest {
+
+  private BreachProofPassword bpp;
+
+  @BeforeEach
+  public void setup() {
+    byte[] salt = new byte[32];
+    byte[] deblindedPassword = new byte[384];
+    for (int i = 0; i < deblindedPassword.length; i++) {
+      deblindedPassword[i] = (byte) i;
+    }
+    Arrays.fill(salt, (byte) 7);
+    this.bpp = new BreachProofPassword(salt, deblindedPassword, 0x01020304);
+  }
+
+  @Test
+  public void encode_decode() {
+    byte[] encoded = BreachProofPasswordCodec.encode(this.bpp);
+
+    assertEquals(425, encoded.length);
+    assertEquals(BreachProofPasswordCodec.FORMAT_V1, encoded[0]);
+    assertArrayEquals(new byte[] { 1, 2, 3, 4 }, Arrays.copyOfRange(encoded, 1, 5));
+
+    BreachProofPassword decoded = BreachProofPasswordCodec.decode(encoded);
+    assertArrayEquals(this.bpp.getSalt(), decoded.getSalt());
+    assertArrayEquals(this.bpp.getDeblindedPassword(), decoded.getDeblindedPassword());
+    assertEquals(this.bpp.getVersion(), decoded.getVersion());
+  }
+
+  @Test
+  public void encode_decode_buffer() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(1024).order(ByteOrder.LITTLE_ENDIAN);
+    BreachProofPasswordCodec.encode(this.bpp, buffer);
+    BreachProofPasswordCodec.encode(new BreachProofPassword(new byte[0], new byte[1], 2), buffer);
+    buffer.flip();
+
+    assertEquals(this.bpp.getVersion(), BreachProofPasswordCodec.decode(buffer).getVersion());
+    assertEquals(425, buffer.position());
+    BreachProofPassword second = BreachProofPasswordCodec.decode(buffer);
+    assertEquals(2, second.getVersion());
+    assertEquals(0, second.getSalt().length);
+    assertFalse(buffer.hasRemaining());
+  }
+
+  @Test
+  public void encode_bufferOverflow() {
+    ByteBuffer buffer = ByteBuffer.allocate(100);
+
+    assertThrows(BufferOverflowException.class, () -> {
+      BreachProofPasswordCodec.encode(this.bpp, buffer);
+    });
+    assertEquals(0, buffer.position());
+  }
+
+  @Test
+  public void decode_malformed() {
+    byte[] encoded = BreachProofPasswordCodec.encode(this.bpp);
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      BreachProofPasswordCodec.decode(Arrays.copyOf(encoded, encoded.length - 1));
+    });
+    encoded[0] = 2;
+    assertThrows(IllegalArgumentException.class, () -> {
+      BreachProofPasswordCodec.decode(encoded);
+    });
+  }
+
+  @Test
+  public void view() {
+    ByteBuffer buffer = ByteBuffer.allocate(1024);
+    buffer.position(10);
+    BreachProofPasswordCodec.encode(this.bpp, buffer);
+
+    BreachProofPasswordView view = new BreachProofPasswordView().wrap(buffer, 10);
+
+    assertEquals(this.bpp.getVersion(), view.getVersion());
+    assertEquals(32, view.getSaltLength());
+    assertEquals(384, view.getDeblindedPasswordLength());
+    assertEquals(425, view.getEncodedLength());
+    assertArrayEquals(this.bpp.getSalt(), view.getSalt());
+    assertTrue(view.matchesDeblindedPassword(this.bpp.getDeblindedPassword()));
+    assertArrayEquals(this.bpp.getDeblindedPassword(),
+        view.toBreachProofPassword().getDeblindedPassword());
+
+    byte[] other = this.bpp.getDeblindedPassword().clone();
+    other[383] ^= 1;
+    assertFalse(view.matchesDeblindedPassword(other));
+    assertFalse(view.matchesDeblindedPassword(new byte[1]));
+    assertEquals(435, buffer.position());
+  }
+
+  @Test
+  public void view_notWrapped() {
+    assertThrows(IllegalStateException.class, () -> {
+      new BreachProofPasswordView().getVersion();
+    });
+  }
+
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.storage;
+
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link BreachProofPasswordFile} and {@link BreachProofPasswordFileWriter}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class BreachProofPasswordFileTest {
+
+  private static final int RECORDS = 1000;
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  public void writeAndRead() throws IOException {
+    Path path = write(RECORDS);
+
+    try (BreachProofPasswordFile file = BreachProofPasswordFile.open(path, false)) {
+      assertEquals(RECORDS, file.size());
+      assertEquals(32, file.getSaltLength());
+      assertEquals(384, file.getDeblindedPasswordLength());
+      for (int i = 0; i < RECORDS; i += 111) {
+        BreachProofPasswordRecord record = file.get(i);
+        assertEquals("user" + i, record.getUserKey());
+        assertEquals(i % 3, record.getVersion());
+        assertArrayEquals(salt(i), record.getSalt());
+        assertArrayEquals(deblindedPassword(i), record.getDeblindedPassword());
+        assertTrue(record.matchesDeblindedPassword(deblindedPassword(i)));
+        assertFalse(record.matchesDeblindedPassword(deblindedPassword(i + 1)));
+      }
+      assertThrows(IndexOutOfBoundsException.class, () -> file.get(RECORDS));
+    }
+  }
+
+  @Test
+  public void parallelScan_segments() throws IOException {
+    Path path = write(RECORDS);
+
+    // Small segments make records of a scan span several mappings
+    try (BreachProofPasswordFile file = BreachProofPasswordFile.open(path, false, 10_000)) {
+      AtomicLong versions = new AtomicLong();
+      long count = StreamSupport.stream(file.spliterator(), true).filter(record -> {
+        versions.addAndGet(record.getVersion());
+        return record.matchesDeblindedPassword(deblindedPassword((int) record.getIndex()));
+      }).count();
+
+      assertEquals(RECORDS, count);
+      long expected = 0;
+      for (int i = 0; i < RECORDS; i++) {
+        expected += i % 3;
+      }
+      assertEquals(expected, versions.get());
+    }
+  }
+
+  @Test
+  public void spliterator_split() throws IOException {
+    Path path = write(3);
+
+    try (BreachProofPasswordFile file = BreachProofPasswordFile.open(path, false)) {
+      Spliterator<BreachProofPasswordRecord> suffix = file.spliterator();
+      Spliterator<BreachProofPasswordRecord> prefix = suffix.trySplit();
+
+      assertNotNull(prefix);
+      assertEquals(1, prefix.estimateSize());
+      assertEquals(2, suffix.estimateSize());
+      assertTrue(suffix.hasCharacteristics(Spliterator.SUBSIZED));
+      assertTrue(prefix.tryAdvance(record -> assertEquals(0, record.getIndex())));
+      assertFalse(prefix.tryAdvance(record -> { }));
+    }
+  }
+
+  @Test
+  public void update_inPlace() throws IOException {
+    Path path = write(RECORDS);
+
+    try (BreachProofPasswordFile file = BreachProofPasswordFile.open(path, true, 10_000)) {
+      StreamSupport.stream(file.spliterator(), true).forEach(record -> {
+        record.update(deblindedPassword((int) record.getIndex() + 7), 10);
+      });
+    }
+
+    try (BreachProofPasswordFile file = BreachProofPasswordFile.open(path, false)) {
+      BreachProofPasswordRecord record = file.get(500);
+      assertEquals(10, record.getVersion());
+      assertEquals("user500", record.getUserKey());
+      assertArrayEquals(salt(500), record.getSalt());
+      assertArrayEquals(deblindedPassword(507), record.getDeblindedPassword());
+    }
+  }
+
+  @Test
+  public void update_journaled() throws IOException {
+    Path path = write(RECORDS);
+    AtomicLong calls = new AtomicLong();
+
+    try (BreachProofPasswordFile file = BreachProofPasswordFile.open(path, true, 10_000)) {
+      assertEquals(updatable(RECORDS), file.update(1, 5, deblindedPassword -> {
+        calls.incrementAndGet();
+        return increment(deblindedPassword);
+      }));
+    }
+
+    assertEquals(updatable(RECORDS), calls.get());
+    assertFalse(Files.exists(BreachProofPasswordJournal.journalPath(path)));
+    assertUpdated(path);
+  }
+
+  @Test
+  public void update_resumeCommittedJournal() throws IOException {
+    Path path = write(RECORDS);
+    AtomicLong calls = new AtomicLong();
+
+    try (BreachProofPasswordFile file = BreachProofPasswordFile.open(path, true, 10_000)) {
+      new BreachProofPasswordJournal(file, 1, 5).prepare(BreachProofPasswordFileTest::increment);
+      // Crash between the writes of the deblinded password and the version of a record
+      BreachProofPasswordRecord record = file.get(1);
+      record.update(increment(record.getDeblindedPassword()), 1);
+
+      assertEquals(updatable(RECORDS), file.update(1, 5, deblindedPassword -> {
+        calls.incrementAndGet();
+        return increment(deblindedPassword);
+      }));
+    }
+
+    // Journal is applied again instead of updating records twice
+    assertEquals(0, calls.get());
+    assertUpdated(path);
+  }
+
+  @Test
+  public void update_failedBeforeCommit() throws IOException {
+    Path path = write(RECORDS);
+
+    try (BreachProofPasswordFile file = BreachProofPasswordFile.open(path, true, 10_000)) {
+      assertThrows(IllegalStateException.class, () -> {
+        file.update(1, 5, deblindedPassword -> {
+          throw new IllegalStateException("Update failed");
+        });
+      });
+      assertEquals(1, file.get(1).getVersion());
+      assertArrayEquals(deblindedPassword(1), file.get(1).getDeblindedPassword());
+
+      assertEquals(updatable(RECORDS), file.update(1, 5, BreachProofPasswordFileTest::increment));
+    }
+    assertUpdated(path);
+  }
+
+  @Test
+  public void update_unfinishedUpdateOfOtherVersions() throws IOException {
+    Path path = write(RECORDS);
+
+    try (BreachProofPasswordFile file = BreachProofPasswordFile.open(path, true)) {
+      new BreachProofPasswordJournal(file, 1, 5).prepare(BreachProofPasswordFileTest::increment);
+
+      assertThrows(IOException.class, () -> {
+        file.update(2, 6, BreachProofPasswordFileTest::increment);
+      });
+      assertEquals(updatable(RECORDS), file.update(1, 5, BreachProofPasswordFileTest::increment));
+    }
+  }
+
+  @Test
+  public void update_readOnly() throws IOException {
+    Path path = write(1);
+
+    try (BreachProofPasswordFile file = BreachProofPasswordFile.open(path, false)) {
+      assertThrows(IllegalStateException.class, () -> {
+        file.get(0).update(deblindedPassword(1), 1);
+      });
+    }
+  }
+
+  @Test
+  public void write_invalid() throws IOException {
+    try (BreachProofPasswordFileWriter writer = new BreachProofPasswordFileWriter(
+        this.tempDir.resolve("invalid.bpp"), 4)) {
+      assertThrows(IllegalArgumentException.class, () -> {
+        writer.write("too long", new BreachProofPassword(salt(0), deblindedPassword(0), 1));
+      });
+      writer.write("user", new BreachProofPassword(salt(0), deblindedPassword(0), 1));
+      assertThrows(IllegalArgumentException.class, () -> {
+        writer.write("user", new BreachProofPassword(new byte[1], deblindedPassword(0), 1));
+      });
+      assertEquals(1, writer.size());
+    }
+  }
+
+  @Test
+  public void open_notClosed() throws IOException {
+    Path path = this.tempDir.resolve("unfinished.bpp");
+    BreachProofPasswordFileWriter writer = new BreachProofPasswordFileWriter(path, 16);
+    writer.write("user", new BreachProofPassword(salt(0), deblindedPassword(0), 1));
+
+    try (BreachProofPasswordFile file = BreachProofPasswordFile.open(path, false)) {
+      assertEquals(0, file.size());
+    }
+    writer.close();
+  }
+
+  private Path write(int records) throws IOException {
+    Path path = this.tempDir.resolve("passwords.bpp");
+    try (BreachProofPasswordFileWriter writer = new BreachProofPasswordFileWriter(path, 16)) {
+      for (int i = 0; i < records; i++) {
+        writer.write("user" + i, new BreachProofPassword(salt(i), deblindedPassword(i), i % 3));
+      }
+    }
+    return path;
+  }
+
+  private static void assertUpdated(Path path) throws IOException {
+    try (BreachProofPasswordFile file = BreachProofPasswordFile.open(path, false)) {
+      for (int i = 0; i < RECORDS; i++) {
+        BreachProofPasswordRecord record = file.get(i);
+        if (i % 3 == 1) {
+          assertEquals(5, record.getVersion());
+          assertArrayEquals(increment(deblindedPassword(i)), record.getDeblindedPassword());
+        } else {
+          assertEquals(i % 3, record.getVersion());
+          assertArrayEquals(deblindedPassword(i), record.getDeblindedPassword());
+        }
+      }
+    }
+  }
+
+  private static long updatable(int records) {
+    return (records + 1) / 3;
+  }
+
+  private static byte[] increment(byte[] deblindedPassword) {
+    byte[] incremented = new byte[deblindedPassword.length];
+    for (int i = 0; i < incremented.length; i++) {
+      incremented[i] = (byte) (deblindedPassword[i] + 1);
+    }
+    return incremented;
+  }
+
+  private static byte[] salt(int index) {
+    byte[] salt = new byte[32];
+    Arrays.fill(salt, (byte) index);
+    return salt;
+  }
+
+  private static byte[] deblindedPassword(int index) {
+    byte[] deblindedPassword = new byte[384];
+    for (int i = 0; i < deblindedPassword.length; i++) {
+      deblindedPassword[i] = (byte) (index * 31 + i);
+    }
+    return deblindedPassword;
+  }
+
+}
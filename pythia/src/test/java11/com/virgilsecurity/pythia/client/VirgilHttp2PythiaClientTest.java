@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.model.TransformResponse;
+import com.virgilsecurity.pythia.model.exception.PythiaTimeoutException;
+import com.virgilsecurity.pythia.model.exception.ThrottlingException;
+import com.virgilsecurity.pythia.model.request.TransformPasswordRequest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link VirgilHttp2PythiaClient}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class VirgilHttp2PythiaClientTest {
+
+  private static final byte[] SALT = { 1, 2, 3 };
+  private static final byte[] BLINDED_PASSWORD = { 4, 5, 6 };
+
+  private HttpServer server;
+  private VirgilHttp2PythiaClient client;
+  private volatile int responseCode;
+  private volatile String responseBody;
+  private volatile long responseDelay;
+  private volatile boolean cborSupported = true;
+  private final List<String> requestContentTypes = new CopyOnWriteArrayList<>();
+  private final List<String> requestTraceParents = new CopyOnWriteArrayList<>();
+
+  @BeforeEach
+  public void setup() throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    this.server.createContext("/", this::handle);
+    this.server.setExecutor(Executors.newCachedThreadPool());
+    this.server.start();
+
+    String baseUrl = "http://127.0.0.1:" + this.server.getAddress().getPort();
+    this.client = new VirgilHttp2PythiaClient(baseUrl, 1000, 1000);
+    this.responseCode = 200;
+  }
+
+  @AfterEach
+  public void tearDown() {
+    this.server.stop(0);
+  }
+
+  @Test
+  public void factory_http2OnRequest() {
+    assertTrue(PythiaClientFactory.createDefault(null, null, null) instanceof VirgilPythiaClient);
+    assertTrue(PythiaClientFactory.createHttp2(null, null, null)
+        instanceof VirgilHttp2PythiaClient);
+  }
+
+  @Test
+  public void transformPassword() throws Exception {
+    this.responseBody = "{\"transformed_password\":\"BwgJ\",\"proof\":"
+        + "{\"value_c\":\"Cg==\",\"value_u\":\"Cw==\"}}";
+
+    TransformResponse response = this.client.transformPassword(SALT, BLINDED_PASSWORD, 1, true,
+        "token");
+
+    assertArrayEquals(new byte[] { 7, 8, 9 }, response.getTransformedPassword());
+    assertArrayEquals(new byte[] { 10 }, response.getProof().getC());
+    assertArrayEquals(new byte[] { 11 }, response.getProof().getU());
+  }
+
+  @Test
+  public void generateSeed() throws Exception {
+    this.responseBody = "{\"seed\":\"BwgJ\"}";
+
+    byte[] seed = this.client.generateSeed(BLINDED_PASSWORD, "id", "token");
+
+    assertArrayEquals(new byte[] { 7, 8, 9 }, seed);
+  }
+
+  @Test
+  public void transformPassword_callTimings() throws Exception {
+    this.responseBody = "{\"transformed_password\":\"BwgJ\"}";
+    this.responseDelay = 50;
+
+    HttpCallTimings.start();
+    HttpCallTimings timings;
+    try {
+      this.client.transformPassword(SALT, BLINDED_PASSWORD, 1, false, "token");
+    } finally {
+      timings = HttpCallTimings.stop();
+    }
+
+    assertNotNull(timings);
+    assertEquals(0L, timings.getConnectNanos());
+    assertTrue(timings.getWriteNanos() >= 0);
+    assertTrue(timings.getServerNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+    assertTrue(timings.getReadNanos() >= 0);
+  }
+
+  @Test
+  public void transformPasswordAsync_concurrent() throws Exception {
+    this.responseBody = "{\"transformed_password\":\"BwgJ\"}";
+
+    List<CompletableFuture<TransformResponse>> futures = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      futures.add(this.client.transformPasswordAsync(SALT, BLINDED_PASSWORD, 1, false, "token",
+          Deadline.none()));
+    }
+    for (CompletableFuture<TransformResponse> future : futures) {
+      assertArrayEquals(new byte[] { 7, 8, 9 }, future.get(5, TimeUnit.SECONDS)
+          .getTransformedPassword());
+    }
+  }
+
+  @Test
+  public void transformPassword_throttling() {
+    this.responseCode = 429;
+    this.responseBody = "{\"code\":60007,\"message\":\"Too many requests\"}";
+
+    ThrottlingException e = assertThrows(ThrottlingException.class, () -> {
+      this.client.transformPassword(SALT, BLINDED_PASSWORD, 1, false, "token");
+    });
+    assertEquals(60007, e.getError());
+  }
+
+  @Test
+  public void transformPassword_deadline() {
+    this.responseBody = "{\"transformed_password\":\"BwgJ\"}";
+    this.responseDelay = 2000;
+
+    long start = System.nanoTime();
+    assertThrows(PythiaTimeoutException.class, () -> {
+      this.client.transformPassword(SALT, BLINDED_PASSWORD, 1, false, "token",
+          Deadline.after(200, TimeUnit.MILLISECONDS));
+    });
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+  }
+
+  @Test
+  public void transformPassword_cbor() throws Exception {
+    this.client.setCodec(PythiaCodecs.cbor());
+
+    TransformResponse response = this.client.transformPassword(SALT, BLINDED_PASSWORD, 1, false,
+        "token");
+
+    assertArrayEquals(BLINDED_PASSWORD, response.getTransformedPassword());
+    assertEquals("application/cbor", this.requestContentTypes.get(0));
+  }
+
+  @Test
+  public void transformPassword_cborNotSupported() throws Exception {
+    this.client.setCodec(PythiaCodecs.cbor());
+    this.cborSupported = false;
+    this.responseBody = "{\"transformed_password\":\"BwgJ\"}";
+
+    TransformResponse response = this.client.transformPassword(SALT, BLINDED_PASSWORD, 1, false,
+        "token");
+
+    assertArrayEquals(new byte[] { 7, 8, 9 }, response.getTransformedPassword());
+    assertSame(PythiaCodecs.json(), this.client.getCodec());
+    assertEquals(2, this.requestContentTypes.size());
+    assertTrue(this.requestContentTypes.get(1).startsWith("application/json"));
+  }
+
+  @Test
+  public void transformPassword_callHeaders() throws Exception {
+    this.responseBody = "{\"transformed_password\":\"BwgJ\"}";
+
+    HttpCallHeaders.set(Collections.singletonMap("traceparent", "00-trace-span-01"));
+    try {
+      this.client.transformPassword(SALT, BLINDED_PASSWORD, 1, false, "token");
+    } finally {
+      HttpCallHeaders.clear();
+    }
+    this.client.transformPassword(SALT, BLINDED_PASSWORD, 1, false, "token");
+
+    assertEquals("00-trace-span-01", this.requestTraceParents.get(0));
+    assertEquals("", this.requestTraceParents.get(1));
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String traceParent = exchange.getRequestHeaders().getFirst("traceparent");
+    this.requestTraceParents.add(traceParent != null ? traceParent : "");
+    String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+    this.requestContentTypes.add(contentType);
+    if (PythiaCodecs.forContentType(contentType) == PythiaCodecs.cbor()) {
+      handleCbor(exchange);
+      return;
+    }
+    exchange.getRequestBody().readAllBytes();
+    if (this.responseDelay > 0) {
+      try {
+        Thread.sleep(this.responseDelay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    byte[] body = this.responseBody.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(this.responseCode, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    } catch (IOException e) {
+      // Client has gone away
+    }
+  }
+
+  private void handleCbor(HttpExchange exchange) throws IOException {
+    if (!this.cborSupported) {
+      exchange.getRequestBody().readAllBytes();
+      exchange.sendResponseHeaders(415, -1);
+      exchange.close();
+      return;
+    }
+    TransformPasswordRequest request = PythiaCodecs.cbor()
+        .readTransformPasswordRequest(exchange.getRequestBody());
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    PythiaCodecs.cbor().writeTransformResponse(
+        new TransformResponse(request.getBlindedPassword()), body);
+    exchange.getResponseHeaders().add("Content-Type", "application/cbor");
+    exchange.sendResponseHeaders(200, body.size());
+    try (OutputStream out = exchange.getResponseBody()) {
+      body.writeTo(out);
+    }
+  }
+
+}
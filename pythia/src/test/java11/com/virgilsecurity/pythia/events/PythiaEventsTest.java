@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.events;
+
+import com.virgilsecurity.pythia.ConcurrentCachingJwtProvider;
+import com.virgilsecurity.sdk.jwt.TokenContext;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link PythiaEvents}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+public class PythiaEventsTest {
+
+  private static final String PREFIX = "com.virgilsecurity.pythia.";
+
+  @Test
+  public void begin_noRecording() {
+    assertNull(PythiaEvents.beginTransform());
+    assertNull(PythiaEvents.beginBlind());
+    PythiaEvents.endBlind(null, 32);
+  }
+
+  @Test
+  public void transform() throws IOException {
+    List<RecordedEvent> events = record(() -> {
+      Object event = PythiaEvents.beginTransform();
+      PythiaEvents.endTransform(event, "https://localhost/pythia/v1/password", 2, true, 32, 384);
+    });
+
+    RecordedEvent event = single(events, "PythiaTransform");
+    assertEquals("https://localhost/pythia/v1/password", event.getString("endpoint"));
+    assertEquals(2, event.getInt("proofKeyVersion"));
+    assertTrue(event.getBoolean("includeProof"));
+    assertEquals(32, event.getInt("requestSize"));
+    assertEquals(384, event.getInt("responseSize"));
+    assertFalse(event.getDuration().isNegative());
+  }
+
+  @Test
+  public void generateSeed() throws IOException {
+    List<RecordedEvent> events = record(() -> {
+      Object event = PythiaEvents.beginGenerateSeed();
+      PythiaEvents.endGenerateSeed(event, "https://localhost/pythia/v1/brainkey", 32, 384);
+    });
+
+    assertEquals(1, events.size());
+    RecordedEvent event = single(events, "PythiaGenerateSeed");
+    assertEquals("https://localhost/pythia/v1/brainkey", event.getString("endpoint"));
+    assertEquals(32, event.getInt("requestSize"));
+    assertEquals(384, event.getInt("responseSize"));
+  }
+
+  @Test
+  public void crypto() throws IOException {
+    List<RecordedEvent> events = record(() -> {
+      PythiaEvents.endBlind(PythiaEvents.beginBlind(), 32);
+      PythiaEvents.endVerifyProof(PythiaEvents.beginVerifyProof(), 3, false);
+      PythiaEvents.endDeblind(PythiaEvents.beginDeblind(), 384);
+    });
+
+    assertEquals(32, single(events, "PythiaBlind").getInt("blindedPasswordSize"));
+    RecordedEvent verify = single(events, "PythiaVerifyProof");
+    assertEquals(3, verify.getInt("proofKeyVersion"));
+    assertFalse(verify.getBoolean("verified"));
+    assertEquals(384, single(events, "PythiaDeblind").getInt("transformedPasswordSize"));
+  }
+
+  @Test
+  public void jwtRenew() throws IOException {
+    ConcurrentCachingJwtProvider provider = new ConcurrentCachingJwtProvider(context -> null);
+
+    List<RecordedEvent> events = record(() -> {
+      provider.getToken(new TokenContext("pythia", "transform", false));
+    });
+
+    RecordedEvent event = single(events, "JwtRenew");
+    assertEquals("transform", event.getString("operation"));
+    assertFalse(event.getBoolean("successful"));
+  }
+
+  @Test
+  public void throttlingHit() throws IOException {
+    List<RecordedEvent> events = record(() -> {
+      PythiaEvents.throttlingHit("https://localhost/pythia/v1/password", 60007);
+    });
+
+    RecordedEvent event = single(events, "ThrottlingHit");
+    assertEquals("https://localhost/pythia/v1/password", event.getString("endpoint"));
+    assertEquals(60007, event.getInt("errorCode"));
+  }
+
+  private static List<RecordedEvent> record(Runnable action) throws IOException {
+    Path file = Files.createTempFile("pythia-events", ".jfr");
+    try (Recording recording = new Recording()) {
+      for (String name : new String[] { "PythiaTransform", "PythiaGenerateSeed",
+          "PythiaVerifyProof", "PythiaBlind", "PythiaDeblind", "JwtRenew", "ThrottlingHit" }) {
+        recording.enable(PREFIX + name);
+      }
+      recording.start();
+      action.run();
+      recording.stop();
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static RecordedEvent single(List<RecordedEvent> events, String name) {
+    List<RecordedEvent> matched = events.stream()
+        .filter(event -> event.getEventType().getName().equals(PREFIX + name))
+        .collect(Collectors.toList());
+    assertEquals(1, matched.size(), name);
+    return matched.get(0);
+  }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2015-2020, Virgil Security, Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ *     (3) Neither the name of virgil nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.pythia.flow;
+
+import com.virgilsecurity.pythia.AsyncPythia;
+import com.virgilsecurity.pythia.Deadline;
+import com.virgilsecurity.pythia.Pythia;
+import com.virgilsecurity.pythia.model.BreachProofPassword;
+import com.virgilsecurity.pythia.model.exception.ThrottlingException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link PythiaFlows}.
+ * 
+ * @author Andrii Iakovenko
+ *
+ */
+@ExtendWith(MockitoExtension.class)
+public class PythiaFlowsTest {
+
+  private static final int MAX_IN_FLIGHT = 4;
+
+  @Mock
+  private Pythia pythia;
+
+  @Test
+  public void verification_boundedInFlight() throws Exception {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    when(pythia.verifyBreachProofPassword(anyString(), any(BreachProofPassword.class),
+        anyBoolean(), any(Deadline.class))).thenAnswer(invocation -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          Thread.sleep(2);
+          running.decrementAndGet();
+          return "password".equals(invocation.getArgument(0));
+        });
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 1 }, 1);
+
+    try (AsyncPythia asyncPythia = new AsyncPythia(pythia, Executors.newFixedThreadPool(16));
+        SubmissionPublisher<VerificationRequest> source = new SubmissionPublisher<>()) {
+      Flow.Processor<VerificationRequest, VerificationResult> processor = PythiaFlows
+          .verification(asyncPythia, MAX_IN_FLIGHT);
+      source.subscribe(processor);
+      CollectingSubscriber<VerificationResult> subscriber = new CollectingSubscriber<>(
+          Long.MAX_VALUE);
+      processor.subscribe(subscriber);
+
+      for (int i = 0; i < 100; i++) {
+        source.submit(new VerificationRequest(i % 2 == 0 ? "password" : "wrong", bpp, false));
+      }
+      source.close();
+
+      assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+      assertNull(subscriber.error);
+      assertEquals(100, subscriber.items.size());
+      int verified = 0;
+      for (VerificationResult result : subscriber.items) {
+        assertTrue(result.isSuccessful());
+        assertEquals("password".equals(result.getRequest().getPassword()), result.isVerified());
+        verified += result.isVerified() ? 1 : 0;
+      }
+      assertEquals(50, verified);
+      assertTrue(maxRunning.get() <= MAX_IN_FLIGHT);
+    }
+  }
+
+  @Test
+  public void verification_demandPropagatesToSource() throws Exception {
+    when(pythia.verifyBreachProofPassword(anyString(), any(BreachProofPassword.class),
+        anyBoolean(), any(Deadline.class))).thenReturn(true);
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 1 }, 1);
+    final AtomicLong requestedFromSource = new AtomicLong();
+    Flow.Publisher<VerificationRequest> source = subscriber -> subscriber
+        .onSubscribe(new Flow.Subscription() {
+
+          @Override
+          public void request(long n) {
+            requestedFromSource.addAndGet(n);
+            for (long i = 0; i < n; i++) {
+              subscriber.onNext(new VerificationRequest("password", bpp, false));
+            }
+          }
+
+          @Override
+          public void cancel() {
+          }
+        });
+
+    try (AsyncPythia asyncPythia = new AsyncPythia(pythia, Executors.newFixedThreadPool(2))) {
+      Flow.Processor<VerificationRequest, VerificationResult> processor = PythiaFlows
+          .verification(asyncPythia, MAX_IN_FLIGHT);
+      source.subscribe(processor);
+      CollectingSubscriber<VerificationResult> subscriber = new CollectingSubscriber<>(3);
+      processor.subscribe(subscriber);
+
+      assertTrue(subscriber.awaitItems(3));
+      Thread.sleep(50);
+      assertEquals(3, requestedFromSource.get());
+      assertEquals(3, subscriber.items.size());
+
+      subscriber.subscription.request(10);
+      assertTrue(subscriber.awaitItems(13));
+      Thread.sleep(50);
+      assertEquals(13, requestedFromSource.get());
+    }
+  }
+
+  @Test
+  public void enrollment_errorsInResults() throws Exception {
+    BreachProofPassword bpp = new BreachProofPassword(new byte[32], new byte[] { 1 }, 1);
+    when(pythia.createBreachProofPassword(anyString(), any(Deadline.class)))
+        .thenAnswer(invocation -> {
+          if ("throttled".equals(invocation.getArgument(0))) {
+            throw new ThrottlingException(60007, "Too many requests", null);
+          }
+          return bpp;
+        });
+
+    try (AsyncPythia asyncPythia = new AsyncPythia(pythia, Executors.newSingleThreadExecutor());
+        SubmissionPublisher<EnrollmentRequest> source = new SubmissionPublisher<>()) {
+      Flow.Processor<EnrollmentRequest, EnrollmentResult> processor = PythiaFlows
+          .enrollment(asyncPythia, MAX_IN_FLIGHT);
+      source.subscribe(processor);
+      CollectingSubscriber<EnrollmentResult> subscriber = new CollectingSubscriber<>(
+          Long.MAX_VALUE);
+      processor.subscribe(subscriber);
+
+      source.submit(new EnrollmentRequest("throttled"));
+      source.submit(new EnrollmentRequest("password"));
+      source.close();
+
+      assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+      assertNull(subscriber.error);
+      assertEquals(2, subscriber.items.size());
+      for (EnrollmentResult result : subscriber.items) {
+        if ("throttled".equals(result.getRequest().getPassword())) {
+          assertFalse(result.isSuccessful());
+          assertTrue(result.getError() instanceof ThrottlingException);
+          assertNull(result.getBreachProofPassword());
+        } else {
+          assertTrue(result.isSuccessful());
+          assertSame(bpp, result.getBreachProofPassword());
+        }
+      }
+    }
+  }
+
+  private static class CollectingSubscriber<T> implements Flow.Subscriber<T> {
+
+    private final long initialRequest;
+    private final List<T> items = new CopyOnWriteArrayList<>();
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private volatile Flow.Subscription subscription;
+    private volatile Throwable error;
+
+    CollectingSubscriber(long initialRequest) {
+      this.initialRequest = initialRequest;
+    }
+
+    boolean awaitItems(int count) throws InterruptedException {
+      long stopAt = System.currentTimeMillis() + 10_000;
+      while (items.size() < count && System.currentTimeMillis() < stopAt) {
+        Thread.sleep(5);
+      }
+      return items.size() >= count;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(initialRequest);
+    }
+
+    @Override
+    public void onNext(T item) {
+      items.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      this.error = throwable;
+      completed.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      completed.countDown();
+    }
+
+  }
+
+}